@@ -10,9 +10,7 @@ import java.util.List;
 import java.util.Set;
 import org.clafer.ast.analysis.AnalysisException;
 import org.clafer.common.Check;
-import org.clafer.graph.GraphUtil;
-import org.clafer.graph.KeyGraph;
-import org.clafer.graph.Vertex;
+import org.clafer.graph.IndexedGraph;
 
 /**
  * Various static utility functions for working with AST.
@@ -71,11 +69,11 @@ public class AstUtil {
      * @return the Clafers in the above order
      */
     public static List<Set<AstClafer>> getClafersInParentAndSubOrder(AstModel model) {
-        KeyGraph<AstClafer> dependency = new KeyGraph<>();
+        IndexedGraph<AstClafer> dependency = new IndexedGraph<>();
         for (AstAbstractClafer abstractClafer : model.getAbstracts()) {
-            Vertex<AstClafer> node = dependency.getVertex(abstractClafer);
+            dependency.getVertex(abstractClafer);
             for (AstClafer sub : abstractClafer.getSubs()) {
-                node.addNeighbour(dependency.getVertex(sub));
+                dependency.addEdge(abstractClafer, sub);
             }
         }
         for (AstConcreteClafer concreteClafer : getConcreteClafers(model)) {
@@ -83,7 +81,7 @@ public class AstUtil {
                 dependency.addEdge(concreteClafer, concreteClafer.getParent());
             }
         }
-        return GraphUtil.computeStronglyConnectedComponents(dependency);
+        return dependency.computeStronglyConnectedComponents();
     }
 
     /**
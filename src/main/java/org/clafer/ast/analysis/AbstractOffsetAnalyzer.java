@@ -9,12 +9,45 @@ import java.util.Map;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.Card;
+import org.clafer.common.Check;
 
 /**
  *
  * @author jimmy
  */
-public class AbstractOffsetAnalyzer implements Analyzer {
+public class AbstractOffsetAnalyzer implements DependentAnalyzer {
+
+    // null if the analyzer chooses the layouts.
+    private final Map<AstAbstractClafer, List<AstClafer>> layouts;
+
+    public AbstractOffsetAnalyzer() {
+        this.layouts = null;
+    }
+
+    /**
+     * Lay out the sub clafers in the given order rather than choosing an
+     * order. Reproduces the offsets of an earlier analysis with the same
+     * scope.
+     *
+     * @param layouts the sub clafers of every abstract Clafer in order of
+     * increasing offset
+     * @see Offsets#getSubs()
+     */
+    public AbstractOffsetAnalyzer(Map<AstAbstractClafer, List<AstClafer>> layouts) {
+        this.layouts = Check.notNull(layouts);
+    }
+
+    @Override
+    public AnalysisFact[] reads() {
+        return layouts == null
+                ? new AnalysisFact[]{AnalysisFact.GlobalCard, AnalysisFact.Scope}
+                : new AnalysisFact[]{AnalysisFact.Scope};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Offsets};
+    }
 
     @Override
     public Analysis analyze(final Analysis analysis) {
@@ -23,23 +56,16 @@ public class AbstractOffsetAnalyzer implements Analyzer {
             Map<AstClafer, Integer> offsets = new HashMap<>();
             List<AstClafer> reverseOffsets = new ArrayList<>();
             int offset = 0;
-            List<AstClafer> subs = new ArrayList<>(abstractClafer.getSubs());
-            /*
-             * What is this optimization?
-             *
-             * This optimization is to put more "stable" Clafers near the
-             * beginning, to reduce the number of backtracking for LowGroups.
-             */
-            Collections.sort(subs, new Comparator<AstClafer>() {
-                @Override
-                public int compare(AstClafer o1, AstClafer o2) {
-                    Card card1 = analysis.getGlobalCard(o1);
-                    Card card2 = analysis.getGlobalCard(o2);
-                    double ratio1 = ((double) card1.getLow() + 1) / ((double) card1.getHigh() + 1);
-                    double ratio2 = ((double) card2.getLow() + 1) / ((double) card2.getHigh() + 1);
-                    return -Double.compare(ratio1, ratio2);
+            List<AstClafer> subs;
+            if (layouts != null) {
+                subs = layouts.get(abstractClafer);
+                if (subs == null) {
+                    throw new AnalysisException("No layout for " + abstractClafer);
                 }
-            });
+                subs = new ArrayList<>(subs);
+            } else {
+                subs = sortSubs(abstractClafer, analysis);
+            }
             for (AstClafer sub : subs) {
                 offsets.put(sub, offset);
                 int skip = analysis.getScope(sub);
@@ -48,8 +74,29 @@ public class AbstractOffsetAnalyzer implements Analyzer {
                 }
                 offset += skip;
             }
-            offsetsMap.put(abstractClafer, new Offsets(abstractClafer, offsets, reverseOffsets.toArray(new AstClafer[reverseOffsets.size()])));
+            offsetsMap.put(abstractClafer, new Offsets(abstractClafer, subs, offsets, reverseOffsets.toArray(new AstClafer[reverseOffsets.size()])));
         }
         return analysis.setOffsetMap(offsetsMap);
     }
+
+    private static List<AstClafer> sortSubs(AstAbstractClafer abstractClafer, final Analysis analysis) {
+        List<AstClafer> subs = new ArrayList<>(abstractClafer.getSubs());
+        /*
+         * What is this optimization?
+         *
+         * This optimization is to put more "stable" Clafers near the
+         * beginning, to reduce the number of backtracking for LowGroups.
+         */
+        Collections.sort(subs, new Comparator<AstClafer>() {
+            @Override
+            public int compare(AstClafer o1, AstClafer o2) {
+                Card card1 = analysis.getGlobalCard(o1);
+                Card card2 = analysis.getGlobalCard(o2);
+                double ratio1 = ((double) card1.getLow() + 1) / ((double) card1.getHigh() + 1);
+                double ratio2 = ((double) card2.getLow() + 1) / ((double) card2.getHigh() + 1);
+                return -Double.compare(ratio1, ratio2);
+            }
+        });
+        return subs;
+    }
 }
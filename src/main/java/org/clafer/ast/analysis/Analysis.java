@@ -1,6 +1,7 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -114,12 +115,21 @@ public class Analysis {
         return analyze(model, scope, new Objective[0], analyzers);
     }
 
+    /**
+     * Run the analyzers over the model. The result is the same as running the
+     * analyzers one after the other, but analyzers that declare their facts
+     * through {@link DependentAnalyzer} may run concurrently, and an analyzer
+     * is skipped if it already ran and none of its facts changed since.
+     *
+     * @param model the model
+     * @param scope the scope
+     * @param objectives the objectives
+     * @param analyzers the analyzers in order
+     * @return the analysis
+     */
     public static Analysis analyze(AstModel model, Scopable scope, Objective[] objectives, Analyzer... analyzers) {
         Analysis analysis = new Analysis(model, scope.toScope(), objectives);
-        for (Analyzer analyzer : analyzers) {
-            analysis = analyzer.analyze(analysis);
-        }
-        return analysis;
+        return new AnalyzerScheduler(analyzers).run(analysis);
     }
 
     private <T> T notNull(String analysisName, T t) {
@@ -488,4 +498,40 @@ public class Analysis {
         this.typeMap = typeMap;
         return this;
     }
+
+    /**
+     * @param fact the fact
+     * @return the current value of the fact, or {@code null} if not yet
+     * analyzed
+     */
+    Object getFact(AnalysisFact fact) {
+        switch (fact) {
+            case Constraints:
+                return Arrays.asList(constraints, hardConstraints);
+            case ConstraintExprs:
+                return constraintExprs;
+            case ObjectiveExprs:
+                return objectiveExprs;
+            case Types:
+                return typeMap;
+            case Scope:
+                return scope;
+            case Card:
+                return cardMap;
+            case GlobalCard:
+                return globalCardMap;
+            case Format:
+                return formatMap;
+            case Offsets:
+                return offsetMap;
+            case PartialSolution:
+                return partialSolutionMap;
+            case PartialInts:
+                return partialIntsMap;
+            case Breakables:
+                return Arrays.asList(breakableChildrenMap, breakableRefsMap, breakableTargetsMap);
+            default:
+                throw new IllegalArgumentException("Unknown fact " + fact);
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package org.clafer.ast.analysis;
+
+/**
+ * The facts stored in an {@link Analysis}. A {@link DependentAnalyzer} declares
+ * which facts it reads and writes so independent analyzers can run
+ * concurrently.
+ *
+ * @author jimmy
+ */
+public enum AnalysisFact {
+
+    /**
+     * The constraints and which of them are hard.
+     */
+    Constraints,
+    ConstraintExprs,
+    ObjectiveExprs,
+    Types,
+    Scope,
+    Card,
+    GlobalCard,
+    Format,
+    Offsets,
+    PartialSolution,
+    PartialInts,
+    /**
+     * The breakable children, refs, and targets.
+     */
+    Breakables;
+}
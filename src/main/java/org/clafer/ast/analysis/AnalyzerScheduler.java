@@ -0,0 +1,256 @@
+package org.clafer.ast.analysis;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a sequence of analyzers with the same result as running them in order.
+ * Two analyzers conflict if one writes a fact the other reads or writes.
+ * Analyzers only wait for the earlier analyzers they conflict with, so
+ * independent analyzers run concurrently. Analyzers that do not declare their
+ * facts conflict with every other analyzer.
+ * <p>
+ * Every fact has a version that increments when an analyzer changes it. An
+ * analyzer is skipped if the same analyzer already ran and the versions of all
+ * its facts are the same as right after that run. Analyzers are compared by
+ * identity since two instances of the same class can be configured
+ * differently.
+ * </p>
+ *
+ * @author jimmy
+ */
+class AnalyzerScheduler {
+
+    private static final AnalysisFact[] Facts = AnalysisFact.values();
+    private static final ExecutorService Pool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "clafer-analysis-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Analyzer[] analyzers;
+    // null for analyzers that do not declare their facts.
+    private final List<Set<AnalysisFact>> reads;
+    private final List<Set<AnalysisFact>> writes;
+    private final int[] predecessorCounts;
+    private final TIntArrayList[] successors;
+
+    AnalyzerScheduler(Analyzer[] analyzers) {
+        this.analyzers = analyzers.clone();
+        this.reads = new ArrayList<>(analyzers.length);
+        this.writes = new ArrayList<>(analyzers.length);
+        for (Analyzer analyzer : analyzers) {
+            if (analyzer instanceof DependentAnalyzer) {
+                DependentAnalyzer dependent = (DependentAnalyzer) analyzer;
+                reads.add(toSet(dependent.reads()));
+                writes.add(toSet(dependent.writes()));
+            } else {
+                reads.add(null);
+                writes.add(null);
+            }
+        }
+        this.predecessorCounts = new int[analyzers.length];
+        this.successors = new TIntArrayList[analyzers.length];
+        for (int i = 0; i < analyzers.length; i++) {
+            successors[i] = new TIntArrayList();
+            for (int j = 0; j < i; j++) {
+                if (conflict(j, i)) {
+                    successors[j].add(i);
+                    predecessorCounts[i]++;
+                }
+            }
+        }
+    }
+
+    private static Set<AnalysisFact> toSet(AnalysisFact[] facts) {
+        Set<AnalysisFact> set = EnumSet.noneOf(AnalysisFact.class);
+        for (AnalysisFact fact : facts) {
+            set.add(fact);
+        }
+        return set;
+    }
+
+    private boolean isDependent(int i) {
+        return reads.get(i) != null;
+    }
+
+    private boolean conflict(int i, int j) {
+        if (!isDependent(i) || !isDependent(j)) {
+            return true;
+        }
+        return intersects(writes.get(i), reads.get(j))
+                || intersects(writes.get(i), writes.get(j))
+                || intersects(reads.get(i), writes.get(j));
+    }
+
+    private static boolean intersects(Set<AnalysisFact> s1, Set<AnalysisFact> s2) {
+        for (AnalysisFact fact : s1) {
+            if (s2.contains(fact)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the facts the analyzer can read or write
+     */
+    private Set<AnalysisFact> getFacts(int i) {
+        if (!isDependent(i)) {
+            return EnumSet.allOf(AnalysisFact.class);
+        }
+        Set<AnalysisFact> facts = EnumSet.copyOf(reads.get(i));
+        facts.addAll(writes.get(i));
+        return facts;
+    }
+
+    private static Object[] snapshot(Analysis analysis, Set<AnalysisFact> facts) {
+        Object[] values = new Object[Facts.length];
+        for (AnalysisFact fact : facts) {
+            values[fact.ordinal()] = analysis.getFact(fact);
+        }
+        return values;
+    }
+
+    private static boolean same(Object before, Object after) {
+        return before == after || (before != null && before.equals(after));
+    }
+
+    Analysis run(Analysis analysis) {
+        int[] versions = new int[Facts.length];
+        Map<Analyzer, int[]> ran = new IdentityHashMap<>();
+        int[] waiting = predecessorCounts.clone();
+        BitSet ready = new BitSet(analyzers.length);
+        for (int i = 0; i < analyzers.length; i++) {
+            if (waiting[i] == 0) {
+                ready.set(i);
+            }
+        }
+        Object[][] before = new Object[analyzers.length][];
+        CompletionService<Integer> completion = null;
+        int running = 0;
+        Analysis current = analysis;
+
+        while (true) {
+            for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(0)) {
+                ready.clear(i);
+                if (skip(i, versions, ran)) {
+                    finish(i, waiting, ready);
+                    continue;
+                }
+                // Only the facts of this analyzer, the others may be changing.
+                before[i] = snapshot(current, getFacts(i));
+                if (running == 0 && ready.isEmpty()) {
+                    Analysis result = analyzers[i].analyze(current);
+                    if (isDependent(i)) {
+                        checkInPlace(i, current, result);
+                    }
+                    current = result;
+                    update(i, before[i], current, versions, ran);
+                    finish(i, waiting, ready);
+                } else {
+                    if (completion == null) {
+                        completion = new ExecutorCompletionService<>(Pool);
+                    }
+                    final int index = i;
+                    final Analysis shared = current;
+                    completion.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            checkInPlace(index, shared, analyzers[index].analyze(shared));
+                            return index;
+                        }
+                    });
+                    running++;
+                }
+            }
+            if (running == 0) {
+                return current;
+            }
+            int i = take(completion);
+            running--;
+            update(i, before[i], current, versions, ran);
+            finish(i, waiting, ready);
+        }
+    }
+
+    private void checkInPlace(int i, Analysis analysis, Analysis result) {
+        if (analysis != result) {
+            throw new AnalysisException(analyzers[i].getClass().getSimpleName()
+                    + " declares its facts but did not update the analysis in place.");
+        }
+    }
+
+    private boolean skip(int i, int[] versions, Map<Analyzer, int[]> ran) {
+        if (!isDependent(i)) {
+            return false;
+        }
+        int[] previous = ran.get(analyzers[i]);
+        if (previous == null) {
+            return false;
+        }
+        for (AnalysisFact fact : getFacts(i)) {
+            if (previous[fact.ordinal()] != versions[fact.ordinal()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void update(int i, Object[] before, Analysis after, int[] versions, Map<Analyzer, int[]> ran) {
+        for (AnalysisFact fact : getFacts(i)) {
+            if (!same(before[fact.ordinal()], after.getFact(fact))) {
+                versions[fact.ordinal()]++;
+            }
+        }
+        if (isDependent(i)) {
+            ran.put(analyzers[i], versions.clone());
+        }
+    }
+
+    private void finish(int i, int[] waiting, BitSet ready) {
+        TIntArrayList next = successors[i];
+        for (int k = 0; k < next.size(); k++) {
+            int successor = next.getQuick(k);
+            if (--waiting[successor] == 0) {
+                ready.set(successor);
+            }
+        }
+    }
+
+    private static int take(CompletionService<Integer> completion) {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AnalysisException(cause);
+        }
+    }
+}
@@ -12,7 +12,17 @@ import org.clafer.ast.Card;
  *
  * @author jimmy
  */
-public class CardAnalyzer implements Analyzer {
+public class CardAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Card, AnalysisFact.GlobalCard};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Card};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
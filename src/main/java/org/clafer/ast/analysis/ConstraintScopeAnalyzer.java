@@ -0,0 +1,317 @@
+package org.clafer.ast.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstArithm;
+import org.clafer.ast.AstBoolArithm;
+import org.clafer.ast.AstBoolExpr;
+import org.clafer.ast.AstCard;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstCompare;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstant;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstGlobal;
+import org.clafer.ast.AstIntClafer;
+import org.clafer.ast.AstMinus;
+import org.clafer.ast.AstSetExpr;
+import org.clafer.ast.AstSetTest;
+import org.clafer.ast.AstUpcast;
+import org.clafer.ast.Card;
+import org.clafer.math.LinearEquation;
+import org.clafer.math.LinearEquation.Op;
+import org.clafer.math.LinearFunction;
+import org.clafer.math.Rational;
+import org.clafer.math.Variable;
+
+/**
+ * Tightens the global cardinalities using the hard constraints that
+ * bound the number of instances of Clafers, for example
+ * {@code [#Employee + #Manager <= 10]}. The counts of every Clafer are related
+ * by the parent/child cardinalities, the group cardinalities and the
+ * abstract/sub hierarchy, so a bound on one Clafer is propagated to the rest
+ * of the hierarchy. The
+ * {@link ScopeAnalyzer} then shrinks the scopes to the tighter cardinalities,
+ * before any variables are allocated.
+ *
+ * @author jimmy
+ */
+public class ConstraintScopeAnalyzer implements DependentAnalyzer {
+
+    // Every bound update strictly tightens an integer interval, so the
+    // propagation terminates. The cap only limits the time spent on models
+    // with huge scopes and slowly converging cycles.
+    private static final int MaxRounds = 1000;
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Constraints, AnalysisFact.ConstraintExprs, AnalysisFact.Card, AnalysisFact.GlobalCard};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.GlobalCard};
+    }
+
+    @Override
+    public Analysis analyze(Analysis analysis) {
+        Map<AstClafer, Variable> counts = new HashMap<>();
+        for (AstClafer clafer : analysis.getClafers()) {
+            Card globalCard = analysis.getGlobalCard(clafer);
+            counts.put(clafer, new Variable(clafer.getName(), globalCard.getLow(), globalCard.getHigh()));
+        }
+
+        List<LinearEquation> equations = new ArrayList<>();
+        for (AstConstraint constraint : analysis.getConstraints()) {
+            if (analysis.isHard(constraint)
+                    && analysis.getGlobalCard(constraint.getContext()).getLow() > 0) {
+                // The constraint holds at least once, and constraints over
+                // global counts do not depend on the instance of the context.
+                equations(analysis.getExpr(constraint), counts, equations);
+            }
+        }
+        if (equations.isEmpty()) {
+            return analysis;
+        }
+        for (AstAbstractClafer abstractClafer : analysis.getAbstractClafers()) {
+            LinearFunction subs = new LinearFunction(0);
+            for (AstClafer sub : abstractClafer.getSubs()) {
+                subs = subs.add(new LinearFunction(1, counts.get(sub)));
+            }
+            equations.add(LinearEquation.equal(new LinearFunction(1, counts.get(abstractClafer)), subs));
+        }
+        for (AstConcreteClafer concreteClafer : analysis.getConcreteClafers()) {
+            if (concreteClafer.hasParent()) {
+                Card card = analysis.getCard(concreteClafer);
+                LinearFunction count = new LinearFunction(1, counts.get(concreteClafer));
+                Variable parentCount = counts.get(concreteClafer.getParent());
+                if (card.hasLow()) {
+                    equations.add(LinearEquation.greaterThanEqual(count,
+                            new LinearFunction(card.getLow(), parentCount)));
+                }
+                if (card.hasHigh()) {
+                    equations.add(LinearEquation.lessThanEqual(count,
+                            new LinearFunction(card.getHigh(), parentCount)));
+                }
+            }
+        }
+        for (AstClafer clafer : analysis.getClafers()) {
+            // The group cardinality bounds the total number of children under
+            // each instance.
+            Card groupCard = clafer.getGroupCard();
+            if (clafer.hasChildren() && groupCard.isBounded()) {
+                LinearFunction children = new LinearFunction(0);
+                for (AstConcreteClafer child : clafer.getChildren()) {
+                    children = children.add(new LinearFunction(1, counts.get(child)));
+                }
+                Variable count = counts.get(clafer);
+                if (groupCard.hasLow()) {
+                    equations.add(LinearEquation.greaterThanEqual(children,
+                            new LinearFunction(groupCard.getLow(), count)));
+                }
+                if (groupCard.hasHigh()) {
+                    equations.add(LinearEquation.lessThanEqual(children,
+                            new LinearFunction(groupCard.getHigh(), count)));
+                }
+            }
+        }
+
+        Map<Variable, int[]> bounds = new HashMap<>(counts.size() * 2);
+        for (Variable count : counts.values()) {
+            bounds.put(count, new int[]{count.getLowBound(), count.getHighBound()});
+        }
+        if (!propagate(equations, bounds)) {
+            // The constraints are unsatisfiable. Leave the scopes alone and let
+            // the solver report it.
+            return analysis;
+        }
+
+        Map<AstClafer, Card> globalCardMap = new HashMap<>(analysis.getGlobalCardMap());
+        for (Map.Entry<AstClafer, Variable> entry : counts.entrySet()) {
+            Card globalCard = globalCardMap.get(entry.getKey());
+            int[] bound = bounds.get(entry.getValue());
+            if (bound[0] > globalCard.getLow() || bound[1] < globalCard.getHigh()) {
+                globalCardMap.put(entry.getKey(), new Card(bound[0], bound[1]));
+            }
+        }
+        return analysis.setGlobalCardMap(globalCardMap);
+    }
+
+    /**
+     * Narrow the bounds until every equation is bounds consistent.
+     *
+     * @param equations the equations
+     * @param bounds the low and high bound of each variable
+     * @return {@code false} if the equations are unsatisfiable, {@code true}
+     * otherwise
+     */
+    private static boolean propagate(List<LinearEquation> equations, Map<Variable, int[]> bounds) {
+        boolean changed = true;
+        for (int round = 0; changed && round < MaxRounds; round++) {
+            changed = false;
+            for (LinearEquation equation : equations) {
+                Rational[] coefficients = equation.getLeft().getCoefficients();
+                Variable[] variables = equation.getLeft().getVariables();
+                Rational low = Rational.Zero;
+                Rational high = Rational.Zero;
+                for (int i = 0; i < variables.length; i++) {
+                    int[] bound = bounds.get(variables[i]);
+                    Rational a = coefficients[i].mul(bound[0]);
+                    Rational b = coefficients[i].mul(bound[1]);
+                    boolean positive = coefficients[i].isPositive();
+                    low = low.add(positive ? a : b);
+                    high = high.add(positive ? b : a);
+                }
+                Rational right = equation.getRight();
+                if (low.compareTo(right) > 0
+                        || (Op.Equal.equals(equation.getOp()) && high.compareTo(right) < 0)) {
+                    return false;
+                }
+                for (int i = 0; i < variables.length; i++) {
+                    Rational coefficient = coefficients[i];
+                    if (coefficient.isZero()) {
+                        continue;
+                    }
+                    int[] bound = bounds.get(variables[i]);
+                    Rational a = coefficient.mul(bound[0]);
+                    Rational b = coefficient.mul(bound[1]);
+                    boolean positive = coefficient.isPositive();
+                    // coefficient * variable <= right - (low of the other terms)
+                    Rational max = right.sub(low.sub(positive ? a : b)).div(coefficient);
+                    changed |= positive ? tightenHigh(bound, max) : tightenLow(bound, max);
+                    if (Op.Equal.equals(equation.getOp())) {
+                        // coefficient * variable >= right - (high of the other terms)
+                        Rational min = right.sub(high.sub(positive ? b : a)).div(coefficient);
+                        changed |= positive ? tightenLow(bound, min) : tightenHigh(bound, min);
+                    }
+                    if (bound[0] > bound[1]) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean tightenLow(int[] bound, Rational low) {
+        if (low.compareTo(new Rational(bound[0])) > 0) {
+            bound[0] = low.compareTo(new Rational(bound[1])) > 0
+                    ? bound[1] + 1 : (int) low.ceil();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean tightenHigh(int[] bound, Rational high) {
+        if (high.compareTo(new Rational(bound[1])) < 0) {
+            bound[1] = high.compareTo(new Rational(bound[0])) < 0
+                    ? bound[0] - 1 : (int) high.floor();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Translate the linear constraints over global counts. Other constraints
+     * are ignored.
+     */
+    private static void equations(AstBoolExpr expr, Map<AstClafer, Variable> counts, List<LinearEquation> equations) {
+        if (expr instanceof AstBoolArithm) {
+            AstBoolArithm boolArithm = (AstBoolArithm) expr;
+            if (AstBoolArithm.Op.And.equals(boolArithm.getOp())) {
+                for (AstBoolExpr operand : boolArithm.getOperands()) {
+                    equations(operand, counts, equations);
+                }
+            }
+        } else if (expr instanceof AstCompare) {
+            AstCompare compare = (AstCompare) expr;
+            LinearFunction left = function(compare.getLeft(), counts);
+            LinearFunction right = function(compare.getRight(), counts);
+            if (left != null && right != null) {
+                switch (compare.getOp()) {
+                    case LessThan:
+                        equations.add(LinearEquation.lessThan(left, right));
+                        break;
+                    case LessThanEqual:
+                        equations.add(LinearEquation.lessThanEqual(left, right));
+                        break;
+                    case GreaterThan:
+                        equations.add(LinearEquation.greaterThan(left, right));
+                        break;
+                    case GreaterThanEqual:
+                        equations.add(LinearEquation.greaterThanEqual(left, right));
+                        break;
+                }
+            }
+        } else if (expr instanceof AstSetTest) {
+            AstSetTest setTest = (AstSetTest) expr;
+            if (AstSetTest.Op.Equal.equals(setTest.getOp())) {
+                LinearFunction left = function(setTest.getLeft(), counts);
+                LinearFunction right = function(setTest.getRight(), counts);
+                if (left != null && right != null) {
+                    equations.add(LinearEquation.equal(left, right));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the linear function of the global counts, or {@code null} if the
+     * expression is not one
+     */
+    private static LinearFunction function(AstSetExpr expr, Map<AstClafer, Variable> counts) {
+        if (expr instanceof AstCard) {
+            AstSetExpr set = ((AstCard) expr).getSet();
+            while (set instanceof AstUpcast) {
+                set = ((AstUpcast) set).getBase();
+            }
+            if (set instanceof AstGlobal) {
+                Variable count = counts.get(((AstGlobal) set).getType());
+                return count == null ? null : new LinearFunction(1, count);
+            }
+        } else if (expr instanceof AstConstant) {
+            AstConstant constant = (AstConstant) expr;
+            if (constant.getType() instanceof AstIntClafer && constant.getValue().length == 1) {
+                return new LinearFunction(constant.getValue()[0]);
+            }
+        } else if (expr instanceof AstMinus) {
+            LinearFunction function = function(((AstMinus) expr).getExpr(), counts);
+            return function == null ? null : function.minus();
+        } else if (expr instanceof AstArithm) {
+            AstArithm arithm = (AstArithm) expr;
+            AstSetExpr[] operands = arithm.getOperands();
+            LinearFunction result = function(operands[0], counts);
+            for (int i = 1; i < operands.length && result != null; i++) {
+                LinearFunction operand = function(operands[i], counts);
+                if (operand == null) {
+                    return null;
+                }
+                switch (arithm.getOp()) {
+                    case Add:
+                        result = result.add(operand);
+                        break;
+                    case Sub:
+                        result = result.sub(operand);
+                        break;
+                    case Mul:
+                        if (operand.getVariables().length == 0) {
+                            result = result.mul(operand.getConstant());
+                        } else if (result.getVariables().length == 0) {
+                            result = operand.mul(result.getConstant());
+                        } else {
+                            return null;
+                        }
+                        break;
+                    default:
+                        // Integer division is not linear.
+                        return null;
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package org.clafer.ast.analysis;
+
+/**
+ * An analyzer that declares the facts it reads and writes. The result of the
+ * analyzer must only depend on the facts it reads and the model, and the
+ * analyzer must update the analysis it is given in place. Analyzers that do not
+ * declare their facts are run in isolation.
+ *
+ * @author jimmy
+ * @see Analysis#analyze(org.clafer.ast.AstModel, org.clafer.scope.Scopable,
+ * org.clafer.objective.Objective[], Analyzer[])
+ */
+public interface DependentAnalyzer extends Analyzer {
+
+    /**
+     * @return the facts this analyzer reads
+     */
+    public AnalysisFact[] reads();
+
+    /**
+     * @return the facts this analyzer writes
+     */
+    public AnalysisFact[] writes();
+}
@@ -10,7 +10,17 @@ import org.clafer.ast.AstConcreteClafer;
  *
  * @author jimmy
  */
-public class FormatAnalyzer implements Analyzer {
+public class FormatAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Card, AnalysisFact.Scope};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Format};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
@@ -13,22 +13,20 @@ import org.clafer.ast.AstUtil;
 import static org.clafer.ast.Asts.IntType;
 import org.clafer.ast.Card;
 import org.clafer.collection.Pair;
-import org.clafer.graph.GraphUtil;
-import org.clafer.graph.KeyGraph;
-import org.clafer.graph.Vertex;
+import org.clafer.graph.IndexedGraph;
 
 /**
  *
  * @author jimmy
  */
-public class GlobalCardAnalyzer implements Analyzer {
+public class GlobalCardAnalyzer implements DependentAnalyzer {
 
     private Iterable<Set<AstClafer>> order(Analysis analysis) {
-        KeyGraph<AstClafer> dependency = new KeyGraph<>();
+        IndexedGraph<AstClafer> dependency = new IndexedGraph<>();
         for (AstAbstractClafer abstractClafer : analysis.getAbstractClafers()) {
-            Vertex<AstClafer> node = dependency.getVertex(abstractClafer);
+            dependency.getVertex(abstractClafer);
             for (AstClafer sub : abstractClafer.getSubs()) {
-                node.addNeighbour(dependency.getVertex(sub));
+                dependency.addEdge(abstractClafer, sub);
             }
         }
         for (AstConcreteClafer concreteClafer : analysis.getConcreteClafers()) {
@@ -40,7 +38,17 @@ public class GlobalCardAnalyzer implements Analyzer {
                 dependency.addEdge(concreteClafer, ref.getTargetType());
             }
         }
-        return GraphUtil.computeStronglyConnectedComponents(dependency);
+        return dependency.computeStronglyConnectedComponents();
+    }
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Scope, AnalysisFact.Card};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.GlobalCard};
     }
 
     @Override
@@ -1,5 +1,7 @@
 package org.clafer.ast.analysis;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
@@ -12,15 +14,26 @@ import org.clafer.common.Check;
 public class Offsets {
 
     private final AstAbstractClafer sup;
+    private final List<AstClafer> subs;
     private final Map<AstClafer, Integer> offsets;
     private final AstClafer[] reverseOffsets;
 
-    Offsets(AstAbstractClafer sup, Map<AstClafer, Integer> offsets, AstClafer[] reverseOffsets) {
+    Offsets(AstAbstractClafer sup, List<AstClafer> subs, Map<AstClafer, Integer> offsets, AstClafer[] reverseOffsets) {
         this.sup = Check.notNull(sup);
+        this.subs = Check.notNull(subs);
         this.offsets = Check.notNull(offsets);
         this.reverseOffsets = Check.noNulls(reverseOffsets);
     }
 
+    /**
+     * Returns the direct sub clafers in the order they are laid out.
+     *
+     * @return the sub clafers in order of increasing offset
+     */
+    public List<AstClafer> getSubs() {
+        return Collections.unmodifiableList(subs);
+    }
+
     public int getOffset(AstClafer sub) {
         Integer offset = offsets.get(sub);
         if (offset == null) {
@@ -25,82 +25,109 @@ import org.clafer.objective.Objective;
  *
  * @author jimmy
  */
-public class OptimizerAnalyzer extends AstExprRewriter<Analysis> implements Analyzer {
+public class OptimizerAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{
+            AnalysisFact.Constraints, AnalysisFact.ConstraintExprs, AnalysisFact.ObjectiveExprs,
+            AnalysisFact.Types, AnalysisFact.Scope, AnalysisFact.Card, AnalysisFact.Format};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.ConstraintExprs, AnalysisFact.ObjectiveExprs};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
+        Optimizer optimizer = new Optimizer();
         Map<AstConstraint, AstBoolExpr> constraintExprs = new HashMap<>(analysis.getConstraints().size());
         for (AstConstraint constraint : analysis.getConstraints()) {
-            constraintExprs.put(constraint, rewrite(analysis.getExpr(constraint), analysis));
+            constraintExprs.put(constraint, optimizer.rewrite(analysis.getExpr(constraint), analysis));
         }
         Map<Objective, AstSetExpr> objectiveExprs = new HashMap<>(analysis.getObjectives().length);
         for (Objective objective : analysis.getObjectives()) {
-            objectiveExprs.put(objective, rewrite(analysis.getExpr(objective), analysis));
+            objectiveExprs.put(objective, optimizer.rewrite(analysis.getExpr(objective), analysis));
+        }
+        if (!optimizer.optimized) {
+            // Keep the original expressions so their types stay valid.
+            return analysis;
         }
         return analysis
                 .setConstraintExprs(constraintExprs)
                 .setObjectiveExprs(objectiveExprs);
     }
 
-    @Override
-    public AstExpr visit(AstJoin ast, Analysis a) {
-        AstSetExpr left = rewrite(ast.getLeft(), a);
-        AstConcreteClafer right = ast.getRight();
-        if (left instanceof AstThis) {
-            if (a.getScope(a.getCommonSupertype(ast.getLeft())) == 1) {
+    private static class Optimizer extends AstExprRewriter<Analysis> {
+
+        private boolean optimized = false;
+
+        private AstSetExpr optimized(AstSetExpr expr) {
+            optimized = true;
+            return expr;
+        }
+
+        @Override
+        public AstExpr visit(AstJoin ast, Analysis a) {
+            AstSetExpr left = rewrite(ast.getLeft(), a);
+            AstConcreteClafer right = ast.getRight();
+            if (left instanceof AstThis) {
+                if (a.getScope(a.getCommonSupertype(ast.getLeft())) == 1) {
+                    Card childCard = a.getCard(ast.getRight());
+                    if (Format.ParentGroup.equals(a.getFormat(right))) {
+                        assert childCard.isExact();
+                        return optimized(constant(ast.getRight(), Util.fromTo(0, childCard.getLow())));
+                    }
+                    return optimized(global(ast.getRight()));
+                }
+            } else if (left instanceof AstGlobal) {
+                return optimized(global(ast.getRight()));
+            } else if (left instanceof AstConstant) {
                 Card childCard = a.getCard(ast.getRight());
-                if (Format.ParentGroup.equals(a.getFormat(right))) {
+                if (Format.ParentGroup.equals(a.getFormat(ast.getRight()))) {
+                    AstConstant constant = (AstConstant) left;
                     assert childCard.isExact();
-                    return constant(ast.getRight(), Util.fromTo(0, childCard.getLow()));
-                }
-                return global(ast.getRight());
-            }
-        } else if (left instanceof AstGlobal) {
-            return global(ast.getRight());
-        } else if (left instanceof AstConstant) {
-            Card childCard = a.getCard(ast.getRight());
-            if (Format.ParentGroup.equals(a.getFormat(ast.getRight()))) {
-                AstConstant constant = (AstConstant) left;
-                assert childCard.isExact();
-                int[] childConstant = new int[constant.getValue().length * childCard.getLow()];
-                for (int i = 0; i < constant.getValue().length; i++) {
-                    for (int j = 0; j < childCard.getLow(); j++) {
-                        childConstant[i * childCard.getLow() + j] =
-                                i * constant.getValue()[i] + j;
+                    int[] childConstant = new int[constant.getValue().length * childCard.getLow()];
+                    for (int i = 0; i < constant.getValue().length; i++) {
+                        for (int j = 0; j < childCard.getLow(); j++) {
+                            childConstant[i * childCard.getLow() + j] =
+                                    i * constant.getValue()[i] + j;
+                        }
                     }
+                    return optimized(constant(ast.getRight(), childConstant));
                 }
-                return constant(ast.getRight(), childConstant);
+                assert childCard.getLow() != a.getScope(ast.getRight()) :
+                        "Didn't run scope analysis before format analysis?";
             }
-            assert childCard.getLow() != a.getScope(ast.getRight()) :
-                    "Didn't run scope analysis before format analysis?";
+            return join(left, ast.getRight());
         }
-        return join(left, ast.getRight());
-    }
 
-    @Override
-    public AstExpr visit(AstJoinParent ast, Analysis a) {
-        AstSetExpr children = rewrite(ast.getChildren(), a);
-        if (children instanceof AstThis) {
-            AstClafer type = a.getCommonSupertype(ast);
-            if (a.getScope(type) == 1) {
-                return constant(type, 0);
-            }
-        } else if (children instanceof AstGlobal) {
-            AstClafer childType = a.getCommonSupertype(ast.getChildren());
-            if (childType instanceof AstConcreteClafer) {
-                AstConcreteClafer concreteChildType = (AstConcreteClafer) childType;
-                if (a.getCard(concreteChildType).hasLow()) {
-                    return global(a.getCommonSupertype(ast));
+        @Override
+        public AstExpr visit(AstJoinParent ast, Analysis a) {
+            AstSetExpr children = rewrite(ast.getChildren(), a);
+            if (children instanceof AstThis) {
+                AstClafer type = a.getCommonSupertype(ast);
+                if (a.getScope(type) == 1) {
+                    return optimized(constant(type, 0));
+                }
+            } else if (children instanceof AstGlobal) {
+                AstClafer childType = a.getCommonSupertype(ast.getChildren());
+                if (childType instanceof AstConcreteClafer) {
+                    AstConcreteClafer concreteChildType = (AstConcreteClafer) childType;
+                    if (a.getCard(concreteChildType).hasLow()) {
+                        return optimized(global(a.getCommonSupertype(ast)));
+                    }
+                }
+            } else if (children instanceof AstConstant) {
+                AstConstant constant = (AstConstant) children;
+                AstClafer type = a.getCommonSupertype(ast);
+                if (constant.getValue().length > 0 && a.getScope(type) == 1) {
+                    return optimized(constant(type, 0));
                 }
             }
-        } else if (children instanceof AstConstant) {
-            AstConstant constant = (AstConstant) children;
-            AstClafer type = a.getCommonSupertype(ast);
-            if (constant.getValue().length > 0 && a.getScope(type) == 1) {
-                return constant(type, 0);
-            }
+            return joinParent(children);
         }
-        return joinParent(children);
+        // TDODO: rewrite for all (global)
     }
-    // TDODO: rewrite for all (global)
 }
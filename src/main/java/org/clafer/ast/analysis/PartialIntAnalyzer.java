@@ -34,7 +34,17 @@ import org.clafer.scope.Scope;
  *
  * @author jimmy
  */
-public class PartialIntAnalyzer implements Analyzer {
+public class PartialIntAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Constraints, AnalysisFact.ConstraintExprs, AnalysisFact.PartialSolution, AnalysisFact.Offsets, AnalysisFact.Scope};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.PartialInts};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
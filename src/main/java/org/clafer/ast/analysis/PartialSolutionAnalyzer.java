@@ -13,7 +13,17 @@ import org.clafer.ast.Card;
  *
  * @author jimmy
  */
-public class PartialSolutionAnalyzer implements Analyzer {
+public class PartialSolutionAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Card, AnalysisFact.GlobalCard, AnalysisFact.Format, AnalysisFact.Offsets, AnalysisFact.Scope};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.PartialSolution};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
@@ -13,7 +13,17 @@ import org.clafer.scope.Scope;
  *
  * @author jimmy
  */
-public class ScopeAnalyzer implements Analyzer {
+public class ScopeAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Scope, AnalysisFact.GlobalCard};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Scope};
+    }
 
     /*
      * Shrinks the scope if it's greater than the upper global cardinality.
@@ -17,15 +17,24 @@ import org.clafer.ast.AstUtil;
 import org.clafer.collection.ChainedComparator;
 import org.clafer.collection.Pair;
 import org.clafer.common.Util;
-import org.clafer.graph.GraphUtil;
-import org.clafer.graph.KeyGraph;
+import org.clafer.graph.IndexedGraph;
 
 /**
  * This analyzer determines where symmetry is and is not possible.
  *
  * @author jimmy
  */
-public class SymmetryAnalyzer implements Analyzer {
+public class SymmetryAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Card, AnalysisFact.Scope, AnalysisFact.Offsets, AnalysisFact.PartialSolution};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Breakables};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
@@ -86,7 +95,7 @@ public class SymmetryAnalyzer implements Analyzer {
      */
     private Analysis breakableRefs(final Analysis analysis) {
         // Use this graph to detect when symmetries cannot be broken.
-        KeyGraph<AstClafer> graph = new KeyGraph<>();
+        IndexedGraph<AstClafer> graph = new IndexedGraph<>();
         List<AstRef> refs = new ArrayList<>();
         for (AstClafer clafer : analysis.getClafers()) {
             if (clafer instanceof AstConcreteClafer) {
@@ -155,10 +164,7 @@ public class SymmetryAnalyzer implements Analyzer {
         Map<AstClafer, AstRef[]> breakableTargetsMap = new HashMap<>();
         for (AstRef ref : refs) {
             addDependency(graph, ref.getSourceType(), ref.getTargetType(), analysis);
-            if (!GraphUtil.hasPath(
-                    graph.getVertex(ref.getTargetType()),
-                    graph.getVertex(ref.getSourceType()),
-                    graph)) {
+            if (!graph.hasPath(ref.getTargetType(), ref.getSourceType())) {
                 int scope = analysis.getScope(ref.getSourceType());
                 TIntArrayList breakableIds = new TIntArrayList();
                 for (int i = 0; i < scope; i++) {
@@ -212,9 +218,9 @@ public class SymmetryAnalyzer implements Analyzer {
         return analysis.setBreakableRefsMap(breakableRefsMap).setBreakableTargetsMap(breakableTargetsMap);
     }
 
-    private void addDependency(KeyGraph<AstClafer> graph, AstClafer from, AstClafer to, Analysis analysis) {
+    private void addDependency(IndexedGraph<AstClafer> graph, AstClafer from, AstClafer to, Analysis analysis) {
         if (analysis.getScope(from) > 1 && analysis.getScope(to) > 1) {
-            graph.getVertex(from).addNeighbour(graph.getVertex(to));
+            graph.addEdge(from, to);
         }
     }
 
@@ -92,7 +92,17 @@ import org.clafer.objective.Objective;
  *
  * @author jimmy
  */
-public class TypeAnalyzer implements Analyzer {
+public class TypeAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[]{AnalysisFact.Constraints, AnalysisFact.ConstraintExprs, AnalysisFact.ObjectiveExprs};
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.ConstraintExprs, AnalysisFact.ObjectiveExprs, AnalysisFact.Types};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
@@ -8,7 +8,17 @@ import org.clafer.ast.AstConstraint;
  *
  * @author jimmy
  */
-public class UnsatAnalyzer implements Analyzer {
+public class UnsatAnalyzer implements DependentAnalyzer {
+
+    @Override
+    public AnalysisFact[] reads() {
+        return new AnalysisFact[0];
+    }
+
+    @Override
+    public AnalysisFact[] writes() {
+        return new AnalysisFact[]{AnalysisFact.Constraints};
+    }
 
     @Override
     public Analysis analyze(Analysis analysis) {
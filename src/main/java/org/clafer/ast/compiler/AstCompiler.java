@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -61,6 +60,7 @@ import org.clafer.ast.analysis.AbstractOffsetAnalyzer;
 import org.clafer.ast.analysis.Analysis;
 import org.clafer.ast.analysis.Analyzer;
 import org.clafer.ast.analysis.CardAnalyzer;
+import org.clafer.ast.analysis.ConstraintScopeAnalyzer;
 import org.clafer.ast.analysis.Format;
 import org.clafer.ast.analysis.FormatAnalyzer;
 import org.clafer.ast.analysis.GlobalCardAnalyzer;
@@ -78,9 +78,7 @@ import org.clafer.collection.Pair;
 import org.clafer.collection.Triple;
 import org.clafer.common.Check;
 import org.clafer.common.Util;
-import org.clafer.graph.GraphUtil;
-import org.clafer.graph.KeyGraph;
-import org.clafer.graph.Vertex;
+import org.clafer.graph.IndexedGraph;
 import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrBoolVar;
 import org.clafer.domain.Domain;
@@ -106,9 +104,13 @@ import org.clafer.scope.Scope;
  */
 public class AstCompiler {
 
+    // Run twice. The same instance so the second run is skipped if nothing it
+    // depends on changed.
+    private static final Analyzer Types = new TypeAnalyzer();
     public static final Analyzer[] DefaultAnalyzers = new Analyzer[]{
-        new TypeAnalyzer(),
+        Types,
         new GlobalCardAnalyzer(),
+        new ConstraintScopeAnalyzer(),
         new ScopeAnalyzer(),
         new CardAnalyzer(),
         new FormatAnalyzer(),
@@ -118,7 +120,7 @@ public class AstCompiler {
         new PartialIntAnalyzer(),
         new SymmetryAnalyzer(),
         // Reanalyze types
-        new TypeAnalyzer()
+        Types
     };
     private final Analysis analysis;
     private final IrModule module;
@@ -161,15 +163,15 @@ public class AstCompiler {
         List<AstAbstractClafer> abstractClafers = analysis.getAbstractClafers();
         List<AstConcreteClafer> concreteClafers = analysis.getConcreteClafers();
 
-        KeyGraph<AstClafer> dependency = new KeyGraph<>();
+        IndexedGraph<AstClafer> dependency = new IndexedGraph<>();
         for (AstAbstractClafer abstractClafer : abstractClafers) {
-            Vertex<AstClafer> node = dependency.getVertex(abstractClafer);
+            dependency.getVertex(abstractClafer);
             for (AstClafer sub : abstractClafer.getSubs()) {
-                node.addNeighbour(dependency.getVertex(sub));
+                dependency.addEdge(abstractClafer, sub);
             }
         }
         for (AstConcreteClafer concreteClafer : concreteClafers) {
-            Vertex<AstClafer> node = dependency.getVertex(concreteClafer);
+            dependency.getVertex(concreteClafer);
             if (Format.ParentGroup.equals(getFormat(concreteClafer))) {
                 /*
                  * Low group does not create the dependency because it does not
@@ -183,10 +185,10 @@ public class AstCompiler {
                  * exception will occur, but the model would not be satisfiable
                  * anyways for any fixed cardinality greater than zero.
                  */
-                node.addNeighbour(dependency.getVertex(concreteClafer.getParent()));
+                dependency.addEdge(concreteClafer, concreteClafer.getParent());
             }
         }
-        List<Set<AstClafer>> components = GraphUtil.computeStronglyConnectedComponents(dependency);
+        List<Set<AstClafer>> components = dependency.computeStronglyConnectedComponents();
         List<AstClafer> clafers = new ArrayList<>();
         for (Set<AstClafer> component : components) {
             if (component.size() != 1) {
@@ -245,6 +247,8 @@ public class AstCompiler {
         IrIntExpr softSum = add(softVars.values());
         IrIntVar sumSoftVars = domainInt("SumSoftVar", softSum.getDomain());
         module.addConstraint(equal(sumSoftVars, softSum));
+        // Registered since ClaferUnsat minimizes it.
+        module.addVariable(sumSoftVars);
 
         for (IrSetVar[] childSet : siblingSets.values()) {
             module.addVariables(childSet);
@@ -295,22 +299,21 @@ public class AstCompiler {
                         }
                     }
                 }
+                /*
+                 * Symmetry breaking. The lower indexed element appears on top
+                 * of the higher indexed element of the same Clafer.
+                 */
+                int[] groups = new int[edges.length];
+                Arrays.fill(groups, -1);
+                int group = 0;
                 for (AstClafer clafer : component) {
                     if (clafer instanceof AstConcreteClafer) {
-                        IrBoolExpr[] members = memberships.get(clafer);
                         int offset = getOffset(unionType, clafer);
-                        for (int i = 0; i < members.length; i++) {
-                            for (int j = i + 1; j < members.length; j++) {
-                                /*
-                                 * Symmetry breaking. The lower indexed element
-                                 * appears on top of the higher indexed element.
-                                 */
-                                module.addConstraint(unreachable(edges, i + offset, j + offset));
-                            }
-                        }
+                        int members = memberships.get(clafer).length;
+                        Arrays.fill(groups, offset, offset + members, group++);
                     }
                 }
-                module.addConstraint(acyclic(edges));
+                module.addConstraint(orderedForest(edges, groups));
             }
         }
 
@@ -327,30 +330,24 @@ public class AstCompiler {
             objectiveVars.put(objective.getKey(), objectiveVar);
         }
 
-        KeyGraph<Either<IrExpr, IrBoolExpr>> dependencies = new KeyGraph<>();
+        IndexedGraph<Either<IrExpr, IrBoolExpr>> dependencies = new IndexedGraph<>();
         for (Symmetry symmetry : symmetries) {
-            IrBoolExpr constraint = symmetry.getConstraint();
-            Vertex<Either<IrExpr, IrBoolExpr>> constraintNode
-                    = dependencies.getVertex(Either.<IrExpr, IrBoolExpr>right(constraint));
+            Either<IrExpr, IrBoolExpr> constraintNode
+                    = Either.<IrExpr, IrBoolExpr>right(symmetry.getConstraint());
+            dependencies.getVertex(constraintNode);
             for (IrExpr output : symmetry.getOutput()) {
-                dependencies.getVertex(Either.<IrExpr, IrBoolExpr>left(output))
-                        .addNeighbour(constraintNode);
+                dependencies.addEdge(Either.<IrExpr, IrBoolExpr>left(output), constraintNode);
             }
             for (IrExpr input : symmetry.getInput()) {
-                constraintNode.addNeighbour(
-                        dependencies.getVertex(Either.<IrExpr, IrBoolExpr>left(input)));
+                dependencies.addEdge(constraintNode, Either.<IrExpr, IrBoolExpr>left(input));
             }
         }
         Set<IrVar> variables = module.getVariables();
-        Set<Vertex<Either<IrExpr, IrBoolExpr>>> start = new HashSet<>();
+        List<Either<IrExpr, IrBoolExpr>> start = new ArrayList<>(variables.size());
         for (IrVar variable : variables) {
-            Vertex<Either<IrExpr, IrBoolExpr>> vertex
-                    = dependencies.getVertexIfPresent(Either.<IrExpr, IrBoolExpr>left(variable));
-            if (vertex != null) {
-                start.add(vertex);
-            }
+            start.add(Either.<IrExpr, IrBoolExpr>left(variable));
         }
-        Set<Either<IrExpr, IrBoolExpr>> reachables = GraphUtil.reachable(start, dependencies);
+        List<Either<IrExpr, IrBoolExpr>> reachables = dependencies.reachable(start);
         for (Either<IrExpr, IrBoolExpr> reachable : reachables) {
             if (reachable.isRight()) {
                 module.addConstraint(reachable.getRight());
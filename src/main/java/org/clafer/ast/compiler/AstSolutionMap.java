@@ -30,7 +30,20 @@ public class AstSolutionMap {
     private final Map<Objective, IrIntVar> objectiveVars;
     private final Analysis analysis;
 
-    AstSolutionMap(AstModel model,
+    /**
+     * Construct the mapping. Usually constructed by the {@link AstCompiler},
+     * or to restore the mapping of an earlier compilation.
+     *
+     * @param model the model
+     * @param sibling the sibling variables of the Clafers
+     * @param refVars the reference variables of the integer references
+     * @param refStrings the reference variables of the string references
+     * @param softVars the soft variables of the soft constraints
+     * @param sumSoftVar the sum of the soft variables
+     * @param objectiveVars the variables of the objectives
+     * @param analysis the analysis of the model
+     */
+    public AstSolutionMap(AstModel model,
             Map<AstClafer, IrSetVar[]> sibling,
             Map<AstRef, IrIntVar[]> refVars,
             Map<AstRef, IrStringVar[]> refStrings,
@@ -66,6 +79,10 @@ public class AstSolutionMap {
         return notNull(clafer + " not part of the AST solution", siblingVars.get(clafer));
     }
 
+    public Map<AstClafer, IrSetVar[]> getSiblingVarsMap() {
+        return Collections.unmodifiableMap(siblingVars);
+    }
+
     /**
      * Returns the reference variables associated to the reference.
      *
@@ -76,10 +93,18 @@ public class AstSolutionMap {
         return notNull(ref + " not part of the AST solution", refVars.get(ref));
     }
 
+    public Map<AstRef, IrIntVar[]> getRefVarsMap() {
+        return Collections.unmodifiableMap(refVars);
+    }
+
     public IrStringVar[] getRefStrings(AstRef ref) {
         return notNull(ref + " not part of the AST solution", refStrings.get(ref));
     }
 
+    public Map<AstRef, IrStringVar[]> getRefStringsMap() {
+        return Collections.unmodifiableMap(refStrings);
+    }
+
     /**
      * Returns the soft variable associated to the constraint.
      *
@@ -117,6 +142,10 @@ public class AstSolutionMap {
         return notNull(objective + " not a compiled objective", objectiveVars.get(objective));
     }
 
+    public Map<Objective, IrIntVar> getObjectiveVarsMap() {
+        return Collections.unmodifiableMap(objectiveVars);
+    }
+
     private static <T> T notNull(String message, T t) {
         if (t == null) {
             throw new AstException(message);
@@ -8,6 +8,9 @@ import org.clafer.choco.constraint.propagator.PropAnd;
 import org.clafer.choco.constraint.propagator.PropArrayToSet;
 import org.clafer.choco.constraint.propagator.PropArrayToSetCard;
 import org.clafer.choco.constraint.propagator.PropFilterString;
+import org.clafer.choco.constraint.propagator.PropHalfReifyEqualXC;
+import org.clafer.choco.constraint.propagator.PropHalfReifyEqualXY;
+import org.clafer.choco.constraint.propagator.PropHalfReifySubsetEq;
 import org.clafer.choco.constraint.propagator.PropIfThenElse;
 import org.clafer.choco.constraint.propagator.PropIntChannel;
 import org.clafer.choco.constraint.propagator.PropIntNotMemberSet;
@@ -21,6 +24,7 @@ import org.clafer.choco.constraint.propagator.PropLone;
 import org.clafer.choco.constraint.propagator.PropMask;
 import org.clafer.choco.constraint.propagator.PropOne;
 import org.clafer.choco.constraint.propagator.PropOr;
+import org.clafer.choco.constraint.propagator.PropOrderedForest;
 import org.clafer.choco.constraint.propagator.PropSamePrefix;
 import org.clafer.choco.constraint.propagator.PropSelectN;
 import org.clafer.choco.constraint.propagator.PropSetDifference;
@@ -30,7 +34,6 @@ import org.clafer.choco.constraint.propagator.PropSetUnion;
 import org.clafer.choco.constraint.propagator.PropSetUnionCard;
 import org.clafer.choco.constraint.propagator.PropSingleton;
 import org.clafer.choco.constraint.propagator.PropSortedSets;
-import org.clafer.choco.constraint.propagator.PropSortedSetsCard;
 import org.clafer.choco.constraint.propagator.PropUnreachable;
 import org.clafer.collection.Maybe;
 import org.clafer.common.Util;
@@ -272,6 +275,100 @@ public class Constraints {
         return new ReifyEqualXY(reify, false, v1, v2);
     }
 
+    /**
+     * A constraint enforcing {@code reify => (variable = constant)}. Unlike
+     * {@link #reifyEqual(BoolVar, IntVar, int)}, nothing is enforced when
+     * {@code reify} is false.
+     *
+     * @param reify the half-reified constraint
+     * @param variable the variable
+     * @param constant the constant
+     * @return constraint {@code reify => (variable = constant)}
+     */
+    public static Constraint halfReifyEqual(BoolVar reify, IntVar variable, int constant) {
+        return new Constraint("halfReifyEqualXC",
+                new PropHalfReifyEqualXC(reify, true, variable, constant));
+    }
+
+    /**
+     * A constraint enforcing {@code reify => (v1 = v2)}. Unlike
+     * {@link #reifyEqual(BoolVar, IntVar, IntVar)}, nothing is enforced when
+     * {@code reify} is false.
+     *
+     * @param reify the half-reified constraint
+     * @param v1 the first variable
+     * @param v2 the second variable
+     * @return constraint {@code reify => (v1 = v2)}
+     */
+    public static Constraint halfReifyEqual(BoolVar reify, IntVar v1, IntVar v2) {
+        return new Constraint("halfReifyEqualXY",
+                new PropHalfReifyEqualXY(reify, true, v1, v2));
+    }
+
+    /**
+     * A constraint enforcing {@code reify => (variable ≠ constant)}. Unlike
+     * {@link #reifyNotEqual(BoolVar, IntVar, int)}, nothing is enforced when
+     * {@code reify} is false.
+     *
+     * @param reify the half-reified constraint
+     * @param variable the variable
+     * @param constant the constant
+     * @return constraint {@code reify => (variable ≠ constant)}
+     */
+    public static Constraint halfReifyNotEqual(BoolVar reify, IntVar variable, int constant) {
+        return new Constraint("halfReifyNotEqualXC",
+                new PropHalfReifyEqualXC(reify, false, variable, constant));
+    }
+
+    /**
+     * A constraint enforcing {@code reify => (v1 ≠ v2)}. Unlike
+     * {@link #reifyNotEqual(BoolVar, IntVar, IntVar)}, nothing is enforced when
+     * {@code reify} is false.
+     *
+     * @param reify the half-reified constraint
+     * @param v1 the first variable
+     * @param v2 the second variable
+     * @return constraint {@code reify => (v1 ≠ v2)}
+     */
+    public static Constraint halfReifyNotEqual(BoolVar reify, IntVar v1, IntVar v2) {
+        return new Constraint("halfReifyNotEqualXY",
+                new PropHalfReifyEqualXY(reify, false, v1, v2));
+    }
+
+    /**
+     * A constraint enforcing {@code reify => (set1 = set2)}. Nothing is
+     * enforced when {@code reify} is false. Does not enforce that
+     * {@code set1Card = |set1Card|} nor {@code set2Card = |set2Card|}.
+     *
+     * @param reify the half-reified constraint
+     * @param set1 the left set
+     * @param set1Card the cardinality of {@code set1}
+     * @param set2 the right set
+     * @param set2Card the cardinality of {@code set2}
+     * @return constraint {@code reify => (set1 = set2)}
+     */
+    public static Constraint halfReifyEqual(BoolVar reify, SetVar set1, IntVar set1Card, SetVar set2, IntVar set2Card) {
+        return new Constraint("halfReifySetEqual",
+                new PropHalfReifySubsetEq(reify, set1, set1Card, false, set2, set2Card));
+    }
+
+    /**
+     * A constraint enforcing {@code reify => (sub ⊆ sup)}. Nothing is enforced
+     * when {@code reify} is false. Does not enforce that
+     * {@code subCard = |sub|} nor {@code supCard = |sup|}.
+     *
+     * @param reify the half-reified constraint
+     * @param sub the subset
+     * @param subCard the cardinality of {@code sub}
+     * @param sup the superset
+     * @param supCard the cardinality of {@code sup}
+     * @return constraint {@code reify => (sub ⊆ sup)}
+     */
+    public static Constraint halfReifySubsetEq(BoolVar reify, SetVar sub, IntVar subCard, SetVar sup, IntVar supCard) {
+        return new Constraint("halfReifySubsetEq",
+                new PropHalfReifySubsetEq(reify, sub, subCard, true, sup, supCard));
+    }
+
     /**
      * A constraint enforcing {@code set1 = set2}. Does not enforce that
      * {@code set1Card = |set1Card|} nor {@code set2Card = |set2Card|} because
@@ -374,9 +471,7 @@ public class Constraints {
             throw new IllegalArgumentException();
         }
 
-        return new Constraint("sortedSets",
-                new PropSortedSets(sets),
-                new PropSortedSetsCard(sets, setCards));
+        return new Constraint("sortedSets", new PropSortedSets(sets, setCards));
     }
 
     /**
@@ -435,6 +530,27 @@ public class Constraints {
         return new Constraint("unreachable", new PropUnreachable(edges, from, to));
     }
 
+    /**
+     * A constraint enforcing no cycles and no path from a lower indexed node to
+     * a higher indexed node in the same group. {@code edges[i] = j} implies
+     * that there is a directed edge from node i to node j.
+     * {@code edges[i] = edges.length} implies that there are no direct edges
+     * from node i. Nodes with a negative group are not ordered. Equivalent to
+     * {@link #acyclic(IntVar[])} and {@link #unreachable(IntVar[], int, int)}
+     * for every pair of nodes {@code i < j} in the same group.
+     *
+     * @param edges the edges of the graph
+     * @param groups the group of each node
+     * @return constraint enforcing an ordered forest
+     */
+    public static Constraint orderedForest(IntVar[] edges, int[] groups) {
+        if (edges.length != groups.length) {
+            throw new IllegalArgumentException();
+        }
+
+        return new Constraint("orderedForest", new PropOrderedForest(edges, groups));
+    }
+
     /**
      * A constraint enforcing
      * {@code result[i] = if i \u003c array(set).length then string[array(set)[i] - offset] else -1}
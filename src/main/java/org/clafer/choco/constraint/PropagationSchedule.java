@@ -0,0 +1,147 @@
+package org.clafer.choco.constraint;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.clafer.choco.constraint.propagator.IdempotentPropagator;
+import org.clafer.choco.constraint.propagator.PropFilterString;
+import org.clafer.choco.constraint.propagator.PropJoinRelation;
+import org.clafer.choco.constraint.propagator.PropLexChainChannel;
+import org.clafer.common.Check;
+import solver.constraints.Constraint;
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.constraints.ScheduledPropagator;
+
+/**
+ * Decides how the propagators are scheduled by the propagation engine. Each
+ * propagator class can be moved to a different queue class, and its events
+ * can be coalesced into a single full propagation per run. Propagators that
+ * are not idempotent are propagated to their fixpoint, the ones that implement
+ * {@link IdempotentPropagator} take the fast path and run once.
+ * <p>
+ * Choco's default engine keeps one queue per {@link PropagatorPriority} and
+ * empties the queues of the cheaper priorities first. Propagators of classes
+ * without a schedule are posted as they are, without any overhead.
+ * </p>
+ *
+ * @author jimmy
+ * @see ScheduledPropagator
+ */
+public class PropagationSchedule {
+
+    /**
+     * Schedule every propagator by its declared priority.
+     */
+    public static final PropagationSchedule Default = new PropagationSchedule(
+            new HashMap<Class<?>, PropagatorPriority>(), new HashSet<Class<?>>());
+    /**
+     * The expensive propagators of the Clafer encoding wait until the cheap
+     * structural propagators, like {@code PropIntChannel}, {@code PropSingleton}
+     * and {@code PropMask}, reach their fixpoint.
+     */
+    public static final PropagationSchedule Clafer = Default
+            .queue(PropFilterString.class, PropagatorPriority.CUBIC)
+            .queue(PropJoinRelation.class, PropagatorPriority.CUBIC)
+            .queue(PropLexChainChannel.class, PropagatorPriority.VERY_SLOW);
+    private final Map<Class<?>, PropagatorPriority> queues;
+    private final Set<Class<?>> coalesced;
+
+    private PropagationSchedule(Map<Class<?>, PropagatorPriority> queues, Set<Class<?>> coalesced) {
+        this.queues = queues;
+        this.coalesced = coalesced;
+    }
+
+    /**
+     * @param type the propagator class
+     * @return the queue class of the propagators of the class, or {@code null}
+     * if they keep their declared priority
+     */
+    public PropagatorPriority getQueue(Class<? extends Propagator> type) {
+        return queues.get(type);
+    }
+
+    public boolean isCoalesced(Class<? extends Propagator> type) {
+        return coalesced.contains(type);
+    }
+
+    /**
+     * @return {@code true} if no propagator is rescheduled, {@code false}
+     * otherwise
+     */
+    public boolean isDefault() {
+        return queues.isEmpty() && coalesced.isEmpty();
+    }
+
+    /**
+     * Schedule the propagators of the class in a different queue class.
+     *
+     * @param type the propagator class
+     * @param queue the queue class
+     * @return the schedule with the propagators of the class in the queue
+     */
+    public PropagationSchedule queue(Class<? extends Propagator> type, PropagatorPriority queue) {
+        Map<Class<?>, PropagatorPriority> newQueues = new HashMap<>(queues);
+        newQueues.put(Check.notNull(type), Check.notNull(queue));
+        return new PropagationSchedule(newQueues, coalesced);
+    }
+
+    /**
+     * Merge the events of the propagators of the class while they wait in
+     * their queue and propagate them from scratch once. Worthwhile for
+     * propagators whose fine-grained propagation is not much cheaper than a
+     * full propagation.
+     *
+     * @param type the propagator class
+     * @return the schedule coalescing the events of the propagators of the
+     * class
+     */
+    public PropagationSchedule coalesce(Class<? extends Propagator> type) {
+        Set<Class<?>> newCoalesced = new HashSet<>(coalesced);
+        newCoalesced.add(Check.notNull(type));
+        return new PropagationSchedule(queues, newCoalesced);
+    }
+
+    private boolean isScheduled(Propagator<?> propagator) {
+        return queues.containsKey(propagator.getClass()) || coalesced.contains(propagator.getClass());
+    }
+
+    /**
+     * Reschedule the propagators of the constraint. The returned constraint
+     * must be posted in place of the original.
+     *
+     * @param constraint the constraint
+     * @return the rescheduled constraint, or the constraint itself if none of
+     * its propagators are rescheduled
+     */
+    public Constraint schedule(Constraint constraint) {
+        Propagator<?>[] propagators = constraint.getPropagators();
+        boolean any = false;
+        for (Propagator<?> propagator : propagators) {
+            any |= isScheduled(propagator);
+        }
+        if (!any) {
+            return constraint;
+        }
+        Propagator<?>[] scheduled = new Propagator<?>[propagators.length];
+        for (int i = 0; i < scheduled.length; i++) {
+            Propagator<?> propagator = propagators[i];
+            if (isScheduled(propagator)) {
+                PropagatorPriority queue = queues.get(propagator.getClass());
+                scheduled[i] = new ScheduledPropagator(propagator,
+                        queue == null ? propagator.getPriority() : queue,
+                        coalesced.contains(propagator.getClass()),
+                        propagator instanceof IdempotentPropagator);
+            } else {
+                scheduled[i] = propagator;
+            }
+        }
+        return new Constraint(constraint.getName(), scheduled);
+    }
+
+    @Override
+    public String toString() {
+        return isDefault() ? "declared priorities" : "queues " + queues + ", coalesced " + coalesced;
+    }
+}
@@ -0,0 +1,141 @@
+package org.clafer.choco.constraint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.constraints.ProfiledPropagator;
+import solver.constraints.Propagator;
+
+/**
+ * Opt-in profiling of propagators. Constraints are profiled by wrapping each of
+ * their propagators before posting. Constraints that are not profiled run
+ * without any overhead.
+ *
+ * @author jimmy
+ */
+public class PropagatorProfiler {
+
+    private PropagatorProfiler() {
+    }
+
+    /**
+     * The number of the most expensive propagators to list individually.
+     */
+    private static final int TOP = 10;
+
+    /**
+     * Wrap every propagator of the constraint in a {@link ProfiledPropagator}.
+     * The returned constraint must be posted in place of the original.
+     *
+     * @param constraint the constraint to profile
+     * @param source where the constraint came from
+     * @return the profiled constraint
+     */
+    public static Constraint profile(Constraint constraint, Object source) {
+        Propagator<?>[] propagators = constraint.getPropagators();
+        ProfiledPropagator[] profiled = new ProfiledPropagator[propagators.length];
+        for (int i = 0; i < profiled.length; i++) {
+            profiled[i] = new ProfiledPropagator(propagators[i], source);
+        }
+        return new Constraint(constraint.getName(), profiled);
+    }
+
+    /**
+     * @param solver the solver
+     * @return the profiled propagators posted in the solver
+     */
+    public static List<ProfiledPropagator> getProfiledPropagators(Solver solver) {
+        List<ProfiledPropagator> profiled = new ArrayList<>();
+        for (Constraint constraint : solver.getCstrs()) {
+            for (Propagator<?> propagator : constraint.getPropagators()) {
+                if (propagator instanceof ProfiledPropagator) {
+                    profiled.add((ProfiledPropagator) propagator);
+                }
+            }
+        }
+        return profiled;
+    }
+
+    /**
+     * Summarize the profiled propagators by class, then list the most expensive
+     * individual propagators along with their sources.
+     *
+     * @param solver the solver
+     * @return the report
+     */
+    public static String report(Solver solver) {
+        List<ProfiledPropagator> profiled = getProfiledPropagators(solver);
+        if (profiled.isEmpty()) {
+            return "No profiled propagators.";
+        }
+        Map<Class<?>, Summary> summaries = new HashMap<>();
+        for (ProfiledPropagator propagator : profiled) {
+            Class<?> type = propagator.getInnermostPropagator().getClass();
+            Summary summary = summaries.get(type);
+            if (summary == null) {
+                summary = new Summary(type);
+                summaries.put(type, summary);
+            }
+            summary.add(propagator);
+        }
+        List<Summary> sortedSummaries = new ArrayList<>(summaries.values());
+        Collections.sort(sortedSummaries, new Comparator<Summary>() {
+            @Override
+            public int compare(Summary o1, Summary o2) {
+                return Long.compare(o2.time, o1.time);
+            }
+        });
+        List<ProfiledPropagator> sortedProfiled = new ArrayList<>(profiled);
+        Collections.sort(sortedProfiled, new Comparator<ProfiledPropagator>() {
+            @Override
+            public int compare(ProfiledPropagator o1, ProfiledPropagator o2) {
+                return Long.compare(o2.getTime(), o1.getTime());
+            }
+        });
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%-32s %8s %10s %10s %10s %12s %8s%n",
+                "Propagator", "Count", "Full", "Fine", "Time(ms)", "Reductions", "Fails"));
+        for (Summary summary : sortedSummaries) {
+            result.append(String.format("%-32s %8d %10d %10d %10.2f %12d %8d%n",
+                    summary.type.getSimpleName(), summary.count,
+                    summary.fullCalls, summary.fineCalls, summary.time / 1e6,
+                    summary.reductions, summary.failures));
+        }
+        result.append(String.format("%nMost expensive propagators%n"));
+        for (ProfiledPropagator propagator : sortedProfiled.subList(0, Math.min(TOP, sortedProfiled.size()))) {
+            result.append(String.format("%10.2fms %s%n    from %s%n",
+                    propagator.getTime() / 1e6, propagator, propagator.getSource()));
+        }
+        return result.toString();
+    }
+
+    private static class Summary {
+
+        private final Class<?> type;
+        private int count = 0;
+        private long fullCalls = 0;
+        private long fineCalls = 0;
+        private long time = 0;
+        private long reductions = 0;
+        private long failures = 0;
+
+        Summary(Class<?> type) {
+            this.type = type;
+        }
+
+        void add(ProfiledPropagator propagator) {
+            count++;
+            fullCalls += propagator.getFullCalls();
+            fineCalls += propagator.getFineCalls();
+            time += propagator.getTime();
+            reductions += propagator.getReductions();
+            failures += propagator.getFailures();
+        }
+    }
+}
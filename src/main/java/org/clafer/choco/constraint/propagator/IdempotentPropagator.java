@@ -0,0 +1,11 @@
+package org.clafer.choco.constraint.propagator;
+
+/**
+ * Marks the propagators that always reach their own fixpoint. Propagating
+ * again right after a propagation never changes the domains.
+ *
+ * @author jimmy
+ * @see org.clafer.choco.constraint.PropagationSchedule
+ */
+public interface IdempotentPropagator {
+}
@@ -1,6 +1,7 @@
 package org.clafer.choco.constraint.propagator;
 
 import java.util.Arrays;
+import memory.IEnvironment;
 import memory.IStateInt;
 import solver.constraints.Propagator;
 import solver.constraints.PropagatorPriority;
@@ -11,12 +12,26 @@ import util.ESat;
 
 /**
  * Enforce no cycles.
+ * <p>
+ * The instantiated edges form a forest where every tree is rooted at a node
+ * whose edge is not yet instantiated (or has no outgoing edge). The trees are
+ * kept in a backtrackable union-find. Every tree also keeps its nodes in a
+ * backtrackable linked list so that merging a tree into another only visits
+ * the nodes of the merged tree rather than every node in the graph.
+ * </p>
  *
  * @author jimmy
  */
 public class PropAcyclic extends Propagator<IntVar> {
 
+    private static final int NIL = -1;
+    // The parent of each node in the union-find. A node is the root of its tree
+    // if it is its own leader.
     private final IStateInt[] leaders;
+    // The next node in the same tree, or NIL if it is the last.
+    private final IStateInt[] nexts;
+    // The last node in the tree. Only maintained for the roots.
+    private final IStateInt[] lasts;
 
     /**
      * Enforce no cycles. {@code edges[i] = j} implies that there is a directed
@@ -27,9 +42,14 @@ public class PropAcyclic extends Propagator<IntVar> {
      */
     public PropAcyclic(IntVar[] edges) {
         super(edges, PropagatorPriority.TERNARY, true);
+        IEnvironment environment = solver.getEnvironment();
         this.leaders = new IStateInt[edges.length];
-        for (int i = 0; i < this.leaders.length; i++) {
-            this.leaders[i] = solver.getEnvironment().makeInt(i);
+        this.nexts = new IStateInt[edges.length];
+        this.lasts = new IStateInt[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            this.leaders[i] = environment.makeInt(i);
+            this.nexts[i] = environment.makeInt(NIL);
+            this.lasts[i] = environment.makeInt(i);
         }
     }
 
@@ -38,18 +58,25 @@ public class PropAcyclic extends Propagator<IntVar> {
         return EventType.INSTANTIATE.mask;
     }
 
+    /**
+     * Find the root of the tree containing the node. Iterative with path
+     * halving so deep chains do not recurse.
+     *
+     * @param node the node
+     * @return the root of the node's tree
+     */
     private int getLeader(int node) {
-        int leader = leaders[node].get();
-        if (leader == node) {
-            return node;
-        }
-        // Find the real leader.
-        int realLeader = getLeader(leader);
-        // Remember the real leader.
-        if (realLeader != leader) {
-            leaders[node].set(realLeader);
+        int cur = node;
+        int leader = leaders[cur].get();
+        while (leader != cur) {
+            int grandLeader = leaders[leader].get();
+            if (grandLeader != leader) {
+                leaders[cur].set(grandLeader);
+            }
+            cur = grandLeader;
+            leader = leaders[cur].get();
         }
-        return leader;
+        return cur;
     }
 
     @Override
@@ -61,37 +88,43 @@ public class PropAcyclic extends Propagator<IntVar> {
         }
         for (int i = 0; i < vars.length; i++) {
             if (vars[i].isInstantiated()) {
-                follow(i, vars[i].getValue());
+                follow(i);
             }
         }
     }
 
-    private void follow(int follower, int leader) throws ContradictionException {
-        assert vars[follower].isInstantiated();
-        if (leader == vars.length) {
-            return;
-        }
-        int realLeader = getLeader(leader);
-        if (realLeader == follower) {
-            contradiction(vars[follower], "Cycle");
-        }
-        boolean changed = false;
-        for (int i = 0; i < vars.length; i++) {
-            if (getLeader(i) == follower) {
-                assert vars[i].isInstantiated();
-                leaders[i].set(realLeader);
-                changed |= vars[realLeader].removeValue(i, aCause);
+    private void follow(int node) throws ContradictionException {
+        int follower = node;
+        while (follower != NIL) {
+            assert vars[follower].isInstantiated();
+            int leader = vars[follower].getValue();
+            if (leader == vars.length || leaders[follower].get() != follower) {
+                // No outgoing edge or already merged.
+                return;
             }
-        }
-        leaders[follower].set(realLeader);
-        if (changed && vars[realLeader].isInstantiated()) {
-            follow(realLeader, vars[realLeader].getValue());
+            int realLeader = getLeader(leader);
+            if (realLeader == follower) {
+                contradiction(vars[follower], "Cycle");
+            }
+            boolean changed = false;
+            IntVar leaderVar = vars[realLeader];
+            if (!leaderVar.isInstantiated()) {
+                // The root cannot point back into any node of the merged tree.
+                for (int i = follower; i != NIL; i = nexts[i].get()) {
+                    changed |= leaderVar.removeValue(i, aCause);
+                }
+            }
+            // Merge the follower's tree into the leader's tree.
+            leaders[follower].set(realLeader);
+            nexts[lasts[realLeader].get()].set(follower);
+            lasts[realLeader].set(lasts[follower].get());
+            follower = changed && leaderVar.isInstantiated() ? realLeader : NIL;
         }
     }
 
     @Override
     public void propagate(int idxVarInProp, int mask) throws ContradictionException {
-        follow(idxVarInProp, vars[idxVarInProp].getValue());
+        follow(idxVarInProp);
     }
 
     @Override
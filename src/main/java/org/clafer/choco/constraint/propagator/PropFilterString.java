@@ -1,6 +1,10 @@
 package org.clafer.choco.constraint.propagator;
 
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
 import java.util.Arrays;
+import memory.IStateInt;
 import solver.constraints.Propagator;
 import solver.constraints.PropagatorPriority;
 import solver.exception.ContradictionException;
@@ -8,31 +12,94 @@ import solver.variables.EventType;
 import solver.variables.IntVar;
 import solver.variables.SetVar;
 import solver.variables.Variable;
+import solver.variables.delta.IIntDeltaMonitor;
 import util.ESat;
+import util.procedure.IntProcedure;
 
 /**
  * result = [string !! i | i <- set].
  *
  * Pads result with extra negative one if necessary.
+ * <p>
+ * The k'th element of the envelope can only be at the result positions between
+ * the number of kernel elements before it and k, its window. Every value of a
+ * result position must be supported by a character in its window, and every
+ * value of a kernel character must be supported by a result position in its
+ * window. The last support found is remembered as a residue. When a character
+ * or result position loses values, only the supports pointing to it are
+ * revisited. Changes to the set or its cardinality move the windows and
+ * revisit everything, although most residues are still valid.
+ * </p>
  *
  * @author jimmy
  */
-public class PropFilterString extends Propagator<Variable> {
+public class PropFilterString extends Propagator<Variable> implements IdempotentPropagator {
 
+    private static final int NONE = -1;
     private final SetVar set;
     private final IntVar setCard;
     private final int offset;
     // Sorted in decreasing order. Non-negatives.
     private final IntVar[] string;
+    private final IIntDeltaMonitor[] stringD;
     private final IntVar[] result;
+    private final IIntDeltaMonitor[] resultD;
+    // The string index of each element in the envelope, in order.
+    private final int[] env;
+    private int envSize;
+    // The position in env of each element in the kernel, in order.
+    private final int[] kerIndices;
+    private int kerSize;
+    // The window of result positions of each string index. Empty if the index
+    // is not in the envelope.
+    private final int[] windowLows;
+    private final int[] windowHighs;
+    private final boolean[] inKer;
+    // The windows are computed on a full propagation. Changes to the set can
+    // only narrow the real windows, so they stay safe to use until the solver
+    // backtracks past the full propagation that computed them.
+    private final IStateInt layoutStamp;
+    private int stamp = 0;
+    // For each result position, the last string index supporting each value.
+    private final TIntIntHashMap[] resultSupports;
+    // For each kernel string index, the last result position supporting each
+    // value.
+    private final TIntIntHashMap[] stringSupports;
+    // For each envelope string index, the last result position it intersects.
+    private final int[] intersectSupports;
+    // Pairs of (index, value) removed but not yet revisited.
+    private final TIntArrayList removedStrings = new TIntArrayList();
+    private final TIntArrayList removedResults = new TIntArrayList();
 
     public PropFilterString(SetVar set, IntVar setCard, int offset, IntVar[] string, IntVar[] result) {
-        super(buildArray(set, setCard, string, result), PropagatorPriority.QUADRATIC, false);
+        super(buildArray(set, setCard, string, result), PropagatorPriority.QUADRATIC, true);
         this.set = set;
         this.setCard = setCard;
         this.offset = offset;
         this.string = string;
+        this.stringD = PropUtil.monitorDeltas(string, aCause);
         this.result = result;
+        this.resultD = PropUtil.monitorDeltas(result, aCause);
+        this.env = new int[string.length];
+        this.kerIndices = new int[result.length];
+        this.windowLows = new int[string.length];
+        this.windowHighs = new int[string.length];
+        this.inKer = new boolean[string.length];
+        this.layoutStamp = solver.getEnvironment().makeInt(stamp);
+        this.resultSupports = new TIntIntHashMap[result.length];
+        for (int i = 0; i < resultSupports.length; i++) {
+            resultSupports[i] = supportMap();
+        }
+        this.stringSupports = new TIntIntHashMap[string.length];
+        for (int i = 0; i < stringSupports.length; i++) {
+            stringSupports[i] = supportMap();
+        }
+        this.intersectSupports = new int[string.length];
+        Arrays.fill(intersectSupports, NONE);
+    }
+
+    private static TIntIntHashMap supportMap() {
+        return new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, NONE);
     }
 
     public static Variable[] buildArray(SetVar set, IntVar setCard, IntVar[] string, IntVar[] result) {
@@ -53,7 +120,7 @@ public class PropFilterString extends Propagator<Variable> {
     }
 
     private boolean isStringVar(int idx) {
-        return idx >= 1 && idx < string.length + 2;
+        return idx >= 2 && idx < string.length + 2;
     }
 
     private int getStringVarIndex(int idx) {
@@ -89,75 +156,150 @@ public class PropFilterString extends Propagator<Variable> {
         return EventType.INT_ALL_MASK();
     }
 
-    private boolean subset(IntVar sub, IntVar[] sups, int from, int to) throws ContradictionException {
-        boolean changed = false;
-        int ub = sub.getUB();
-        for (int val = sub.getLB(); val <= ub; val = sub.nextValue(val)) {
-            boolean found = false;
-            for (int i = from; i < to; i++) {
-                if (sups[i].contains(val)) {
-                    found = true;
-                    break;
-                }
+    /**
+     * @param position the result position
+     * @return the exclusive end of the envelope elements that can be at the
+     * position
+     */
+    private int windowEnd(int position) {
+        return position < kerSize ? kerIndices[position] + 1 : envSize;
+    }
+
+    private boolean isNegativeOneAllowed(int position) {
+        return position >= kerSize && position >= setCard.getLB();
+    }
+
+    /**
+     * Find a character that can be at the result position and contains the
+     * value.
+     *
+     * @param position the result position
+     * @param value the value
+     * @return {@code true} if the value is supported, {@code false} otherwise
+     */
+    private boolean supportResult(int position, int value) {
+        TIntIntHashMap supports = resultSupports[position];
+        int support = supports.get(value);
+        if (support != NONE
+                && windowLows[support] <= position && position <= windowHighs[support]
+                && string[support].contains(value)) {
+            return true;
+        }
+        int end = windowEnd(position);
+        for (int i = position; i < end; i++) {
+            int x = env[i];
+            if (string[x].contains(value)) {
+                supports.put(value, x);
+                return true;
             }
-            if (!found) {
-                changed |= sub.removeValue(val, aCause);
+        }
+        return false;
+    }
+
+    /**
+     * Find a result position that the kernel character can be at and contains
+     * the value.
+     *
+     * @param x the string index
+     * @param value the value
+     * @return {@code true} if the value is supported, {@code false} otherwise
+     */
+    private boolean supportString(int x, int value) {
+        TIntIntHashMap supports = stringSupports[x];
+        int low = windowLows[x];
+        int high = windowHighs[x];
+        int support = supports.get(value);
+        if (support != NONE && low <= support && support <= high
+                && result[support].contains(value)) {
+            return true;
+        }
+        for (int j = low; j <= high; j++) {
+            if (result[j].contains(value)) {
+                supports.put(value, j);
+                return true;
             }
         }
-        return changed;
+        return false;
+    }
+
+    /**
+     * Find a result position that the envelope character can be at and
+     * intersects the character.
+     *
+     * @param x the string index
+     * @return {@code true} if the character is supported, {@code false}
+     * otherwise
+     */
+    private boolean supportIntersect(int x) {
+        int low = windowLows[x];
+        int high = windowHighs[x];
+        int support = intersectSupports[x];
+        if (support != NONE && low <= support && support <= high
+                && PropUtil.isDomIntersectDom(string[x], result[support])) {
+            return true;
+        }
+        for (int j = low; j <= high; j++) {
+            if (PropUtil.isDomIntersectDom(string[x], result[j])) {
+                intersectSupports[x] = j;
+                return true;
+            }
+        }
+        return false;
     }
 
-    private boolean subset(IntVar sub, IntVar[] sups, int[] indices, int low, int to) throws ContradictionException {
+    private boolean removeResultValue(int position, int value) throws ContradictionException {
+        if (result[position].removeValue(value, aCause)) {
+            removedResults.add(position);
+            removedResults.add(value);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean removeStringValue(int x, int value) throws ContradictionException {
+        if (string[x].removeValue(value, aCause)) {
+            removedStrings.add(x);
+            removedStrings.add(value);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean filterResult(int position) throws ContradictionException {
         boolean changed = false;
+        boolean negativeOneAllowed = isNegativeOneAllowed(position);
+        IntVar sub = result[position];
         int ub = sub.getUB();
         for (int val = sub.getLB(); val <= ub; val = sub.nextValue(val)) {
-            boolean found = false;
-            for (int i = low; i < to; i++) {
-                if (sups[indices[i]].contains(val)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                changed |= sub.removeValue(val, aCause);
+            if (!(negativeOneAllowed && val == -1) && !supportResult(position, val)) {
+                changed |= removeResultValue(position, val);
             }
         }
         return changed;
     }
 
-    private boolean subsetOrNegativeOne(IntVar sub, IntVar[] sups, int[] indices, int from, int to) throws ContradictionException {
+    private boolean filterString(int x) throws ContradictionException {
         boolean changed = false;
+        IntVar sub = string[x];
         int ub = sub.getUB();
         for (int val = sub.getLB(); val <= ub; val = sub.nextValue(val)) {
-            if (val != -1) {
-                boolean found = false;
-                for (int i = from; i < to; i++) {
-                    assert i < indices.length;
-                    if (sups[indices[i]].contains(val)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    changed |= sub.removeValue(val, aCause);
-                }
+            if (!supportString(x, val)) {
+                changed |= removeStringValue(x, val);
             }
         }
         return changed;
     }
 
-    @Override
-    public void propagate(int evtmask) throws ContradictionException {
+    private void filter() throws ContradictionException {
         if (set.getKernelSize() > result.length) {
             contradiction(set, "Too many in kernel");
         }
 
-        int[] env = new int[set.getEnvelopeSize()];
-        int[] kerIndices = new int[set.getKernelSize()];
-
         boolean changed;
         do {
             changed = false;
+            Arrays.fill(windowLows, 1);
+            Arrays.fill(windowHighs, 0);
             // The number of ker elements seen.
             int kerIndex = 0;
             // The number of env elements seen.
@@ -167,30 +309,28 @@ public class PropFilterString extends Propagator<Variable> {
                 if (x < 0 || x >= string.length) {
                     set.removeFromEnvelope(i, aCause);
                 } else {
-                    env[envIndex] = x;
-                    if (set.kernelContains(i)) {
+                    windowLows[x] = kerIndex;
+                    windowHighs[x] = Math.min(envIndex, result.length - 1);
+                    inKer[x] = set.kernelContains(i);
+                    if (inKer[x]) {
+                        env[envIndex] = x;
                         kerIndices[kerIndex] = envIndex;
-                        changed |= subset(string[x], result, kerIndex, Math.min(envIndex + 1, result.length));
+                        changed |= filterString(x);
                         envIndex++;
                         kerIndex++;
+                    } else if (supportIntersect(x)) {
+                        env[envIndex] = x;
+                        envIndex++;
                     } else {
-                        boolean found = false;
-                        for (int j = kerIndex; j < result.length && j <= envIndex; j++) {
-                            if (PropUtil.isDomIntersectDom(string[x], result[j])) {
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found) {
-                            changed |= set.removeFromEnvelope(i, aCause);
-                        } else {
-                            envIndex++;
-                        }
+                        windowLows[x] = 1;
+                        windowHighs[x] = 0;
+                        changed |= set.removeFromEnvelope(i, aCause);
                     }
                 }
             }
             assert envIndex <= env.length;
-            assert kerIndex == kerIndices.length;
+            envSize = envIndex;
+            kerSize = kerIndex;
 
             int lb = setCard.getLB();
             int ub = setCard.getUB();
@@ -199,22 +339,107 @@ public class PropFilterString extends Propagator<Variable> {
             }
             changed |= setCard.updateLowerBound(lb, aCause);
             for (int i = 0; i < result.length; i++) {
-                if (i < kerIndices.length) {
-                    changed |= subset(result[i], string, env, i, kerIndices[i] + 1);
-                } else if (i < lb) {
-                    changed |= subset(result[i], string, env, i, envIndex);
-                } else if (i > ub) {
+                if (i > ub && i >= kerSize) {
                     changed |= result[i].instantiateTo(-1, aCause);
                 } else {
-                    changed |= subsetOrNegativeOne(result[i], string, env, i, envIndex);
+                    changed |= filterResult(i);
                 }
             }
         } while (changed);
+
+        // Reached a fixpoint so nothing left to revisit.
+        removedStrings.resetQuick();
+        removedResults.resetQuick();
+        stamp++;
+        layoutStamp.set(stamp);
+    }
+
+    /**
+     * Revisit the supports that pointed to removed values.
+     *
+     * @return {@code true} if the removals were handled, {@code false} if a
+     * full propagation is required
+     * @throws ContradictionException
+     */
+    private boolean filterRemovals() throws ContradictionException {
+        while (!removedStrings.isEmpty() || !removedResults.isEmpty()) {
+            if (!removedStrings.isEmpty()) {
+                int size = removedStrings.size();
+                int value = removedStrings.removeAt(size - 1);
+                int x = removedStrings.removeAt(size - 2);
+                int low = windowLows[x];
+                int high = windowHighs[x];
+                for (int j = low; j <= high; j++) {
+                    if (resultSupports[j].get(value) == x && result[j].contains(value)
+                            && !(value == -1 && isNegativeOneAllowed(j))
+                            && !supportResult(j, value)) {
+                        removeResultValue(j, value);
+                    }
+                }
+                if (low <= high && !inKer[x] && !supportIntersect(x)) {
+                    // Remove the character from the set.
+                    return false;
+                }
+            } else {
+                int size = removedResults.size();
+                int value = removedResults.removeAt(size - 1);
+                int position = removedResults.removeAt(size - 2);
+                if (value == -1 && isNegativeOneAllowed(position)) {
+                    // The lower bound of the cardinality might change.
+                    return false;
+                }
+                int end = windowEnd(position);
+                for (int i = position; i < end; i++) {
+                    int x = env[i];
+                    if (inKer[x]) {
+                        if (stringSupports[x].get(value) == position && string[x].contains(value)
+                                && !supportString(x, value)) {
+                            removeStringValue(x, value);
+                        }
+                    } else if (intersectSupports[x] == position && !supportIntersect(x)) {
+                        // Remove the character from the set.
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        filter();
     }
 
     @Override
     public void propagate(int idxVarInProp, int mask) throws ContradictionException {
-        forcePropagate(EventType.FULL_PROPAGATION);
+        if (isStringVar(idxVarInProp)) {
+            final int id = getStringVarIndex(idxVarInProp);
+            stringD[id].freeze();
+            stringD[id].forEach(new IntProcedure() {
+                @Override
+                public void execute(int value) throws ContradictionException {
+                    removedStrings.add(id);
+                    removedStrings.add(value);
+                }
+            }, EventType.REMOVE);
+            stringD[id].unfreeze();
+        } else if (isResultVar(idxVarInProp)) {
+            final int id = getResultVarIndex(idxVarInProp);
+            resultD[id].freeze();
+            resultD[id].forEach(new IntProcedure() {
+                @Override
+                public void execute(int value) throws ContradictionException {
+                    removedResults.add(id);
+                    removedResults.add(value);
+                }
+            }, EventType.REMOVE);
+            resultD[id].unfreeze();
+        }
+        if (isSetVar(idxVarInProp) || isSetCardVar(idxVarInProp)
+                || layoutStamp.get() != stamp || !filterRemovals()) {
+            filter();
+        }
     }
 
     @Override
@@ -0,0 +1,119 @@
+package org.clafer.choco.constraint.propagator;
+
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.BoolVar;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import util.ESat;
+
+/**
+ * reify => (x = c) if equal, otherwise reify => (x != c)
+ * <p>
+ * Half of {@link PropReifyEqualXC}, nothing is enforced when {@code reify} is
+ * false.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class PropHalfReifyEqualXC extends Propagator<IntVar> {
+
+    private final BoolVar reify;
+    private final boolean equal;
+    private final IntVar x;
+    private final int c;
+
+    public PropHalfReifyEqualXC(BoolVar reify, boolean equal, IntVar x, int c) {
+        super(new IntVar[]{reify, x}, PropagatorPriority.UNARY, true);
+        this.reify = reify;
+        this.equal = equal;
+        this.x = x;
+        this.c = c;
+    }
+
+    private boolean isReifyVar(int idx) {
+        return idx == 0;
+    }
+
+    private boolean isXVar(int idx) {
+        return idx == 1;
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        if (isReifyVar(vIdx)) {
+            return EventType.INSTANTIATE.mask;
+        }
+        return EventType.INT_ALL_MASK();
+    }
+
+    private boolean isSatisfied() {
+        return equal ? x.isInstantiatedTo(c) : !x.contains(c);
+    }
+
+    private boolean isViolated() {
+        return equal ? !x.contains(c) : x.isInstantiatedTo(c);
+    }
+
+    private void propagateReifyVar() throws ContradictionException {
+        assert reify.isInstantiated();
+        if (reify.getValue() == 1) {
+            if (equal) {
+                x.instantiateTo(c, aCause);
+            } else {
+                x.removeValue(c, aCause);
+                // Bounded domains can only remove their bounds. Stay active
+                // until the value is really gone.
+                if (x.contains(c)) {
+                    return;
+                }
+            }
+        }
+        setPassive();
+    }
+
+    private void propagateXVar() throws ContradictionException {
+        if (isViolated()) {
+            reify.setToFalse(aCause);
+            setPassive();
+        } else if (isSatisfied()) {
+            setPassive();
+        }
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (reify.isInstantiated()) {
+            propagateReifyVar();
+        } else {
+            propagateXVar();
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (isReifyVar(idxVarInProp) || reify.isInstantiated()) {
+            propagateReifyVar();
+        } else {
+            assert isXVar(idxVarInProp);
+            propagateXVar();
+        }
+    }
+
+    @Override
+    public ESat isEntailed() {
+        if (reify.isInstantiatedTo(0) || isSatisfied()) {
+            return ESat.TRUE;
+        }
+        if (reify.isInstantiatedTo(1) && isViolated()) {
+            return ESat.FALSE;
+        }
+        return ESat.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return reify + " => (" + x + (equal ? " = " : " != ") + c + ")";
+    }
+}
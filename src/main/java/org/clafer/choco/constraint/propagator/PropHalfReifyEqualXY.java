@@ -0,0 +1,178 @@
+package org.clafer.choco.constraint.propagator;
+
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.BoolVar;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import solver.variables.delta.IIntDeltaMonitor;
+import util.ESat;
+import util.procedure.IntProcedure;
+
+/**
+ * reify => (x = y) if equal, otherwise reify => (x != y)
+ * <p>
+ * Half of {@link PropReifyEqualXY}, nothing is enforced when {@code reify} is
+ * false. Once {@code reify} is true, the removals are propagated
+ * incrementally from their deltas.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class PropHalfReifyEqualXY extends Propagator<IntVar> {
+
+    private final BoolVar reify;
+    private final boolean equal;
+    private final IntVar x, y;
+    // Only monitored for equality, disequality only needs the instantiations.
+    private final IIntDeltaMonitor xD, yD;
+
+    public PropHalfReifyEqualXY(BoolVar reify, boolean equal, IntVar x, IntVar y) {
+        super(new IntVar[]{reify, x, y}, PropagatorPriority.BINARY, true);
+        this.reify = reify;
+        this.equal = equal;
+        this.x = x;
+        this.xD = equal ? x.monitorDelta(aCause) : null;
+        this.y = y;
+        this.yD = equal ? y.monitorDelta(aCause) : null;
+    }
+
+    private boolean isReifyVar(int idx) {
+        return idx == 0;
+    }
+
+    private boolean isXVar(int idx) {
+        return idx == 1;
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        if (isReifyVar(vIdx)) {
+            return EventType.INSTANTIATE.mask;
+        }
+        // Bound events retry removing a value the bounded domain could not.
+        return equal ? EventType.INT_ALL_MASK() : EventType.INSTANTIATE.mask + EventType.BOUND.mask;
+    }
+
+    private boolean isSatisfied() {
+        if (equal) {
+            return x.isInstantiated() && y.isInstantiatedTo(x.getValue());
+        }
+        return !PropUtil.isDomIntersectDom(x, y);
+    }
+
+    private boolean isViolated() {
+        if (equal) {
+            return !PropUtil.isDomIntersectDom(x, y);
+        }
+        return x.isInstantiated() && y.isInstantiatedTo(x.getValue());
+    }
+
+    private boolean enforceBounds() throws ContradictionException {
+        boolean changed = x.updateLowerBound(y.getLB(), aCause);
+        changed |= x.updateUpperBound(y.getUB(), aCause);
+        changed |= y.updateLowerBound(x.getLB(), aCause);
+        changed |= y.updateUpperBound(x.getUB(), aCause);
+        return changed;
+    }
+
+    private void enforce() throws ContradictionException {
+        if (equal) {
+            boolean changed;
+            do {
+                // The bounds first since bounded domains cannot remove values
+                // in the middle.
+                changed = enforceBounds();
+                changed |= PropUtil.domSubsetDom(x, y, aCause);
+                changed |= PropUtil.domSubsetDom(y, x, aCause);
+            } while (changed);
+            if (x.isInstantiated() && y.isInstantiated()) {
+                setPassive();
+            }
+        } else if (x.isInstantiated()) {
+            removeValue(y, x.getValue());
+        } else if (y.isInstantiated()) {
+            removeValue(x, y.getValue());
+        }
+    }
+
+    private void removeValue(IntVar var, int value) throws ContradictionException {
+        var.removeValue(value, aCause);
+        // Bounded domains can only remove their bounds. Stay active until the
+        // value is really gone.
+        if (!var.contains(value)) {
+            setPassive();
+        }
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (reify.isInstantiatedTo(0)) {
+            setPassive();
+        } else if (reify.isInstantiatedTo(1)) {
+            enforce();
+        } else if (isViolated()) {
+            reify.setToFalse(aCause);
+            setPassive();
+        } else if (isSatisfied()) {
+            setPassive();
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (!reify.isInstantiatedTo(1) || isReifyVar(idxVarInProp)) {
+            forcePropagate(EventType.FULL_PROPAGATION);
+        } else if (!equal) {
+            enforce();
+        } else {
+            if (isXVar(idxVarInProp)) {
+                xD.freeze();
+                xD.forEach(pruneYOnX, EventType.REMOVE);
+                xD.unfreeze();
+            } else {
+                yD.freeze();
+                yD.forEach(pruneXOnY, EventType.REMOVE);
+                yD.unfreeze();
+            }
+            // Bounded domains ignore the removals in the middle, their bounds
+            // still need to meet.
+            boolean changed;
+            do {
+                changed = enforceBounds();
+            } while (changed);
+            if (x.isInstantiated() && y.isInstantiated()) {
+                setPassive();
+            }
+        }
+    }
+    private final IntProcedure pruneYOnX = new IntProcedure() {
+        @Override
+        public void execute(int xRem) throws ContradictionException {
+            y.removeValue(xRem, aCause);
+        }
+    };
+    private final IntProcedure pruneXOnY = new IntProcedure() {
+        @Override
+        public void execute(int yRem) throws ContradictionException {
+            x.removeValue(yRem, aCause);
+        }
+    };
+
+    @Override
+    public ESat isEntailed() {
+        if (reify.isInstantiatedTo(0) || isSatisfied()) {
+            return ESat.TRUE;
+        }
+        if (reify.isInstantiatedTo(1) && isViolated()) {
+            return ESat.FALSE;
+        }
+        return ESat.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return reify + " => (" + x + (equal ? " = " : " != ") + y + ")";
+    }
+}
@@ -0,0 +1,209 @@
+package org.clafer.choco.constraint.propagator;
+
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.BoolVar;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+import solver.variables.Variable;
+import solver.variables.delta.ISetDeltaMonitor;
+import util.ESat;
+import util.procedure.IntProcedure;
+
+/**
+ * reify => (sub ⊆ sup) if subset, otherwise reify => (sub = sup)
+ * <p>
+ * Nothing is enforced when {@code reify} is false. Equality is subset in both
+ * directions, so both share this propagator. The cardinalities are only used
+ * for simple bounds reasoning.
+ * </p>
+ * <p>
+ * Once {@code reify} is true, the set events are propagated incrementally
+ * from their deltas.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class PropHalfReifySubsetEq extends Propagator<Variable> {
+
+    private final BoolVar reify;
+    private final SetVar sub;
+    private final IntVar subCard;
+    private final SetVar sup;
+    private final IntVar supCard;
+    private final boolean subset;
+    private final ISetDeltaMonitor subD, supD;
+
+    public PropHalfReifySubsetEq(BoolVar reify, SetVar sub, IntVar subCard, boolean subset, SetVar sup, IntVar supCard) {
+        super(new Variable[]{reify, sub, subCard, sup, supCard}, PropagatorPriority.LINEAR, true);
+        this.reify = reify;
+        this.sub = sub;
+        this.subD = sub.monitorDelta(aCause);
+        this.subCard = subCard;
+        this.subset = subset;
+        this.sup = sup;
+        this.supD = sup.monitorDelta(aCause);
+        this.supCard = supCard;
+    }
+
+    private boolean isReifyVar(int idx) {
+        return idx == 0;
+    }
+
+    private boolean isSubVar(int idx) {
+        return idx == 1;
+    }
+
+    private boolean isSupVar(int idx) {
+        return idx == 3;
+    }
+
+    private boolean isSetVar(int idx) {
+        return isSubVar(idx) || isSupVar(idx);
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        if (isReifyVar(vIdx)) {
+            return EventType.INSTANTIATE.mask;
+        }
+        if (isSetVar(vIdx)) {
+            return EventType.ADD_TO_KER.mask + EventType.REMOVE_FROM_ENVELOPE.mask;
+        }
+        return EventType.BOUND.mask + EventType.INSTANTIATE.mask;
+    }
+
+    private boolean isSatisfied() {
+        // The sizes first to skip the iteration while the sets are far apart.
+        if (sub.getEnvelopeSize() > sup.getKernelSize()) {
+            return false;
+        }
+        if (!subset && sup.getEnvelopeSize() > sub.getKernelSize()) {
+            return false;
+        }
+        return PropUtil.isEnvSubsetKer(sub, sup)
+                && (subset || PropUtil.isEnvSubsetKer(sup, sub));
+    }
+
+    private boolean isViolated() {
+        if (!PropUtil.isKerSubsetEnv(sub, sup) || subCard.getLB() > supCard.getUB()) {
+            return true;
+        }
+        return !subset
+                && (!PropUtil.isKerSubsetEnv(sup, sub) || supCard.getLB() > subCard.getUB());
+    }
+
+    private boolean enforceCard() throws ContradictionException {
+        boolean changed = false;
+        changed |= subCard.updateLowerBound(sub.getKernelSize(), aCause);
+        changed |= subCard.updateUpperBound(sub.getEnvelopeSize(), aCause);
+        changed |= supCard.updateLowerBound(sup.getKernelSize(), aCause);
+        changed |= supCard.updateUpperBound(sup.getEnvelopeSize(), aCause);
+        changed |= subCard.updateUpperBound(supCard.getUB(), aCause);
+        changed |= supCard.updateLowerBound(subCard.getLB(), aCause);
+        if (!subset) {
+            changed |= subCard.updateLowerBound(supCard.getLB(), aCause);
+            changed |= supCard.updateUpperBound(subCard.getUB(), aCause);
+        }
+        return changed;
+    }
+
+    private void enforce() throws ContradictionException {
+        boolean changed;
+        do {
+            changed = PropUtil.envSubsetEnv(sub, sup, aCause);
+            changed |= PropUtil.kerSubsetKer(sub, sup, aCause);
+            if (!subset) {
+                changed |= PropUtil.envSubsetEnv(sup, sub, aCause);
+                changed |= PropUtil.kerSubsetKer(sup, sub, aCause);
+            }
+            changed |= enforceCard();
+        } while (changed);
+        if (isSatisfied()) {
+            setPassive();
+        }
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (reify.isInstantiatedTo(0)) {
+            setPassive();
+        } else if (reify.isInstantiatedTo(1)) {
+            enforce();
+        } else if (isViolated()) {
+            reify.setToFalse(aCause);
+            setPassive();
+        } else if (isSatisfied()) {
+            setPassive();
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (!reify.isInstantiatedTo(1) || isReifyVar(idxVarInProp)) {
+            forcePropagate(EventType.FULL_PROPAGATION);
+            return;
+        }
+        if (isSubVar(idxVarInProp)) {
+            subD.freeze();
+            subD.forEach(pickSupOnSubKer, EventType.ADD_TO_KER);
+            if (!subset) {
+                subD.forEach(pruneSupOnSubEnv, EventType.REMOVE_FROM_ENVELOPE);
+            }
+            subD.unfreeze();
+        } else if (isSupVar(idxVarInProp)) {
+            supD.freeze();
+            supD.forEach(pruneSubOnSupEnv, EventType.REMOVE_FROM_ENVELOPE);
+            if (!subset) {
+                supD.forEach(pickSubOnSupKer, EventType.ADD_TO_KER);
+            }
+            supD.unfreeze();
+        }
+        enforceCard();
+        if (isSatisfied()) {
+            setPassive();
+        }
+    }
+    private final IntProcedure pickSupOnSubKer = new IntProcedure() {
+        @Override
+        public void execute(int subKer) throws ContradictionException {
+            sup.addToKernel(subKer, aCause);
+        }
+    };
+    private final IntProcedure pruneSupOnSubEnv = new IntProcedure() {
+        @Override
+        public void execute(int subEnv) throws ContradictionException {
+            sup.removeFromEnvelope(subEnv, aCause);
+        }
+    };
+    private final IntProcedure pruneSubOnSupEnv = new IntProcedure() {
+        @Override
+        public void execute(int supEnv) throws ContradictionException {
+            sub.removeFromEnvelope(supEnv, aCause);
+        }
+    };
+    private final IntProcedure pickSubOnSupKer = new IntProcedure() {
+        @Override
+        public void execute(int supKer) throws ContradictionException {
+            sub.addToKernel(supKer, aCause);
+        }
+    };
+
+    @Override
+    public ESat isEntailed() {
+        if (reify.isInstantiatedTo(0) || isSatisfied()) {
+            return ESat.TRUE;
+        }
+        if (reify.isInstantiatedTo(1) && isViolated()) {
+            return ESat.FALSE;
+        }
+        return ESat.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return reify + " => (" + sub + (subset ? " ⊆ " : " = ") + sup + ")";
+    }
+}
@@ -54,7 +54,9 @@ public class PropIntNotMemberSet extends Propagator<Variable> {
         if (element.isInstantiated()) {
             set.removeFromEnvelope(element.getValue(), aCause);
             setPassive();
-        } else if (set.isInstantiated()) {
+        } else if (set.isInstantiated() && !PropUtil.isDomIntersectKer(element, set)) {
+            // Bounded domains can only remove their bounds. Stay active until
+            // the element is instantiated if a kernel value is left.
             setPassive();
         }
     }
@@ -73,7 +75,7 @@ public class PropIntNotMemberSet extends Propagator<Variable> {
             if (element.isInstantiated()) {
                 set.removeFromEnvelope(element.getValue(), aCause);
                 setPassive();
-            } else if (set.isInstantiated()) {
+            } else if (set.isInstantiated() && !PropUtil.isDomIntersectKer(element, set)) {
                 setPassive();
             }
         }
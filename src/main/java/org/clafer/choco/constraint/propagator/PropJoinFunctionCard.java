@@ -23,6 +23,8 @@ public class PropJoinFunctionCard extends Propagator<Variable> {
     private final IntVar[] refs;
     private final IntVar toCard;
     private final Integer globalCardinality;
+    // Reused kernel buffer to avoid allocating on every propagation.
+    private final int[] ker;
 
     public PropJoinFunctionCard(SetVar take, IntVar takeCard, IntVar[] refs, IntVar toCard, Integer globalCardinality) {
         super(buildArray(take, takeCard, toCard, refs), PropagatorPriority.LINEAR, false);
@@ -31,6 +33,7 @@ public class PropJoinFunctionCard extends Propagator<Variable> {
         this.refs = refs;
         this.toCard = toCard;
         this.globalCardinality = globalCardinality;
+        this.ker = new int[take.getEnvelopeSize()];
     }
 
     private static Variable[] buildArray(SetVar take, IntVar takeCard, IntVar toCard, IntVar[] refs) {
@@ -125,18 +128,18 @@ public class PropJoinFunctionCard extends Propagator<Variable> {
 
     private TIntIntHashMap constrainGlobalCardinality() throws ContradictionException {
         assert hasGlobalCardinality();
-        int[] ker = PropUtil.iterateKer(take);
-        TIntIntHashMap map = new TIntIntHashMap(ker.length);
-        for (int i = 0; i < ker.length; i++) {
-            constrainGlobalCardinality(ker, i, i, map);
+        int kerSize = PropUtil.iterateKer(take, ker);
+        TIntIntHashMap map = new TIntIntHashMap(kerSize);
+        for (int i = 0; i < kerSize; i++) {
+            constrainGlobalCardinality(kerSize, i, i, map);
         }
         return map;
     }
 
-    private void constrainGlobalCardinality(int[] ker, int index, int explored, TIntIntHashMap map) throws ContradictionException {
+    private void constrainGlobalCardinality(int kerSize, int index, int explored, TIntIntHashMap map) throws ContradictionException {
         assert hasGlobalCardinality();
         assert index <= explored;
-        assert explored < ker.length;
+        assert explored < kerSize;
 
         IntVar a = refs[ker[index]];
         if (a.isInstantiated()) {
@@ -148,10 +151,10 @@ public class PropJoinFunctionCard extends Propagator<Variable> {
                 for (int j = 0; j < explored; j++) {
                     IntVar b = refs[ker[j]];
                     if (!b.isInstantiatedTo(value) && b.removeValue(value, aCause)) {
-                        constrainGlobalCardinality(ker, j, explored, map);
+                        constrainGlobalCardinality(kerSize, j, explored, map);
                     }
                 }
-                for (int j = explored + 1; j < ker.length; j++) {
+                for (int j = explored + 1; j < kerSize; j++) {
                     refs[ker[j]].removeValue(value, aCause);
                 }
             } else if (count > gc) {
@@ -20,6 +20,9 @@ public class PropJoinInjectiveRelationCard extends Propagator<Variable> {
     private final IntVar takeCard;
     private final IntVar[] childrenCards;
     private final IntVar toCard;
+    // Reused buffers to avoid allocating on every propagation.
+    private final int[] envLbs;
+    private final int[] envUbs;
 
     public PropJoinInjectiveRelationCard(SetVar take, IntVar takeCard, IntVar[] childrenCards, IntVar toCard) {
         super(buildArray(take, takeCard, toCard, childrenCards), PropagatorPriority.LINEAR, false);
@@ -27,6 +30,8 @@ public class PropJoinInjectiveRelationCard extends Propagator<Variable> {
         this.takeCard = takeCard;
         this.childrenCards = childrenCards;
         this.toCard = toCard;
+        this.envLbs = new int[take.getEnvelopeSize()];
+        this.envUbs = new int[take.getEnvelopeSize()];
     }
 
     private static Variable[] buildArray(SetVar take, IntVar takeCard, IntVar toCard, IntVar[] childrenCards) {
@@ -134,8 +139,6 @@ public class PropJoinInjectiveRelationCard extends Propagator<Variable> {
 
         int lb = toCard.getLB();
         int ub = toCard.getUB();
-        int[] envLbs = new int[take.getEnvelopeSize() - take.getKernelSize()];
-        int[] envUbs = new int[envLbs.length];
         int kerMinCard = 0;
         int kerMaxCard = 0;
         int env = 0;
@@ -149,17 +152,17 @@ public class PropJoinInjectiveRelationCard extends Propagator<Variable> {
                 env++;
             }
         }
-        Arrays.sort(envLbs);
-        Arrays.sort(envUbs);
+        Arrays.sort(envLbs, 0, env);
+        Arrays.sort(envUbs, 0, env);
         int i;
-        for (i = 0; i < envLbs.length && (kerMinCard < ub || envLbs[i] == 0); i++) {
+        for (i = 0; i < env && (kerMinCard < ub || envLbs[i] == 0); i++) {
             kerMinCard += envLbs[i];
         }
         takeCard.updateUpperBound(i + take.getKernelSize(), aCause);
-        for (i = envUbs.length - 1; i >= 0 && kerMaxCard < lb; i--) {
+        for (i = env - 1; i >= 0 && kerMaxCard < lb; i--) {
             kerMaxCard += envUbs[i];
         }
-        takeCard.updateLowerBound(envUbs.length - 1 - i + take.getKernelSize(), aCause);
+        takeCard.updateLowerBound(env - 1 - i + take.getKernelSize(), aCause);
     }
 
     @Override
@@ -16,7 +16,7 @@ import util.ESat;
  *
  * @author jimmy
  */
-public class PropLexChainChannel extends Propagator<IntVar> {
+public class PropLexChainChannel extends Propagator<IntVar> implements IdempotentPropagator {
 
     private final IntVar[][] strings;
     private final IntVar[] ints;
@@ -0,0 +1,333 @@
+package org.clafer.choco.constraint.propagator;
+
+import java.util.Arrays;
+import memory.IEnvironment;
+import memory.IStateInt;
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import util.ESat;
+
+/**
+ * <p>
+ * Enforce no cycles and that within the same group, a lower indexed node never
+ * reaches a higher indexed node. Equivalent to {@link PropAcyclic} and
+ * {@link PropUnreachable} for every pair of nodes {@code i < j} in the same
+ * group, but as a single propagator.
+ * </p>
+ * <p>
+ * The instantiated edges form a forest where every tree is rooted at a node
+ * whose edge is not yet instantiated (or has no outgoing edge). The trees are
+ * kept in a backtrackable union-find along with the lowest index of every
+ * group inside each tree. A node {@code k} is "bad" for a tree if the tree
+ * contains a node in the same group with a lower index than {@code k}. The root
+ * of a tree cannot point to any node whose path contains a bad node.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class PropOrderedForest extends Propagator<IntVar> {
+
+    private static final int NIL = -1;
+    // The group of each node, or NIL if the node is not ordered.
+    private final int[] groups;
+    // The parent of each node in the union-find.
+    private final IStateInt[] leaders;
+    // The next node in the same tree, or NIL if it is the last.
+    private final IStateInt[] nexts;
+    // The last node in the tree. Only maintained for the roots.
+    private final IStateInt[] lasts;
+    // The lowest index of each group in the tree. Only maintained for the roots.
+    private final IStateInt[][] mins;
+    // The roots of the trees. Backtrackable sparse set, only the size is trailed.
+    private final int[] roots;
+    private final int[] rootPositions;
+    private final IStateInt rootSize;
+    // Scratch space.
+    private final int[] pathMax;
+    private final int[] path;
+    private final int[] pending;
+    private final int[] stamps;
+    private final boolean[] bad;
+    private int stamp = 0;
+
+    /**
+     * Enforce no cycles and no path from a lower indexed node to a higher
+     * indexed node in the same group. {@code edges[i] = j} implies that there
+     * is a directed edge from node i to node j. {@code edges[i] = edges.length}
+     * implies that there are no direct edges from node i. Nodes with a negative
+     * group are not ordered.
+     *
+     * @param edges the edges
+     * @param groups the group of each node
+     */
+    public PropOrderedForest(IntVar[] edges, int[] groups) {
+        super(edges, PropagatorPriority.QUADRATIC, true);
+        if (edges.length != groups.length) {
+            throw new IllegalArgumentException();
+        }
+        int n = edges.length;
+        int numGroups = 0;
+        this.groups = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.groups[i] = groups[i] < 0 ? NIL : groups[i];
+            numGroups = Math.max(numGroups, groups[i] + 1);
+        }
+        IEnvironment environment = solver.getEnvironment();
+        this.leaders = new IStateInt[n];
+        this.nexts = new IStateInt[n];
+        this.lasts = new IStateInt[n];
+        this.mins = new IStateInt[n][numGroups];
+        this.roots = new int[n];
+        this.rootPositions = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.leaders[i] = environment.makeInt(i);
+            this.nexts[i] = environment.makeInt(NIL);
+            this.lasts[i] = environment.makeInt(i);
+            for (int g = 0; g < numGroups; g++) {
+                this.mins[i][g] = environment.makeInt(g == this.groups[i] ? i : n);
+            }
+            this.roots[i] = i;
+            this.rootPositions[i] = i;
+        }
+        this.rootSize = environment.makeInt(n);
+        this.pathMax = new int[numGroups];
+        this.path = new int[n];
+        this.pending = new int[n];
+        this.stamps = new int[n];
+        this.bad = new boolean[n];
+    }
+
+    @Override
+    protected int getPropagationConditions(int vIdx) {
+        return EventType.INSTANTIATE.mask;
+    }
+
+    private int getLeader(int node) {
+        int cur = node;
+        int leader = leaders[cur].get();
+        while (leader != cur) {
+            int grandLeader = leaders[leader].get();
+            if (grandLeader != leader) {
+                leaders[cur].set(grandLeader);
+            }
+            cur = grandLeader;
+            leader = leaders[cur].get();
+        }
+        return cur;
+    }
+
+    private void removeRoot(int root) {
+        int size = rootSize.get() - 1;
+        int position = rootPositions[root];
+        int last = roots[size];
+        roots[position] = last;
+        rootPositions[last] = position;
+        roots[size] = root;
+        rootPositions[root] = size;
+        rootSize.set(size);
+    }
+
+    /**
+     * Remove from the root's edge every node that would create a cycle or
+     * reach a bad node.
+     *
+     * @param root the root of a tree
+     * @return {@code true} if the root's edge changed, {@code false} otherwise
+     */
+    private boolean filterRoot(int root) throws ContradictionException {
+        IntVar edge = vars[root];
+        IStateInt[] rootMins = mins[root];
+        stamp++;
+        boolean changed = false;
+        int ub = Math.min(edge.getUB(), vars.length - 1);
+        for (int x = edge.getLB(); x <= ub; x = edge.nextValue(x)) {
+            // Walk up until the root or a node already classified.
+            int length = 0;
+            int cur = x;
+            while (stamps[cur] != stamp && leaders[cur].get() != cur) {
+                path[length++] = cur;
+                cur = vars[cur].getValue();
+            }
+            boolean isBad;
+            if (stamps[cur] == stamp) {
+                isBad = bad[cur];
+            } else {
+                isBad = cur == root || isBad(cur, rootMins);
+                stamps[cur] = stamp;
+                bad[cur] = isBad;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                int node = path[i];
+                isBad |= isBad(node, rootMins);
+                stamps[node] = stamp;
+                bad[node] = isBad;
+            }
+            if (isBad) {
+                changed |= edge.removeValue(x, aCause);
+            }
+        }
+        return changed;
+    }
+
+    private boolean isBad(int node, IStateInt[] treeMins) {
+        int group = groups[node];
+        return group != NIL && node > treeMins[group].get();
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        for (int i = 0; i < vars.length; i++) {
+            vars[i].removeValue(i, aCause);
+            vars[i].updateLowerBound(0, aCause);
+            vars[i].updateUpperBound(vars.length, aCause);
+        }
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i].isInstantiated()) {
+                follow(i);
+            }
+        }
+        for (int i = rootSize.get() - 1; i >= 0; i--) {
+            int root = roots[i];
+            if (!vars[root].isInstantiated() && filterRoot(root) && vars[root].isInstantiated()) {
+                follow(root);
+            }
+        }
+    }
+
+    private void follow(int node) throws ContradictionException {
+        int pendingSize = 0;
+        pending[pendingSize++] = node;
+        while (pendingSize > 0) {
+            int follower = pending[--pendingSize];
+            assert vars[follower].isInstantiated();
+            int leader = vars[follower].getValue();
+            if (leader == vars.length || leaders[follower].get() != follower) {
+                // No outgoing edge or already merged.
+                continue;
+            }
+            int realLeader = getLeader(leader);
+            if (realLeader == follower) {
+                contradiction(vars[follower], "Cycle");
+            }
+            // Check and summarize the new path of the follower's tree.
+            IStateInt[] followerMins = mins[follower];
+            Arrays.fill(pathMax, NIL);
+            int cur = leader;
+            while (true) {
+                int group = groups[cur];
+                if (group != NIL) {
+                    if (cur > followerMins[group].get()) {
+                        contradiction(vars[follower], "Reachable");
+                    }
+                    pathMax[group] = Math.max(pathMax[group], cur);
+                }
+                if (cur == realLeader) {
+                    break;
+                }
+                cur = vars[cur].getValue();
+            }
+            // Merge the follower's tree into the leader's tree.
+            IStateInt[] leaderMins = mins[realLeader];
+            boolean decreased = false;
+            for (int g = 0; g < leaderMins.length; g++) {
+                int min = followerMins[g].get();
+                if (min < leaderMins[g].get()) {
+                    leaderMins[g].set(min);
+                    decreased = true;
+                }
+            }
+            leaders[follower].set(realLeader);
+            nexts[lasts[realLeader].get()].set(follower);
+            lasts[realLeader].set(lasts[follower].get());
+            removeRoot(follower);
+
+            IntVar leaderVar = vars[realLeader];
+            if (!leaderVar.isInstantiated()) {
+                // The root cannot point back into any node of the merged tree.
+                boolean changed = false;
+                for (int i = follower; i != NIL; i = nexts[i].get()) {
+                    changed |= leaderVar.removeValue(i, aCause);
+                }
+                if (decreased) {
+                    changed |= filterRoot(realLeader);
+                }
+                if (changed && leaderVar.isInstantiated()) {
+                    pending[pendingSize++] = realLeader;
+                }
+            }
+            // Every node in the follower's tree now reaches the new path.
+            int size = rootSize.get();
+            for (int r = 0; r < size; r++) {
+                int root = roots[r];
+                IntVar rootVar = vars[root];
+                if (root == realLeader || rootVar.isInstantiated()) {
+                    continue;
+                }
+                IStateInt[] rootMins = mins[root];
+                boolean reachesBad = false;
+                for (int g = 0; g < pathMax.length && !reachesBad; g++) {
+                    reachesBad = pathMax[g] > rootMins[g].get();
+                }
+                if (reachesBad) {
+                    boolean changed = false;
+                    for (int i = follower; i != NIL; i = nexts[i].get()) {
+                        changed |= rootVar.removeValue(i, aCause);
+                    }
+                    if (changed && rootVar.isInstantiated()) {
+                        pending[pendingSize++] = root;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        follow(idxVarInProp);
+    }
+
+    @Override
+    public ESat isEntailed() {
+        // Hopefully escape analysis will make these boolean arrays cheap.
+        boolean[] localVisited = new boolean[vars.length];
+        boolean allInstantiated = true;
+        for (int i = 0; i < vars.length; i++) {
+            if (!vars[i].isInstantiated()) {
+                allInstantiated = false;
+                continue;
+            }
+            Arrays.fill(localVisited, false);
+            localVisited[i] = true;
+            int cur = vars[i].getValue();
+            while (true) {
+                if (cur < 0 || cur > vars.length) {
+                    return ESat.FALSE;
+                }
+                if (cur == vars.length) {
+                    break;
+                }
+                if (localVisited[cur]) {
+                    // Cycle
+                    return ESat.FALSE;
+                }
+                if (groups[i] != NIL && groups[cur] == groups[i] && cur > i) {
+                    return ESat.FALSE;
+                }
+                localVisited[cur] = true;
+                if (!vars[cur].isInstantiated()) {
+                    break;
+                }
+                cur = vars[cur].getValue();
+            }
+        }
+        return allInstantiated ? ESat.TRUE : ESat.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return "orderedForest(" + Arrays.toString(vars) + ", " + Arrays.toString(groups) + ")";
+    }
+}
@@ -45,10 +45,15 @@ public class PropReifyEqualXC extends Propagator<IntVar> {
         assert reify.isInstantiated();
         if (reify.getValue() == reifyC) {
             x.instantiateTo(c, aCause);
+            setPassive();
         } else {
             x.removeValue(c, aCause);
+            // Bounded domains can only remove their bounds. Stay active until
+            // the value is really gone.
+            if (!x.contains(c)) {
+                setPassive();
+            }
         }
-        setPassive();
     }
 
     private void propagateXVar() throws ContradictionException {
@@ -74,7 +79,7 @@ public class PropReifyEqualXC extends Propagator<IntVar> {
 
     @Override
     public void propagate(int idxVarInProp, int mask) throws ContradictionException {
-        if (isReifyVar(idxVarInProp)) {
+        if (isReifyVar(idxVarInProp) || reify.isInstantiated()) {
             propagateReifyVar();
         } else {
             assert isXVar(idxVarInProp);
@@ -72,11 +72,9 @@ public class PropReifyEqualXY extends Propagator<IntVar> {
             }
         } else {
             if (x.isInstantiated()) {
-                y.removeValue(x.getValue(), aCause);
-                setPassive();
+                removeValue(y, x.getValue());
             } else if (y.isInstantiated()) {
-                x.removeValue(y.getValue(), aCause);
-                setPassive();
+                removeValue(x, y.getValue());
             }
         }
     }
@@ -86,10 +84,10 @@ public class PropReifyEqualXY extends Propagator<IntVar> {
             if (reify.isInstantiated()) {
                 if (reify.getValue() == reifyC) {
                     y.instantiateTo(x.getValue(), aCause);
+                    setPassive();
                 } else {
-                    y.removeValue(x.getValue(), aCause);
+                    removeValue(y, x.getValue());
                 }
-                setPassive();
             } else if (y.contains(x.getValue())) {
                 if (y.isInstantiated()) {
                     reify.instantiateTo(reifyC, aCause);
@@ -103,6 +101,9 @@ public class PropReifyEqualXY extends Propagator<IntVar> {
             xD.freeze();
             xD.forEach(pruneYOnXRem, EventType.REMOVE);
             xD.unfreeze();
+        } else if (reify.isInstantiated()) {
+            // Retry removing a value the bounded domain could not remove.
+            propagateReifyVar();
         }
     }
 
@@ -111,10 +112,10 @@ public class PropReifyEqualXY extends Propagator<IntVar> {
             if (reify.isInstantiated()) {
                 if (reify.getValue() == reifyC) {
                     x.instantiateTo(y.getValue(), aCause);
+                    setPassive();
                 } else {
-                    x.removeValue(y.getValue(), aCause);
+                    removeValue(x, y.getValue());
                 }
-                setPassive();
             } else if (x.contains(y.getValue())) {
                 if (x.isInstantiated()) {
                     reify.instantiateTo(reifyC, aCause);
@@ -128,6 +129,18 @@ public class PropReifyEqualXY extends Propagator<IntVar> {
             yD.freeze();
             yD.forEach(pruneXOnYRem, EventType.REMOVE);
             yD.unfreeze();
+        } else if (reify.isInstantiated()) {
+            // Retry removing a value the bounded domain could not remove.
+            propagateReifyVar();
+        }
+    }
+
+    private void removeValue(IntVar var, int value) throws ContradictionException {
+        var.removeValue(value, aCause);
+        // Bounded domains can only remove their bounds. Stay active until the
+        // value is really gone.
+        if (!var.contains(value)) {
+            setPassive();
         }
     }
 
@@ -1,7 +1,8 @@
 package org.clafer.choco.constraint.propagator;
 
-import org.clafer.collection.Triple;
-import org.clafer.common.Util;
+import java.util.Arrays;
+import memory.IEnvironment;
+import memory.IStateInt;
 import solver.constraints.Propagator;
 import solver.constraints.PropagatorPriority;
 import solver.exception.ContradictionException;
@@ -9,25 +10,77 @@ import solver.variables.EventType;
 import solver.variables.IntVar;
 import solver.variables.SetVar;
 import solver.variables.Variable;
+import solver.variables.delta.ISetDeltaMonitor;
 import util.ESat;
+import util.procedure.IntProcedure;
 
 /**
+ * <p>
  * Sums a set and |set| &le n. This implementation <b>assumes</b> that the
  * envelope and kernel are sorted, undefined behaviour otherwise.
+ * </p>
+ * <p>
+ * The unchosen values (the envelope minus the kernel) are kept in a
+ * backtrackable Fenwick tree over the sorted initial envelope, holding both the
+ * count and the sum of the unchosen values. The sum of the k smallest or
+ * largest unchosen values, and the k-th smallest unchosen value, are found in
+ * logarithmic time. The tree is updated from the set deltas, so each event
+ * costs O(delta log n) rather than a scan of the envelope.
+ * </p>
  *
  * @author jimmy
  */
 public class PropSetSum extends Propagator<Variable> {
 
+    private static final int UNCHOSEN = 0;
+    private static final int KERNEL = 1;
+    private static final int REMOVED = 2;
     private final SetVar set;
+    private final ISetDeltaMonitor setD;
     private final IntVar setCard;
     private final IntVar sum;
+    // The initial envelope in sorted order.
+    private final int[] values;
+    // The first position in values that is non-negative.
+    private final int nonNegativeStart;
+    // The first position in values that is positive.
+    private final int positiveStart;
+    // The state of each value in values.
+    private final IStateInt[] states;
+    // Fenwick tree over the unchosen values, 1-based.
+    private final IStateInt[] countTree;
+    private final IStateInt[] sumTree;
+    // The largest power of two less than or equal to values.length.
+    private final int highestBit;
+    private final IStateInt unchosenSize;
+    private final IStateInt unchosenSum;
+    private final IStateInt kerSum;
 
     public PropSetSum(SetVar set, IntVar setCard, IntVar sum) {
-        super(new Variable[]{set, setCard, sum}, PropagatorPriority.LINEAR, false);
+        super(new Variable[]{set, setCard, sum}, PropagatorPriority.LINEAR, true);
         this.set = set;
+        this.setD = set.monitorDelta(aCause);
         this.setCard = setCard;
         this.sum = sum;
+        this.values = PropUtil.iterateEnv(set);
+        Arrays.sort(this.values);
+        this.nonNegativeStart = firstPositionGreaterThan(-1);
+        this.positiveStart = firstPositionGreaterThan(0);
+        IEnvironment environment = solver.getEnvironment();
+        this.states = new IStateInt[values.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = environment.makeInt(REMOVED);
+        }
+        this.countTree = new IStateInt[values.length + 1];
+        this.sumTree = new IStateInt[values.length + 1];
+        for (int i = 0; i < countTree.length; i++) {
+            countTree[i] = environment.makeInt(0);
+            sumTree[i] = environment.makeInt(0);
+        }
+        this.highestBit = values.length == 0 ? 0 : Integer.highestOneBit(values.length);
+        this.unchosenSize = environment.makeInt(0);
+        this.unchosenSum = environment.makeInt(0);
+        this.kerSum = environment.makeInt(0);
     }
 
     private boolean isSetVar(int idx) {
@@ -51,76 +104,172 @@ public class PropSetSum extends Propagator<Variable> {
         return EventType.INSTANTIATE.mask + EventType.BOUND.mask;
     }
 
-    private Triple<int[], int[], int[]> findKerSmallestLargest(int n) {
-        final int[] ker = PropUtil.iterateKer(set);
-        final int[] smallest = new int[n];
-        final int[] largest = new int[n];
+    /**
+     * @param value the value
+     * @return the first position in values strictly greater than the value
+     */
+    private int firstPositionGreaterThan(int value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 
-        int chooseSize = set.getEnvelopeSize() - ker.length;
-        int highStart = chooseSize - n;
+    private void update(int position, int count) {
+        int value = count * values[position];
+        for (int i = position + 1; i < countTree.length; i += i & -i) {
+            countTree[i].add(count);
+            sumTree[i].add(value);
+        }
+        unchosenSize.add(count);
+        unchosenSum.add(value);
+    }
 
-        int index = 0;
-        for (int i = set.getEnvelopeFirst(); i != SetVar.END; i = set.getEnvelopeNext()) {
-            if (!Util.in(i, ker)) {
-                if (index < smallest.length) {
-                    smallest[index] = i;
+    /**
+     * @param end the exclusive end position
+     * @return the number of unchosen values before the position
+     */
+    private int countBefore(int end) {
+        int count = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            count += countTree[i].get();
+        }
+        return count;
+    }
+
+    /**
+     * @param k the number of values, at least 1
+     * @return the position of the k-th smallest unchosen value
+     */
+    private int kthSmallest(int k) {
+        assert k >= 1 && k <= unchosenSize.get();
+        int position = 0;
+        int remaining = k;
+        for (int step = highestBit; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < countTree.length && countTree[next].get() < remaining) {
+                position = next;
+                remaining -= countTree[next].get();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @param k the number of values
+     * @return the sum of the k smallest unchosen values
+     */
+    private int sumSmallest(int k) {
+        int position = 0;
+        int remaining = k;
+        int total = 0;
+        for (int step = highestBit; step > 0 && remaining > 0; step >>= 1) {
+            int next = position + step;
+            if (next < countTree.length && countTree[next].get() <= remaining) {
+                position = next;
+                remaining -= countTree[next].get();
+                total += sumTree[next].get();
+            }
+        }
+        assert remaining == 0;
+        return total;
+    }
+
+    /**
+     * @param k the number of values
+     * @return the sum of the k largest unchosen values
+     */
+    private int sumLargest(int k) {
+        return unchosenSum.get() - sumSmallest(unchosenSize.get() - k);
+    }
+
+    private void setState(int value, int state) {
+        int position = Arrays.binarySearch(values, value);
+        assert position >= 0;
+        if (states[position].get() == UNCHOSEN) {
+            states[position].set(state);
+            update(position, -1);
+            if (state == KERNEL) {
+                kerSum.add(value);
+            }
+        }
+    }
+
+    private void removeUnchosen(int position) throws ContradictionException {
+        assert states[position].get() == UNCHOSEN;
+        set.removeFromEnvelope(values[position], aCause);
+        states[position].set(REMOVED);
+        update(position, -1);
+    }
+
+    /**
+     * Bring the tree up to date with the set in case some changes were not
+     * seen as deltas.
+     */
+    private void synchronize() {
+        for (int i = 0; i < values.length; i++) {
+            int state = set.kernelContains(values[i]) ? KERNEL
+                    : set.envelopeContains(values[i]) ? UNCHOSEN : REMOVED;
+            int oldState = states[i].get();
+            if (state != oldState) {
+                if (oldState == UNCHOSEN) {
+                    update(i, -1);
+                } else if (state == UNCHOSEN) {
+                    update(i, 1);
                 }
-                index++;
-                if (index > highStart) {
-                    largest[chooseSize - index] = i;
+                if (oldState == KERNEL) {
+                    kerSum.add(-values[i]);
+                } else if (state == KERNEL) {
+                    kerSum.add(values[i]);
                 }
+                states[i].set(state);
             }
         }
-        return new Triple<>(ker, smallest, largest);
     }
 
-    @Override
-    public void propagate(int evtmask) throws ContradictionException {
+    private void filter() throws ContradictionException {
         boolean changed;
         do {
             changed = false;
-            final int envSize = set.getEnvelopeSize();
             final int kerSize = set.getKernelSize();
+            final int unchosen = unchosenSize.get();
 
             setCard.updateLowerBound(kerSize, aCause);
-            setCard.updateUpperBound(envSize, aCause);
+            setCard.updateUpperBound(kerSize + unchosen, aCause);
 
             int lbEnd = setCard.getLB() - kerSize;
             int ubEnd = setCard.getUB() - kerSize;
 
-            final Triple<int[], int[], int[]> triple = findKerSmallestLargest(ubEnd);
-            int[] ker = triple.getFst();
-            int[] smallest = triple.getSnd();
-            int[] largest = triple.getThd();
-
-            int kerSum = Util.sum(ker);
-            int low = kerSum;
-            int lowEnd;
-            int lowCandidate = 0; // Remove this value when adding another.
-            for (lowEnd = 0; lowEnd < ubEnd; lowEnd++) {
-                int val = smallest[lowEnd];
-                if (!(lowEnd < lbEnd || val < 0)) {
-                    // Still room left. Don't remove lowCandidate if it's negative.
-                    lowCandidate = Math.max(lowCandidate, 0);
-                    break;
-                }
-                lowCandidate = val;
-                low += val;
+            // Take the smallest values until we need to stop. Keep taking if
+            // it lowers the sum.
+            int negatives = countBefore(nonNegativeStart);
+            int lowEnd = Math.min(ubEnd, Math.max(lbEnd, negatives));
+            int low = kerSum.get() + sumSmallest(lowEnd);
+            // Remove this value when adding another.
+            int lowCandidate = lowEnd == 0 ? 0 : values[kthSmallest(lowEnd)];
+            if (lowEnd < ubEnd) {
+                // Still room left. Don't remove lowCandidate if it's negative.
+                lowCandidate = Math.max(lowCandidate, 0);
             }
-            int high = kerSum;
-            int highStart;
-            int highCandidate = 0; // Remove this value when adding another.
-            for (highStart = 0; highStart < ubEnd; highStart++) {
-                int val = largest[highStart];
-                if (!(highStart < lbEnd || val > 0)) {
-                    // Still room left. Don't remove highCandidate if it's positive.
-                    highCandidate = Math.min(highCandidate, 0);
-                    break;
-                }
-                highCandidate = val;
-                high += val;
+
+            // Take the largest values until we need to stop. Keep taking if
+            // it raises the sum.
+            int positives = unchosen - countBefore(positiveStart);
+            int highEnd = Math.min(ubEnd, Math.max(lbEnd, positives));
+            int high = kerSum.get() + sumLargest(highEnd);
+            // Remove this value when adding another.
+            int highCandidate = highEnd == 0 ? 0 : values[kthSmallest(unchosen - highEnd + 1)];
+            if (highEnd < ubEnd) {
+                // Still room left. Don't remove highCandidate if it's positive.
+                highCandidate = Math.min(highCandidate, 0);
             }
-            highStart = envSize - kerSize - highStart;
 
             sum.updateLowerBound(low, aCause);
             sum.updateUpperBound(high, aCause);
@@ -128,33 +277,60 @@ public class PropSetSum extends Propagator<Variable> {
             int lb = sum.getLB();
             int ub = sum.getUB();
 
-            int index = 0;
-            for (int i = set.getEnvelopeFirst(); i != SetVar.END; i = set.getEnvelopeNext()) {
-                if (!Util.in(i, ker)) {
-                    if (index >= lowEnd) {
-                        int val = low + i - lowCandidate;
-                        // Adding i will never be under the upper bound.
-                        if (val > ub) {
-                            changed |= set.removeFromEnvelope(i, aCause);
-                        }
-                    }
-                    if (index < highStart) {
-                        int val = high + i - highCandidate;
-                        // Adding i will never be over the lower bound.
-                        if (val < lb) {
-                            changed |= set.removeFromEnvelope(i, aCause);
-                        }
-                    }
-                    index++;
+            // Adding any value larger than this will never be under the upper
+            // bound.
+            int tooLarge = ub - low + lowCandidate;
+            for (int k = unchosenSize.get(); k > lowEnd; k--) {
+                int position = kthSmallest(k);
+                if (values[position] <= tooLarge) {
+                    break;
+                }
+                removeUnchosen(position);
+                changed = true;
+            }
+            // Adding any value smaller than this will never be over the lower
+            // bound.
+            int tooSmall = lb - high + highCandidate;
+            int highStart = unchosen - highEnd;
+            for (int k = 0; k < highStart && unchosenSize.get() > 0; k++) {
+                int position = kthSmallest(1);
+                if (values[position] >= tooSmall) {
+                    break;
                 }
+                removeUnchosen(position);
+                changed = true;
             }
         } while (changed);
     }
 
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        synchronize();
+        filter();
+    }
+
     @Override
     public void propagate(int idxVarInProp, int mask) throws ContradictionException {
-        forcePropagate(EventType.FULL_PROPAGATION);
+        if (isSetVar(idxVarInProp)) {
+            setD.freeze();
+            setD.forEach(onEnvRemove, EventType.REMOVE_FROM_ENVELOPE);
+            setD.forEach(onKerAdd, EventType.ADD_TO_KER);
+            setD.unfreeze();
+        }
+        filter();
     }
+    private final IntProcedure onEnvRemove = new IntProcedure() {
+        @Override
+        public void execute(int env) throws ContradictionException {
+            setState(env, REMOVED);
+        }
+    };
+    private final IntProcedure onKerAdd = new IntProcedure() {
+        @Override
+        public void execute(int ker) throws ContradictionException {
+            setState(ker, KERNEL);
+        }
+    };
 
     @Override
     public ESat isEntailed() {
@@ -163,7 +339,6 @@ public class PropSetSum extends Propagator<Variable> {
         if (kerSize > setCard.getUB()) {
             return ESat.FALSE;
         }
-        int[] ker = PropUtil.iterateKer(set);
         int low = 0;
         int high = 0;
         // The number of elements seen in env but not in ker.
@@ -171,7 +346,7 @@ public class PropSetSum extends Propagator<Variable> {
         int lowEnd = Math.max(setCard.getLB(), envSize) - kerSize;
         int highStart = envSize - kerSize - lowEnd;
         for (int i = set.getEnvelopeFirst(); i != SetVar.END; i = set.getEnvelopeNext()) {
-            if (Util.in(i, ker)) {
+            if (set.kernelContains(i)) {
                 low += i;
                 high += i;
             } else {
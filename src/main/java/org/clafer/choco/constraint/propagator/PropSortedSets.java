@@ -1,74 +1,365 @@
 package org.clafer.choco.constraint.propagator;
 
 import java.util.Arrays;
+import memory.IEnvironment;
+import memory.IStateInt;
 import solver.constraints.Propagator;
 import solver.constraints.PropagatorPriority;
 import solver.exception.ContradictionException;
 import solver.variables.EventType;
+import solver.variables.IntVar;
 import solver.variables.SetVar;
+import solver.variables.Variable;
+import solver.variables.delta.ISetDeltaMonitor;
 import util.ESat;
+import util.procedure.IntProcedure;
 
 /**
+ * <p>
+ * The sets are contiguous and sorted. The first set is
+ * {@code [0, cards[0])}, the second set is
+ * {@code [cards[0], cards[0] + cards[1])}, and so on.
+ * </p>
+ * <p>
+ * Let {@code start(i)} be where the i'th set begins, so that
+ * {@code start(i + 1) = start(i) + cards[i]}. The bounds of every start are
+ * computed with one forward and one backward pass over the cardinalities and
+ * the kernels. A set can only contain values in
+ * {@code [lb(start(i)), ub(start(i + 1)))} and must contain every value in
+ * {@code [ub(start(i)), lb(start(i + 1)))}. Both intervals only shrink or grow
+ * down a branch, so only the difference from the last propagation is applied.
+ * The smallest and largest values of each kernel, along with the contiguous
+ * run of the envelope around the kernel, are maintained from the deltas.
+ * </p>
  *
  * @author jimmy
  */
-public class PropSortedSets extends Propagator<SetVar> {
+public class PropSortedSets extends Propagator<Variable> {
 
     private final SetVar[] sets;
+    private final ISetDeltaMonitor[] setsD;
+    private final IntVar[] cards;
+    // The smallest and largest value in each kernel. The kernel is empty if the
+    // low is greater than the high.
+    private final IStateInt[] kerLows;
+    private final IStateInt[] kerHighs;
+    // The largest contiguous run of the envelope containing the kernel. Only
+    // maintained for non-empty kernels.
+    private final IStateInt[] runLows;
+    private final IStateInt[] runHighs;
+    // Every value outside [envLow, envHigh) has been removed from the envelope.
+    private final IStateInt[] envLows;
+    private final IStateInt[] envHighs;
+    // Every value inside [mandatoryLow, mandatoryHigh) has been added to the
+    // kernel.
+    private final IStateInt[] mandatoryLows;
+    private final IStateInt[] mandatoryHighs;
+    // Scratch space for the bounds of where each set starts.
+    private final int[] startLbs;
+    private final int[] startUbs;
 
-    public PropSortedSets(SetVar[] sets) {
-        super(sets, PropagatorPriority.LINEAR, false);
+    public PropSortedSets(SetVar[] sets, IntVar[] cards) {
+        super(buildArray(sets, cards), PropagatorPriority.LINEAR, true);
+        if (sets.length != cards.length) {
+            throw new IllegalArgumentException();
+        }
         this.sets = sets;
+        this.setsD = PropUtil.monitorDeltas(sets, aCause);
+        this.cards = cards;
+        IEnvironment environment = solver.getEnvironment();
+        this.kerLows = new IStateInt[sets.length];
+        this.kerHighs = new IStateInt[sets.length];
+        this.runLows = new IStateInt[sets.length];
+        this.runHighs = new IStateInt[sets.length];
+        this.envLows = new IStateInt[sets.length];
+        this.envHighs = new IStateInt[sets.length];
+        this.mandatoryLows = new IStateInt[sets.length];
+        this.mandatoryHighs = new IStateInt[sets.length];
+        for (int i = 0; i < sets.length; i++) {
+            int envLow = Integer.MAX_VALUE;
+            int envHigh = Integer.MIN_VALUE;
+            for (int j = sets[i].getEnvelopeFirst(); j != SetVar.END; j = sets[i].getEnvelopeNext()) {
+                envLow = Math.min(envLow, j);
+                envHigh = Math.max(envHigh, j);
+            }
+            if (envLow > envHigh) {
+                envLow = 0;
+                envHigh = -1;
+            }
+            this.kerLows[i] = environment.makeInt(Integer.MAX_VALUE);
+            this.kerHighs[i] = environment.makeInt(Integer.MIN_VALUE);
+            this.runLows[i] = environment.makeInt(0);
+            this.runHighs[i] = environment.makeInt(0);
+            this.envLows[i] = environment.makeInt(envLow);
+            this.envHighs[i] = environment.makeInt(envHigh + 1);
+            this.mandatoryLows[i] = environment.makeInt(0);
+            this.mandatoryHighs[i] = environment.makeInt(0);
+        }
+        this.startLbs = new int[sets.length + 1];
+        this.startUbs = new int[sets.length + 1];
+    }
+
+    private static Variable[] buildArray(SetVar[] sets, IntVar[] cards) {
+        Variable[] array = new Variable[sets.length + cards.length];
+        System.arraycopy(sets, 0, array, 0, sets.length);
+        System.arraycopy(cards, 0, array, sets.length, cards.length);
+        return array;
+    }
+
+    private boolean isSetVar(int idx) {
+        return idx < sets.length;
+    }
+
+    private int getSetVarIndex(int idx) {
+        assert isSetVar(idx);
+        return idx;
+    }
+
+    private boolean isCardVar(int idx) {
+        return idx >= sets.length;
     }
 
     @Override
     protected int getPropagationConditions(int vIdx) {
-        return EventType.ADD_TO_KER.mask;
+        if (isCardVar(vIdx)) {
+            return EventType.BOUND.mask | EventType.INSTANTIATE.mask;
+        }
+        return EventType.ADD_TO_KER.mask | EventType.REMOVE_FROM_ENVELOPE.mask;
+    }
+
+    /**
+     * Update the kernel bounds after adding a value to the kernel.
+     *
+     * @param i the index of the set
+     * @param value the value added to the kernel
+     * @return {@code true} if the set's kernel was previously empty,
+     * {@code false} otherwise
+     * @throws ContradictionException
+     */
+    private boolean kernelAdded(int i, int value) throws ContradictionException {
+        int kerLow = kerLows[i].get();
+        int kerHigh = kerHighs[i].get();
+        if (kerLow > kerHigh) {
+            SetVar set = sets[i];
+            int runLow = value;
+            while (set.envelopeContains(runLow - 1)) {
+                runLow--;
+            }
+            int runHigh = value;
+            while (set.envelopeContains(runHigh + 1)) {
+                runHigh++;
+            }
+            kerLows[i].set(value);
+            kerHighs[i].set(value);
+            runLows[i].set(runLow);
+            runHighs[i].set(runHigh);
+            return true;
+        }
+        if (value < kerLow) {
+            if (value < runLows[i].get()) {
+                contradiction(sets[i], "Not contiguous");
+            }
+            kerLows[i].set(value);
+        } else if (value > kerHigh) {
+            if (value > runHighs[i].get()) {
+                contradiction(sets[i], "Not contiguous");
+            }
+            kerHighs[i].set(value);
+        }
+        return false;
+    }
+
+    /**
+     * Update the envelope run after removing a value from the envelope.
+     *
+     * @param i the index of the set
+     * @param value the value removed from the envelope
+     * @throws ContradictionException
+     */
+    private void envelopeRemoved(int i, int value) throws ContradictionException {
+        int kerLow = kerLows[i].get();
+        int kerHigh = kerHighs[i].get();
+        if (kerLow <= kerHigh) {
+            if (value < kerLow) {
+                if (value >= runLows[i].get()) {
+                    runLows[i].set(value + 1);
+                }
+            } else if (value > kerHigh) {
+                if (value <= runHighs[i].get()) {
+                    runHighs[i].set(value - 1);
+                }
+            } else {
+                contradiction(sets[i], "Not contiguous");
+            }
+        }
+    }
+
+    private void removeFromEnvelope(int i, int from, int to) throws ContradictionException {
+        SetVar set = sets[i];
+        for (int j = from; j < to; j++) {
+            if (set.removeFromEnvelope(j, aCause)) {
+                envelopeRemoved(i, j);
+            }
+        }
+    }
+
+    private boolean addToKernel(int i, int from, int to) throws ContradictionException {
+        SetVar set = sets[i];
+        boolean changed = false;
+        for (int j = from; j < to; j++) {
+            if (set.addToKernel(j, aCause)) {
+                changed |= kernelAdded(i, j);
+            }
+        }
+        return changed;
+    }
+
+    private void filter() throws ContradictionException {
+        final int n = sets.length;
+        boolean changed;
+        do {
+            changed = false;
+
+            startLbs[0] = 0;
+            startUbs[0] = 0;
+            for (int i = 0; i < n; i++) {
+                int kerLow = kerLows[i].get();
+                int kerHigh = kerHighs[i].get();
+                if (kerLow <= kerHigh) {
+                    startLbs[i] = Math.max(startLbs[i], runLows[i].get());
+                    startUbs[i] = Math.min(startUbs[i], kerLow);
+                }
+                if (startLbs[i] > startUbs[i]) {
+                    contradiction(sets[i], "Unsorted");
+                }
+                startLbs[i + 1] = startLbs[i] + cards[i].getLB();
+                startUbs[i + 1] = startUbs[i] + cards[i].getUB();
+                if (kerLow <= kerHigh) {
+                    startLbs[i + 1] = Math.max(startLbs[i + 1], kerHigh + 1);
+                    startUbs[i + 1] = Math.min(startUbs[i + 1], runHighs[i].get() + 1);
+                }
+            }
+            if (startLbs[n] > startUbs[n]) {
+                contradiction(sets[n - 1], "Unsorted");
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                startUbs[i] = Math.min(startUbs[i], startUbs[i + 1] - cards[i].getLB());
+                startLbs[i] = Math.max(startLbs[i], startLbs[i + 1] - cards[i].getUB());
+                if (startLbs[i] > startUbs[i]) {
+                    contradiction(sets[i], "Unsorted");
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                cards[i].updateLowerBound(startLbs[i + 1] - startUbs[i], aCause);
+                cards[i].updateUpperBound(startUbs[i + 1] - startLbs[i], aCause);
+
+                // The set is inside [startLbs[i], startUbs[i + 1]).
+                int envLow = envLows[i].get();
+                int envHigh = envHighs[i].get();
+                int newEnvLow = Math.min(Math.max(envLow, startLbs[i]), envHigh);
+                int newEnvHigh = Math.max(Math.min(envHigh, startUbs[i + 1]), newEnvLow);
+                if (envLow < newEnvLow || newEnvHigh < envHigh) {
+                    removeFromEnvelope(i, envLow, newEnvLow);
+                    removeFromEnvelope(i, newEnvHigh, envHigh);
+                    envLows[i].set(newEnvLow);
+                    envHighs[i].set(newEnvHigh);
+                }
+
+                // The set contains [startUbs[i], startLbs[i + 1]).
+                int mandatoryLow = startUbs[i];
+                int mandatoryHigh = startLbs[i + 1];
+                if (mandatoryLow < mandatoryHigh) {
+                    int oldMandatoryLow = mandatoryLows[i].get();
+                    int oldMandatoryHigh = mandatoryHighs[i].get();
+                    if (oldMandatoryLow >= oldMandatoryHigh) {
+                        changed |= addToKernel(i, mandatoryLow, mandatoryHigh);
+                    } else {
+                        assert mandatoryLow <= oldMandatoryLow;
+                        assert mandatoryHigh >= oldMandatoryHigh;
+                        changed |= addToKernel(i, mandatoryLow, oldMandatoryLow);
+                        changed |= addToKernel(i, oldMandatoryHigh, mandatoryHigh);
+                    }
+                    mandatoryLows[i].set(mandatoryLow);
+                    mandatoryHighs[i].set(mandatoryHigh);
+                }
+            }
+        } while (changed);
     }
 
     @Override
     public void propagate(int evtmask) throws ContradictionException {
-        // Right now, it don't does a very simple propagation. It does not
-        // enforce sorted sets by itself, requires PropSortedSetsCard in conjunction.
-        // Can make it better if necessary but might turn out slower.
         for (int i = 0; i < sets.length; i++) {
+            kerLows[i].set(Integer.MAX_VALUE);
+            kerHighs[i].set(Integer.MIN_VALUE);
             SetVar set = sets[i];
-            int cur = set.getKernelFirst();
-            if (cur != SetVar.END) {
-                for (int next = set.getKernelNext(); next != SetVar.END; next = set.getKernelNext()) {
-                    for (int j = cur + 1; j < next; j++) {
-                        set.addToKernel(j, aCause);
-                    }
-                }
+            for (int j = set.getKernelFirst(); j != SetVar.END; j = set.getKernelNext()) {
+                kernelAdded(i, j);
             }
         }
+        filter();
     }
 
     @Override
-    public void propagate(final int idxVarInProp, int mask) throws ContradictionException {
-        forcePropagate(EventType.FULL_PROPAGATION);
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (isSetVar(idxVarInProp)) {
+            final int id = getSetVarIndex(idxVarInProp);
+            setsD[id].freeze();
+            setsD[id].forEach(new IntProcedure() {
+                @Override
+                public void execute(int setKer) throws ContradictionException {
+                    kernelAdded(id, setKer);
+                }
+            }, EventType.ADD_TO_KER);
+            setsD[id].forEach(new IntProcedure() {
+                @Override
+                public void execute(int setEnv) throws ContradictionException {
+                    envelopeRemoved(id, setEnv);
+                }
+            }, EventType.REMOVE_FROM_ENVELOPE);
+            setsD[id].unfreeze();
+        }
+        filter();
     }
 
     @Override
     public ESat isEntailed() {
-        for (int i = 0; i < sets.length; i++) {
+        int low = 0;
+        int high = 0;
+
+        for (int i = 0; i < cards.length; i++) {
+            IntVar card = cards[i];
+            int newLow = low + card.getLB();
+            int newHigh = high + card.getUB();
             SetVar set = sets[i];
-            int cur = set.getKernelFirst();
-            if (cur != SetVar.END) {
-                for (int next = set.getKernelNext(); next != SetVar.END; next = set.getKernelNext()) {
-                    for (int j = cur + 1; cur < next; cur++) {
-                        if (!set.envelopeContains(j)) {
-                            return ESat.FALSE;
-                        }
-                    }
+            int kerLow = Integer.MAX_VALUE;
+            int kerHigh = Integer.MIN_VALUE;
+            for (int j = set.getKernelFirst(); j != SetVar.END; j = set.getKernelNext()) {
+                if (j < low || j >= newHigh) {
+                    return ESat.FALSE;
+                }
+                kerLow = Math.min(kerLow, j);
+                kerHigh = Math.max(kerHigh, j);
+            }
+            for (int j = kerLow + 1; j < kerHigh; j++) {
+                if (!set.envelopeContains(j)) {
+                    return ESat.FALSE;
+                }
+            }
+            for (int j = high; j < newLow; j++) {
+                if (!set.envelopeContains(j)) {
+                    return ESat.FALSE;
                 }
             }
+            low = newLow;
+            high = newHigh;
         }
+
         return isCompletelyInstantiated() ? ESat.TRUE : ESat.UNDEFINED;
     }
 
     @Override
     public String toString() {
-        return "sortedSets(" + Arrays.toString(sets) + ")";
+        return "sortedSets(" + Arrays.toString(sets) + " || " + Arrays.toString(cards) + ")";
     }
 }
@@ -97,6 +97,22 @@ public class PropUtil {
         return iterate;
     }
 
+    /**
+     * Enumerate the kernel of a set variable into a buffer. Propagators can
+     * reuse the same buffer on every propagation to avoid allocating.
+     *
+     * @param set the set variable
+     * @param buffer the destination, at least as large as the kernel
+     * @return the size of the kernel
+     */
+    public static int iterateKer(SetVar set, int[] buffer) {
+        int count = 0;
+        for (int i = set.getKernelFirst(); i != SetVar.END; i = set.getKernelNext()) {
+            buffer[count++] = i;
+        }
+        return count;
+    }
+
     /**
      * Checks if at least one of the integer's domain contains a value.
      *
@@ -295,7 +311,8 @@ public class PropUtil {
      * otherwise
      */
     public static boolean isEnvIntersectKer(SetVar i1, SetVar i2) {
-        if (i1.getEnvelopeSize() < i2.getEnvelopeSize()) {
+        // Iterate over the smaller side, the other side is only probed.
+        if (i1.getEnvelopeSize() < i2.getKernelSize()) {
             for (int i = i1.getEnvelopeFirst(); i != SetVar.END; i = i1.getEnvelopeNext()) {
                 if (i2.kernelContains(i)) {
                     return true;
@@ -470,6 +487,9 @@ public class PropUtil {
      * otherwise
      */
     public static boolean isKerSubsetDom(SetVar sub, IntVar sup) {
+        if (sub.getKernelSize() > sup.getDomainSize()) {
+            return false;
+        }
         for (int i = sub.getKernelFirst(); i != SetVar.END; i = sub.getKernelNext()) {
             if (!sup.contains(i)) {
                 return false;
@@ -487,6 +507,9 @@ public class PropUtil {
      * otherwise
      */
     public static boolean isKerSubsetEnv(SetVar sub, SetVar sup) {
+        if (sub.getKernelSize() > sup.getEnvelopeSize()) {
+            return false;
+        }
         for (int i = sub.getKernelFirst(); i != SetVar.END; i = sub.getKernelNext()) {
             if (!sup.envelopeContains(i)) {
                 return false;
@@ -504,7 +527,9 @@ public class PropUtil {
      * otherwise
      */
     public static boolean isKerSubsetKer(SetVar sub, SetVar sup) {
-
+        if (sub.getKernelSize() > sup.getKernelSize()) {
+            return false;
+        }
         for (int i = sub.getKernelFirst(); i != SetVar.END; i = sub.getKernelNext()) {
             if (!sup.kernelContains(i)) {
                 return false;
@@ -1,14 +1,15 @@
 package org.clafer.collection;
 
-import gnu.trove.iterator.TObjectIntIterator;
-import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
+ * Union-find over arbitrary data. Each data is given a dense id and the sets
+ * are maintained by an {@link IntDisjointSets}.
  *
  * @param <V> the type of the data
  * @author jimmy
@@ -16,65 +17,96 @@ import java.util.Set;
 public class DisjointSets<V> {
 
     private final TObjectIntHashMap<V> nodes = new TObjectIntHashMap<>(16, 0.5f, -1);
-    private final TIntArrayList parents = new TIntArrayList(16);
+    private final List<V> keys = new ArrayList<>();
+    private final IntDisjointSets sets = new IntDisjointSets();
 
     private int getNode(V i) {
         int n = nodes.size();
         int v = nodes.putIfAbsent(i, n);
         if (v == -1) {
-            parents.add(n);
-            assert nodes.size() == parents.size();
+            keys.add(i);
+            sets.add();
+            assert nodes.size() == sets.size();
             return n;
         }
         return v;
     }
 
-    private int find(int n) {
-        int p = parents.get(n);
-        if (n == p) {
-            return n;
-        }
-        p = find(p);
-        parents.set(n, p);
-        return p;
-    }
-
-    private int find(V i) {
-        return find(getNode(i));
-    }
-
     public boolean connected(V i1, V i2) {
-        return find(i1) == find(i2);
+        return sets.connected(getNode(i1), getNode(i2));
     }
 
     public void union(V i1, V i2) {
-        int r1 = find(i1);
-        int r2 = find(i2);
+        sets.union(getNode(i1), getNode(i2));
+    }
 
-        if (r1 != r2) {
-            parents.set(r2, r1);
-        }
+    /**
+     * Group the data by their set without building a collection for every
+     * component. The components and the data inside them are in the order the
+     * data was first seen.
+     *
+     * @return the connected components
+     */
+    public Components<V> components() {
+        return new Components<>(sets.connectedComponents(), keys);
     }
 
     public Collection<Set<V>> connectedComponents() {
-        TIntObjectHashMap<Set<V>> components = new TIntObjectHashMap<>();
-        TObjectIntIterator<V> iter = nodes.iterator();
-        for (int i = nodes.size(); i-- > 0;) {
-            iter.advance();
-            V key = iter.key();
-            int group = find(iter.value());
-            Set<V> component = components.get(group);
-            if (component == null) {
-                component = new HashSet<>();
-                components.put(group, component);
+        Components<V> components = components();
+        Set<Set<V>> result = new HashSet<>(components.size() * 2);
+        for (int c = 0; c < components.size(); c++) {
+            Set<V> component = new HashSet<>();
+            for (int i = 0; i < components.size(c); i++) {
+                component.add(components.get(c, i));
             }
-            component.add(key);
+            result.add(component);
         }
-        return components.valueCollection();
+        return result;
     }
 
     @Override
     public String toString() {
         return connectedComponents().toString();
     }
+
+    /**
+     * The connected components.
+     *
+     * @param <V> the type of the data
+     * @see IntDisjointSets.Components
+     */
+    public static class Components<V> {
+
+        private final IntDisjointSets.Components components;
+        private final List<V> keys;
+
+        Components(IntDisjointSets.Components components, List<V> keys) {
+            this.components = components;
+            this.keys = keys;
+        }
+
+        /**
+         * @return the number of components
+         */
+        public int size() {
+            return components.size();
+        }
+
+        /**
+         * @param component the component
+         * @return the number of data in the component
+         */
+        public int size(int component) {
+            return components.size(component);
+        }
+
+        /**
+         * @param component the component
+         * @param index the index of the data inside the component
+         * @return the data
+         */
+        public V get(int component, int index) {
+            return keys.get(components.get(component, index));
+        }
+    }
 }
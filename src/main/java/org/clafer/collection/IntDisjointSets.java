@@ -0,0 +1,191 @@
+package org.clafer.collection;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over the dense ids {0, 1, ..., n-1}, with union by rank and path
+ * compression. The forest is stored in primitive arrays so unions and finds do
+ * not allocate.
+ *
+ * @author jimmy
+ */
+public class IntDisjointSets {
+
+    private int[] parents;
+    private byte[] ranks;
+    private int size = 0;
+
+    public IntDisjointSets() {
+        this(16);
+    }
+
+    public IntDisjointSets(int capacity) {
+        this.parents = new int[Math.max(capacity, 1)];
+        this.ranks = new byte[parents.length];
+    }
+
+    /**
+     * @return the number of ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a new id in its own singleton set.
+     *
+     * @return the new id
+     */
+    public int add() {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size * 2);
+            ranks = Arrays.copyOf(ranks, size * 2);
+        }
+        parents[size] = size;
+        return size++;
+    }
+
+    /**
+     * @param i the id
+     * @return the representative of the set containing the id
+     */
+    public int find(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(Integer.toString(i));
+        }
+        int root = i;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[i] != root) {
+            int next = parents[i];
+            parents[i] = root;
+            i = next;
+        }
+        return root;
+    }
+
+    public boolean connected(int i1, int i2) {
+        return find(i1) == find(i2);
+    }
+
+    /**
+     * Merge the sets containing the two ids.
+     *
+     * @param i1 the first id
+     * @param i2 the second id
+     * @return {@code true} if the two ids were in different sets,
+     * {@code false} otherwise
+     */
+    public boolean union(int i1, int i2) {
+        int r1 = find(i1);
+        int r2 = find(i2);
+        if (r1 == r2) {
+            return false;
+        }
+        if (ranks[r1] < ranks[r2]) {
+            parents[r1] = r2;
+        } else {
+            parents[r2] = r1;
+            if (ranks[r1] == ranks[r2]) {
+                ranks[r1]++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Group the ids by their set. The components are ordered by their smallest
+     * id, and the ids in each component are in increasing order.
+     *
+     * @return the connected components
+     */
+    public Components connectedComponents() {
+        // Number the components in order of their smallest id.
+        int[] componentOf = new int[size];
+        int[] rootComponent = new int[size];
+        Arrays.fill(rootComponent, -1);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int root = find(i);
+            if (rootComponent[root] == -1) {
+                rootComponent[root] = count++;
+            }
+            componentOf[i] = rootComponent[root];
+        }
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[componentOf[i] + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] members = new int[size];
+        int[] next = Arrays.copyOf(offsets, count);
+        for (int i = 0; i < size; i++) {
+            members[next[componentOf[i]]++] = i;
+        }
+        return new Components(offsets, members);
+    }
+
+    @Override
+    public String toString() {
+        return connectedComponents().toString();
+    }
+
+    /**
+     * The connected components, stored contiguously. The ids of component
+     * {@code c} are {@code members[offsets[c]]} up to
+     * {@code members[offsets[c + 1]]}.
+     */
+    public static class Components {
+
+        private final int[] offsets;
+        private final int[] members;
+
+        Components(int[] offsets, int[] members) {
+            this.offsets = offsets;
+            this.members = members;
+        }
+
+        /**
+         * @return the number of components
+         */
+        public int size() {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @param component the component
+         * @return the number of ids in the component
+         */
+        public int size(int component) {
+            return offsets[component + 1] - offsets[component];
+        }
+
+        /**
+         * @param component the component
+         * @param index the index of the id inside the component
+         * @return the id
+         */
+        public int get(int component, int index) {
+            if (index < 0 || index >= size(component)) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return members[offsets[component] + index];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append('[');
+            for (int c = 0; c < size(); c++) {
+                if (c > 0) {
+                    result.append(", ");
+                }
+                result.append(Arrays.toString(Arrays.copyOfRange(members, offsets[c], offsets[c + 1])));
+            }
+            return result.append(']').toString();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.clafer.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.analysis.AbstractOffsetAnalyzer;
+import org.clafer.ast.analysis.Analysis;
+import org.clafer.ast.compiler.AstCompiler;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.common.UnsatisfiableException;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrExpr;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrModuleReader;
+import org.clafer.ir.IrModuleWriter;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrStringVar;
+import org.clafer.ir.compiler.IrCompiler;
+import org.clafer.ir.compiler.IrOptimizedModule;
+import org.clafer.ir.compiler.IrSolutionMap;
+import org.clafer.objective.Objective;
+import org.clafer.scope.Scopable;
+import org.clafer.scope.Scope;
+import solver.Solver;
+
+/**
+ * Compiles like {@link ClaferCompiler} but keeps the optimized IR on disk.
+ * Compiling a model equal to one compiled before, with the same scope,
+ * objectives, and options, skips the analysis, the AST compilation, and the
+ * IR optimizations, and only posts the IR to a new solver. Models are compared
+ * by structure so the model does not need to be the same object.
+ * <p>
+ * The cache is bounded in size and evicts the least recently used
+ * compilations. Several processes can share the same directory. A cache that
+ * cannot be read or written only misses, it never fails the compilation.
+ * </p>
+ * <p>
+ * On a hit, the analysis in the solution map only knows the scope and the
+ * offsets of the abstract Clafers, which is everything needed to read
+ * instances.
+ * </p>
+ * <p>
+ * Usage:
+ * <pre>
+ * ClaferCache cache = new ClaferCache(Paths.get("clafer-cache"), 1 &lt;&lt; 30);
+ * ClaferSolver solver = cache.compile(model, scope);
+ * </pre>
+ * </p>
+ *
+ * @author jimmy
+ */
+public class ClaferCache {
+
+    // Change whenever the layout of an entry changes.
+    private static final int EntryVersion = 3;
+    private final DiskCache store;
+
+    /**
+     * @param directory the directory of the cache, created if it does not
+     * exist
+     * @param maxBytes the maximum total size of the entries
+     * @throws IOException if the directory cannot be created
+     */
+    public ClaferCache(Path directory, long maxBytes) throws IOException {
+        this.store = new DiskCache(directory, maxBytes);
+    }
+
+    public ClaferSolver compile(AstModel in, Scopable scope) {
+        return compile(in, scope, ClaferOptions.Default);
+    }
+
+    public ClaferSolver compile(AstModel in, Scopable scope, ClaferOptions options) {
+        Compilation compilation = compile(in, scope.toScope(), new Objective[0], options);
+        if (compilation.isUnsat()) {
+            return new ClaferSolver();
+        }
+        try {
+            Solver solver = new Solver();
+            IrSolutionMap irSolution = compilation.post(solver, options);
+            return ClaferCompiler.solver(in, solver, compilation.getAstSolution(), irSolution, options);
+        } catch (UnsatisfiableException e) {
+            return new ClaferSolver();
+        }
+    }
+
+    public ClaferOptimizer compile(AstModel in, Scopable scope, Objective... objectives) {
+        return compile(in, scope, objectives, ClaferOptions.Default);
+    }
+
+    public ClaferOptimizer compile(AstModel in, Scopable scope, Objective[] objectives, ClaferOptions options) {
+        Compilation compilation = compile(in, scope.toScope(), objectives, options);
+        if (compilation.isUnsat()) {
+            return new ClaferUnsatOptimizer();
+        }
+        try {
+            Solver solver = new Solver();
+            IrSolutionMap irSolution = compilation.post(solver, options);
+            return ClaferCompiler.optimizer(in, objectives, solver, compilation.getAstSolution(), irSolution, options);
+        } catch (UnsatisfiableException e) {
+            return new ClaferUnsatOptimizer();
+        }
+    }
+
+    private Compilation compile(AstModel in, Scope scope, Objective[] objectives, ClaferOptions options) {
+        String key = CompilationFingerprint.of(in, scope, objectives, options);
+        try {
+            byte[] entry = store.get(key);
+            if (entry != null) {
+                return read(entry, in, objectives);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or unreadable, compile again and overwrite the entry.
+        }
+
+        Compilation compilation;
+        try {
+            IrModule module = new IrModule();
+            AstSolutionMap astSolution = AstCompiler.compile(in, scope, objectives, module,
+                    options.isFullSymmetryBreaking());
+            compilation = new Compilation(astSolution,
+                    IrCompiler.optimize(module, options.getPassManager()));
+        } catch (UnsatisfiableException e) {
+            compilation = Compilation.Unsat;
+        }
+        try {
+            store.put(key, write(compilation, in, objectives));
+        } catch (IOException e) {
+            // The next compilation misses again.
+        }
+        return compilation;
+    }
+
+    private static Map<AstClafer, Integer> index(List<AstClafer> clafers) {
+        Map<AstClafer, Integer> index = new HashMap<>(clafers.size() * 2);
+        for (AstClafer clafer : clafers) {
+            index.put(clafer, index.size());
+        }
+        return index;
+    }
+
+    private static <T> int indexOf(Map<T, Integer> index, T t) {
+        Integer i = index.get(t);
+        if (i == null) {
+            throw new IllegalStateException(t + " is not part of the model");
+        }
+        return i.intValue();
+    }
+
+    private static <T> T get(List<T> list, int index) throws IOException {
+        if (index < 0 || index >= list.size()) {
+            throw new IOException("Index " + index + " out of bounds");
+        }
+        return list.get(index);
+    }
+
+    private static byte[] write(Compilation compilation, AstModel in, Objective[] objectives) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Everything shares the same writer so the variables are shared after
+        // reading.
+        IrModuleWriter writer = new IrModuleWriter(Channels.newChannel(bytes));
+        writer.writeInt(EntryVersion);
+        writer.writeBoolean(compilation.isUnsat());
+        if (compilation.isUnsat()) {
+            writer.flush();
+            return bytes.toByteArray();
+        }
+        List<AstClafer> clafers = AstUtil.getClafers(in);
+        Map<AstClafer, Integer> claferIndex = index(clafers);
+        Map<AstConstraint, Integer> constraintIndex = new HashMap<>();
+        for (AstConstraint constraint : AstUtil.getNestedConstraints(in)) {
+            constraintIndex.put(constraint, constraintIndex.size());
+        }
+
+        IrOptimizedModule optimized = compilation.getOptimized();
+        writer.writeModule(optimized.getModule());
+        writeMap(optimized.getCoalescedIntVars(), writer);
+        writeMap(optimized.getCoalescedSetVars(), writer);
+        writeMap(optimized.getDefinedIntVars(), writer);
+
+        AstSolutionMap astSolution = compilation.getAstSolution();
+        writer.writeInt(astSolution.getSiblingVarsMap().size());
+        for (Entry<AstClafer, IrSetVar[]> entry : astSolution.getSiblingVarsMap().entrySet()) {
+            writer.writeInt(indexOf(claferIndex, entry.getKey()));
+            writer.writeExprs(entry.getValue());
+        }
+        writer.writeInt(astSolution.getRefVarsMap().size());
+        for (Entry<AstRef, IrIntVar[]> entry : astSolution.getRefVarsMap().entrySet()) {
+            writer.writeInt(indexOf(claferIndex, entry.getKey().getSourceType()));
+            writer.writeExprs(entry.getValue());
+        }
+        writer.writeInt(astSolution.getRefStringsMap().size());
+        for (Entry<AstRef, IrStringVar[]> entry : astSolution.getRefStringsMap().entrySet()) {
+            writer.writeInt(indexOf(claferIndex, entry.getKey().getSourceType()));
+            writer.writeExprs(entry.getValue());
+        }
+        writer.writeInt(astSolution.getSoftVarsMap().size());
+        for (Entry<AstConstraint, IrBoolVar> entry : astSolution.getSoftVarsMap().entrySet()) {
+            writer.writeInt(indexOf(constraintIndex, entry.getKey()));
+            writer.writeExpr(entry.getValue());
+        }
+        writer.writeExpr(astSolution.getSumSoftVar());
+        for (Objective objective : objectives) {
+            writer.writeExpr(astSolution.getObjectiveVar(objective));
+        }
+
+        Analysis analysis = astSolution.getAnalysis();
+        Scope scope = analysis.getScope();
+        for (AstClafer clafer : clafers) {
+            writer.writeInt(scope.getScope(clafer));
+        }
+        writer.writeInt(scope.getDefaultScope());
+        writer.writeInt(scope.getIntLow());
+        writer.writeInt(scope.getIntHigh());
+        writer.writeInt(scope.getStringLength());
+        writer.writeInt(scope.getCharLow());
+        writer.writeInt(scope.getCharHigh());
+        writer.writeInt(analysis.getAbstractClafers().size());
+        for (AstAbstractClafer abstractClafer : analysis.getAbstractClafers()) {
+            writer.writeInt(indexOf(claferIndex, abstractClafer));
+            List<AstClafer> subs = analysis.getOffsets(abstractClafer).getSubs();
+            writer.writeInt(subs.size());
+            for (AstClafer sub : subs) {
+                writer.writeInt(indexOf(claferIndex, sub));
+            }
+        }
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <K extends IrExpr, V extends IrExpr> void writeMap(Map<K, V> map, IrModuleWriter writer) throws IOException {
+        writer.writeInt(map.size());
+        for (Entry<K, V> entry : map.entrySet()) {
+            writer.writeExpr(entry.getKey());
+            writer.writeExpr(entry.getValue());
+        }
+    }
+
+    private static Compilation read(byte[] entry, AstModel in, Objective[] objectives) throws IOException {
+        IrModuleReader reader = new IrModuleReader(ByteBuffer.wrap(entry));
+        int version = reader.readInt();
+        if (version != EntryVersion) {
+            throw new IOException("Unsupported entry version " + version);
+        }
+        if (reader.readBoolean()) {
+            return Compilation.Unsat;
+        }
+        List<AstClafer> clafers = AstUtil.getClafers(in);
+        List<AstConstraint> constraints = AstUtil.getNestedConstraints(in);
+
+        IrModule module = reader.readModule();
+        Map<IrIntVar, IrIntVar> coalescedIntVars = readMap(IrIntVar.class, IrIntVar.class, reader);
+        Map<IrSetVar, IrSetVar> coalescedSetVars = readMap(IrSetVar.class, IrSetVar.class, reader);
+        Map<IrIntVar, IrIntExpr> definedIntVars = readMap(IrIntVar.class, IrIntExpr.class, reader);
+
+        int size = reader.readInt();
+        Map<AstClafer, IrSetVar[]> siblingVars = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            siblingVars.put(get(clafers, reader.readInt()), reader.readExprs(IrSetVar.class));
+        }
+        size = reader.readInt();
+        Map<AstRef, IrIntVar[]> refVars = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            refVars.put(readRef(clafers, reader), reader.readExprs(IrIntVar.class));
+        }
+        size = reader.readInt();
+        Map<AstRef, IrStringVar[]> refStrings = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            refStrings.put(readRef(clafers, reader), reader.readExprs(IrStringVar.class));
+        }
+        size = reader.readInt();
+        Map<AstConstraint, IrBoolVar> softVars = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            softVars.put(get(constraints, reader.readInt()), reader.readExpr(IrBoolVar.class));
+        }
+        IrIntVar sumSoftVar = reader.readExpr(IrIntVar.class);
+        Map<Objective, IrIntVar> objectiveVars = new HashMap<>(objectives.length * 2);
+        for (Objective objective : objectives) {
+            objectiveVars.put(objective, reader.readExpr(IrIntVar.class));
+        }
+
+        Map<AstClafer, Integer> scopes = new HashMap<>(clafers.size() * 2);
+        for (AstClafer clafer : clafers) {
+            scopes.put(clafer, reader.readInt());
+        }
+        Scope scope = new Scope(scopes, reader.readInt(), reader.readInt(), reader.readInt(),
+                reader.readInt(), (char) reader.readInt(), (char) reader.readInt());
+        size = reader.readInt();
+        Map<AstAbstractClafer, List<AstClafer>> layouts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            AstClafer abstractClafer = get(clafers, reader.readInt());
+            if (!(abstractClafer instanceof AstAbstractClafer)) {
+                throw new IOException(abstractClafer + " is not abstract");
+            }
+            int subCount = reader.readInt();
+            List<AstClafer> subs = new ArrayList<>();
+            for (int j = 0; j < subCount; j++) {
+                subs.add(get(clafers, reader.readInt()));
+            }
+            layouts.put((AstAbstractClafer) abstractClafer, subs);
+        }
+        Analysis analysis = Analysis.analyze(in, scope, objectives, new AbstractOffsetAnalyzer(layouts));
+
+        AstSolutionMap astSolution = new AstSolutionMap(in, siblingVars, refVars, refStrings,
+                softVars, sumSoftVar, objectiveVars, analysis);
+        return new Compilation(astSolution,
+                new IrOptimizedModule(coalescedIntVars, coalescedSetVars, definedIntVars, module));
+    }
+
+    private static AstRef readRef(List<AstClafer> clafers, IrModuleReader reader) throws IOException {
+        AstClafer source = get(clafers, reader.readInt());
+        if (!source.hasRef()) {
+            throw new IOException(source + " has no reference");
+        }
+        return source.getRef();
+    }
+
+    private static <K extends IrExpr, V extends IrExpr> Map<K, V> readMap(
+            Class<K> keyType, Class<V> valueType, IrModuleReader reader) throws IOException {
+        int size = reader.readInt();
+        Map<K, V> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            K key = reader.readExpr(keyType);
+            map.put(key, reader.readExpr(valueType));
+        }
+        return map;
+    }
+
+    /**
+     * Everything compiled before the IR is posted to a solver.
+     */
+    private static class Compilation {
+
+        // The model is unsatisfiable before reaching the solver.
+        static final Compilation Unsat = new Compilation(null, null);
+        private final AstSolutionMap astSolution;
+        private final IrOptimizedModule optimized;
+
+        Compilation(AstSolutionMap astSolution,
+                IrOptimizedModule optimized) {
+            this.astSolution = astSolution;
+            this.optimized = optimized;
+        }
+
+        boolean isUnsat() {
+            return this == Unsat;
+        }
+
+        AstSolutionMap getAstSolution() {
+            return astSolution;
+        }
+
+        IrOptimizedModule getOptimized() {
+            return optimized;
+        }
+
+        IrSolutionMap post(Solver solver, ClaferOptions options) {
+            return IrCompiler.compileOptimized(optimized, solver,
+                    options.isProfiling(), options.getPropagationSchedule(), options.getBoundedDomainThreshold());
+        }
+    }
+}
@@ -17,9 +17,7 @@ import org.clafer.collection.Either;
 import org.clafer.collection.Maybe;
 import org.clafer.common.UnsatisfiableException;
 import org.clafer.common.Util;
-import org.clafer.graph.GraphUtil;
-import org.clafer.graph.KeyGraph;
-import org.clafer.graph.Vertex;
+import org.clafer.graph.IndexedGraph;
 import org.clafer.ir.IrIntConstant;
 import org.clafer.ir.IrIntVar;
 import org.clafer.ir.IrModule;
@@ -48,27 +46,27 @@ public class ClaferCompiler {
     }
 
     private static SetVar[] getSetVars(AstModel model, ClaferSolutionMap map) {
-        KeyGraph<AstClafer> dependency = new KeyGraph<>();
+        IndexedGraph<AstClafer> dependency = new IndexedGraph<>();
         for (AstAbstractClafer abstractClafer : model.getAbstracts()) {
-            Vertex<AstClafer> node = dependency.getVertex(abstractClafer);
+            dependency.getVertex(abstractClafer);
             for (AstClafer sub : abstractClafer.getSubs()) {
-                node.addNeighbour(dependency.getVertex(sub));
+                dependency.addEdge(abstractClafer, sub);
             }
             if (abstractClafer.hasRef()) {
-                node.addNeighbour(dependency.getVertex(abstractClafer.getRef().getTargetType()));
+                dependency.addEdge(abstractClafer, abstractClafer.getRef().getTargetType());
             }
         }
         for (AstConcreteClafer concreteClafer : AstUtil.getConcreteClafers(model)) {
-            Vertex<AstClafer> node = dependency.getVertex(concreteClafer);
+            dependency.getVertex(concreteClafer);
             if (concreteClafer.hasParent()) {
-                node.addNeighbour(dependency.getVertex(concreteClafer.getParent()));
+                dependency.addEdge(concreteClafer, concreteClafer.getParent());
             }
             if (concreteClafer.hasRef()) {
-                node.addNeighbour(dependency.getVertex(concreteClafer.getRef().getTargetType()));
+                dependency.addEdge(concreteClafer, concreteClafer.getRef().getTargetType());
             }
         }
         List<SetVar> vars = new ArrayList<>();
-        for (Set<AstClafer> component : GraphUtil.computeStronglyConnectedComponents(dependency)) {
+        for (Set<AstClafer> component : dependency.computeStronglyConnectedComponents()) {
             for (AstClafer clafer : component) {
                 if (clafer instanceof AstConcreteClafer) {
                     for (IrSetVar setVar : map.getAstSolution().getSiblingVars(clafer)) {
@@ -162,18 +160,25 @@ public class ClaferCompiler {
 
             AstSolutionMap astSolution = AstCompiler.compile(in, scope.toScope(), module,
                     options.isFullSymmetryBreaking());
-            IrSolutionMap irSolution = IrCompiler.compile(module, solver, options.isFullOptimizations());
-            ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
-
-            set(solver,
-                    setStrategy(getSetVars(in, solution), options),
-                    firstFailInDomainMin(getIntVars(in, solution)));
-            return new ClaferSolver(solver, solution);
+            IrSolutionMap irSolution = IrCompiler.compile(module, solver,
+                    options.getPassManager(), options.isProfiling(), options.getPropagationSchedule(),
+                    options.getBoundedDomainThreshold());
+            return solver(in, solver, astSolution, irSolution, options);
         } catch (UnsatisfiableException e) {
             return new ClaferSolver();
         }
     }
 
+    static ClaferSolver solver(AstModel in, Solver solver,
+            AstSolutionMap astSolution, IrSolutionMap irSolution, ClaferOptions options) {
+        ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
+
+        set(solver,
+                setStrategy(getSetVars(in, solution), options),
+                firstFailInDomainMin(getIntVars(in, solution)));
+        return new ClaferSolver(solver, solution);
+    }
+
     public static ClaferOptimizer compile(AstModel in, Scopable scope, Objective... objectives) {
         return compile(in, scope, objectives, ClaferOptions.Default);
     }
@@ -186,30 +191,37 @@ public class ClaferCompiler {
             AstSolutionMap astSolution = AstCompiler.compile(
                     in, scope.toScope(), objectives, module,
                     options.isFullSymmetryBreaking());
-            IrSolutionMap irSolution = IrCompiler.compile(module, solver, options.isFullOptimizations());
-            ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
+            IrSolutionMap irSolution = IrCompiler.compile(module, solver,
+                    options.getPassManager(), options.isProfiling(), options.getPropagationSchedule(),
+                    options.getBoundedDomainThreshold());
+            return optimizer(in, objectives, solver, astSolution, irSolution, options);
+        } catch (UnsatisfiableException e) {
+            return new ClaferUnsatOptimizer();
+        }
+    }
 
-            IrIntVar[] objectiveIrVars = new IrIntVar[objectives.length];
-            for (int i = 0; i < objectiveIrVars.length; i++) {
-                objectiveIrVars[i] = astSolution.getObjectiveVar(objectives[i]);
-            }
-            Either<Integer, IntVar>[] objectiveVars = irSolution.getVars(objectiveIrVars);
+    static ClaferOptimizer optimizer(AstModel in, Objective[] objectives, Solver solver,
+            AstSolutionMap astSolution, IrSolutionMap irSolution, ClaferOptions options) {
+        ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
 
-            boolean[] maximizes = new boolean[objectives.length];
-            for (int i = 0; i < maximizes.length; i++) {
-                maximizes[i] = objectives[i].isMaximize();
-            }
+        IrIntVar[] objectiveIrVars = new IrIntVar[objectives.length];
+        for (int i = 0; i < objectiveIrVars.length; i++) {
+            objectiveIrVars[i] = astSolution.getObjectiveVar(objectives[i]);
+        }
+        Either<Integer, IntVar>[] objectiveVars = irSolution.getVars(objectiveIrVars);
 
-            set(solver,
-                    setStrategy(getSetVars(in, solution), options),
-                    //                firstFailInDomainMax(objectiveVars),
-                    firstFailInDomainMin(getIntVars(in, solution)));
-            return maximizes.length == 1
-                    ? new ClaferSingleObjectiveOptimizer(solver, solution, maximizes[0], objectiveVars[0])
-                    : new ClaferMultiObjectiveOptimizerGIA(solver, solution, maximizes, objectiveVars);
-        } catch (UnsatisfiableException e) {
-            return new ClaferUnsatOptimizer();
+        boolean[] maximizes = new boolean[objectives.length];
+        for (int i = 0; i < maximizes.length; i++) {
+            maximizes[i] = objectives[i].isMaximize();
         }
+
+        set(solver,
+                setStrategy(getSetVars(in, solution), options),
+                //                firstFailInDomainMax(objectiveVars),
+                firstFailInDomainMin(getIntVars(in, solution)));
+        return maximizes.length == 1
+                ? new ClaferSingleObjectiveOptimizer(solver, solution, maximizes[0], objectiveVars[0])
+                : new ClaferMultiObjectiveOptimizerGIA(solver, solution, maximizes, objectiveVars);
     }
 
     public static ClaferUnsat compileUnsat(AstModel in, Scopable scope) {
@@ -223,7 +235,9 @@ public class ClaferCompiler {
         AstSolutionMap astSolution = AstCompiler.compile(in, scope.toScope(), module,
                 Util.cons(new UnsatAnalyzer(), AstCompiler.DefaultAnalyzers),
                 options.isFullSymmetryBreaking());
-        IrSolutionMap irSolution = IrCompiler.compile(module, solver, options.isFullOptimizations());
+        IrSolutionMap irSolution = IrCompiler.compile(module, solver,
+                options.getPassManager(), options.isProfiling(), options.getPropagationSchedule(),
+                options.getBoundedDomainThreshold());
         ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
 
         set(solver,
@@ -1,5 +1,11 @@
 package org.clafer.compiler;
 
+import java.util.Arrays;
+import org.clafer.choco.constraint.PropagationSchedule;
+import org.clafer.common.Check;
+import org.clafer.ir.compiler.IrPass;
+import org.clafer.ir.compiler.IrPassManager;
+
 /**
  * Defines the options for the Clafer compiler. Start with the default options
  * and configure it to your needs. For example,
@@ -25,17 +31,53 @@ public class ClaferOptions {
      * false: full optimizations
      */
     private final boolean basicOptimizations;
+    /*
+     * true: profile the propagators
+     * false: no profiling
+     */
+    private final boolean profiling;
+    /*
+     * How the propagators are scheduled.
+     */
+    private final PropagationSchedule schedule;
+    /*
+     * Integer domains larger than this are bounded rather than enumerated.
+     * Integer.MAX_VALUE if every domain is enumerated.
+     */
+    private final int boundedDomainThreshold;
+    /*
+     * The enabled IR passes. null for the standard passes of the optimization
+     * level.
+     */
+    private final IrPass[] passes;
+    /*
+     * true: repeat the IR passes until the module stops changing
+     * false: run each IR pass once
+     */
+    private final boolean iteratePasses;
+    /**
+     * The bounded domain threshold used by {@link #boundedDomains()}. Not on
+     * by default, opt in once the propagators of the model handle bounded
+     * domains well.
+     */
+    public static final int DefaultBoundedDomainThreshold = 1 << 12;
     /**
      * Use the default options.
      */
-    public static ClaferOptions Optimized = new ClaferOptions(false, false, false);
-    public static ClaferOptions Basic = new ClaferOptions(false, true, true);
+    public static ClaferOptions Optimized = new ClaferOptions(false, false, false, false, PropagationSchedule.Default, Integer.MAX_VALUE, null, false);
+    public static ClaferOptions Basic = new ClaferOptions(false, true, true, false, PropagationSchedule.Default, Integer.MAX_VALUE, null, false);
     public static ClaferOptions Default = Optimized;
 
-    private ClaferOptions(boolean preferSmallerInstances, boolean basicSymmetryBreaking, boolean basicOptimizations) {
+    private ClaferOptions(boolean preferSmallerInstances, boolean basicSymmetryBreaking, boolean basicOptimizations, boolean profiling,
+            PropagationSchedule schedule, int boundedDomainThreshold, IrPass[] passes, boolean iteratePasses) {
         this.preferSmallerInstances = preferSmallerInstances;
         this.basicSymmetryBreaking = basicSymmetryBreaking;
         this.basicOptimizations = basicOptimizations;
+        this.profiling = profiling;
+        this.schedule = Check.notNull(schedule);
+        this.boundedDomainThreshold = boundedDomainThreshold;
+        this.passes = passes;
+        this.iteratePasses = iteratePasses;
     }
 
     public boolean isPreferSmallerInstances() {
@@ -47,11 +89,13 @@ public class ClaferOptions {
     }
 
     public ClaferOptions preferSmallerInstances() {
-        return new ClaferOptions(true, basicSymmetryBreaking, basicOptimizations);
+        return new ClaferOptions(true, basicSymmetryBreaking, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
     }
 
     public ClaferOptions preferLargerInstances() {
-        return new ClaferOptions(false, basicSymmetryBreaking, basicOptimizations);
+        return new ClaferOptions(false, basicSymmetryBreaking, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
     }
 
     public boolean isBasicSymmetryBreaking() {
@@ -63,11 +107,13 @@ public class ClaferOptions {
     }
 
     public ClaferOptions basicSymmetryBreaking() {
-        return new ClaferOptions(preferSmallerInstances, true, basicOptimizations);
+        return new ClaferOptions(preferSmallerInstances, true, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
     }
 
     public ClaferOptions fullSymmetryBreaking() {
-        return new ClaferOptions(preferSmallerInstances, false, basicOptimizations);
+        return new ClaferOptions(preferSmallerInstances, false, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
     }
 
     public boolean isBasicOptimizations() {
@@ -78,17 +124,191 @@ public class ClaferOptions {
         return !basicOptimizations;
     }
 
+    /**
+     * Run the standard basic IR passes. Replaces any passes enabled with
+     * {@link #passes}.
+     *
+     * @return the options with basic optimizations
+     */
     public ClaferOptions basicOptimizations() {
-        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, true);
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, true, profiling, schedule, boundedDomainThreshold,
+                null, iteratePasses);
     }
 
+    /**
+     * Run the standard full IR passes. Replaces any passes enabled with
+     * {@link #passes}.
+     *
+     * @return the options with full optimizations
+     */
     public ClaferOptions fullOptimizations() {
-        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, false);
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, false, profiling, schedule, boundedDomainThreshold,
+                null, iteratePasses);
+    }
+
+    /**
+     * @return {@code true} if only the passes enabled with {@link #passes}
+     * run, {@code false} if the standard passes of the optimization level run
+     */
+    public boolean isCustomPasses() {
+        return passes != null;
+    }
+
+    /**
+     * Run exactly these IR passes. A pass still runs after the enabled passes
+     * it depends on, otherwise the passes run in the given order.
+     *
+     * @param passes the enabled passes
+     * @return the options with the passes
+     * @see IrPass
+     */
+    public ClaferOptions passes(IrPass... passes) {
+        // Fail now rather than during compilation.
+        new IrPassManager(iteratePasses, passes);
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes.clone(), iteratePasses);
+    }
+
+    public boolean isIteratePasses() {
+        return iteratePasses;
+    }
+
+    /**
+     * Repeat the IR passes until the module stops changing, at most
+     * {@link IrPassManager#MaxRounds} times.
+     *
+     * @return the options that iterate the passes to a fixpoint
+     */
+    public ClaferOptions iteratePasses() {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, true);
+    }
+
+    public ClaferOptions runPassesOnce() {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule, boundedDomainThreshold,
+                passes, false);
+    }
+
+    /**
+     * @return the IR passes to run
+     */
+    public IrPassManager getPassManager() {
+        if (passes == null) {
+            IrPassManager standard = IrPassManager.standard(isFullOptimizations());
+            return iteratePasses ? new IrPassManager(true, standard.getPasses()) : standard;
+        }
+        return new IrPassManager(iteratePasses, passes);
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Record statistics about each posted propagator. Slows down the search.
+     *
+     * @return the options with profiling
+     * @see org.clafer.choco.constraint.PropagatorProfiler
+     */
+    public ClaferOptions profile() {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, true, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
+    }
+
+    public ClaferOptions noProfile() {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, false, schedule, boundedDomainThreshold,
+                passes, iteratePasses);
+    }
+
+    public boolean isPrioritizedPropagation() {
+        return !schedule.isDefault();
+    }
+
+    public boolean isDefaultPropagation() {
+        return schedule.isDefault();
+    }
+
+    public PropagationSchedule getPropagationSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Schedule the propagators for the Clafer encoding. The cheap structural
+     * propagators reach their fixpoint before the expensive ones run.
+     *
+     * @return the options with prioritized propagation
+     * @see PropagationSchedule#Clafer
+     */
+    public ClaferOptions prioritizedPropagation() {
+        return prioritizedPropagation(PropagationSchedule.Clafer);
+    }
+
+    /**
+     * Schedule the propagators with custom queue classes and coalescing.
+     *
+     * @param schedule the schedule
+     * @return the options with the schedule
+     */
+    public ClaferOptions prioritizedPropagation(PropagationSchedule schedule) {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule,
+                boundedDomainThreshold, passes, iteratePasses);
+    }
+
+    public ClaferOptions defaultPropagation() {
+        return prioritizedPropagation(PropagationSchedule.Default);
+    }
+
+    public boolean isBoundedDomains() {
+        return boundedDomainThreshold != Integer.MAX_VALUE;
+    }
+
+    public boolean isEnumeratedDomains() {
+        return boundedDomainThreshold == Integer.MAX_VALUE;
+    }
+
+    public int getBoundedDomainThreshold() {
+        return boundedDomainThreshold;
+    }
+
+    /**
+     * Integer variables with more values than the default threshold only keep
+     * track of their bounds. Saves memory for wide integer ranges.
+     *
+     * @return the options with bounded domains
+     */
+    public ClaferOptions boundedDomains() {
+        return boundedDomains(DefaultBoundedDomainThreshold);
+    }
+
+    /**
+     * Integer variables with more values than the threshold only keep track of
+     * their bounds.
+     *
+     * @param threshold the largest domain size for enumerated variables
+     * @return the options with bounded domains
+     */
+    public ClaferOptions boundedDomains(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive, not " + threshold);
+        }
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule,
+                threshold, passes, iteratePasses);
+    }
+
+    public ClaferOptions enumeratedDomains() {
+        return new ClaferOptions(preferSmallerInstances, basicSymmetryBreaking, basicOptimizations, profiling, schedule,
+                Integer.MAX_VALUE, passes, iteratePasses);
     }
 
     public String toString() {
         return (preferSmallerInstances ? "prefer smaller instances\n" : "prefer larger instances\n")
                 + (basicSymmetryBreaking ? "perform only basic symmetry breaking\n" : "perform full symmetry breaking\n")
-                + (basicOptimizations ? "perform only basic optimizations\n" : "perform full optimizations\n");
+                + (passes != null ? "run the passes " + Arrays.toString(passes) + "\n"
+                        : basicOptimizations ? "perform only basic optimizations\n" : "perform full optimizations\n")
+                + (iteratePasses ? "iterate the passes to a fixpoint\n" : "")
+                + (profiling ? "profile propagators\n" : "")
+                + (schedule.isDefault() ? "" : "schedule propagators by " + schedule + "\n")
+                + (isBoundedDomains() ? "bound integer domains larger than " + boundedDomainThreshold + "\n"
+                        : "enumerate all integer domains\n");
     }
 }
@@ -0,0 +1,187 @@
+package org.clafer.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.analysis.Analysis;
+import org.clafer.ast.analysis.ConstraintScopeAnalyzer;
+import org.clafer.ast.analysis.GlobalCardAnalyzer;
+import org.clafer.ast.analysis.InsufficientScopeException;
+import org.clafer.collection.Pair;
+import org.clafer.instance.InstanceClafer;
+import org.clafer.scope.Scopable;
+import org.clafer.scope.Scope;
+import org.clafer.scope.ScopeBuilder;
+
+/**
+ * Searches for an instance in the smallest scope it can find. The search
+ * starts with the minimal scopes, the lower global cardinalities implied by
+ * the cardinalities and the count constraints. Whenever the model is
+ * unsatisfiable, only the scopes that were saturated grow and the model is
+ * compiled again. A scope is saturated if it is the only thing that prevents
+ * its Clafer from having more instances, ie. every slot in the envelope of the
+ * Clafer's sibling sets is usable. Saturation is only a necessary condition,
+ * so some scopes grow without being needed. Once an instance is found, every
+ * scope shrinks back to the number of instances its Clafer actually has.
+ * <p>
+ * Usage:
+ * <pre>
+ * Pair&lt;Scope, ClaferSolver&gt; result = ClaferScopeDeepening.find(model, Scope.defaultScope(20));
+ * if (result.getSnd().instanceCount() &gt; 0) {
+ *     // Found an instance in scope result.getFst().
+ *     InstanceModel instance = result.getSnd().instance();
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author jimmy
+ */
+public class ClaferScopeDeepening {
+
+    private ClaferScopeDeepening() {
+    }
+
+    public static Pair<Scope, ClaferSolver> find(AstModel in, Scopable maxScope) {
+        return find(in, maxScope, ClaferOptions.Default);
+    }
+
+    /**
+     * Find the first instance in the smallest scope.
+     *
+     * @param in the model
+     * @param maxScope the scopes never grow past this scope
+     * @param options the compilation options
+     * @return the scope that was last tried and its solver. The solver has
+     * already found the first instance if any, otherwise the model is
+     * unsatisfiable within {@code maxScope}
+     * @throws InsufficientScopeException if {@code maxScope} is too small to
+     * satisfy the cardinalities
+     */
+    public static Pair<Scope, ClaferSolver> find(AstModel in, Scopable maxScope, ClaferOptions options) {
+        Scope max = maxScope.toScope();
+        Analysis maxAnalysis = analyze(in, max);
+
+        ScopeBuilder scope = max.toBuilder();
+        for (AstConcreteClafer clafer : AstUtil.getConcreteClafers(in)) {
+            if (clafer != in) {
+                scope.setScope(clafer, maxAnalysis.getGlobalCard(clafer).getLow());
+            }
+        }
+        while (true) {
+            Scope current = scope.toScope();
+            Analysis analysis;
+            try {
+                analysis = analyze(in, current);
+            } catch (InsufficientScopeException e) {
+                if (!grow(e, current, max, scope)) {
+                    throw e;
+                }
+                continue;
+            }
+
+            ClaferSolver solver = ClaferCompiler.compile(in, current, options);
+            if (solver.find()) {
+                return shrink(in, current, solver, options);
+            }
+            boolean grown = false;
+            for (AstConcreteClafer clafer : AstUtil.getConcreteClafers(in)) {
+                if (clafer != in) {
+                    int clampedScope = current.getScope(clafer);
+                    int maxHigh = maxAnalysis.getGlobalCard(clafer).getHigh();
+                    if (analysis.getGlobalCard(clafer).getHigh() == clampedScope
+                            && clampedScope < maxHigh) {
+                        // Grow geometrically to keep the number of
+                        // compilations logarithmic in the final scope.
+                        scope.setScope(clafer, Math.min(maxHigh, clampedScope + Math.max(1, clampedScope / 2)));
+                        grown = true;
+                    }
+                }
+            }
+            if (!grown) {
+                return new Pair<>(current, solver);
+            }
+        }
+    }
+
+    /**
+     * Shrink the scopes to the cardinalities reached in the instance the
+     * solver found. The instance still fits, so the shrunk scope is
+     * satisfiable.
+     *
+     * @return the shrunk scope and its solver that has found its first
+     * instance
+     */
+    private static Pair<Scope, ClaferSolver> shrink(AstModel in, Scope current, ClaferSolver solver, ClaferOptions options) {
+        Map<AstClafer, Integer> counts = new HashMap<>();
+        for (InstanceClafer top : solver.instance().getTopClafers()) {
+            count(top, counts);
+        }
+        ScopeBuilder scope = current.toBuilder();
+        boolean shrunk = false;
+        for (AstConcreteClafer clafer : AstUtil.getConcreteClafers(in)) {
+            if (clafer != in) {
+                Integer count = counts.get(clafer);
+                int reached = count == null ? 0 : count;
+                if (reached < current.getScope(clafer)) {
+                    scope.setScope(clafer, reached);
+                    shrunk = true;
+                }
+            }
+        }
+        if (!shrunk) {
+            return new Pair<>(current, solver);
+        }
+        Scope shrunkScope = scope.toScope();
+        ClaferSolver shrunkSolver = ClaferCompiler.compile(in, shrunkScope, options);
+        return shrunkSolver.find()
+                ? new Pair<>(shrunkScope, shrunkSolver)
+                : new Pair<>(current, solver);
+    }
+
+    private static void count(InstanceClafer instance, Map<AstClafer, Integer> counts) {
+        Integer count = counts.get(instance.getType());
+        counts.put(instance.getType(), count == null ? 1 : count + 1);
+        for (InstanceClafer child : instance.getChildren()) {
+            count(child, counts);
+        }
+    }
+
+    private static Analysis analyze(AstModel in, Scope scope) {
+        return Analysis.analyze(in, scope, new GlobalCardAnalyzer(), new ConstraintScopeAnalyzer());
+    }
+
+    /**
+     * Raise the scopes reported to be insufficient, but never past the maximum
+     * scope.
+     *
+     * @return {@code true} if any scope grew, {@code false} otherwise
+     */
+    private static boolean grow(InsufficientScopeException e, Scope current, Scope max, ScopeBuilder scope) {
+        boolean grown = false;
+        for (Pair<AstClafer, Integer> insufficientScope : e.getInsufficientScopes()) {
+            AstClafer clafer = insufficientScope.getFst();
+            if (clafer instanceof AstAbstractClafer) {
+                // The scope of an abstract is the sum of its subs.
+                for (AstConcreteClafer sub : AstUtil.getConcreteSubs(clafer)) {
+                    grown |= grow(sub, insufficientScope.getSnd(), current, max, scope);
+                }
+            } else {
+                grown |= grow(clafer, insufficientScope.getSnd(), current, max, scope);
+            }
+        }
+        return grown;
+    }
+
+    private static boolean grow(AstClafer clafer, int required, Scope current, Scope max, ScopeBuilder scope) {
+        int newScope = Math.min(required, max.getScope(clafer));
+        if (newScope > current.getScope(clafer)) {
+            scope.setScope(clafer, newScope);
+            return true;
+        }
+        return false;
+    }
+}
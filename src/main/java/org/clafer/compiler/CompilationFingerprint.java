@@ -0,0 +1,476 @@
+package org.clafer.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstArithm;
+import org.clafer.ast.AstBoolArithm;
+import org.clafer.ast.AstCard;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstCompare;
+import org.clafer.ast.AstConcat;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstant;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstDecl;
+import org.clafer.ast.AstDifference;
+import org.clafer.ast.AstDowncast;
+import org.clafer.ast.AstExpr;
+import org.clafer.ast.AstExprVisitor;
+import org.clafer.ast.AstGlobal;
+import org.clafer.ast.AstIfThenElse;
+import org.clafer.ast.AstIntersection;
+import org.clafer.ast.AstJoin;
+import org.clafer.ast.AstJoinParent;
+import org.clafer.ast.AstJoinRef;
+import org.clafer.ast.AstLength;
+import org.clafer.ast.AstLocal;
+import org.clafer.ast.AstMembership;
+import org.clafer.ast.AstMinus;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstNot;
+import org.clafer.ast.AstPrefix;
+import org.clafer.ast.AstQuantify;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstSetTest;
+import org.clafer.ast.AstStringConstant;
+import org.clafer.ast.AstSuffix;
+import org.clafer.ast.AstSum;
+import org.clafer.ast.AstTernary;
+import org.clafer.ast.AstThis;
+import org.clafer.ast.AstUnion;
+import org.clafer.ast.AstUpcast;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.Card;
+import org.clafer.ir.compiler.IrPass;
+import org.clafer.ir.compiler.IrPassManager;
+import org.clafer.objective.Objective;
+import org.clafer.scope.Scope;
+
+/**
+ * A SHA-256 digest of everything that determines the result of compiling a
+ * model down to the optimized IR. Two compilations with the same fingerprint
+ * produce equivalent IR. The digest covers the structure of the model rather
+ * than the identity of its objects, so the same model built twice has the
+ * same fingerprint. Clafers are identified by their position in
+ * {@link AstUtil#getClafers}, and locals by their order of declaration.
+ *
+ * @author jimmy
+ */
+final class CompilationFingerprint {
+
+    // Change whenever the compilation pipeline changes its output.
+    private static final int Version = 2;
+    private final MessageDigest digest;
+    private List<AstClafer> claferList;
+    private final Map<AstClafer, Integer> clafers = new HashMap<>();
+    private final Map<AstLocal, Integer> locals = new IdentityHashMap<>();
+    private final ExprVisitor exprVisitor = new ExprVisitor();
+
+    private CompilationFingerprint() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Fingerprint a compilation. Only the options that shape the IR are part
+     * of the fingerprint, the options that only affect the solver do not
+     * need a different compilation.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param objectives the objectives
+     * @param options the compilation options
+     * @return the fingerprint as a hexadecimal string
+     */
+    static String of(AstModel in, Scope scope, Objective[] objectives, ClaferOptions options) {
+        CompilationFingerprint fingerprint = new CompilationFingerprint();
+        fingerprint.writeInt(Version);
+        fingerprint.writeModel(in);
+        fingerprint.writeScope(scope);
+        fingerprint.writeInt(objectives.length);
+        for (Objective objective : objectives) {
+            fingerprint.writeBoolean(objective.isMaximize());
+            fingerprint.writeExpr(objective.getExpr());
+        }
+        fingerprint.writeBoolean(options.isFullSymmetryBreaking());
+        IrPassManager passes = options.getPassManager();
+        fingerprint.writeBoolean(passes.isFixpoint());
+        IrPass[] enabled = passes.getPasses();
+        fingerprint.writeInt(enabled.length);
+        for (IrPass pass : enabled) {
+            fingerprint.writeString(pass.name());
+        }
+        return fingerprint.toHex();
+    }
+
+    private void writeModel(AstModel model) {
+        claferList = AstUtil.getClafers(model);
+        for (AstClafer clafer : claferList) {
+            clafers.put(clafer, clafers.size());
+        }
+        writeInt(claferList.size());
+        for (AstClafer clafer : claferList) {
+            writeBoolean(clafer instanceof AstAbstractClafer);
+            writeString(clafer.getName());
+            writeClafer(clafer.hasSuperClafer() ? clafer.getSuperClafer() : null);
+            if (clafer instanceof AstConcreteClafer) {
+                AstConcreteClafer concreteClafer = (AstConcreteClafer) clafer;
+                writeClafer(concreteClafer.hasParent() ? concreteClafer.getParent() : null);
+                writeCard(concreteClafer.getCard());
+            }
+            writeCard(clafer.getGroupCard());
+            writeBoolean(clafer.hasRef());
+            if (clafer.hasRef()) {
+                AstRef ref = clafer.getRef();
+                writeClafer(ref.getTargetType());
+                writeBoolean(ref.isUnique());
+            }
+            writeInt(clafer.getConstraints().size());
+            for (AstConstraint constraint : clafer.getConstraints()) {
+                writeBoolean(constraint.isSoft());
+                writeExpr(constraint.getExpr());
+            }
+        }
+    }
+
+    private void writeScope(Scope scope) {
+        for (AstClafer clafer : claferList) {
+            writeInt(scope.getScope(clafer));
+        }
+        writeInt(scope.getDefaultScope());
+        writeInt(scope.getIntLow());
+        writeInt(scope.getIntHigh());
+        writeInt(scope.getStringLength());
+        writeInt(scope.getCharLow());
+        writeInt(scope.getCharHigh());
+    }
+
+    private void writeCard(Card card) {
+        writeInt(card.getLow());
+        writeInt(card.getHigh());
+    }
+
+    private void writeClafer(AstClafer clafer) {
+        if (clafer == null) {
+            writeInt(-1);
+            return;
+        }
+        Integer index = clafers.get(clafer);
+        if (index == null) {
+            // Primitive types are not part of the model, they are unique
+            // by name.
+            writeInt(-2);
+            writeString(clafer.getName());
+        } else {
+            writeInt(index);
+        }
+    }
+
+    private void writeLocal(AstLocal local) {
+        Integer index = locals.get(local);
+        if (index == null) {
+            index = locals.size();
+            locals.put(local, index);
+        }
+        writeInt(index);
+    }
+
+    private void writeExpr(AstExpr expr) {
+        expr.accept(exprVisitor, null);
+    }
+
+    private void writeExprs(AstExpr[] exprs) {
+        writeInt(exprs.length);
+        for (AstExpr expr : exprs) {
+            writeExpr(expr);
+        }
+    }
+
+    private void writeInt(int i) {
+        digest.update((byte) (i >>> 24));
+        digest.update((byte) (i >>> 16));
+        digest.update((byte) (i >>> 8));
+        digest.update((byte) i);
+    }
+
+    private void writeBoolean(boolean b) {
+        digest.update(b ? (byte) 1 : (byte) 0);
+    }
+
+    private void writeString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        digest.update(bytes);
+    }
+
+    private String toHex() {
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >>> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /*
+     * Every expression starts with a distinct tag, followed by its operands in
+     * a fixed order.
+     */
+    private class ExprVisitor implements AstExprVisitor<Void, Void> {
+
+        private Void tag(int tag) {
+            writeInt(tag);
+            return null;
+        }
+
+        @Override
+        public Void visit(AstThis ast, Void a) {
+            return tag(0);
+        }
+
+        @Override
+        public Void visit(AstGlobal ast, Void a) {
+            tag(1);
+            writeClafer(ast.getType());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstConstant ast, Void a) {
+            tag(2);
+            writeClafer(ast.getType());
+            int[] value = ast.getValue();
+            writeInt(value.length);
+            for (int i : value) {
+                writeInt(i);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(AstStringConstant ast, Void a) {
+            tag(3);
+            writeString(ast.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstJoin ast, Void a) {
+            tag(4);
+            writeExpr(ast.getLeft());
+            writeClafer(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstJoinParent ast, Void a) {
+            tag(5);
+            writeExpr(ast.getChildren());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstJoinRef ast, Void a) {
+            tag(6);
+            writeExpr(ast.getDeref());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstNot ast, Void a) {
+            tag(7);
+            writeExpr(ast.getExpr());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstMinus ast, Void a) {
+            tag(8);
+            writeExpr(ast.getExpr());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstCard ast, Void a) {
+            tag(9);
+            writeExpr(ast.getSet());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstSetTest ast, Void a) {
+            tag(10);
+            writeInt(ast.getOp().ordinal());
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstCompare ast, Void a) {
+            tag(11);
+            writeInt(ast.getOp().ordinal());
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstArithm ast, Void a) {
+            tag(12);
+            writeInt(ast.getOp().ordinal());
+            writeExprs(ast.getOperands());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstSum ast, Void a) {
+            tag(13);
+            writeExpr(ast.getSet());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstBoolArithm ast, Void a) {
+            tag(14);
+            writeInt(ast.getOp().ordinal());
+            writeExprs(ast.getOperands());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstDifference ast, Void a) {
+            tag(15);
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstIntersection ast, Void a) {
+            tag(16);
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstUnion ast, Void a) {
+            tag(17);
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstMembership ast, Void a) {
+            tag(18);
+            writeInt(ast.getOp().ordinal());
+            writeExpr(ast.getMember());
+            writeExpr(ast.getSet());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstTernary ast, Void a) {
+            tag(19);
+            writeExpr(ast.getAntecedent());
+            writeExpr(ast.getConsequent());
+            writeExpr(ast.getAlternative());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstIfThenElse ast, Void a) {
+            tag(20);
+            writeExpr(ast.getAntecedent());
+            writeExpr(ast.getConsequent());
+            writeExpr(ast.getAlternative());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstDowncast ast, Void a) {
+            tag(21);
+            writeExpr(ast.getBase());
+            writeClafer(ast.getTarget());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstUpcast ast, Void a) {
+            tag(22);
+            writeExpr(ast.getBase());
+            writeClafer(ast.getTarget());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstLocal ast, Void a) {
+            tag(23);
+            writeLocal(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(AstQuantify ast, Void a) {
+            tag(24);
+            writeInt(ast.getQuantifier().ordinal());
+            AstDecl[] decls = ast.getDecls();
+            writeInt(decls.length);
+            for (AstDecl decl : decls) {
+                writeBoolean(decl.isDisjoint());
+                AstLocal[] declLocals = decl.getLocals();
+                writeInt(declLocals.length);
+                for (AstLocal local : declLocals) {
+                    writeLocal(local);
+                }
+                writeExpr(decl.getBody());
+            }
+            writeExpr(ast.getBody());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstLength ast, Void a) {
+            tag(25);
+            writeExpr(ast.getString());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstConcat ast, Void a) {
+            tag(26);
+            writeExpr(ast.getLeft());
+            writeExpr(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstPrefix ast, Void a) {
+            tag(27);
+            writeExpr(ast.getPrefix());
+            writeExpr(ast.getWord());
+            return null;
+        }
+
+        @Override
+        public Void visit(AstSuffix ast, Void a) {
+            tag(28);
+            writeExpr(ast.getSuffix());
+            writeExpr(ast.getWord());
+            return null;
+        }
+    }
+}
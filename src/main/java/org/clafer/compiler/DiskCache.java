@@ -0,0 +1,138 @@
+package org.clafer.compiler;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.clafer.collection.Pair;
+
+/**
+ * A directory of byte entries bounded in total size. The least recently used
+ * entries are evicted first. Several processes can share the same directory.
+ * <ul>
+ * <li>Entries are written to a temporary file and renamed into place, so
+ * readers never see a partial entry.</li>
+ * <li>Reading an entry touches its modification time, which is the recency
+ * used for eviction.</li>
+ * <li>Eviction holds an exclusive lock on the directory, so only one process
+ * evicts at a time. An entry evicted while being read is a miss.</li>
+ * </ul>
+ *
+ * @author jimmy
+ */
+final class DiskCache {
+
+    private static final String EntrySuffix = ".entry";
+    private static final String TempSuffix = ".tmp";
+    private static final String LockFile = "lock";
+    // Temporary files this old belong to a process that died while writing.
+    private static final long StaleTempMillis = 60 * 60 * 1000;
+    // File locks are held by the process, threads need their own exclusion.
+    private static final Object EvictionMonitor = new Object();
+    private final Path directory;
+    private final long maxBytes;
+
+    DiskCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    private Path entry(String key) {
+        return directory.resolve(key + EntrySuffix);
+    }
+
+    /**
+     * @return the entry, or {@code null} if there is no entry for the key
+     */
+    byte[] get(String key) throws IOException {
+        Path entry = entry(key);
+        byte[] value;
+        try {
+            value = Files.readAllBytes(entry);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Evicted after reading, the value is still good.
+        }
+        return value;
+    }
+
+    void put(String key, byte[] value) throws IOException {
+        Path temp = Files.createTempFile(directory, key, TempSuffix);
+        try {
+            Files.write(temp, value);
+            Files.move(temp, entry(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    void remove(String key) throws IOException {
+        Files.deleteIfExists(entry(key));
+    }
+
+    private void evict() throws IOException {
+        synchronized (EvictionMonitor) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(LockFile),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                evictLocked();
+            }
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Pair<Path, BasicFileAttributes>> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (name.endsWith(EntrySuffix)) {
+                    entries.add(new Pair<>(file, attributes));
+                    totalBytes += attributes.size();
+                } else if (name.endsWith(TempSuffix)
+                        && now - attributes.lastModifiedTime().toMillis() > StaleTempMillis) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        Collections.sort(entries, new Comparator<Pair<Path, BasicFileAttributes>>() {
+            @Override
+            public int compare(Pair<Path, BasicFileAttributes> o1, Pair<Path, BasicFileAttributes> o2) {
+                return o1.getSnd().lastModifiedTime().compareTo(o2.getSnd().lastModifiedTime());
+            }
+        });
+        for (int i = 0; i < entries.size() && totalBytes > maxBytes; i++) {
+            Files.deleteIfExists(entries.get(i).getFst());
+            totalBytes -= entries.get(i).getSnd().size();
+        }
+    }
+}
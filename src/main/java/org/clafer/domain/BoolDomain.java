@@ -2,7 +2,6 @@ package org.clafer.domain;
 
 import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.set.hash.TIntHashSet;
 import org.clafer.collection.BoundIntIterator;
 import org.clafer.collection.ReverseBoundIntIterator;
 import org.clafer.collection.SingleIntIterator;
@@ -98,10 +97,7 @@ public enum BoolDomain implements Domain {
                 if (value == getHighBound() + 1) {
                     return Domains.boundDomain(getLowBound(), getHighBound() + 1);
                 }
-                TIntHashSet insert = new TIntHashSet(size() + 1);
-                transferTo(insert);
-                insert.add(value);
-                return Domains.enumDomain(insert);
+                return IntervalDomain.union(this, Domains.constantDomain(value));
         }
     }
 
@@ -200,10 +196,7 @@ public enum BoolDomain implements Domain {
                 return Domains.boundDomain(other.getLowBound(), getHighBound());
             }
         }
-        TIntHashSet union = new TIntHashSet(size() + other.size());
-        transferTo(union);
-        other.transferTo(union);
-        return Domains.enumDomain(union);
+        return IntervalDomain.union(this, other);
     }
 
     @Override
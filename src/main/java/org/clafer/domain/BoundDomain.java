@@ -2,7 +2,6 @@ package org.clafer.domain;
 
 import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.set.hash.TIntHashSet;
 import org.clafer.collection.BoundIntIterator;
 import org.clafer.collection.ReverseBoundIntIterator;
 
@@ -133,10 +132,7 @@ public class BoundDomain implements Domain {
         if (value == getHighBound() + 1) {
             return Domains.boundDomain(getLowBound(), getHighBound() + 1);
         }
-        TIntHashSet insert = new TIntHashSet(size() + 1);
-        transferTo(insert);
-        insert.add(value);
-        return Domains.enumDomain(insert);
+        return IntervalDomain.union(this, Domains.constantDomain(value));
     }
 
     @Override
@@ -154,13 +150,7 @@ public class BoundDomain implements Domain {
                     ? Domains.EmptyDomain
                     : Domains.boundDomain(getLowBound(), getHighBound() - 1);
         }
-        TIntHashSet remove = new TIntHashSet(size() - 1);
-        for (int i = low; i <= high; i++) {
-            if (i != value) {
-                remove.add(i);
-            }
-        }
-        return Domains.enumDomain(remove);
+        return IntervalDomain.fromBounds(new int[]{low, value - 1, value + 1, high}, 4);
     }
 
     @Override
@@ -221,13 +211,7 @@ public class BoundDomain implements Domain {
                 return Domains.boundDomain(other.getHighBound() + 1, getHighBound());
             }
         }
-        TIntHashSet difference = new TIntHashSet(size());
-        transferTo(difference);
-        difference.removeAll(other.getValues());
-        if (size() == difference.size()) {
-            return this;
-        }
-        return Domains.enumDomain(difference);
+        return IntervalDomain.difference(this, other);
     }
 
     @Override
@@ -248,10 +232,7 @@ public class BoundDomain implements Domain {
                 return Domains.boundDomain(getLowBound(), other.getHighBound());
             }
         }
-        TIntHashSet intersection = new TIntHashSet(size());
-        transferTo(intersection);
-        intersection.retainAll(other.getValues());
-        return Domains.enumDomain(intersection);
+        return IntervalDomain.intersection(this, other);
     }
 
     @Override
@@ -272,10 +253,7 @@ public class BoundDomain implements Domain {
                 return Domains.boundDomain(other.getLowBound(), getHighBound());
             }
         }
-        TIntHashSet union = new TIntHashSet(size() + other.size());
-        transferTo(union);
-        other.transferTo(union);
-        return Domains.enumDomain(union);
+        return IntervalDomain.union(this, other);
     }
 
     @Override
@@ -2,8 +2,8 @@ package org.clafer.domain;
 
 import gnu.trove.TIntCollection;
 import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  *
@@ -18,6 +18,19 @@ public class Domains {
     public static final Domain ZeroDomain = FalseDomain;
     public static final Domain OneDomain = TrueDomain;
     public static final Domain ZeroOneDomain = TrueFalseDomain;
+    /*
+     * Recently built domains, so that identical domains are shared. Direct
+     * mapped, a new domain replaces the old domain in the same slot. Safe to
+     * share between threads since domains are immutable.
+     */
+    private static final int CacheSize = 1 << 12;
+    private static final AtomicReferenceArray<BoundDomain> boundCache = new AtomicReferenceArray<>(CacheSize);
+    private static final AtomicReferenceArray<IntervalDomain> intervalCache = new AtomicReferenceArray<>(CacheSize);
+
+    private static int slot(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (CacheSize - 1);
+    }
 
     public static BoolDomain domain(boolean value) {
         return value ? TrueDomain : FalseDomain;
@@ -44,35 +57,83 @@ public class Domains {
         if (low == 0 && high == 1) {
             return ZeroOneDomain;
         }
-        return new BoundDomain(low, high);
+        int slot = slot(low * 31 + high);
+        BoundDomain cached = boundCache.get(slot);
+        if (cached != null && cached.getLowBound() == low && cached.getHighBound() == high) {
+            return cached;
+        }
+        BoundDomain domain = new BoundDomain(low, high);
+        boundCache.set(slot, domain);
+        return domain;
+    }
+
+    /**
+     * Returns an interval domain equal to the given one, sharing a previously
+     * built domain if possible.
+     *
+     * @param domain the domain
+     * @return an equal domain
+     */
+    static IntervalDomain intern(IntervalDomain domain) {
+        int slot = slot(domain.hashCode());
+        IntervalDomain cached = intervalCache.get(slot);
+        if (domain.equals(cached)) {
+            return cached;
+        }
+        intervalCache.set(slot, domain);
+        return domain;
+    }
+
+    /**
+     * Builds a domain from its intervals, the inverse of
+     * {@link #intervalsOf(Domain)}.
+     *
+     * @param bounds the inclusive bounds of sorted, disjoint, and non-adjacent
+     * intervals, [low0, high0, low1, high1, ...], not copied
+     * @return the domain over the intervals
+     * @throws IllegalArgumentException if the intervals are not sorted,
+     * disjoint, and non-adjacent
+     */
+    public static Domain intervalDomain(int... bounds) {
+        if (bounds.length % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of bounds.");
+        }
+        if (bounds.length == 2 && bounds[0] > bounds[1]) {
+            throw new IllegalArgumentException(bounds[0] + ">" + bounds[1]);
+        }
+        // The constructor of IntervalDomain checks longer bounds.
+        return IntervalDomain.fromBounds(bounds, bounds.length);
+    }
+
+    /**
+     * @param domain the domain
+     * @return the inclusive bounds of the intervals of the domain, [low0,
+     * high0, low1, high1, ...]
+     */
+    public static int[] intervalsOf(Domain domain) {
+        return domain instanceof IntervalDomain
+                ? IntervalDomain.boundsOf(domain).clone()
+                : IntervalDomain.boundsOf(domain);
     }
 
     public static Domain enumDomain(int... values) {
-        return enumDomain(new TIntHashSet(values));
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int length = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (length == 0 || sorted[length - 1] != sorted[i]) {
+                sorted[length++] = sorted[i];
+            }
+        }
+        int[] bounds = IntervalDomain.boundsOfSorted(sorted, length);
+        return IntervalDomain.fromBounds(bounds, bounds.length);
     }
 
     public static Domain enumDomain(TIntCollection values) {
-        return enumDomain(new TIntHashSet(values));
+        return enumDomain(values.toArray());
     }
 
     public static Domain enumDomain(TIntSet values) {
-        switch (values.size()) {
-            case 0:
-                return EmptyDomain;
-            case 1:
-                int value = values.iterator().next();
-                return boundDomain(value, value);
-            default:
-                int[] array = values.toArray();
-                Arrays.sort(array);
-                // If the values are over a contiguous interval, then return a bound domain.
-                int low = array[0];
-                int high = array[array.length - 1];
-                if (high - low + 1 == array.length) {
-                    // A contigious interval.
-                    return boundDomain(low, high);
-                }
-                return new EnumDomain(array);
-        }
+        return enumDomain(values.toArray());
     }
 }
@@ -2,13 +2,13 @@ package org.clafer.domain;
 
 import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.set.hash.TIntHashSet;
 import java.util.Arrays;
 import org.clafer.collection.ArrayIntIterator;
 import org.clafer.collection.ReverseArrayIntIterator;
 
 /**
- * A domain over explicitly defined values.
+ * A domain over explicitly defined values. {@link Domains} builds
+ * {@link IntervalDomain}s instead, which are more compact.
  *
  * @author jimmy
  */
@@ -28,9 +28,8 @@ public class EnumDomain implements Domain {
 
     @Override
     public boolean isBounded() {
-        // Although technically the domain might be contigious, it is too expensive
-        // to check.
-        return false;
+        // The values are sorted and unique.
+        return getHighBound() - getLowBound() + 1 == values.length;
     }
 
     @Override
@@ -73,12 +72,7 @@ public class EnumDomain implements Domain {
         if (superset.isBounded()) {
             return true;
         }
-        for (int i : values) {
-            if (!superset.contains(i)) {
-                return false;
-            }
-        }
-        return true;
+        return IntervalDomain.isSubsetOf(this, superset);
     }
 
     @Override
@@ -86,10 +80,7 @@ public class EnumDomain implements Domain {
         if (contains(value)) {
             return this;
         }
-        TIntHashSet insert = new TIntHashSet(size() + 1);
-        transferTo(insert);
-        insert.add(value);
-        return Domains.enumDomain(insert);
+        return IntervalDomain.union(this, Domains.constantDomain(value));
     }
 
     @Override
@@ -97,13 +88,7 @@ public class EnumDomain implements Domain {
         if (!contains(value)) {
             return this;
         }
-        TIntHashSet remove = new TIntHashSet(size() - 1);
-        for (int i : values) {
-            if (i != value) {
-                remove.add(i);
-            }
-        }
-        return Domains.enumDomain(remove);
+        return IntervalDomain.difference(this, Domains.constantDomain(value));
     }
 
     @Override
@@ -117,14 +102,7 @@ public class EnumDomain implements Domain {
         if (low <= getLowBound()) {
             return this;
         }
-        TIntHashSet boundLow = new TIntHashSet(
-                Math.min(size(), getHighBound() - low + 1));
-        for (int i : getValues()) {
-            if (i >= low) {
-                boundLow.add(i);
-            }
-        }
-        return Domains.enumDomain(boundLow);
+        return IntervalDomain.intersection(this, Domains.boundDomain(low, getHighBound()));
     }
 
     @Override
@@ -138,14 +116,7 @@ public class EnumDomain implements Domain {
         if (high >= getHighBound()) {
             return this;
         }
-        TIntHashSet boundHigh = new TIntHashSet(
-                Math.min(size(), high - getLowBound() + 1));
-        for (int i : getValues()) {
-            if (i <= high) {
-                boundHigh.add(i);
-            }
-        }
-        return Domains.enumDomain(boundHigh);
+        return IntervalDomain.intersection(this, Domains.boundDomain(getLowBound(), high));
     }
 
     @Override
@@ -165,14 +136,7 @@ public class EnumDomain implements Domain {
         if (low <= getLowBound() && high >= getHighBound()) {
             return this;
         }
-        TIntHashSet boundBetween = new TIntHashSet(
-                Math.min(size(), high - low + 1));
-        for (int i : getValues()) {
-            if (i >= low && i <= high) {
-                boundBetween.add(i);
-            }
-        }
-        return Domains.enumDomain(boundBetween);
+        return IntervalDomain.intersection(this, Domains.boundDomain(low, high));
     }
 
     @Override
@@ -189,13 +153,7 @@ public class EnumDomain implements Domain {
         if (!intersects(other)) {
             return this;
         }
-        TIntHashSet difference = new TIntHashSet(size());
-        transferTo(difference);
-        difference.removeAll(other.getValues());
-        if (size() == difference.size()) {
-            return this;
-        }
-        return Domains.enumDomain(difference);
+        return IntervalDomain.difference(this, other);
     }
 
     @Override
@@ -219,20 +177,7 @@ public class EnumDomain implements Domain {
             // Bounds are already checked.
             return true;
         }
-        if (size() <= other.size()) {
-            for (int i : getValues()) {
-                if (other.contains(i)) {
-                    return true;
-                }
-            }
-        } else {
-            for (int i = other.getLowBound(); i <= other.getHighBound(); i++) {
-                if (contains(i)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return IntervalDomain.intersects(this, other);
     }
 
     @Override
@@ -243,10 +188,7 @@ public class EnumDomain implements Domain {
         if (other.isSubsetOf(this)) {
             return other;
         }
-        TIntHashSet intersection = new TIntHashSet(size());
-        transferTo(intersection);
-        intersection.retainAll(other.getValues());
-        return Domains.enumDomain(intersection);
+        return IntervalDomain.intersection(this, other);
     }
 
     @Override
@@ -257,10 +199,7 @@ public class EnumDomain implements Domain {
         if (other.isSubsetOf(this)) {
             return this;
         }
-        TIntHashSet union = new TIntHashSet(size() + other.size());
-        transferTo(union);
-        other.transferTo(union);
-        return Domains.enumDomain(union);
+        return IntervalDomain.union(this, other);
     }
 
     @Override
@@ -312,7 +251,10 @@ public class EnumDomain implements Domain {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(values);
+        // Consistent with the other domains over the same values.
+        return isBounded()
+                ? getLowBound() ^ getHighBound()
+                : Arrays.hashCode(IntervalDomain.boundsOf(this));
     }
 
     @Override
@@ -0,0 +1,573 @@
+package org.clafer.domain;
+
+import gnu.trove.TIntCollection;
+import gnu.trove.iterator.TIntIterator;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A domain over a sorted list of disjoint intervals. Any two consecutive
+ * intervals are separated by at least one value, so the domain always has at
+ * least two intervals and is never bounded. Every operation walks the interval
+ * lists of the operands, costing O(intervals) rather than O(values).
+ *
+ * @author jimmy
+ */
+public class IntervalDomain implements Domain {
+
+    // The interval bounds, [low0, high0, low1, high1, ...], all inclusive.
+    private final int[] bounds;
+    private final int size;
+    private final int hashCode;
+
+    /**
+     * @param bounds the inclusive bounds of at least two sorted, disjoint, and
+     * non-adjacent intervals, immutable
+     */
+    public IntervalDomain(int... bounds) {
+        if (bounds.length < 4 || bounds.length % 2 != 0) {
+            throw new IllegalArgumentException();
+        }
+        int sum = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (bounds[i] > bounds[i + 1]) {
+                throw new IllegalArgumentException(bounds[i] + ">" + bounds[i + 1]);
+            }
+            if (i > 0 && (long) bounds[i - 1] + 1 >= bounds[i]) {
+                throw new IllegalArgumentException("Intervals are not disjoint.");
+            }
+            sum += bounds[i + 1] - bounds[i] + 1;
+        }
+        this.bounds = bounds;
+        this.size = sum;
+        this.hashCode = Arrays.hashCode(bounds);
+    }
+
+    /**
+     * Returns the inclusive bounds of the intervals of a domain.
+     *
+     * @param domain the domain
+     * @return [low0, high0, low1, high1, ...]
+     */
+    static int[] boundsOf(Domain domain) {
+        if (domain instanceof IntervalDomain) {
+            return ((IntervalDomain) domain).bounds;
+        }
+        if (domain.isEmpty()) {
+            return new int[0];
+        }
+        if (domain.isBounded()) {
+            return new int[]{domain.getLowBound(), domain.getHighBound()};
+        }
+        return boundsOfSorted(domain.getValues(), domain.size());
+    }
+
+    /**
+     * @param values sorted and unique values
+     * @param length the number of values
+     * @return the inclusive bounds of the intervals covering the values
+     */
+    static int[] boundsOfSorted(int[] values, int length) {
+        if (length == 0) {
+            return new int[0];
+        }
+        int count = 1;
+        for (int i = 1; i < length; i++) {
+            if (values[i - 1] + 1 != values[i]) {
+                count++;
+            }
+        }
+        int[] bounds = new int[count * 2];
+        int index = 0;
+        bounds[index++] = values[0];
+        for (int i = 1; i < length; i++) {
+            if (values[i - 1] + 1 != values[i]) {
+                bounds[index++] = values[i - 1];
+                bounds[index++] = values[i];
+            }
+        }
+        bounds[index] = values[length - 1];
+        return bounds;
+    }
+
+    /**
+     * @param bounds the inclusive bounds of sorted, disjoint, and non-adjacent
+     * intervals
+     * @param length the number of bounds used
+     * @return the smallest domain representation over the intervals
+     */
+    static Domain fromBounds(int[] bounds, int length) {
+        switch (length) {
+            case 0:
+                return Domains.EmptyDomain;
+            case 2:
+                return Domains.boundDomain(bounds[0], bounds[1]);
+            default:
+                return Domains.intern(new IntervalDomain(
+                        length == bounds.length ? bounds : Arrays.copyOf(bounds, length)));
+        }
+    }
+
+    /**
+     * @param bounds the bounds of the result
+     * @param length the number of bounds used
+     * @param a one of the operands
+     * @param b one of the operands
+     * @return {@code a} or {@code b} if they are equal to the result,
+     * otherwise the result
+     */
+    private static Domain reuse(int[] bounds, int length, Domain a, Domain b) {
+        int[] aBounds = boundsOf(a);
+        if (equals(bounds, length, aBounds)) {
+            return a;
+        }
+        int[] bBounds = boundsOf(b);
+        if (equals(bounds, length, bBounds)) {
+            return b;
+        }
+        return fromBounds(bounds, length);
+    }
+
+    private static boolean equals(int[] bounds, int length, int[] other) {
+        if (length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bounds[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Domain union(Domain a, Domain b) {
+        int[] x = boundsOf(a);
+        int[] y = boundsOf(b);
+        int[] union = new int[x.length + y.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < x.length || j < y.length) {
+            int low;
+            int high;
+            if (j >= y.length || (i < x.length && x[i] <= y[j])) {
+                low = x[i];
+                high = x[i + 1];
+                i += 2;
+            } else {
+                low = y[j];
+                high = y[j + 1];
+                j += 2;
+            }
+            if (length > 0 && (long) union[length - 1] + 1 >= low) {
+                union[length - 1] = Math.max(union[length - 1], high);
+            } else {
+                union[length++] = low;
+                union[length++] = high;
+            }
+        }
+        return reuse(union, length, a, b);
+    }
+
+    static Domain intersection(Domain a, Domain b) {
+        int[] x = boundsOf(a);
+        int[] y = boundsOf(b);
+        int[] intersection = new int[x.length + y.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < x.length && j < y.length) {
+            int low = Math.max(x[i], y[j]);
+            int high = Math.min(x[i + 1], y[j + 1]);
+            if (low <= high) {
+                intersection[length++] = low;
+                intersection[length++] = high;
+            }
+            if (x[i + 1] < y[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return reuse(intersection, length, a, b);
+    }
+
+    static Domain difference(Domain a, Domain b) {
+        int[] x = boundsOf(a);
+        int[] y = boundsOf(b);
+        int[] difference = new int[x.length + y.length];
+        int length = 0;
+        int j = 0;
+        for (int i = 0; i < x.length; i += 2) {
+            int low = x[i];
+            int high = x[i + 1];
+            while (j < y.length && y[j + 1] < low) {
+                j += 2;
+            }
+            // Long to avoid overflow past Integer.MAX_VALUE.
+            long cur = low;
+            for (int k = j; k < y.length && y[k] <= high && cur <= high; k += 2) {
+                if (y[k] > cur) {
+                    difference[length++] = (int) cur;
+                    difference[length++] = y[k] - 1;
+                }
+                cur = Math.max(cur, (long) y[k + 1] + 1);
+            }
+            if (cur <= high) {
+                difference[length++] = (int) cur;
+                difference[length++] = high;
+            }
+        }
+        return length == x.length && equals(difference, length, x)
+                ? a : fromBounds(difference, length);
+    }
+
+    static boolean isSubsetOf(Domain a, Domain b) {
+        int[] x = boundsOf(a);
+        int[] y = boundsOf(b);
+        int j = 0;
+        for (int i = 0; i < x.length; i += 2) {
+            while (j < y.length && y[j + 1] < x[i]) {
+                j += 2;
+            }
+            if (j >= y.length || y[j] > x[i] || y[j + 1] < x[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean intersects(Domain a, Domain b) {
+        int[] x = boundsOf(a);
+        int[] y = boundsOf(b);
+        int i = 0;
+        int j = 0;
+        while (i < x.length && j < y.length) {
+            if (Math.max(x[i], y[j]) <= Math.min(x[i + 1], y[j + 1])) {
+                return true;
+            }
+            if (x[i + 1] < y[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value the value
+     * @return the index of the interval containing the value, or the
+     * (-(insertion point) - 1) of the interval otherwise
+     */
+    private int indexOf(int value) {
+        int low = 0;
+        int high = bounds.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid * 2 + 1] < value) {
+                low = mid + 1;
+            } else if (bounds[mid * 2] > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public boolean isBounded() {
+        return false;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    public int getLowBound() {
+        return bounds[0];
+    }
+
+    @Override
+    public int getHighBound() {
+        return bounds[bounds.length - 1];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of intervals in this domain
+     */
+    public int intervalCount() {
+        return bounds.length / 2;
+    }
+
+    @Override
+    public boolean isSubsetOf(Domain superset) {
+        if (this == superset) {
+            return true;
+        }
+        if (size() > superset.size()) {
+            return false;
+        }
+        if (getLowBound() < superset.getLowBound()
+                || getHighBound() > superset.getHighBound()) {
+            return false;
+        }
+        if (superset.isBounded()) {
+            return true;
+        }
+        return isSubsetOf(this, superset);
+    }
+
+    @Override
+    public boolean intersects(Domain other) {
+        if (other.isEmpty()) {
+            return false;
+        }
+        if (getLowBound() > other.getHighBound()
+                || getHighBound() < other.getLowBound()) {
+            return false;
+        }
+        return intersects(this, other);
+    }
+
+    @Override
+    public Domain insert(int value) {
+        if (contains(value)) {
+            return this;
+        }
+        return union(this, Domains.constantDomain(value));
+    }
+
+    @Override
+    public Domain remove(int value) {
+        if (!contains(value)) {
+            return this;
+        }
+        return difference(this, Domains.constantDomain(value));
+    }
+
+    @Override
+    public Domain boundLow(int low) {
+        if (low > getHighBound()) {
+            return Domains.EmptyDomain;
+        }
+        if (low <= getLowBound()) {
+            return this;
+        }
+        return boundBetween(low, getHighBound());
+    }
+
+    @Override
+    public Domain boundHigh(int high) {
+        if (high < getLowBound()) {
+            return Domains.EmptyDomain;
+        }
+        if (high >= getHighBound()) {
+            return this;
+        }
+        return boundBetween(getLowBound(), high);
+    }
+
+    @Override
+    public Domain boundBetween(int low, int high) {
+        if (low > high) {
+            throw new IllegalArgumentException();
+        }
+        if (low > getHighBound() || high < getLowBound()) {
+            return Domains.EmptyDomain;
+        }
+        if (low <= getLowBound() && high >= getHighBound()) {
+            return this;
+        }
+        int from = indexOf(low);
+        from = from >= 0 ? from : -from - 1;
+        int to = indexOf(high);
+        to = to >= 0 ? to : -to - 2;
+        if (from > to) {
+            return Domains.EmptyDomain;
+        }
+        int[] between = Arrays.copyOfRange(bounds, from * 2, to * 2 + 2);
+        between[0] = Math.max(between[0], low);
+        between[between.length - 1] = Math.min(between[between.length - 1], high);
+        return fromBounds(between, between.length);
+    }
+
+    @Override
+    public Domain minus() {
+        int[] minus = new int[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            minus[i] = -bounds[bounds.length - 1 - i];
+        }
+        return fromBounds(minus, minus.length);
+    }
+
+    @Override
+    public Domain difference(Domain other) {
+        if (!intersects(other)) {
+            return this;
+        }
+        return difference(this, other);
+    }
+
+    @Override
+    public Domain intersection(Domain other) {
+        if (isSubsetOf(other)) {
+            return this;
+        }
+        if (other.isSubsetOf(this)) {
+            return other;
+        }
+        return intersection(this, other);
+    }
+
+    @Override
+    public Domain union(Domain other) {
+        if (isSubsetOf(other)) {
+            return other;
+        }
+        if (other.isSubsetOf(this)) {
+            return this;
+        }
+        return union(this, other);
+    }
+
+    @Override
+    public Domain offset(int c) {
+        if (c == 0) {
+            return this;
+        }
+        int[] offset = new int[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            offset[i] = bounds[i] + c;
+        }
+        return fromBounds(offset, offset.length);
+    }
+
+    @Override
+    public int[] getValues() {
+        int[] values = new int[size];
+        int index = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            for (int j = bounds[i]; j <= bounds[i + 1]; j++) {
+                values[index++] = j;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public TIntIterator iterator() {
+        return iterator(true);
+    }
+
+    @Override
+    public TIntIterator iterator(final boolean increasing) {
+        return new TIntIterator() {
+            // The index of the current interval.
+            private int interval = increasing ? 0 : bounds.length - 2;
+            // The next value to return.
+            private long next = increasing ? bounds[0] : bounds[bounds.length - 1];
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = (int) next;
+                if (increasing) {
+                    next++;
+                    if (next > bounds[interval + 1] && interval + 2 < bounds.length) {
+                        interval += 2;
+                        next = bounds[interval];
+                    }
+                } else {
+                    next--;
+                    if (next < bounds[interval] && interval > 0) {
+                        interval -= 2;
+                        next = bounds[interval + 1];
+                    }
+                }
+                return value;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return increasing
+                        ? next <= bounds[interval + 1]
+                        : next >= bounds[interval];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void transferTo(TIntCollection collection) {
+        for (int i = 0; i < bounds.length; i += 2) {
+            for (int j = bounds[i]; j <= bounds[i + 1]; j++) {
+                collection.add(j);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof IntervalDomain) {
+            IntervalDomain other = (IntervalDomain) obj;
+            return hashCode == other.hashCode && Arrays.equals(bounds, other.bounds);
+        }
+        if (obj instanceof Domain) {
+            Domain other = (Domain) obj;
+            if (size() != other.size()) {
+                return false;
+            }
+            return Arrays.equals(bounds, boundsOf(other));
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append('{');
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            int low = bounds[i];
+            int high = bounds[i + 1];
+            result.append(low);
+            if (low + 1 == high) {
+                result.append(", ").append(high);
+            } else if (low < high) {
+                result.append(", ..., ").append(high);
+            }
+        }
+        result.append('}');
+        return result.toString();
+    }
+}
@@ -1,13 +1,12 @@
 package org.clafer.graph;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import org.clafer.collection.Counter;
 
 /**
  *
@@ -18,28 +17,33 @@ public class GraphUtil {
     private GraphUtil() {
     }
 
-    private static <V> boolean findPath(Vertex<V> cur, Vertex<V> end, Graph<V> graph, Set<Vertex<V>> visited) {
-        if (cur.equals(end)) {
-            return true;
-        }
-        if (!visited.add(cur)) {
-            return false;
+    /**
+     * Number the vertices of the graph and copy its edges into an
+     * {@link IntGraph}, keeping the order of the vertices and neighbours.
+     */
+    private static <V> IntGraph toIntGraph(Graph<V> graph, List<Vertex<V>> vertices,
+            Map<Vertex<V>, Integer> ids) {
+        for (Vertex<V> vertex : graph.getVertices()) {
+            ids.put(vertex, vertices.size());
+            vertices.add(vertex);
         }
-        for (Vertex<V> neighbour : cur.getNeighbours()) {
-            if (findPath(neighbour, end, graph, visited)) {
-                return true;
+        IntGraph.Builder builder = new IntGraph.Builder();
+        for (int from = 0; from < vertices.size(); from++) {
+            for (Vertex<V> neighbour : vertices.get(from).getNeighbours()) {
+                Integer to = ids.get(neighbour);
+                if (to == null) {
+                    // The neighbour is not in the graph, but paths may go through it.
+                    to = vertices.size();
+                    ids.put(neighbour, to);
+                    vertices.add(neighbour);
+                }
+                builder.addEdge(from, to);
             }
         }
-        return false;
-    }
-
-    private static <V> void findPath(Vertex<V> cur, Graph<V> graph, Set<Vertex<V>> visited) {
-        if (!visited.add(cur)) {
-            return;
-        }
-        for (Vertex<V> neighbour : cur.getNeighbours()) {
-            findPath(neighbour, graph, visited);
+        while (builder.getVertexCount() < vertices.size()) {
+            builder.addVertex();
         }
+        return builder.build();
     }
 
     /**
@@ -54,8 +58,15 @@ public class GraphUtil {
      * to the end node, {@code false} otherwise
      */
     public static <V> boolean hasPath(Vertex<V> start, Vertex<V> end, Graph<V> graph) {
-        Set<Vertex<V>> visited = new HashSet<>();
-        return findPath(start, end, graph, visited);
+        if (start.equals(end)) {
+            return true;
+        }
+        List<Vertex<V>> vertices = new ArrayList<>();
+        Map<Vertex<V>, Integer> ids = new HashMap<>();
+        IntGraph intGraph = toIntGraph(graph, vertices, ids);
+        Integer startId = ids.get(start);
+        Integer endId = ids.get(end);
+        return startId != null && endId != null && intGraph.hasPath(startId, endId);
     }
 
     /**
@@ -67,20 +78,29 @@ public class GraphUtil {
      * @return all the reachable nodes from the set of start nodes
      */
     public static <V> Set<V> reachable(Set<Vertex<V>> start, Graph<V> graph) {
-        Set<Vertex<V>> visited = new HashSet<>();
+        List<Vertex<V>> vertices = new ArrayList<>();
+        Map<Vertex<V>, Integer> ids = new HashMap<>();
+        IntGraph intGraph = toIntGraph(graph, vertices, ids);
+        BitSet startIds = new BitSet(vertices.size());
+        Set<V> reachable = new HashSet<>();
         for (Vertex<V> vertex : start) {
-            findPath(vertex, graph, visited);
+            Integer id = ids.get(vertex);
+            if (id == null) {
+                reachable.add(vertex.getData());
+            } else {
+                startIds.set(id);
+            }
         }
-        Set<V> reachable = new HashSet<>(visited.size());
-        for (Vertex<V> visit : visited) {
-            reachable.add(visit.getData());
+        BitSet reached = intGraph.reachable(startIds);
+        for (int i = reached.nextSetBit(0); i >= 0; i = reached.nextSetBit(i + 1)) {
+            reachable.add(vertices.get(i).getData());
         }
         return reachable;
     }
 
     /**
      * Compute the strongly connected components in the graph in topological
-     * order. Implementation of Tarjan's algorithm.
+     * order. Implementation of Tarjan's algorithm, without recursion.
      *
      * @param <V> the type of the data
      * @param graph the directed graph
@@ -90,73 +110,17 @@ public class GraphUtil {
      * algorithm</a>
      */
     public static <V> List<Set<V>> computeStronglyConnectedComponents(Graph<V> graph) {
-        Counter counter = new Counter();
-        Map<Vertex<V>, Index> vertexIndices = new HashMap<>();
-        Stack<Vertex<V>> S = new Stack<>();
-        List<Set<V>> components = new ArrayList<>();
-
-        for (Vertex<V> vertex : graph.getVertices()) {
-            if (!vertexIndices.containsKey(vertex)) {
-                strongConnect(vertex, counter, vertexIndices, S, components);
-            }
-        }
-        return components;
-    }
-
-    private static <V> Index strongConnect(Vertex<V> vertex, Counter counter, Map<Vertex<V>, Index> vertexIndices,
-            Stack<Vertex<V>> S, List<Set<V>> components) {
-        int index = counter.next();
-        Index vertexIndex = new Index(index, index);
-        vertexIndices.put(vertex, vertexIndex);
-
-        S.push(vertex);
-
-        for (Vertex<V> neighbour : vertex.getNeighbours()) {
-            Index neighbourIndex = vertexIndices.get(neighbour);
-            if (neighbourIndex == null) {
-                neighbourIndex = strongConnect(neighbour, counter, vertexIndices, S, components);
-                vertexIndex.setLowIndexMin(neighbourIndex.getLowIndex());
-            } else if (S.contains(neighbour)) {
-                vertexIndex.setLowIndexMin(neighbourIndex.getIndex());
-            }
-        }
-
-        if (vertexIndex.getLowIndex() == vertexIndex.getIndex()) {
+        List<Vertex<V>> vertices = new ArrayList<>();
+        Map<Vertex<V>, Integer> ids = new HashMap<>();
+        List<int[]> intComponents = toIntGraph(graph, vertices, ids).computeStronglyConnectedComponents();
+        List<Set<V>> components = new ArrayList<>(intComponents.size());
+        for (int[] intComponent : intComponents) {
             Set<V> component = new HashSet<>();
-
-            Vertex<V> cycle;
-            do {
-                cycle = S.pop();
-                component.add(cycle.getData());
-            } while (cycle != vertex);
-
-            components.add(component);
-        }
-        return vertexIndex;
-    }
-
-    private static class Index {
-
-        private int index;
-        private int lowIndex;
-
-        Index(int index, int lowIndex) {
-            this.index = index;
-            this.lowIndex = lowIndex;
-        }
-
-        int getIndex() {
-            return index;
-        }
-
-        int getLowIndex() {
-            return lowIndex;
-        }
-
-        void setLowIndexMin(int lowIndex) {
-            if (this.lowIndex >= lowIndex) {
-                this.lowIndex = lowIndex;
+            for (int vertex : intComponent) {
+                component.add(vertices.get(vertex).getData());
             }
+            components.add(component);
         }
+        return components;
     }
 }
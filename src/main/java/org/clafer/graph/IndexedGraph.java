@@ -0,0 +1,141 @@
+package org.clafer.graph;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A graph where every data is mapped to exactly one dense integer id. The
+ * edges are kept in an {@link IntGraph}, so the only per-vertex object is the
+ * entry in the id map.
+ * <p>For example, a 2-cycle graph:
+ * <pre>
+ * IndexedGraph&lt;Character&gt; graph = new IndexedGraph&lt;&gt;();
+ * graph.addEdge('a', 'b');
+ * graph.addEdge('b', 'a');
+ * </pre>
+ * </p>
+ *
+ * @param <V> the type of the data
+ * @author jimmy
+ */
+public class IndexedGraph<V> {
+
+    private final TObjectIntHashMap<V> ids = new TObjectIntHashMap<>(16, 0.5f, -1);
+    private final List<V> data = new ArrayList<>();
+    private final IntGraph.Builder builder = new IntGraph.Builder();
+    // Cache of the built graph, invalidated when a vertex or edge is added.
+    private IntGraph graph;
+
+    /**
+     * Returns the id associated with the data, creating a new vertex if
+     * needed. The data class should implement equals and hashCode.
+     *
+     * @param data the data
+     * @return the id of the vertex containing the data
+     */
+    public int getVertex(V data) {
+        int n = this.data.size();
+        int id = ids.putIfAbsent(data, n);
+        if (id == -1) {
+            this.data.add(data);
+            builder.addVertex();
+            graph = null;
+            return n;
+        }
+        return id;
+    }
+
+    /**
+     * @param data the data
+     * @return the id of the vertex containing the data, or -1 if none
+     */
+    public int getVertexIfPresent(V data) {
+        return ids.get(data);
+    }
+
+    public V getData(int vertex) {
+        return data.get(vertex);
+    }
+
+    public int getVertexCount() {
+        return data.size();
+    }
+
+    public void addEdge(V from, V to) {
+        builder.addEdge(getVertex(from), getVertex(to));
+        graph = null;
+    }
+
+    /**
+     * @return the edges between the ids
+     */
+    public IntGraph getGraph() {
+        if (graph == null) {
+            graph = builder.build();
+        }
+        return graph;
+    }
+
+    public boolean hasPath(V start, V end) {
+        if (start.equals(end)) {
+            return true;
+        }
+        int startId = getVertexIfPresent(start);
+        int endId = getVertexIfPresent(end);
+        return startId != -1 && endId != -1 && getGraph().hasPath(startId, endId);
+    }
+
+    /**
+     * Compute all the reachable data from the start data. Start data that is
+     * not in the graph is ignored.
+     *
+     * @param start the start data
+     * @return all the reachable data from the start data, in the order it was
+     * added to the graph
+     */
+    public List<V> reachable(Collection<? extends V> start) {
+        BitSet startIds = new BitSet(getVertexCount());
+        for (V s : start) {
+            int id = getVertexIfPresent(s);
+            if (id != -1) {
+                startIds.set(id);
+            }
+        }
+        BitSet reached = getGraph().reachable(startIds);
+        List<V> reachable = new ArrayList<>(reached.cardinality());
+        for (int i = reached.nextSetBit(0); i >= 0; i = reached.nextSetBit(i + 1)) {
+            reachable.add(data.get(i));
+        }
+        return reachable;
+    }
+
+    /**
+     * Compute the strongly connected components in the graph in topological
+     * order.
+     *
+     * @return the strongly connected components in topological order.
+     * @see IntGraph#computeStronglyConnectedComponents()
+     */
+    public List<Set<V>> computeStronglyConnectedComponents() {
+        List<int[]> components = getGraph().computeStronglyConnectedComponents();
+        List<Set<V>> result = new ArrayList<>(components.size());
+        for (int[] component : components) {
+            Set<V> set = new HashSet<>(component.length * 2);
+            for (int vertex : component) {
+                set.add(data.get(vertex));
+            }
+            result.add(set);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return data + " " + getGraph();
+    }
+}
@@ -0,0 +1,255 @@
+package org.clafer.graph;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An immutable directed graph over the vertices {0, 1, ..., n-1}. The edges are
+ * stored in compressed sparse row form, the neighbours of vertex {@code v} are
+ * {@code targets[offsets[v]]} up to {@code targets[offsets[v + 1]]}, in the
+ * order they were added.
+ * <p>
+ * All the algorithms are iterative, so deep graphs do not overflow the stack.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IntGraph {
+
+    private final int[] offsets;
+    private final int[] targets;
+
+    private IntGraph(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    public int getVertexCount() {
+        return offsets.length - 1;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public int getOutDegree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /**
+     * Returns the vertices that have an incoming edge from the vertex.
+     *
+     * @param vertex the vertex
+     * @return the neighbours of the vertex
+     */
+    public int[] getNeighbours(int vertex) {
+        return Arrays.copyOfRange(targets, offsets[vertex], offsets[vertex + 1]);
+    }
+
+    /**
+     * Compute all the reachable vertices from the set of start vertices,
+     * including the start vertices themselves.
+     *
+     * @param start the start vertices
+     * @return all the reachable vertices from the set of start vertices
+     */
+    public BitSet reachable(BitSet start) {
+        BitSet visited = new BitSet(getVertexCount());
+        int[] stack = new int[getVertexCount()];
+        int size = 0;
+        for (int i = start.nextSetBit(0); i >= 0; i = start.nextSetBit(i + 1)) {
+            if (!visited.get(i)) {
+                visited.set(i);
+                stack[size++] = i;
+            }
+        }
+        while (size > 0) {
+            int vertex = stack[--size];
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int neighbour = targets[i];
+                if (!visited.get(neighbour)) {
+                    visited.set(neighbour);
+                    stack[size++] = neighbour;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Checks if there exists a path in the graph from the start vertex to the
+     * end vertex.
+     *
+     * @param start the start vertex
+     * @param end the end vertex
+     * @return {@code true} if there is a path in the graph from the start
+     * vertex to the end vertex, {@code false} otherwise
+     */
+    public boolean hasPath(int start, int end) {
+        if (start == end) {
+            return true;
+        }
+        BitSet visited = new BitSet(getVertexCount());
+        int[] stack = new int[getVertexCount()];
+        int size = 0;
+        visited.set(start);
+        stack[size++] = start;
+        while (size > 0) {
+            int vertex = stack[--size];
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int neighbour = targets[i];
+                if (neighbour == end) {
+                    return true;
+                }
+                if (!visited.get(neighbour)) {
+                    visited.set(neighbour);
+                    stack[size++] = neighbour;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the strongly connected components in the graph in topological
+     * order. Iterative implementation of Tarjan's algorithm, visiting the
+     * vertices and their neighbours in the same order as the recursive
+     * algorithm would.
+     *
+     * @return the strongly connected components in topological order
+     * @see GraphUtil#computeStronglyConnectedComponents(Graph)
+     */
+    public List<int[]> computeStronglyConnectedComponents() {
+        int n = getVertexCount();
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] lowIndex = new int[n];
+        BitSet onStack = new BitSet(n);
+        int[] stack = new int[n];
+        int stackSize = 0;
+        // The vertices whose neighbours are being visited, and for each vertex
+        // the next edge to visit.
+        int[] callStack = new int[n];
+        int[] nextEdge = new int[n];
+        int depth = 0;
+        int counter = 0;
+        List<int[]> components = new ArrayList<>();
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            index[root] = lowIndex[root] = counter++;
+            stack[stackSize++] = root;
+            onStack.set(root);
+            nextEdge[root] = offsets[root];
+            callStack[depth++] = root;
+
+            while (depth > 0) {
+                int vertex = callStack[depth - 1];
+                if (nextEdge[vertex] < offsets[vertex + 1]) {
+                    int neighbour = targets[nextEdge[vertex]++];
+                    if (index[neighbour] == -1) {
+                        index[neighbour] = lowIndex[neighbour] = counter++;
+                        stack[stackSize++] = neighbour;
+                        onStack.set(neighbour);
+                        nextEdge[neighbour] = offsets[neighbour];
+                        callStack[depth++] = neighbour;
+                    } else if (onStack.get(neighbour)) {
+                        lowIndex[vertex] = Math.min(lowIndex[vertex], index[neighbour]);
+                    }
+                } else {
+                    depth--;
+                    if (lowIndex[vertex] == index[vertex]) {
+                        int bottom = stackSize;
+                        do {
+                            bottom--;
+                            onStack.clear(stack[bottom]);
+                        } while (stack[bottom] != vertex);
+                        components.add(Arrays.copyOfRange(stack, bottom, stackSize));
+                        stackSize = bottom;
+                    }
+                    if (depth > 0) {
+                        int parent = callStack[depth - 1];
+                        lowIndex[parent] = Math.min(lowIndex[parent], lowIndex[vertex]);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append('{');
+        for (int vertex = 0; vertex < getVertexCount(); vertex++) {
+            if (vertex > 0) {
+                result.append(", ");
+            }
+            result.append(vertex).append("->").append(Arrays.toString(getNeighbours(vertex)));
+        }
+        return result.append('}').toString();
+    }
+
+    /**
+     * Builds an {@link IntGraph} one edge at a time.
+     */
+    public static class Builder {
+
+        private int vertexCount = 0;
+        private final TIntArrayList from = new TIntArrayList();
+        private final TIntArrayList to = new TIntArrayList();
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        /**
+         * Add a new vertex without any edges.
+         *
+         * @return the new vertex
+         */
+        public int addVertex() {
+            return vertexCount++;
+        }
+
+        /**
+         * Add an edge between two vertices, adding the vertices if they do not
+         * exist yet. Duplicate edges are kept but do not change the results of
+         * any of the algorithms.
+         *
+         * @param fromVertex the start of the edge
+         * @param toVertex the end of the edge
+         * @return this builder
+         */
+        public Builder addEdge(int fromVertex, int toVertex) {
+            if (fromVertex < 0 || toVertex < 0) {
+                throw new IllegalArgumentException();
+            }
+            vertexCount = Math.max(vertexCount, Math.max(fromVertex, toVertex) + 1);
+            from.add(fromVertex);
+            to.add(toVertex);
+            return this;
+        }
+
+        public IntGraph build() {
+            int[] offsets = new int[vertexCount + 1];
+            for (int i = 0; i < from.size(); i++) {
+                offsets[from.getQuick(i) + 1]++;
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] targets = new int[to.size()];
+            int[] next = Arrays.copyOf(offsets, vertexCount);
+            for (int i = 0; i < from.size(); i++) {
+                targets[next[from.getQuick(i)]++] = to.getQuick(i);
+            }
+            return new IntGraph(offsets, targets);
+        }
+    }
+}
@@ -65,6 +65,8 @@ public interface IrBoolExprVisitor<A, B> {
 
     public B visit(IrUnreachable ir, A a);
 
+    public B visit(IrOrderedForest ir, A a);
+
     public B visit(IrFilterString ir, A a);
 
     public B visit(IrPrefix ir, A a);
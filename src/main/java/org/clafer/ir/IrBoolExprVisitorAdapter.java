@@ -142,6 +142,11 @@ public abstract class IrBoolExprVisitorAdapter<A, B> implements IrBoolExprVisito
         return null;
     }
 
+    @Override
+    public B visit(IrOrderedForest ir, A a) {
+        return null;
+    }
+
     @Override
     public B visit(IrFilterString ir, A a) {
         return null;
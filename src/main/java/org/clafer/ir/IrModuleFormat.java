@@ -0,0 +1,107 @@
+package org.clafer.ir;
+
+/**
+ * The constants shared by {@link IrModuleWriter} and {@link IrModuleReader}.
+ * <p>
+ * A stream starts with {@link #Magic} and {@link #Version}, followed by
+ * records. Every record except {@link #Ref} defines the next node of the
+ * stream, numbered from zero. Nodes reference earlier nodes by the distance
+ * back from the node being defined, which keeps references small since
+ * children are usually written right before their parents. Integers are
+ * variable length, signed integers are zigzag encoded first, and domains are
+ * written as their intervals.
+ * </p>
+ * <p>
+ * Appending new tags is backwards compatible, reordering is not. Bump the
+ * version on any other change.
+ * </p>
+ *
+ * @author jimmy
+ */
+final class IrModuleFormat {
+
+    private IrModuleFormat() {
+    }
+    // "CLIR" in ASCII.
+    static final int Magic = 0x434c4952;
+    static final int Version = 1;
+    // References a previously defined node.
+    static final byte Ref = 0;
+    // Variables.
+    static final byte BoolVar = 1;
+    static final byte BoolConstant = 2;
+    static final byte IntVar = 3;
+    static final byte IntConstant = 4;
+    static final byte SetVar = 5;
+    static final byte SetConstant = 6;
+    static final byte StringVar = 7;
+    static final byte StringConstant = 8;
+    // Boolean expressions.
+    static final byte Register = 9;
+    static final byte Not = 10;
+    static final byte And = 11;
+    static final byte Lone = 12;
+    static final byte One = 13;
+    static final byte Or = 14;
+    static final byte Implies = 15;
+    static final byte NotImplies = 16;
+    static final byte IfThenElse = 17;
+    static final byte IfOnlyIf = 18;
+    static final byte Xor = 19;
+    static final byte Within = 20;
+    static final byte Compare = 21;
+    static final byte SetEquality = 22;
+    static final byte StringCompare = 23;
+    static final byte Member = 24;
+    static final byte NotMember = 25;
+    static final byte SubsetEq = 26;
+    static final byte BoolChannel = 27;
+    static final byte IntChannel = 28;
+    static final byte SortStrings = 29;
+    static final byte SortSets = 30;
+    static final byte SortStringsChannel = 31;
+    static final byte AllDifferent = 32;
+    static final byte SelectN = 33;
+    static final byte Acyclic = 34;
+    static final byte Unreachable = 35;
+    static final byte OrderedForest = 36;
+    static final byte FilterString = 37;
+    static final byte Prefix = 38;
+    static final byte Suffix = 39;
+    // Integer expressions.
+    static final byte Minus = 40;
+    static final byte Card = 41;
+    static final byte Add = 42;
+    static final byte Mul = 43;
+    static final byte Div = 44;
+    static final byte Element = 45;
+    static final byte Count = 46;
+    static final byte SetSum = 47;
+    static final byte Ternary = 48;
+    static final byte Length = 49;
+    // Set expressions.
+    static final byte Singleton = 50;
+    static final byte ArrayToSet = 51;
+    static final byte JoinRelation = 52;
+    static final byte JoinFunction = 53;
+    static final byte SetDifference = 54;
+    static final byte SetIntersection = 55;
+    static final byte SetUnion = 56;
+    static final byte Offset = 57;
+    static final byte Mask = 58;
+    static final byte SetTernary = 59;
+    // String expressions.
+    static final byte StringElement = 60;
+    static final byte Concat = 61;
+    // Domains.
+    static final byte EmptyDomain = 0;
+    static final byte TrueDomain = 1;
+    static final byte FalseDomain = 2;
+    static final byte TrueFalseDomain = 3;
+    // The low bound then the distance to the high bound.
+    static final byte BoundDomain = 4;
+    // The number of intervals, then the first interval like a bound domain,
+    // then for every other interval the gap from the previous interval and
+    // the distance from its low to its high bound.
+    static final byte IntervalDomain = 5;
+}
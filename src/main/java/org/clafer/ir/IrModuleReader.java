@@ -0,0 +1,589 @@
+package org.clafer.ir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.clafer.common.Check;
+import org.clafer.domain.BoolDomain;
+import org.clafer.domain.Domain;
+import org.clafer.domain.Domains;
+import static org.clafer.ir.IrModuleFormat.*;
+
+/**
+ * Reads modules and expressions written by {@link IrModuleWriter}. The reads
+ * must be in the same order as the writes. Nodes that were shared when written
+ * are shared after reading, in particular every variable is read exactly once
+ * no matter how many expressions reference it.
+ * <p>
+ * The input is read in large blocks and decoded in place, the only objects
+ * allocated are the nodes themselves and their arrays. Domains are built
+ * through {@link Domains}, so common domains are shared.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IrModuleReader {
+
+    private static final int BufferSize = 1 << 16;
+    // Null if reading from a buffer.
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private IrExpr[] nodes = new IrExpr[256];
+    private int size = 0;
+
+    /**
+     * Reads from a channel. The channel is not closed by the reader.
+     *
+     * @param channel the channel
+     * @throws IOException if an I/O error occurs or the input is not in the
+     * format
+     */
+    public IrModuleReader(ReadableByteChannel channel) throws IOException {
+        this.channel = Check.notNull(channel);
+        this.buffer = ByteBuffer.allocate(BufferSize);
+        this.buffer.flip();
+        readHeader();
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer.
+     *
+     * @param buffer the buffer
+     * @throws IOException if the input is not in the format
+     */
+    public IrModuleReader(ByteBuffer buffer) throws IOException {
+        this.channel = null;
+        this.buffer = Check.notNull(buffer);
+        readHeader();
+    }
+
+    private void readHeader() throws IOException {
+        require(4);
+        if (buffer.getInt() != Magic) {
+            throw new IOException("Not an IR module");
+        }
+        int version = getVarInt();
+        if (version != Version) {
+            throw new IOException("Unsupported version " + version);
+        }
+    }
+
+    /**
+     * Read the constraints of a module.
+     *
+     * @return the module
+     * @throws IOException if an I/O error occurs or the input is malformed
+     */
+    public IrModule readModule() throws IOException {
+        int length = getLength();
+        IrModule module = new IrModule(length);
+        for (int i = 0; i < length; i++) {
+            module.addConstraint(readExpr(IrBoolExpr.class));
+        }
+        return module;
+    }
+
+    /**
+     * Read the next expression.
+     *
+     * @param <T> the type of the expression
+     * @param type the type of the expression
+     * @return the expression
+     * @throws IOException if an I/O error occurs or the input is malformed
+     */
+    public <T extends IrExpr> T readExpr(Class<T> type) throws IOException {
+        IrExpr expr = readExpr();
+        if (!type.isInstance(expr)) {
+            throw new IOException("Expected " + type.getSimpleName() + " but read " + expr);
+        }
+        return type.cast(expr);
+    }
+
+    public <T extends IrExpr> T[] readExprs(Class<T> type) throws IOException {
+        @SuppressWarnings("unchecked")
+        T[] exprs = (T[]) Array.newInstance(type, getLength());
+        for (int i = 0; i < exprs.length; i++) {
+            exprs[i] = readExpr(type);
+        }
+        return exprs;
+    }
+
+    /**
+     * Read an integer written by {@link IrModuleWriter#writeInt(int)}.
+     *
+     * @return the integer
+     * @throws IOException if an I/O error occurs or the input is malformed
+     */
+    public int readInt() throws IOException {
+        return getSignedVarInt();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return getBoolean();
+    }
+
+    private IrExpr readExpr() throws IOException {
+        while (true) {
+            byte tag = getByte();
+            if (tag == Ref) {
+                return node(IrExpr.class);
+            }
+            IrExpr node;
+            try {
+                node = readNode(tag);
+            } catch (IllegalArgumentException e) {
+                // The node constructors reject inconsistent fields.
+                throw new IOException(e);
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+        }
+    }
+
+    /*
+     * Buffer access.
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            fill(bytes);
+        }
+    }
+
+    private void fill(int bytes) throws IOException {
+        if (channel == null) {
+            throw new EOFException();
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private byte getByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    private boolean getBoolean() throws IOException {
+        byte b = getByte();
+        if (b != 0 && b != 1) {
+            throw new IOException("Malformed boolean " + b);
+        }
+        return b == 1;
+    }
+
+    private int getVarInt() throws IOException {
+        int i = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = getByte();
+            i |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return i;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private int getSignedVarInt() throws IOException {
+        int i = getVarInt();
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    /**
+     * @return a lower bound on the number of bytes left in the input
+     */
+    private long available() throws IOException {
+        long available = buffer.remaining();
+        if (channel instanceof SeekableByteChannel) {
+            SeekableByteChannel seekable = (SeekableByteChannel) channel;
+            available += Math.max(0, seekable.size() - seekable.position());
+        } else if (channel != null) {
+            // Unknown size.
+            return Long.MAX_VALUE;
+        }
+        return available;
+    }
+
+    private int getLength() throws IOException {
+        int length = getVarInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        // Every element takes at least one byte. Checked before allocating so
+        // a corrupt length fails rather than running out of memory.
+        if (length > available()) {
+            throw new IOException("Length " + length + " exceeds the remaining input");
+        }
+        return length;
+    }
+
+    private String getString() throws IOException {
+        int length = getLength();
+        if (length <= buffer.capacity()) {
+            require(length);
+            if (buffer.hasArray()) {
+                String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return s;
+            }
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            require(1);
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] getInts() throws IOException {
+        int[] is = new int[getLength()];
+        for (int i = 0; i < is.length; i++) {
+            is[i] = getSignedVarInt();
+        }
+        return is;
+    }
+
+    private Integer getGlobalCardinality() throws IOException {
+        return getBoolean() ? getSignedVarInt() : null;
+    }
+
+    private <E extends Enum<E>> E getOp(E[] ops) throws IOException {
+        int ordinal = getVarInt();
+        if (ordinal < 0 || ordinal >= ops.length) {
+            throw new IOException("Unknown operator " + ordinal);
+        }
+        return ops[ordinal];
+    }
+
+    private Domain getDomain() throws IOException {
+        byte tag = getByte();
+        switch (tag) {
+            case EmptyDomain:
+                return Domains.EmptyDomain;
+            case TrueDomain:
+                return Domains.TrueDomain;
+            case FalseDomain:
+                return Domains.FalseDomain;
+            case TrueFalseDomain:
+                return Domains.TrueFalseDomain;
+            case BoundDomain: {
+                int low = getSignedVarInt();
+                int high = low + getVarInt();
+                if (high < low) {
+                    throw new IOException("Malformed domain [" + low + ", " + high + "]");
+                }
+                return Domains.boundDomain(low, high);
+            }
+            case IntervalDomain: {
+                int count = getLength();
+                if (count < 2) {
+                    throw new IOException("Malformed domain of " + count + " intervals");
+                }
+                int[] bounds = new int[count * 2];
+                bounds[0] = getSignedVarInt();
+                bounds[1] = bounds[0] + getVarInt();
+                for (int i = 2; i < bounds.length; i += 2) {
+                    bounds[i] = bounds[i - 1] + getVarInt() + 2;
+                    bounds[i + 1] = bounds[i] + getVarInt();
+                }
+                // Overflowing bounds are out of order and rejected.
+                return Domains.intervalDomain(bounds);
+            }
+            default:
+                throw new IOException("Unknown domain " + tag);
+        }
+    }
+
+    private BoolDomain getBoolDomain() throws IOException {
+        Domain domain = getDomain();
+        if (!(domain instanceof BoolDomain)) {
+            throw new IOException("Expected boolean domain but read " + domain);
+        }
+        return (BoolDomain) domain;
+    }
+
+    private Domain[] getDomains() throws IOException {
+        Domain[] domains = new Domain[getLength()];
+        for (int i = 0; i < domains.length; i++) {
+            domains[i] = getDomain();
+        }
+        return domains;
+    }
+
+    /*
+     * Node references, relative to the node being read.
+     */
+    private <T extends IrExpr> T node(Class<T> type) throws IOException {
+        int distance = getVarInt();
+        if (distance <= 0 || distance > size) {
+            throw new IOException("Reference to undefined node " + (size - distance));
+        }
+        IrExpr node = nodes[size - distance];
+        if (!type.isInstance(node)) {
+            throw new IOException("Expected " + type.getSimpleName() + " but referenced " + node);
+        }
+        return type.cast(node);
+    }
+
+    private IrBoolExpr bool() throws IOException {
+        return node(IrBoolExpr.class);
+    }
+
+    private IrIntExpr integer() throws IOException {
+        return node(IrIntExpr.class);
+    }
+
+    private IrIntVar intVar() throws IOException {
+        return node(IrIntVar.class);
+    }
+
+    private IrSetExpr set() throws IOException {
+        return node(IrSetExpr.class);
+    }
+
+    private IrStringExpr string() throws IOException {
+        return node(IrStringExpr.class);
+    }
+
+    private IrBoolExpr[] bools() throws IOException {
+        IrBoolExpr[] array = new IrBoolExpr[getLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = bool();
+        }
+        return array;
+    }
+
+    private IrIntExpr[] integers() throws IOException {
+        IrIntExpr[] array = new IrIntExpr[getLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = integer();
+        }
+        return array;
+    }
+
+    private IrIntExpr[][] integerss() throws IOException {
+        IrIntExpr[][] array = new IrIntExpr[getLength()][];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = integers();
+        }
+        return array;
+    }
+
+    private IrIntVar[] intVars() throws IOException {
+        IrIntVar[] array = new IrIntVar[getLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = intVar();
+        }
+        return array;
+    }
+
+    private IrSetExpr[] sets() throws IOException {
+        IrSetExpr[] array = new IrSetExpr[getLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = set();
+        }
+        return array;
+    }
+
+    private IrStringExpr[] strings() throws IOException {
+        IrStringExpr[] array = new IrStringExpr[getLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = string();
+        }
+        return array;
+    }
+
+    private IrExpr readNode(byte tag) throws IOException {
+        switch (tag) {
+            case BoolVar:
+                return new IrBoolVar(getString(), getBoolDomain());
+            case BoolConstant:
+                return Irs.constant(getBoolean());
+            case IntVar:
+                return new IrIntVar(getString(), getDomain());
+            case IntConstant:
+                return new IrIntConstant(getSignedVarInt());
+            case SetVar: {
+                String name = getString();
+                Domain env = getDomain();
+                Domain ker = getDomain();
+                return new IrSetVar(name, env, ker, intVar());
+            }
+            case SetConstant:
+                return Irs.constant(getDomain());
+            case StringVar: {
+                String name = getString();
+                IrIntVar[] chars = intVars();
+                return new IrStringVar(name, chars, intVar());
+            }
+            case StringConstant:
+                return Irs.constant(getString());
+            case Register:
+                return new IrRegister(node(IrVar.class));
+            case Not:
+                return new IrNot(bool(), getBoolDomain());
+            case And:
+                return new IrAnd(bools(), getBoolDomain());
+            case Lone:
+                return new IrLone(bools(), getBoolDomain());
+            case One:
+                return new IrOne(bools(), getBoolDomain());
+            case Or:
+                return new IrOr(bools(), getBoolDomain());
+            case Implies:
+                return new IrImplies(bool(), bool(), getBoolDomain());
+            case NotImplies:
+                return new IrNotImplies(bool(), bool(), getBoolDomain());
+            case IfThenElse:
+                return new IrIfThenElse(bool(), bool(), bool(), getBoolDomain());
+            case IfOnlyIf:
+                return new IrIfOnlyIf(bool(), bool(), getBoolDomain());
+            case Xor:
+                return new IrXor(bool(), bool(), getBoolDomain());
+            case Within: {
+                IrIntExpr value = integer();
+                BoolDomain domain = getBoolDomain();
+                return new IrWithin(value, getDomain(), domain);
+            }
+            case Compare: {
+                IrIntExpr left = integer();
+                IrIntExpr right = integer();
+                BoolDomain domain = getBoolDomain();
+                return new IrCompare(left, getOp(IrCompare.Op.values()), right, domain);
+            }
+            case SetEquality: {
+                IrSetExpr left = set();
+                IrSetExpr right = set();
+                BoolDomain domain = getBoolDomain();
+                return new IrSetEquality(left, getOp(IrSetEquality.Op.values()), right, domain);
+            }
+            case StringCompare: {
+                IrStringExpr left = string();
+                IrStringExpr right = string();
+                BoolDomain domain = getBoolDomain();
+                return new IrStringCompare(left, getOp(IrStringCompare.Op.values()), right, domain);
+            }
+            case Member:
+                return new IrMember(integer(), set(), getBoolDomain());
+            case NotMember:
+                return new IrNotMember(integer(), set(), getBoolDomain());
+            case SubsetEq:
+                return new IrSubsetEq(set(), set(), getBoolDomain());
+            case BoolChannel:
+                return new IrBoolChannel(bools(), set(), getBoolDomain());
+            case IntChannel:
+                return new IrIntChannel(integers(), sets(), getBoolDomain());
+            case SortStrings: {
+                IrIntExpr[][] strings = integerss();
+                boolean strict = getBoolean();
+                return new IrSortStrings(strings, strict, getBoolDomain());
+            }
+            case SortSets:
+                return new IrSortSets(sets(), getBoolDomain());
+            case SortStringsChannel:
+                return new IrSortStringsChannel(integerss(), integers(), getBoolDomain());
+            case AllDifferent:
+                return new IrAllDifferent(integers(), getBoolDomain());
+            case SelectN:
+                return new IrSelectN(bools(), integer(), getBoolDomain());
+            case Acyclic:
+                return new IrAcyclic(integers(), getBoolDomain());
+            case Unreachable: {
+                IrIntExpr[] edges = integers();
+                BoolDomain domain = getBoolDomain();
+                int from = getSignedVarInt();
+                int to = getSignedVarInt();
+                return new IrUnreachable(edges, from, to, domain);
+            }
+            case OrderedForest: {
+                IrIntExpr[] edges = integers();
+                BoolDomain domain = getBoolDomain();
+                return new IrOrderedForest(edges, getInts(), domain);
+            }
+            case FilterString: {
+                IrSetExpr set = set();
+                int offset = getSignedVarInt();
+                IrIntExpr[] string = integers();
+                IrIntExpr[] result = integers();
+                return new IrFilterString(set, offset, string, result, getBoolDomain());
+            }
+            case Prefix:
+                return new IrPrefix(string(), string(), getBoolDomain());
+            case Suffix:
+                return new IrSuffix(string(), string(), getBoolDomain());
+            case Minus:
+                return new IrMinus(integer(), getDomain());
+            case Card:
+                return new IrCard(set(), getDomain());
+            case Add: {
+                IrIntExpr[] addends = integers();
+                Domain domain = getDomain();
+                return new IrAdd(addends, getSignedVarInt(), domain);
+            }
+            case Mul:
+                return new IrMul(integer(), integer(), getDomain());
+            case Div:
+                return new IrDiv(integer(), integer(), getDomain());
+            case Element:
+                return new IrElement(integers(), integer(), getDomain());
+            case Count: {
+                IrIntExpr[] array = integers();
+                Domain domain = getDomain();
+                return new IrCount(getSignedVarInt(), array, domain);
+            }
+            case SetSum:
+                return new IrSetSum(set(), getDomain());
+            case Ternary:
+                return new IrTernary(bool(), integer(), integer(), getDomain());
+            case Length:
+                return new IrLength(string(), getDomain());
+            case Singleton:
+                return new IrSingleton(integer(), getDomain(), getDomain());
+            case ArrayToSet:
+                return new IrArrayToSet(integers(),
+                        getDomain(), getDomain(), getDomain(), getGlobalCardinality());
+            case JoinRelation:
+                return new IrJoinRelation(set(), sets(),
+                        getDomain(), getDomain(), getDomain(), getBoolean());
+            case JoinFunction:
+                return new IrJoinFunction(set(), integers(),
+                        getDomain(), getDomain(), getDomain(), getGlobalCardinality());
+            case SetDifference:
+                return new IrSetDifference(set(), set(), getDomain(), getDomain(), getDomain());
+            case SetIntersection:
+                return new IrSetIntersection(sets(), getDomain(), getDomain(), getDomain());
+            case SetUnion:
+                return new IrSetUnion(sets(),
+                        getDomain(), getDomain(), getDomain(), getBoolean());
+            case Offset:
+                return new IrOffset(set(), getSignedVarInt(), getDomain(), getDomain(), getDomain());
+            case Mask:
+                return new IrMask(set(), getSignedVarInt(), getSignedVarInt(), getDomain(), getDomain(), getDomain());
+            case SetTernary:
+                return new IrSetTernary(bool(), set(), set(), getDomain(), getDomain(), getDomain());
+            case StringElement:
+                return new IrStringElement(strings(), integer(), getDomains(), getDomain());
+            case Concat:
+                return new IrConcat(string(), string(), getDomains(), getDomain());
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+}
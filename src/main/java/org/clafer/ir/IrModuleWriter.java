@@ -0,0 +1,837 @@
+package org.clafer.ir;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.clafer.common.Check;
+import org.clafer.domain.BoolDomain;
+import org.clafer.domain.Domain;
+import org.clafer.domain.Domains;
+import static org.clafer.ir.IrModuleFormat.*;
+
+/**
+ * Writes modules and expressions in the binary format described in
+ * {@link IrModuleFormat}, readable by {@link IrModuleReader}. Every node is
+ * written once, the first time it is referenced, so expressions shared in the
+ * IR are shared after reading. The same writer must be used for expressions
+ * that should share variables after reading.
+ * <p>
+ * The output is buffered, call {@link #flush()} after the last write. The
+ * channel is not closed by the writer.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IrModuleWriter implements Flushable {
+
+    private static final int BufferSize = 1 << 16;
+    // The longest variable length integer.
+    private static final int MaxVarIntSize = 5;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BufferSize);
+    private final Map<IrExpr, Integer> ids = new IdentityHashMap<>();
+    private final Visitor visitor = new Visitor();
+
+    public IrModuleWriter(WritableByteChannel channel) {
+        this.channel = Check.notNull(channel);
+        buffer.putInt(Magic);
+        putVarInt(Version);
+    }
+
+    /**
+     * Write the constraints of the module.
+     *
+     * @param module the module
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeModule(IrModule module) throws IOException {
+        writeLength(module.getConstraints().size());
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            writeExpr(constraint);
+        }
+    }
+
+    /**
+     * Write a reference to the expression, and the expression itself if it is
+     * the first reference.
+     *
+     * @param expr the expression
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeExpr(IrExpr expr) throws IOException {
+        try {
+            int id = id(expr);
+            putByte(Ref);
+            putVarInt(ids.size() - id);
+        } catch (IOFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    public void writeExprs(IrExpr[] exprs) throws IOException {
+        writeLength(exprs.length);
+        for (IrExpr expr : exprs) {
+            writeExpr(expr);
+        }
+    }
+
+    /**
+     * Write an integer, for callers that store their own data alongside the
+     * expressions. Small magnitudes take less space.
+     *
+     * @param i the integer
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeInt(int i) throws IOException {
+        try {
+            putSignedVarInt(i);
+        } catch (IOFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    public void writeBoolean(boolean b) throws IOException {
+        try {
+            putBoolean(b);
+        } catch (IOFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeLength(int length) throws IOException {
+        try {
+            putVarInt(length);
+        } catch (IOFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Write the buffered output to the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new IOFailure(e);
+            }
+        }
+    }
+
+    private void putByte(byte b) {
+        ensure(1);
+        buffer.put(b);
+    }
+
+    private void putBoolean(boolean b) {
+        putByte(b ? (byte) 1 : (byte) 0);
+    }
+
+    /*
+     * Seven bits at a time, least significant first. The high bit of a byte
+     * is set if more bytes follow. Negative integers take the full five
+     * bytes.
+     */
+    private void putVarInt(int i) {
+        ensure(MaxVarIntSize);
+        while ((i & ~0x7F) != 0) {
+            buffer.put((byte) ((i & 0x7F) | 0x80));
+            i >>>= 7;
+        }
+        buffer.put((byte) i);
+    }
+
+    // Zigzag encoding so integers close to zero are short.
+    private void putSignedVarInt(int i) {
+        putVarInt((i << 1) ^ (i >> 31));
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private int id(IrExpr expr) {
+        Integer id = ids.get(expr);
+        if (id == null) {
+            if (expr instanceof IrIntExpr) {
+                ((IrIntExpr) expr).accept(visitor, null);
+            } else if (expr instanceof IrSetExpr) {
+                ((IrSetExpr) expr).accept(visitor, null);
+            } else if (expr instanceof IrStringExpr) {
+                ((IrStringExpr) expr).accept(visitor, null);
+            } else {
+                throw new IllegalArgumentException("Unknown expression " + expr);
+            }
+            id = ids.size();
+            ids.put(expr, id);
+        }
+        return id.intValue();
+    }
+
+    private int[] ids(IrExpr[] exprs) {
+        int[] exprIds = new int[exprs.length];
+        for (int i = 0; i < exprIds.length; i++) {
+            exprIds[i] = id(exprs[i]);
+        }
+        return exprIds;
+    }
+
+    private int[][] ids(IrExpr[][] exprs) {
+        int[][] exprIds = new int[exprs.length][];
+        for (int i = 0; i < exprIds.length; i++) {
+            exprIds[i] = ids(exprs[i]);
+        }
+        return exprIds;
+    }
+
+    /**
+     * Carries an I/O exception out of the visitor, which cannot throw checked
+     * exceptions.
+     */
+    private static class IOFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        IOFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /*
+     * The visitor writes the node records. The children of a node are
+     * written before its tag so the reader always knows the children by the
+     * time it reads the parent.
+     */
+    private class Visitor implements IrIntExprVisitor<Void, Void>, IrSetExprVisitor<Void, Void>, IrStringExprVisitor<Void, Void> {
+
+        private void tag(byte tag) {
+            putByte(tag);
+        }
+
+        /*
+         * Only called while writing the record of the next node, whose id
+         * is ids.size(), after the ids of its children are known.
+         */
+        private void writeRef(int id) {
+            putVarInt(ids.size() - id);
+        }
+
+        private void writeRefs(int[] refs) {
+            putVarInt(refs.length);
+            for (int ref : refs) {
+                writeRef(ref);
+            }
+        }
+
+        private void writeRefss(int[][] refss) {
+            putVarInt(refss.length);
+            for (int[] refs : refss) {
+                writeRefs(refs);
+            }
+        }
+
+        private void writeInt(int i) {
+            putSignedVarInt(i);
+        }
+
+        private void writeInts(int[] is) {
+            putVarInt(is.length);
+            for (int i : is) {
+                putSignedVarInt(i);
+            }
+        }
+
+        private void writeBoolean(boolean b) {
+            putBoolean(b);
+        }
+
+        private void writeString(String s) {
+            putString(s);
+        }
+
+        private void writeOp(Enum<?> op) {
+            putVarInt(op.ordinal());
+        }
+
+        private void writeDomain(Domain domain) {
+            if (domain instanceof BoolDomain) {
+                switch ((BoolDomain) domain) {
+                    case TrueDomain:
+                        tag(TrueDomain);
+                        return;
+                    case FalseDomain:
+                        tag(FalseDomain);
+                        return;
+                    case TrueFalseDomain:
+                        tag(TrueFalseDomain);
+                        return;
+                }
+            }
+            if (domain.isEmpty()) {
+                tag(EmptyDomain);
+            } else if (domain.isBounded()) {
+                tag(BoundDomain);
+                putSignedVarInt(domain.getLowBound());
+                // Unsigned, so the widest domains still fit.
+                putVarInt(domain.getHighBound() - domain.getLowBound());
+            } else {
+                int[] bounds = Domains.intervalsOf(domain);
+                tag(IntervalDomain);
+                putVarInt(bounds.length / 2);
+                putSignedVarInt(bounds[0]);
+                putVarInt(bounds[1] - bounds[0]);
+                for (int i = 2; i < bounds.length; i += 2) {
+                    // Intervals are separated by at least one value.
+                    putVarInt(bounds[i] - bounds[i - 1] - 2);
+                    putVarInt(bounds[i + 1] - bounds[i]);
+                }
+            }
+        }
+
+        private void writeDomains(Domain[] domains) {
+            putVarInt(domains.length);
+            for (Domain domain : domains) {
+                writeDomain(domain);
+            }
+        }
+
+        private void writeSetDomains(IrSetExpr set) {
+            writeDomain(set.getEnv());
+            writeDomain(set.getKer());
+            writeDomain(set.getCard());
+        }
+
+        private void writeGlobalCardinality(Integer globalCardinality) {
+            writeBoolean(globalCardinality != null);
+            if (globalCardinality != null) {
+                writeInt(globalCardinality);
+            }
+        }
+
+        private Void unary(byte tag, IrExpr expr, Domain domain) {
+            int exprId = id(expr);
+            tag(tag);
+            writeRef(exprId);
+            writeDomain(domain);
+            return null;
+        }
+
+        private Void binary(byte tag, IrExpr left, IrExpr right, Domain domain) {
+            int leftId = id(left);
+            int rightId = id(right);
+            tag(tag);
+            writeRef(leftId);
+            writeRef(rightId);
+            writeDomain(domain);
+            return null;
+        }
+
+        private Void ternary(byte tag, IrExpr antecedent, IrExpr consequent, IrExpr alternative) {
+            int antecedentId = id(antecedent);
+            int consequentId = id(consequent);
+            int alternativeId = id(alternative);
+            tag(tag);
+            writeRef(antecedentId);
+            writeRef(consequentId);
+            writeRef(alternativeId);
+            return null;
+        }
+
+        private Void nary(byte tag, IrExpr[] operands, Domain domain) {
+            int[] operandIds = ids(operands);
+            tag(tag);
+            writeRefs(operandIds);
+            writeDomain(domain);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrRegister ir, Void a) {
+            int variableId = id(ir.getVariable());
+            tag(Register);
+            writeRef(variableId);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrBoolVar ir, Void a) {
+            if (ir instanceof IrBoolConstant) {
+                tag(BoolConstant);
+                writeBoolean(((IrBoolConstant) ir).getValue());
+            } else {
+                tag(BoolVar);
+                writeString(ir.getName());
+                writeDomain(ir.getDomain());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrNot ir, Void a) {
+            return unary(Not, ir.getExpr(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrAnd ir, Void a) {
+            return nary(And, ir.getOperands(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrLone ir, Void a) {
+            return nary(Lone, ir.getOperands(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrOne ir, Void a) {
+            return nary(One, ir.getOperands(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrOr ir, Void a) {
+            return nary(Or, ir.getOperands(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrImplies ir, Void a) {
+            return binary(Implies, ir.getAntecedent(), ir.getConsequent(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrNotImplies ir, Void a) {
+            return binary(NotImplies, ir.getAntecedent(), ir.getConsequent(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrIfThenElse ir, Void a) {
+            ternary(IfThenElse, ir.getAntecedent(), ir.getConsequent(), ir.getAlternative());
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrIfOnlyIf ir, Void a) {
+            return binary(IfOnlyIf, ir.getLeft(), ir.getRight(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrXor ir, Void a) {
+            return binary(Xor, ir.getLeft(), ir.getRight(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrWithin ir, Void a) {
+            unary(Within, ir.getValue(), ir.getDomain());
+            writeDomain(ir.getRange());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrCompare ir, Void a) {
+            binary(Compare, ir.getLeft(), ir.getRight(), ir.getDomain());
+            writeOp(ir.getOp());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetEquality ir, Void a) {
+            binary(SetEquality, ir.getLeft(), ir.getRight(), ir.getDomain());
+            writeOp(ir.getOp());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrStringCompare ir, Void a) {
+            binary(StringCompare, ir.getLeft(), ir.getRight(), ir.getDomain());
+            writeOp(ir.getOp());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrMember ir, Void a) {
+            return binary(Member, ir.getElement(), ir.getSet(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrNotMember ir, Void a) {
+            return binary(NotMember, ir.getElement(), ir.getSet(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrSubsetEq ir, Void a) {
+            return binary(SubsetEq, ir.getSubset(), ir.getSuperset(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrBoolChannel ir, Void a) {
+            int[] boolIds = ids(ir.getBools());
+            int setId = id(ir.getSet());
+            tag(BoolChannel);
+            writeRefs(boolIds);
+            writeRef(setId);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrIntChannel ir, Void a) {
+            int[] intIds = ids(ir.getInts());
+            int[] setIds = ids(ir.getSets());
+            tag(IntChannel);
+            writeRefs(intIds);
+            writeRefs(setIds);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSortStrings ir, Void a) {
+            int[][] stringIds = ids(ir.getStrings());
+            tag(SortStrings);
+            writeRefss(stringIds);
+            writeBoolean(ir.isStrict());
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSortSets ir, Void a) {
+            return nary(SortSets, ir.getSets(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrSortStringsChannel ir, Void a) {
+            int[][] stringIds = ids(ir.getStrings());
+            int[] intIds = ids(ir.getInts());
+            tag(SortStringsChannel);
+            writeRefss(stringIds);
+            writeRefs(intIds);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrAllDifferent ir, Void a) {
+            return nary(AllDifferent, ir.getOperands(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrSelectN ir, Void a) {
+            int[] boolIds = ids(ir.getBools());
+            int nId = id(ir.getN());
+            tag(SelectN);
+            writeRefs(boolIds);
+            writeRef(nId);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrAcyclic ir, Void a) {
+            return nary(Acyclic, ir.getEdges(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrUnreachable ir, Void a) {
+            nary(Unreachable, ir.getEdges(), ir.getDomain());
+            writeInt(ir.getFrom());
+            writeInt(ir.getTo());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrOrderedForest ir, Void a) {
+            nary(OrderedForest, ir.getEdges(), ir.getDomain());
+            writeInts(ir.getGroups());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrFilterString ir, Void a) {
+            int setId = id(ir.getSet());
+            int[] stringIds = ids(ir.getString());
+            int[] resultIds = ids(ir.getResult());
+            tag(FilterString);
+            writeRef(setId);
+            writeInt(ir.getOffset());
+            writeRefs(stringIds);
+            writeRefs(resultIds);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrPrefix ir, Void a) {
+            return binary(Prefix, ir.getPrefix(), ir.getWord(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrSuffix ir, Void a) {
+            return binary(Suffix, ir.getSuffix(), ir.getWord(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrIntVar ir, Void a) {
+            if (ir instanceof IrIntConstant) {
+                tag(IntConstant);
+                writeInt(((IrIntConstant) ir).getValue());
+            } else {
+                tag(IntVar);
+                writeString(ir.getName());
+                writeDomain(ir.getDomain());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrMinus ir, Void a) {
+            return unary(Minus, ir.getExpr(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrCard ir, Void a) {
+            return unary(Card, ir.getSet(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrAdd ir, Void a) {
+            nary(Add, ir.getAddends(), ir.getDomain());
+            writeInt(ir.getOffset());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrMul ir, Void a) {
+            return binary(Mul, ir.getMultiplicand(), ir.getMultiplier(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrDiv ir, Void a) {
+            return binary(Div, ir.getDividend(), ir.getDivisor(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrElement ir, Void a) {
+            int[] arrayIds = ids(ir.getArray());
+            int indexId = id(ir.getIndex());
+            tag(Element);
+            writeRefs(arrayIds);
+            writeRef(indexId);
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrCount ir, Void a) {
+            nary(Count, ir.getArray(), ir.getDomain());
+            writeInt(ir.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetSum ir, Void a) {
+            return unary(SetSum, ir.getSet(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrTernary ir, Void a) {
+            ternary(Ternary, ir.getAntecedent(), ir.getConsequent(), ir.getAlternative());
+            writeDomain(ir.getDomain());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrLength ir, Void a) {
+            return unary(Length, ir.getString(), ir.getDomain());
+        }
+
+        @Override
+        public Void visit(IrSetVar ir, Void a) {
+            if (ir instanceof IrSetConstant) {
+                tag(SetConstant);
+                writeDomain(ir.getEnv());
+            } else {
+                int cardId = id(ir.getCardVar());
+                tag(SetVar);
+                writeString(ir.getName());
+                writeDomain(ir.getEnv());
+                writeDomain(ir.getKer());
+                writeRef(cardId);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSingleton ir, Void a) {
+            int valueId = id(ir.getValue());
+            tag(Singleton);
+            writeRef(valueId);
+            writeDomain(ir.getEnv());
+            writeDomain(ir.getKer());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrArrayToSet ir, Void a) {
+            int[] arrayIds = ids(ir.getArray());
+            tag(ArrayToSet);
+            writeRefs(arrayIds);
+            writeSetDomains(ir);
+            writeGlobalCardinality(ir.getGlobalCardinality());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrJoinRelation ir, Void a) {
+            int takeId = id(ir.getTake());
+            int[] childrenIds = ids(ir.getChildren());
+            tag(JoinRelation);
+            writeRef(takeId);
+            writeRefs(childrenIds);
+            writeSetDomains(ir);
+            writeBoolean(ir.isInjective());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrJoinFunction ir, Void a) {
+            int takeId = id(ir.getTake());
+            int[] refIds = ids(ir.getRefs());
+            tag(JoinFunction);
+            writeRef(takeId);
+            writeRefs(refIds);
+            writeSetDomains(ir);
+            writeGlobalCardinality(ir.getGlobalCardinality());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetDifference ir, Void a) {
+            int minuendId = id(ir.getMinuend());
+            int subtrahendId = id(ir.getSubtrahend());
+            tag(SetDifference);
+            writeRef(minuendId);
+            writeRef(subtrahendId);
+            writeSetDomains(ir);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetIntersection ir, Void a) {
+            int[] operandIds = ids(ir.getOperands());
+            tag(SetIntersection);
+            writeRefs(operandIds);
+            writeSetDomains(ir);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetUnion ir, Void a) {
+            int[] operandIds = ids(ir.getOperands());
+            tag(SetUnion);
+            writeRefs(operandIds);
+            writeSetDomains(ir);
+            writeBoolean(ir.isDisjoint());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrOffset ir, Void a) {
+            int setId = id(ir.getSet());
+            tag(Offset);
+            writeRef(setId);
+            writeInt(ir.getOffset());
+            writeSetDomains(ir);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrMask ir, Void a) {
+            int setId = id(ir.getSet());
+            tag(Mask);
+            writeRef(setId);
+            writeInt(ir.getFrom());
+            writeInt(ir.getTo());
+            writeSetDomains(ir);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetTernary ir, Void a) {
+            ternary(SetTernary, ir.getAntecedent(), ir.getConsequent(), ir.getAlternative());
+            writeSetDomains(ir);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrStringVar ir, Void a) {
+            if (ir instanceof IrStringConstant) {
+                tag(StringConstant);
+                writeString(((IrStringConstant) ir).getValue());
+            } else {
+                int[] charIds = ids(ir.getCharVars());
+                int lengthId = id(ir.getLengthVar());
+                tag(StringVar);
+                writeString(ir.getName());
+                writeRefs(charIds);
+                writeRef(lengthId);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrStringElement ir, Void a) {
+            int[] arrayIds = ids(ir.getArray());
+            int indexId = id(ir.getIndex());
+            tag(StringElement);
+            writeRefs(arrayIds);
+            writeRef(indexId);
+            writeDomains(ir.getChars());
+            writeDomain(ir.getLength());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrConcat ir, Void a) {
+            int leftId = id(ir.getLeft());
+            int rightId = id(ir.getRight());
+            tag(Concat);
+            writeRef(leftId);
+            writeRef(rightId);
+            writeDomains(ir.getChars());
+            writeDomain(ir.getLength());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.clafer.ir;
+
+import org.clafer.domain.BoolDomain;
+import java.util.Arrays;
+import org.clafer.common.Check;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrOrderedForest extends IrAbstractBool {
+
+    private final IrIntExpr[] edges;
+    private final int[] groups;
+
+    public IrOrderedForest(IrIntExpr[] edges, int[] groups, BoolDomain domain) {
+        super(domain);
+        this.edges = Check.noNullsNotEmpty(edges);
+        this.groups = Check.notNull(groups);
+        if (edges.length != groups.length) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    public IrIntExpr[] getEdges() {
+        return edges;
+    }
+
+    public int[] getGroups() {
+        return groups;
+    }
+
+    @Override
+    public IrBoolExpr negate() {
+        return new IrNot(this, getDomain().invert());
+    }
+
+    @Override
+    public boolean isNegative() {
+        return false;
+    }
+
+    @Override
+    public <A, B> B accept(IrBoolExprVisitor<A, B> visitor, A a) {
+        return visitor.visit(this, a);
+    }
+
+    @Override
+    public <A, B> B accept(IrIntExprVisitor<A, B> visitor, A a) {
+        return visitor.visit(this, a);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IrOrderedForest) {
+            IrOrderedForest other = (IrOrderedForest) obj;
+            return Arrays.equals(edges, other.edges)
+                    && Arrays.equals(groups, other.groups)
+                    && super.equals(other);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 251 * Arrays.hashCode(edges) ^ Arrays.hashCode(groups);
+    }
+
+    @Override
+    public String toString() {
+        return "orderedForest(" + Arrays.toString(edges) + ", " + Arrays.toString(groups) + ")";
+    }
+}
@@ -381,6 +381,14 @@ public abstract class IrRewriter<T>
                 : ir;
     }
 
+    @Override
+    public IrIntExpr visit(IrOrderedForest ir, T a) {
+        IrIntExpr[] edges = rewrite(ir.getEdges(), a);
+        return changed(ir.getEdges(), edges)
+                ? orderedForest(edges, ir.getGroups())
+                : ir;
+    }
+
     @Override
     public IrBoolExpr visit(IrFilterString ir, T a) {
         IrSetExpr set = rewrite(ir.getSet(), a);
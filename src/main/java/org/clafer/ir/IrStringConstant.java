@@ -21,6 +21,10 @@ public class IrStringConstant extends IrStringVar implements IrConstant {
         return vars;
     }
 
+    public String getValue() {
+        return value;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -84,6 +84,7 @@ public abstract class IrTraverser<T>
 
     @Override
     public Void visit(IrNot ir, T a) {
+        traverse(ir.getExpr(), a);
         return null;
     }
 
@@ -253,6 +254,12 @@ public abstract class IrTraverser<T>
         return null;
     }
 
+    @Override
+    public Void visit(IrOrderedForest ir, T a) {
+        traverse(ir.getEdges(), a);
+        return null;
+    }
+
     @Override
     public Void visit(IrFilterString ir, T a) {
         traverse(ir.getSet(), a);
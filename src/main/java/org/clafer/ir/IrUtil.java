@@ -296,6 +296,14 @@ public class IrUtil {
         return new VariableRenamer(intRename, setRename, stringRename).rewrite(module, null);
     }
 
+    public static IrBoolExpr renameVariables(
+            IrBoolExpr constraint,
+            Map<IrIntVar, IrIntVar> intRename,
+            Map<IrSetVar, IrSetVar> setRename,
+            Map<IrStringVar, IrStringVar> stringRename) {
+        return new VariableRenamer(intRename, setRename, stringRename).rewrite(constraint, null);
+    }
+
     public static enum Ordering {
 
         LT,
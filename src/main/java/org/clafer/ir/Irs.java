@@ -2,7 +2,6 @@ package org.clafer.ir;
 
 import org.clafer.domain.Domain;
 import static org.clafer.domain.Domains.*;
-import org.clafer.domain.EnumDomain;
 import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.set.TIntSet;
@@ -1000,6 +999,23 @@ public class Irs {
         return new IrUnreachable(edges, from, to, TrueFalseDomain);
     }
 
+    public static IrBoolExpr orderedForest(IrIntExpr[] edges, int[] groups) {
+        if (edges.length != groups.length) {
+            throw new IllegalArgumentException();
+        }
+        if (edges.length == 0) {
+            return True;
+        }
+        TIntHashSet seen = new TIntHashSet(groups.length);
+        for (int group : groups) {
+            if (group >= 0 && !seen.add(group)) {
+                return new IrOrderedForest(edges, groups, TrueFalseDomain);
+            }
+        }
+        // Every group is a singleton so there is no ordering to enforce.
+        return acyclic(edges);
+    }
+
     public static IrBoolExpr filterString(IrSetExpr set, IrIntExpr[] string, IrIntExpr[] result) {
         if (set.getEnv().isEmpty()) {
             return filterString(set, 0, new IrIntExpr[0], result);
@@ -1671,7 +1687,7 @@ public class Irs {
                 values.add(constantRef);
             }
         }
-        Domain ker = values.isEmpty() ? EmptyDomain : new EnumDomain(values.toArray());
+        Domain ker = enumDomain(values);
 
         // Compute card
         Domain takeCard = take.getCard();
@@ -0,0 +1,531 @@
+package org.clafer.ir.analysis;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.clafer.collection.Triple;
+import org.clafer.common.UnsatisfiableException;
+import static org.clafer.domain.BoolDomain.FalseDomain;
+import static org.clafer.domain.BoolDomain.TrueDomain;
+import org.clafer.domain.Domain;
+import static org.clafer.domain.Domains.*;
+import org.clafer.ir.IllegalSetException;
+import org.clafer.ir.IrAdd;
+import org.clafer.ir.IrAnd;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolExprVisitorAdapter;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCard;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrConstant;
+import org.clafer.ir.IrElement;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrImplies;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrMember;
+import org.clafer.ir.IrMinus;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrMul;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrNotImplies;
+import org.clafer.ir.IrNotMember;
+import org.clafer.ir.IrOr;
+import org.clafer.ir.IrRegister;
+import org.clafer.ir.IrSetEquality;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrStringVar;
+import org.clafer.ir.IrSubsetEq;
+import org.clafer.ir.IrUtil;
+import org.clafer.ir.IrVar;
+import org.clafer.ir.IrWithin;
+import org.clafer.ir.IrXor;
+import static org.clafer.ir.Irs.*;
+
+/**
+ * Narrows the domains of integer variables and the envelopes and kernels of
+ * set variables using the constraints of the module. Variables with narrowed
+ * domains are replaced with new variables, or constants if their value is
+ * fixed, and the constraints are rebuilt which may simplify them further.
+ * <p>
+ * Every variable knows the constraints it occurs in, so only the constraints of
+ * the narrowed variables are propagated again. Propagation stops at a fixpoint
+ * or after a number of revisions proportional to the size of the module,
+ * whichever comes first. Stopping early is sound, the domains are only less
+ * narrow. The characters and lengths of strings are never narrowed, the
+ * {@link Coalescer} takes care of them.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class BoundsPropagator {
+
+    // Revisions allowed per constraint before giving up on the fixpoint.
+    private static final int RevisionsPerConstraint = 32;
+
+    private BoundsPropagator() {
+    }
+
+    /**
+     * Propagate the bounds of the variables.
+     *
+     * @param module the module
+     * @return the narrowed integer variables, the narrowed set variables, and
+     * the module in terms of the narrowed variables
+     * @throws UnsatisfiableException if a domain becomes empty
+     */
+    public static Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagate(IrModule module) {
+        return new Propagation(module.getConstraints()).run();
+    }
+
+    private static class Propagation extends IrBoolExprVisitorAdapter<Void, Void> {
+
+        private final IrBoolExpr[] constraints;
+        private final Map<IrVar, TIntArrayList> occurrences = new HashMap<>();
+        private final Map<IrIntVar, IrSetVar> cardOwners = new HashMap<>();
+        private final Set<IrIntVar> frozen = new HashSet<>();
+        private final TIntArrayList queue = new TIntArrayList();
+        private final BitSet queued = new BitSet();
+        // Variables narrowed while propagating the current constraint.
+        private final Map<IrIntVar, IrIntVar> intChanges = new HashMap<>();
+        private final Map<IrSetVar, IrSetVar> setChanges = new HashMap<>();
+        // Original variables to their latest replacement.
+        private final Map<IrIntVar, IrIntVar> intRenames = new HashMap<>();
+        private final Map<IrSetVar, IrSetVar> setRenames = new HashMap<>();
+        // Replacements to the original variables they replace.
+        private final Map<IrIntVar, IrIntVar> intOrigins = new HashMap<>();
+        private final Map<IrSetVar, IrSetVar> setOrigins = new HashMap<>();
+
+        Propagation(List<IrBoolExpr> constraints) {
+            this.constraints = constraints.toArray(new IrBoolExpr[constraints.size()]);
+            for (int i = 0; i < this.constraints.length; i++) {
+                for (IrVar var : IrUtil.getVariables(this.constraints[i])) {
+                    if (var instanceof IrStringVar) {
+                        IrStringVar string = (IrStringVar) var;
+                        Collections.addAll(frozen, string.getCharVars());
+                        frozen.add(string.getLengthVar());
+                    } else if (!(var instanceof IrConstant)) {
+                        occurrences(var).add(i);
+                        if (var instanceof IrSetVar) {
+                            addCardOwner((IrSetVar) var);
+                        }
+                    }
+                }
+                enqueue(i);
+            }
+        }
+
+        private TIntArrayList occurrences(IrVar var) {
+            TIntArrayList list = occurrences.get(var);
+            if (list == null) {
+                list = new TIntArrayList(2);
+                occurrences.put(var, list);
+            }
+            return list;
+        }
+
+        private void addCardOwner(IrSetVar set) {
+            if (!(set.getCardVar() instanceof IrConstant)) {
+                cardOwners.put(set.getCardVar(), set);
+            }
+        }
+
+        private void enqueue(int i) {
+            if (!queued.get(i)) {
+                queued.set(i);
+                queue.add(i);
+            }
+        }
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> run() {
+            long revisions = (long) RevisionsPerConstraint * constraints.length;
+            while (!queue.isEmpty() && revisions-- > 0) {
+                int i = queue.removeAt(queue.size() - 1);
+                queued.clear(i);
+                constraints[i].accept(this, null);
+                apply();
+            }
+            IrModule module = new IrModule(constraints.length);
+            module.addConstraints(constraints);
+            return new Triple<>(intRenames, setRenames, module);
+        }
+
+        /**
+         * Replace the variables narrowed by the last propagation and schedule
+         * the constraints they occur in.
+         */
+        private void apply() {
+            if (intChanges.isEmpty() && setChanges.isEmpty()) {
+                return;
+            }
+            Map<IrIntVar, IrIntVar> ints = new HashMap<>(intChanges);
+            Map<IrSetVar, IrSetVar> sets = new HashMap<>(setChanges);
+            intChanges.clear();
+            setChanges.clear();
+
+            TIntHashSet affected = new TIntHashSet();
+            for (Entry<IrIntVar, IrIntVar> change : ints.entrySet()) {
+                IrIntVar var = change.getKey();
+                IrIntVar replacement = change.getValue();
+                IrIntVar origin = intOrigins.remove(var);
+                origin = origin == null ? var : origin;
+                intRenames.put(origin, replacement);
+                move(var, replacement, affected);
+                if (!(replacement instanceof IrConstant)) {
+                    intOrigins.put(replacement, origin);
+                }
+            }
+            for (Entry<IrSetVar, IrSetVar> change : sets.entrySet()) {
+                IrSetVar var = change.getKey();
+                IrSetVar replacement = change.getValue();
+                IrSetVar origin = setOrigins.remove(var);
+                origin = origin == null ? var : origin;
+                setRenames.put(origin, replacement);
+                move(var, replacement, affected);
+                cardOwners.remove(var.getCardVar());
+                if (!(replacement instanceof IrConstant)) {
+                    setOrigins.put(replacement, origin);
+                    addCardOwner(replacement);
+                }
+            }
+            Map<IrStringVar, IrStringVar> strings = Collections.emptyMap();
+            TIntIterator iter = affected.iterator();
+            while (iter.hasNext()) {
+                int i = iter.next();
+                IrBoolExpr constraint = IrUtil.renameVariables(constraints[i], ints, sets, strings);
+                if (FalseDomain.equals(constraint.getDomain())) {
+                    throw new UnsatisfiableException();
+                }
+                constraints[i] = constraint;
+                enqueue(i);
+            }
+        }
+
+        private void move(IrVar var, IrVar replacement, TIntHashSet affected) {
+            TIntArrayList list = occurrences.remove(var);
+            if (list != null) {
+                affected.addAll(list);
+                if (!(replacement instanceof IrConstant)) {
+                    occurrences(replacement).addAll(list);
+                }
+            }
+        }
+
+        private IrIntVar current(IrIntVar var) {
+            IrIntVar change = intChanges.get(var);
+            return change == null ? var : change;
+        }
+
+        private IrSetVar current(IrSetVar var) {
+            IrSetVar change = setChanges.get(var);
+            return change == null ? var : change;
+        }
+
+        private void narrowInt(IrIntVar var, Domain domain) {
+            IrIntVar now = current(var);
+            if (now.getDomain().isSubsetOf(domain)) {
+                return;
+            }
+            Domain narrowed = now.getDomain().intersection(domain);
+            failIf(narrowed.isEmpty());
+            if (now instanceof IrConstant || frozen.contains(var)) {
+                return;
+            }
+            IrSetVar owner = cardOwners.get(var);
+            if (owner != null) {
+                narrowSet(owner, null, null, narrowed);
+            } else {
+                intChanges.put(var, domainInt(now.getName(), narrowed));
+            }
+        }
+
+        private void narrowSet(IrSetVar var, Domain env, Domain ker, Domain card) {
+            IrSetVar now = current(var);
+            Domain newEnv = env == null ? now.getEnv() : now.getEnv().intersection(env);
+            Domain newKer = ker == null ? now.getKer() : now.getKer().union(ker);
+            failIf(!newKer.isSubsetOf(newEnv));
+            Domain newCard = now.getCard().boundBetween(newKer.size(), newEnv.size());
+            if (card != null) {
+                newCard = newCard.intersection(card);
+            }
+            failIf(newCard.isEmpty());
+            if (now instanceof IrConstant
+                    || (newEnv.size() == now.getEnv().size()
+                    && newKer.size() == now.getKer().size()
+                    && newCard.size() == now.getCard().size())) {
+                return;
+            }
+            IrIntVar cardVar = now.getCardVar();
+            IrSetVar replacement;
+            try {
+                replacement = set(now.getName(), newEnv, newKer, domainInt(cardVar.getName(), newCard));
+            } catch (IllegalSetException e) {
+                throw new UnsatisfiableException(e);
+            }
+            setChanges.put(var, replacement);
+            if (!(var.getCardVar() instanceof IrConstant)) {
+                intChanges.put(var.getCardVar(), replacement.getCardVar());
+            }
+        }
+
+        private void narrowSet(IrSetExpr set, Domain env, Domain ker, Domain card) {
+            if (set instanceof IrSetVar) {
+                narrowSet((IrSetVar) set, env, ker, card);
+            } else {
+                failIf(env != null && !set.getKer().isSubsetOf(env));
+                failIf(ker != null && !ker.isSubsetOf(set.getEnv()));
+            }
+        }
+
+        private void narrow(Domain domain, IrIntExpr expr) {
+            Domain exprDomain = expr.getDomain();
+            if (exprDomain.isSubsetOf(domain)) {
+                return;
+            }
+            failIf(!exprDomain.intersects(domain));
+            if (expr instanceof IrIntVar) {
+                narrowInt((IrIntVar) expr, domain);
+            } else if (expr instanceof IrBoolExpr) {
+                if (!domain.contains(1)) {
+                    not((IrBoolExpr) expr).accept(this, null);
+                } else if (!domain.contains(0)) {
+                    ((IrBoolExpr) expr).accept(this, null);
+                }
+            } else if (expr instanceof IrMinus) {
+                narrow(domain.minus(), ((IrMinus) expr).getExpr());
+            } else if (expr instanceof IrCard) {
+                narrowSet(((IrCard) expr).getSet(), null, null, domain);
+            } else if (expr instanceof IrAdd) {
+                IrAdd add = (IrAdd) expr;
+                for (IrIntExpr addend : add.getAddends()) {
+                    Domain addendDomain = addend.getDomain();
+                    narrow(boundBetween(addendDomain,
+                            (long) domain.getLowBound() - exprDomain.getHighBound() + addendDomain.getHighBound(),
+                            (long) domain.getHighBound() - exprDomain.getLowBound() + addendDomain.getLowBound()),
+                            addend);
+                }
+            } else if (expr instanceof IrMul) {
+                IrMul mul = (IrMul) expr;
+                Integer multiplicand = IrUtil.getConstant(mul.getMultiplicand());
+                Integer multiplier = IrUtil.getConstant(mul.getMultiplier());
+                if (multiplicand != null && multiplicand != 0) {
+                    narrow(divide(domain, multiplicand, mul.getMultiplier().getDomain()), mul.getMultiplier());
+                } else if (multiplier != null && multiplier != 0) {
+                    narrow(divide(domain, multiplier, mul.getMultiplicand().getDomain()), mul.getMultiplicand());
+                }
+            } else if (expr instanceof IrElement) {
+                IrElement element = (IrElement) expr;
+                IrIntExpr index = element.getIndex();
+                TIntHashSet indices = new TIntHashSet(index.getDomain().size());
+                TIntIterator iter = index.getDomain().iterator();
+                while (iter.hasNext()) {
+                    int i = iter.next();
+                    if (i >= 0 && i < element.getArray().length
+                            && domain.intersects(element.getArray()[i].getDomain())) {
+                        indices.add(i);
+                    }
+                }
+                narrow(enumDomain(indices), index);
+            }
+        }
+
+        /**
+         * @return the values of the domain, if any, that multiplied by the
+         * factor are in the product
+         */
+        private static Domain divide(Domain product, int factor, Domain domain) {
+            long low = (long) product.getLowBound();
+            long high = (long) product.getHighBound();
+            return factor > 0
+                    ? boundBetween(domain, ceilDiv(low, factor), floorDiv(high, factor))
+                    : boundBetween(domain, ceilDiv(high, factor), floorDiv(low, factor));
+        }
+
+        private static long floorDiv(long a, long b) {
+            long q = a / b;
+            return (a % b != 0 && ((a < 0) != (b < 0))) ? q - 1 : q;
+        }
+
+        private static long ceilDiv(long a, long b) {
+            return -floorDiv(-a, b);
+        }
+
+        private static Domain boundBetween(Domain domain, long low, long high) {
+            if (low > high) {
+                return EmptyDomain;
+            }
+            return domain.boundBetween(
+                    (int) Math.max(low, Integer.MIN_VALUE),
+                    (int) Math.min(high, Integer.MAX_VALUE));
+        }
+
+        private static void failIf(boolean fail) {
+            if (fail) {
+                throw new UnsatisfiableException();
+            }
+        }
+
+        @Override
+        public Void visit(IrRegister ir, Void a) {
+            return null;
+        }
+
+        @Override
+        public Void visit(IrBoolVar ir, Void a) {
+            narrowInt(ir, TrueDomain);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrNot ir, Void a) {
+            narrow(FalseDomain, ir.getExpr());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrAnd ir, Void a) {
+            for (IrBoolExpr operand : ir.getOperands()) {
+                operand.accept(this, a);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrOr ir, Void a) {
+            IrBoolExpr undecided = null;
+            for (IrBoolExpr operand : ir.getOperands()) {
+                if (!FalseDomain.equals(operand.getDomain())) {
+                    if (undecided != null) {
+                        return null;
+                    }
+                    undecided = operand;
+                }
+            }
+            failIf(undecided == null);
+            undecided.accept(this, a);
+            return null;
+        }
+
+        @Override
+        public Void visit(IrImplies ir, Void a) {
+            if (TrueDomain.equals(ir.getAntecedent().getDomain())) {
+                ir.getConsequent().accept(this, a);
+            } else if (FalseDomain.equals(ir.getConsequent().getDomain())) {
+                narrow(FalseDomain, ir.getAntecedent());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrNotImplies ir, Void a) {
+            ir.getAntecedent().accept(this, a);
+            narrow(FalseDomain, ir.getConsequent());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrIfOnlyIf ir, Void a) {
+            narrow(ir.getLeft().getDomain(), ir.getRight());
+            narrow(ir.getRight().getDomain(), ir.getLeft());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrXor ir, Void a) {
+            // The operands are booleans, so negating a domain is 1 - x.
+            narrow(ir.getLeft().getDomain().minus().offset(1), ir.getRight());
+            narrow(ir.getRight().getDomain().minus().offset(1), ir.getLeft());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrWithin ir, Void a) {
+            narrow(ir.getRange(), ir.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(IrCompare ir, Void a) {
+            IrIntExpr left = ir.getLeft();
+            IrIntExpr right = ir.getRight();
+            Domain leftDomain = left.getDomain();
+            Domain rightDomain = right.getDomain();
+            switch (ir.getOp()) {
+                case Equal:
+                    narrow(leftDomain, right);
+                    narrow(rightDomain, left);
+                    break;
+                case NotEqual:
+                    if (leftDomain.size() == 1) {
+                        narrow(rightDomain.remove(leftDomain.getLowBound()), right);
+                    }
+                    if (rightDomain.size() == 1) {
+                        narrow(leftDomain.remove(rightDomain.getLowBound()), left);
+                    }
+                    break;
+                case LessThan:
+                    narrow(boundBetween(leftDomain, Integer.MIN_VALUE, (long) rightDomain.getHighBound() - 1), left);
+                    narrow(boundBetween(rightDomain, (long) leftDomain.getLowBound() + 1, Integer.MAX_VALUE), right);
+                    break;
+                case LessThanEqual:
+                    narrow(leftDomain.boundHigh(rightDomain.getHighBound()), left);
+                    narrow(rightDomain.boundLow(leftDomain.getLowBound()), right);
+                    break;
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrMember ir, Void a) {
+            IrIntExpr element = ir.getElement();
+            IrSetExpr set = ir.getSet();
+            narrow(set.getEnv(), element);
+            Integer constant = IrUtil.getConstant(element);
+            narrowSet(set, null,
+                    constant == null ? null : constantDomain(constant),
+                    boundDomain(1, Integer.MAX_VALUE));
+            return null;
+        }
+
+        @Override
+        public Void visit(IrNotMember ir, Void a) {
+            IrIntExpr element = ir.getElement();
+            IrSetExpr set = ir.getSet();
+            narrow(element.getDomain().difference(set.getKer()), element);
+            Integer constant = IrUtil.getConstant(element);
+            if (constant != null) {
+                narrowSet(set, set.getEnv().remove(constant), null, null);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSubsetEq ir, Void a) {
+            IrSetExpr sub = ir.getSubset();
+            IrSetExpr sup = ir.getSuperset();
+            narrowSet(sub, sup.getEnv(), null, boundDomain(0, sup.getCard().getHighBound()));
+            narrowSet(sup, null, sub.getKer(), boundDomain(sub.getCard().getLowBound(), Integer.MAX_VALUE));
+            return null;
+        }
+
+        @Override
+        public Void visit(IrSetEquality ir, Void a) {
+            if (IrSetEquality.Op.Equal.equals(ir.getOp())) {
+                IrSetExpr left = ir.getLeft();
+                IrSetExpr right = ir.getRight();
+                narrowSet(right, left.getEnv(), left.getKer(), left.getCard());
+                narrowSet(left, right.getEnv(), right.getKer(), right.getCard());
+            }
+            return null;
+        }
+    }
+}
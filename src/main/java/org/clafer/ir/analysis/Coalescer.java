@@ -7,10 +7,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import org.clafer.collection.DisjointSets;
 import org.clafer.collection.Triple;
 import org.clafer.common.UnsatisfiableException;
@@ -121,41 +119,43 @@ public class Coalescer {
             }
         }
 
-        for (Set<IrStringVar> component : stringGraph.connectedComponents()) {
-            if (component.size() > 1) {
-                Iterator<IrStringVar> iter = component.iterator();
-                IrStringVar var = iter.next();
+        DisjointSets.Components<IrStringVar> stringComponents = stringGraph.components();
+        for (int c = 0; c < stringComponents.size(); c++) {
+            int size = stringComponents.size(c);
+            if (size > 1) {
+                IrStringVar var = stringComponents.get(c, 0);
                 IrIntVar length = var.getLengthVar();
                 IrIntVar[] chars = var.getCharVars();
                 int lengthLow = var.getLength().getLowBound();
                 int lengthHigh = var.getLength().getHighBound();
-                while (iter.hasNext()) {
-                    var = iter.next();
+                for (int i = 1; i < size; i++) {
+                    var = stringComponents.get(c, i);
                     intGraph.union(length, var.getLengthVar());
                     lengthLow = Math.max(lengthLow, var.getLength().getLowBound());
                     lengthHigh = Math.min(lengthHigh, var.getLength().getHighBound());
-                    for (int i = 0; i < Math.min(chars.length, var.getCharVars().length); i++) {
-                        intGraph.union(chars[i], var.getCharVars()[i]);
+                    for (int j = 0; j < Math.min(chars.length, var.getCharVars().length); j++) {
+                        intGraph.union(chars[j], var.getCharVars()[j]);
                     }
-                    for (int i = chars.length; i < var.getCharVars().length; i++) {
-                        intGraph.union(var.getCharVars()[i], Zero);
+                    for (int j = chars.length; j < var.getCharVars().length; j++) {
+                        intGraph.union(var.getCharVars()[j], Zero);
                     }
                 }
             }
         }
-        for (Set<IrSetVar> component : setGraph.connectedComponents()) {
-            if (component.size() > 1) {
-                Iterator<IrSetVar> iter = component.iterator();
-                IrSetVar var = iter.next();
+        DisjointSets.Components<IrSetVar> setComponents = setGraph.components();
+        for (int c = 0; c < setComponents.size(); c++) {
+            int size = setComponents.size(c);
+            if (size > 1) {
+                IrSetVar var = setComponents.get(c, 0);
                 IrIntVar card = var.getCardVar();
-                List<String> names = new ArrayList<>(component.size());
+                List<String> names = new ArrayList<>(size);
                 if (!(var instanceof TempSetVar)) {
                     names.add(var.getName());
                 }
                 Domain env = var.getEnv();
                 Domain ker = var.getKer();
-                while (iter.hasNext()) {
-                    var = iter.next();
+                for (int i = 1; i < size; i++) {
+                    var = setComponents.get(c, i);
                     if (!(var instanceof TempSetVar)) {
                         names.add(var.getName());
                     }
@@ -166,24 +166,26 @@ public class Coalescer {
                 intGraph.union(card, tint(ker.size(), env.size()));
                 Triple<String, Domain, Domain> key
                         = new Triple<>(Util.intercalate(";", names), env, ker);
-                for (IrSetVar coalesce : component) {
+                for (int i = 0; i < size; i++) {
+                    IrSetVar coalesce = setComponents.get(c, i);
                     if (!(coalesce instanceof TempSetVar)) {
                         coalescedSetNameEnvKers.put(coalesce, key);
                     }
                 }
             }
         }
-        for (Set<IrIntVar> component : intGraph.connectedComponents()) {
-            if (component.size() > 1) {
-                Iterator<IrIntVar> iter = component.iterator();
-                IrIntVar var = iter.next();
-                List<String> names = new ArrayList<>(component.size());
+        DisjointSets.Components<IrIntVar> intComponents = intGraph.components();
+        for (int c = 0; c < intComponents.size(); c++) {
+            int size = intComponents.size(c);
+            if (size > 1) {
+                IrIntVar var = intComponents.get(c, 0);
+                List<String> names = new ArrayList<>(size);
                 if (!(var instanceof TempIntVar)) {
                     names.add(var.getName());
                 }
                 Domain domain = var.getDomain();
-                while (iter.hasNext()) {
-                    var = iter.next();
+                for (int i = 1; i < size; i++) {
+                    var = intComponents.get(c, i);
                     if (!(var instanceof TempIntVar)) {
                         names.add(var.getName());
                     }
@@ -191,7 +193,8 @@ public class Coalescer {
                 }
                 failIf(domain.isEmpty());
                 IrIntVar coalesced = domainInt(Util.intercalate(";", names), domain);
-                for (IrIntVar coalesce : component) {
+                for (int i = 0; i < size; i++) {
+                    IrIntVar coalesce = intComponents.get(c, i);
                     if (!coalesced.equals(coalesce) && !(coalesce instanceof TempIntVar)
                             && (names.size() > 1 || !coalesce.getDomain().equals(coalesced.getDomain()))) {
                         coalescedInts.put(coalesce, coalesced);
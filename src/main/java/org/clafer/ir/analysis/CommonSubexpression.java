@@ -1,71 +1,205 @@
 package org.clafer.ir.analysis;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import org.clafer.ir.IrAdd;
 import org.clafer.ir.IrArrayToSet;
+import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrCard;
+import org.clafer.ir.IrCount;
 import org.clafer.ir.IrElement;
 import org.clafer.ir.IrExpr;
+import org.clafer.ir.IrIntExpr;
 import org.clafer.ir.IrJoinFunction;
 import org.clafer.ir.IrJoinRelation;
+import org.clafer.ir.IrMinus;
 import org.clafer.ir.IrModule;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetSum;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrStringExpr;
 import org.clafer.ir.IrTraverser;
 import org.clafer.ir.IrVar;
 
 /**
+ * Finds the expressions worth compiling once into an auxiliary variable shared
+ * by all their occurrences. Every integer, set and string expression is a
+ * candidate, and so are boolean expressions nested inside other expressions
+ * since they are reified. Constraints themselves are posted directly and are
+ * never shared.
+ * <p>
+ * The cost of an expression is the number of nodes in its tree, where the
+ * nodes that post global constraints cost {@link #GlobalCost} and set and
+ * string nodes also pay for the variable they compile into. Inlining an
+ * expression that occurs n times costs n times its cost. Sharing costs its cost
+ * once, plus the auxiliary variable, plus one reference per occurrence. An
+ * expression is shared if that is cheaper. Expressions Choco compiles into
+ * views, like negation and offsets, cost nothing and are never shared. Once an
+ * expression is seen, its later occurrences do not count the occurrences of
+ * its subexpressions again since the shared expression compiles them once.
+ * </p>
  *
  * @author jimmy
  */
 public class CommonSubexpression {
 
+    /**
+     * The cost of a node that posts a global constraint. Large enough that
+     * these expressions are always shared when they occur more than once.
+     */
+    public static final int GlobalCost = 4;
+    /**
+     * The cost of an auxiliary variable.
+     */
+    public static final int VariableCost = 1;
+
     private CommonSubexpression() {
     }
 
     public static Set<IrExpr> findCommonSubexpressions(IrModule module) {
         CommonSubexpressionFinder finder = new CommonSubexpressionFinder();
-        finder.traverse(module, null);
-        return finder.duplicates;
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            // The constraint itself is posted, only count its subexpressions.
+            while (constraint instanceof IrNot) {
+                constraint = ((IrNot) constraint).getExpr();
+            }
+            constraint.accept(finder, null);
+        }
+        Set<IrExpr> common = new HashSet<>();
+        for (Entry<IrExpr, Occurrences> entry : finder.occurrences.entrySet()) {
+            if (isWorthSharing(entry.getValue().count, entry.getValue().cost)) {
+                common.add(entry.getKey());
+            }
+        }
+        return common;
+    }
+
+    /**
+     * @param count the number of occurrences
+     * @param cost the cost of compiling the expression once
+     * @return {@code true} if sharing is cheaper than inlining, {@code false}
+     * otherwise
+     */
+    static boolean isWorthSharing(int count, int cost) {
+        return count > 1 && (long) count * cost > (long) cost + VariableCost + count;
+    }
+
+    private static boolean isView(IrExpr expr) {
+        if (expr instanceof IrMinus || expr instanceof IrNot) {
+            return true;
+        }
+        if (expr instanceof IrCard) {
+            return ((IrCard) expr).getSet() instanceof IrSetVar;
+        }
+        if (expr instanceof IrAdd) {
+            return ((IrAdd) expr).getAddends().length == 1;
+        }
+        return false;
+    }
+
+    private static int nodeCost(IrExpr expr) {
+        if (expr instanceof IrElement
+                || expr instanceof IrCount
+                || expr instanceof IrSetSum
+                || expr instanceof IrArrayToSet
+                || expr instanceof IrJoinRelation
+                || expr instanceof IrJoinFunction) {
+            return GlobalCost;
+        }
+        if (expr instanceof IrSetExpr || expr instanceof IrStringExpr) {
+            // Always compiled into a new variable.
+            return 1 + VariableCost;
+        }
+        return 1;
+    }
+
+    private static class Occurrences {
+
+        int count = 1;
+        final int cost;
+
+        Occurrences(int cost) {
+            this.cost = cost;
+        }
     }
 
     private static class CommonSubexpressionFinder extends IrTraverser<Void> {
 
-        private final Set<IrExpr> seen = new HashSet<>();
-        private final Set<IrExpr> duplicates = new HashSet<>();
+        private final Map<IrExpr, Occurrences> occurrences = new HashMap<>();
+        // The cost of the siblings traversed so far.
+        private int cost = 0;
 
-        private void check(IrExpr expr) {
-            if (!(expr instanceof IrVar) && !seen.add(expr)) {
-                duplicates.add(expr);
+        private boolean enter(IrExpr expr) {
+            if (expr instanceof IrVar) {
+                cost += 1;
+                return false;
+            }
+            if (isView(expr)) {
+                return true;
             }
+            Occurrences seen = occurrences.get(expr);
+            if (seen != null) {
+                seen.count++;
+                cost += seen.cost;
+                return false;
+            }
+            return true;
         }
 
-        @Override
-        public Void visit(IrCard ir, Void a) {
-            check(ir.getSet());
-            return super.visit(ir, a);
+        private int begin() {
+            int outer = cost;
+            cost = 0;
+            return outer;
+        }
+
+        private void end(IrExpr expr, int outer) {
+            int exprCost = cost + (isView(expr) ? 0 : nodeCost(expr));
+            if (!isView(expr)) {
+                occurrences.put(expr, new Occurrences(exprCost));
+            }
+            cost = outer + exprCost;
         }
 
         @Override
-        public Void visit(IrElement ir, Void a) {
-            check(ir);
-            return super.visit(ir, a);
+        public void traverse(IrBoolExpr expr, Void a) {
+            if (enter(expr)) {
+                int outer = begin();
+                super.traverse(expr, a);
+                end(expr, outer);
+            }
         }
 
         @Override
-        public Void visit(IrArrayToSet ir, Void a) {
-            check(ir);
-            return super.visit(ir, a);
+        public void traverse(IrIntExpr expr, Void a) {
+            if (expr instanceof IrBoolExpr) {
+                traverse((IrBoolExpr) expr, a);
+            } else if (enter(expr)) {
+                int outer = begin();
+                super.traverse(expr, a);
+                end(expr, outer);
+            }
         }
 
         @Override
-        public Void visit(IrJoinRelation ir, Void a) {
-            check(ir);
-            return super.visit(ir, a);
+        public void traverse(IrSetExpr expr, Void a) {
+            if (enter(expr)) {
+                int outer = begin();
+                super.traverse(expr, a);
+                end(expr, outer);
+            }
         }
 
         @Override
-        public Void visit(IrJoinFunction ir, Void a) {
-            check(ir);
-            return super.visit(ir, a);
+        public void traverse(IrStringExpr expr, Void a) {
+            if (enter(expr)) {
+                int outer = begin();
+                super.traverse(expr, a);
+                end(expr, outer);
+            }
         }
     }
 }
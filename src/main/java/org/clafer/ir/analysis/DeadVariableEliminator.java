@@ -0,0 +1,319 @@
+package org.clafer.ir.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.clafer.collection.Pair;
+import org.clafer.ir.IrAdd;
+import org.clafer.ir.IrAnd;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCard;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrConstant;
+import org.clafer.ir.IrCount;
+import org.clafer.ir.IrElement;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrIfThenElse;
+import org.clafer.ir.IrImplies;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrLone;
+import org.clafer.ir.IrMember;
+import org.clafer.ir.IrMinus;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrMul;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrNotImplies;
+import org.clafer.ir.IrNotMember;
+import org.clafer.ir.IrOne;
+import org.clafer.ir.IrOr;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetSum;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrStringVar;
+import org.clafer.ir.IrTernary;
+import org.clafer.ir.IrTraverser;
+import org.clafer.ir.IrWithin;
+import org.clafer.ir.IrXor;
+
+/**
+ * Removes variables that are functions of other variables and are not used
+ * anywhere else. A variable is removed along with its definition if
+ * <ul>
+ * <li>it is not registered, so nothing outside the module reads it,</li>
+ * <li>its only occurrence is a definition "x = e" or "x &lt;=&gt; e" where x
+ * does not occur in e,</li>
+ * <li>every value of e is in the domain of x, so the definition holds for any
+ * values of the other variables, and</li>
+ * <li>e can be evaluated after solving.</li>
+ * </ul>
+ * Removing the definition cannot change the solutions over the remaining
+ * variables since x is uniquely determined by them. Removing a definition can
+ * leave other variables without any occurrence, so the pass repeats until
+ * nothing changes. Variables that no longer occur anywhere are not compiled.
+ * <p>
+ * Variables that are registered but otherwise free are never removed, every
+ * value they take is a different solution.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class DeadVariableEliminator {
+
+    private DeadVariableEliminator() {
+    }
+
+    /**
+     * Eliminate the dead variables. The definitions are in terms of the
+     * variables of the optimized module and other eliminated variables.
+     *
+     * @param module the module
+     * @return the definitions of the eliminated variables and the optimized
+     * module
+     */
+    public static Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminate(IrModule module) {
+        Map<IrIntVar, IrIntExpr> definitions = new HashMap<>();
+        List<IrBoolExpr> constraints = module.getConstraints();
+        boolean changed;
+        do {
+            changed = false;
+            Map<IrIntVar, Integer> occurrences = countOccurrences(constraints);
+            List<IrBoolExpr> alive = new ArrayList<>(constraints.size());
+            for (IrBoolExpr constraint : constraints) {
+                Pair<IrIntVar, IrIntExpr> definition = asDefinition(constraint, occurrences);
+                if (definition == null) {
+                    alive.add(constraint);
+                } else {
+                    definitions.put(definition.getFst(), definition.getSnd());
+                    changed = true;
+                }
+            }
+            constraints = alive;
+        } while (changed);
+
+        if (definitions.isEmpty()) {
+            return new Pair<>(Collections.<IrIntVar, IrIntExpr>emptyMap(), module);
+        }
+        IrModule optModule = new IrModule(constraints.size());
+        optModule.addConstraints(constraints);
+        return new Pair<>(definitions, optModule);
+    }
+
+    /**
+     * Count the number of constraints each integer variable occurs in,
+     * including implicit occurrences as cardinalities of sets and as
+     * characters and lengths of strings. Registering counts as an occurrence.
+     */
+    private static Map<IrIntVar, Integer> countOccurrences(List<IrBoolExpr> constraints) {
+        Map<IrIntVar, Integer> occurrences = new HashMap<>();
+        Set<IrIntVar> vars = new HashSet<>();
+        for (IrBoolExpr constraint : constraints) {
+            constraint.accept(occurrenceFinder, vars);
+            for (IrIntVar var : vars) {
+                Integer count = occurrences.get(var);
+                occurrences.put(var, count == null ? 1 : count + 1);
+            }
+            vars.clear();
+        }
+        return occurrences;
+    }
+
+    private static Pair<IrIntVar, IrIntExpr> asDefinition(
+            IrBoolExpr constraint, Map<IrIntVar, Integer> occurrences) {
+        if (constraint instanceof IrCompare) {
+            IrCompare compare = (IrCompare) constraint;
+            if (IrCompare.Op.Equal.equals(compare.getOp())) {
+                Pair<IrIntVar, IrIntExpr> definition
+                        = asDefinition(compare.getLeft(), compare.getRight(), occurrences);
+                return definition == null
+                        ? asDefinition(compare.getRight(), compare.getLeft(), occurrences)
+                        : definition;
+            }
+        } else if (constraint instanceof IrIfOnlyIf) {
+            IrIfOnlyIf ifOnlyIf = (IrIfOnlyIf) constraint;
+            Pair<IrIntVar, IrIntExpr> definition
+                    = asDefinition(ifOnlyIf.getLeft(), ifOnlyIf.getRight(), occurrences);
+            return definition == null
+                    ? asDefinition(ifOnlyIf.getRight(), ifOnlyIf.getLeft(), occurrences)
+                    : definition;
+        }
+        return null;
+    }
+
+    private static Pair<IrIntVar, IrIntExpr> asDefinition(
+            IrIntExpr var, IrIntExpr expr, Map<IrIntVar, Integer> occurrences) {
+        if (!(var instanceof IrIntVar) || var instanceof IrConstant) {
+            return null;
+        }
+        Integer count = occurrences.get(var);
+        // Occurrences are counted once per constraint, so the definition being
+        // the only occurrence does not rule out "x = f(x)".
+        if (count == null || count != 1 || occursIn((IrIntVar) var, expr)) {
+            return null;
+        }
+        if (!expr.getDomain().isSubsetOf(var.getDomain())) {
+            return null;
+        }
+        if (!isEvaluable(expr)) {
+            return null;
+        }
+        return new Pair<>((IrIntVar) var, expr);
+    }
+
+    private static boolean occursIn(IrIntVar var, IrIntExpr expr) {
+        Set<IrIntVar> vars = new HashSet<>();
+        expr.accept(occurrenceFinder, vars);
+        return vars.contains(var);
+    }
+
+    /**
+     * Checks if the expression is one that
+     * {@link org.clafer.ir.compiler.IrSolutionMap} can evaluate. The
+     * expression must also be total, otherwise the definition is a constraint
+     * on the other variables.
+     *
+     * @param expr the expression
+     * @return {@code true} if the expression can be evaluated for any values
+     * of its variables, {@code false} otherwise
+     */
+    private static boolean isEvaluable(IrIntExpr expr) {
+        if (expr instanceof IrIntVar) {
+            return true;
+        }
+        if (expr instanceof IrNot) {
+            return isEvaluable(((IrNot) expr).getExpr());
+        }
+        if (expr instanceof IrAnd) {
+            return isEvaluable(((IrAnd) expr).getOperands());
+        }
+        if (expr instanceof IrOr) {
+            return isEvaluable(((IrOr) expr).getOperands());
+        }
+        if (expr instanceof IrLone) {
+            return isEvaluable(((IrLone) expr).getOperands());
+        }
+        if (expr instanceof IrOne) {
+            return isEvaluable(((IrOne) expr).getOperands());
+        }
+        if (expr instanceof IrImplies) {
+            IrImplies implies = (IrImplies) expr;
+            return isEvaluable(implies.getAntecedent()) && isEvaluable(implies.getConsequent());
+        }
+        if (expr instanceof IrNotImplies) {
+            IrNotImplies notImplies = (IrNotImplies) expr;
+            return isEvaluable(notImplies.getAntecedent()) && isEvaluable(notImplies.getConsequent());
+        }
+        if (expr instanceof IrIfThenElse) {
+            IrIfThenElse ifThenElse = (IrIfThenElse) expr;
+            return isEvaluable(ifThenElse.getAntecedent())
+                    && isEvaluable(ifThenElse.getConsequent())
+                    && isEvaluable(ifThenElse.getAlternative());
+        }
+        if (expr instanceof IrIfOnlyIf) {
+            IrIfOnlyIf ifOnlyIf = (IrIfOnlyIf) expr;
+            return isEvaluable(ifOnlyIf.getLeft()) && isEvaluable(ifOnlyIf.getRight());
+        }
+        if (expr instanceof IrXor) {
+            IrXor xor = (IrXor) expr;
+            return isEvaluable(xor.getLeft()) && isEvaluable(xor.getRight());
+        }
+        if (expr instanceof IrWithin) {
+            return isEvaluable(((IrWithin) expr).getValue());
+        }
+        if (expr instanceof IrCompare) {
+            IrCompare compare = (IrCompare) expr;
+            return isEvaluable(compare.getLeft()) && isEvaluable(compare.getRight());
+        }
+        if (expr instanceof IrMember) {
+            IrMember member = (IrMember) expr;
+            return isEvaluable(member.getElement()) && isEvaluable(member.getSet());
+        }
+        if (expr instanceof IrNotMember) {
+            IrNotMember notMember = (IrNotMember) expr;
+            return isEvaluable(notMember.getElement()) && isEvaluable(notMember.getSet());
+        }
+        if (expr instanceof IrMinus) {
+            return isEvaluable(((IrMinus) expr).getExpr());
+        }
+        if (expr instanceof IrCard) {
+            return isEvaluable(((IrCard) expr).getSet());
+        }
+        if (expr instanceof IrAdd) {
+            return isEvaluable(((IrAdd) expr).getAddends());
+        }
+        if (expr instanceof IrMul) {
+            IrMul mul = (IrMul) expr;
+            return isEvaluable(mul.getMultiplicand()) && isEvaluable(mul.getMultiplier());
+        }
+        if (expr instanceof IrElement) {
+            IrElement element = (IrElement) expr;
+            IrIntExpr index = element.getIndex();
+            // An index out of bounds fails, so the element is not total.
+            return index.getLowBound() >= 0
+                    && index.getHighBound() < element.getArray().length
+                    && isEvaluable(index)
+                    && isEvaluable(element.getArray());
+        }
+        if (expr instanceof IrCount) {
+            return isEvaluable(((IrCount) expr).getArray());
+        }
+        if (expr instanceof IrSetSum) {
+            return isEvaluable(((IrSetSum) expr).getSet());
+        }
+        if (expr instanceof IrTernary) {
+            IrTernary ternary = (IrTernary) expr;
+            return isEvaluable(ternary.getAntecedent())
+                    && isEvaluable(ternary.getConsequent())
+                    && isEvaluable(ternary.getAlternative());
+        }
+        // Division is not total.
+        return false;
+    }
+
+    private static boolean isEvaluable(IrIntExpr[] exprs) {
+        for (IrIntExpr expr : exprs) {
+            if (!isEvaluable(expr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEvaluable(IrSetExpr set) {
+        return set instanceof IrSetVar;
+    }
+
+    private static final IrTraverser<Set<IrIntVar>> occurrenceFinder
+            = new IrTraverser<Set<IrIntVar>>() {
+
+                @Override
+                public Void visit(IrBoolVar ir, Set<IrIntVar> a) {
+                    a.add(ir);
+                    return super.visit(ir, a);
+                }
+
+                @Override
+                public Void visit(IrIntVar ir, Set<IrIntVar> a) {
+                    a.add(ir);
+                    return super.visit(ir, a);
+                }
+
+                @Override
+                public Void visit(IrSetVar ir, Set<IrIntVar> a) {
+                    a.add(ir.getCardVar());
+                    return super.visit(ir, a);
+                }
+
+                @Override
+                public Void visit(IrStringVar ir, Set<IrIntVar> a) {
+                    Collections.addAll(a, ir.getCharVars());
+                    a.add(ir.getLengthVar());
+                    return super.visit(ir, a);
+                }
+            };
+}
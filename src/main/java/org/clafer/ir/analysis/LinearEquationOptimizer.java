@@ -3,8 +3,10 @@ package org.clafer.ir.analysis;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import org.clafer.common.Util;
 import org.clafer.domain.Domain;
@@ -32,6 +34,9 @@ import org.clafer.math.Variable;
  */
 public class LinearEquationOptimizer {
 
+    // Larger coefficients are rounded down to keep the propagators fast.
+    private static final int MaxCoefficient = 50000;
+
     private LinearEquationOptimizer() {
     }
 
@@ -110,31 +115,54 @@ public class LinearEquationOptimizer {
         return null;
     }
 
+    /**
+     * @param equation the equation
+     * @return the equation multiplied to have integer coefficients, or
+     * {@code null} if the coefficients would be too large
+     */
+    private static LinearEquation scale(LinearEquation equation) {
+        Rational[] cs = equation.getLeft().getCoefficients();
+        Rational right = equation.getRight();
+        Rational maxAbs = right.abs();
+        long lcm = right.fitsInLong() ? right.getDenominator() : MaxCoefficient;
+        for (Rational c : cs) {
+            if (!c.fitsInLong() || lcm >= MaxCoefficient) {
+                return null;
+            }
+            if (maxAbs.compareTo(c.abs()) < 0) {
+                maxAbs = c.abs();
+            }
+            lcm = Util.lcm(lcm, c.getDenominator());
+        }
+        if (lcm >= MaxCoefficient || maxAbs.compareTo(new Rational(MaxCoefficient)) >= 0
+                || maxAbs.ceil() * lcm >= MaxCoefficient) {
+            return null;
+        }
+        return new LinearEquation(equation.getLeft().mul(lcm), equation.getOp(), right.mul(lcm));
+    }
+
+    /**
+     * Approximate the equation with integer coefficients. The approximation is
+     * implied by the equation but may be weaker.
+     *
+     * @param equation the equation
+     * @return weaker equations with integer coefficients
+     * @throws ArithmeticException if the coefficients are too large
+     */
     private static LinearEquation[] round(LinearEquation equation) {
         LinearFunction left = equation.getLeft();
         Rational[] cs = left.getCoefficients();
         Variable[] vs = left.getVariables();
         Rational right = equation.getRight();
-        Rational min = right;
-        Rational max = right;
-        long lcm = right.getDenominator();
+        Rational maxAbs = right.abs();
         for (Rational c : cs) {
-            if (min.compareTo(c) > 0) {
-                min = c;
-            }
-            if (max.compareTo(c) < 0) {
-                max = c;
+            if (maxAbs.compareTo(c.abs()) < 0) {
+                maxAbs = c.abs();
             }
-            lcm = Util.lcm(lcm, c.getDenominator());
-        }
-        if (max.ceil() * lcm < 50000 && min.floor() * lcm > -50000) {
-            return new LinearEquation[]{
-                new LinearEquation(equation.getLeft().mul(lcm), equation.getOp(), equation.getRight().mul(lcm))
-            };
         }
-        long multiplier = Math.min(Math.abs(50000 / max.ceil()), Math.abs(50000 / min.floor()));
-        if (multiplier == 0) {
-            multiplier = 1;
+        long multiplier = 1;
+        if (!maxAbs.isZero() && maxAbs.compareTo(new Rational(MaxCoefficient)) < 0) {
+            multiplier = MaxCoefficient / maxAbs.ceil();
         }
         long[] lIcs = new long[cs.length];
         long[] gIcs = new long[cs.length];
@@ -169,44 +197,57 @@ public class LinearEquationOptimizer {
         }
     }
 
-    private static IrBoolExpr[] boolExpr(LinearEquation equation, Map<Variable, IrIntVar> map) {
-        LinearEquation[] rounds = round(equation);
-        IrBoolExpr[] exprs = new IrBoolExpr[rounds.length];
-        for (int i = 0; i < exprs.length; i++) {
-            LinearEquation round = rounds[i];
-            LinearFunction left = round.getLeft();
-            Rational[] cs = left.getCoefficients();
-            Variable[] vs = left.getVariables();
-            Rational right = round.getRight();
-
-            IrIntExpr[] addends = new IrIntExpr[cs.length];
-            for (int j = 0; j < addends.length; j++) {
-                assert cs[j].isWhole();
-                addends[j] = mul((int) cs[j].getNumerator(), map.get(vs[j]));
-            }
-            assert right.isWhole();
-            switch (round.getOp()) {
-                case Equal:
-                    exprs[i] = equal(add(addends), (int) right.getNumerator());
-                    break;
-                case LessThanEqual:
-                    exprs[i] = lessThanEqual(add(addends), (int) right.getNumerator());
-                    break;
-                default:
-                    throw new IllegalStateException();
-            }
+    private static int toInt(Rational r) {
+        assert r.isWhole();
+        long l = r.getNumerator();
+        if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE) {
+            throw new ArithmeticException(r + " does not fit in an int");
+        }
+        return (int) l;
+    }
+
+    private static IrBoolExpr boolExpr(LinearEquation round, Map<Variable, IrIntVar> map) {
+        LinearFunction left = round.getLeft();
+        Rational[] cs = left.getCoefficients();
+        Variable[] vs = left.getVariables();
+        Rational right = round.getRight();
+
+        IrIntExpr[] addends = new IrIntExpr[cs.length];
+        for (int j = 0; j < addends.length; j++) {
+            addends[j] = mul(toInt(cs[j]), map.get(vs[j]));
+        }
+        switch (round.getOp()) {
+            case Equal:
+                return equal(add(addends), toInt(right));
+            case LessThanEqual:
+                return lessThanEqual(add(addends), toInt(right));
+            default:
+                throw new IllegalStateException();
         }
-        return exprs;
+    }
+
+    /**
+     * Check if the equation is enforced exactly by the equations with an
+     * exact integer encoding.
+     */
+    private static boolean isCovered(LinearEquation equation, Set<LinearEquation> exact) {
+        if (exact.contains(equation)) {
+            return true;
+        }
+        // The inequality may have been removed in favour of an equality.
+        return Op.LessThanEqual.equals(equation.getOp())
+                && (exact.contains(new LinearEquation(equation.getLeft(), Op.Equal, equation.getRight()))
+                || exact.contains(new LinearEquation(equation.getLeft().minus(), Op.Equal, equation.getRight().minus())));
     }
 
     public static IrModule optimize(IrModule module) {
         List<IrBoolExpr> constraints = new ArrayList<>();
-        Set<LinearEquation> equations = new HashSet<>();
+        Map<LinearEquation, IrBoolExpr> equations = new LinkedHashMap<>();
         Map<IrIntVar, Variable> map = new HashMap<>();
         for (IrBoolExpr constraint : module.getConstraints()) {
             LinearEquation equation = linearEquation(constraint, map);
             if (equation != null) {
-                equations.add(equation);
+                equations.put(equation, constraint);
             } else {
                 constraints.add(constraint);
             }
@@ -215,17 +256,37 @@ public class LinearEquationOptimizer {
         if (equations.size() > 0) {
             Map<Variable, IrIntVar> inverse = Util.inverse(map);
 
-            LinearSystem system = new LinearSystem(equations);
+            LinearSystem system = new LinearSystem(equations.keySet());
+            Set<LinearEquation> exact = new HashSet<>();
             for (LinearEquation equation : system
                     .equalityElimination()
                     .fourierMotzkinElimination()
                     .strengthenInequalities()
                     .gaussJordanElimination()
-                    .addEquations(equations)
+                    .addEquations(equations.keySet())
                     .dominantElimination()
                     .getEquations()) {
-                for (IrBoolExpr constraint : boolExpr(equation, inverse)) {
-                    constraints.add(constraint);
+                try {
+                    LinearEquation scaled = scale(equation);
+                    if (scaled != null) {
+                        constraints.add(boolExpr(scaled, inverse));
+                        exact.add(equation);
+                    } else {
+                        for (LinearEquation round : round(equation)) {
+                            constraints.add(boolExpr(round, inverse));
+                        }
+                    }
+                } catch (ArithmeticException e) {
+                    // The coefficients are too large for the solver, drop the
+                    // redundant constraint. The original constraints are
+                    // added back below.
+                }
+            }
+            // Rounding weakens the equation, keep the original constraints that
+            // are no longer enforced exactly.
+            for (Entry<LinearEquation, IrBoolExpr> equation : equations.entrySet()) {
+                if (!isCovered(equation.getKey(), exact)) {
+                    constraints.add(equation.getValue());
                 }
             }
             return new IrModule().addConstraints(constraints);
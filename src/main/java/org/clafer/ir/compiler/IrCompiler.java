@@ -2,15 +2,15 @@ package org.clafer.ir.compiler;
 
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import org.clafer.choco.constraint.Constraints;
+import org.clafer.choco.constraint.PropagationSchedule;
+import org.clafer.choco.constraint.PropagatorProfiler;
 import org.clafer.collection.Pair;
-import org.clafer.collection.Triple;
 import org.clafer.common.Check;
 import org.clafer.common.Util;
 import org.clafer.ir.IrAcyclic;
@@ -56,6 +56,7 @@ import org.clafer.ir.IrNotMember;
 import org.clafer.ir.IrOffset;
 import org.clafer.ir.IrOne;
 import org.clafer.ir.IrOr;
+import org.clafer.ir.IrOrderedForest;
 import org.clafer.ir.IrPrefix;
 import org.clafer.ir.IrRegister;
 import org.clafer.ir.IrSelectN;
@@ -85,11 +86,7 @@ import org.clafer.ir.IrVar;
 import org.clafer.ir.IrWithin;
 import org.clafer.ir.IrXor;
 import org.clafer.ir.Irs;
-import org.clafer.ir.analysis.Coalescer;
 import org.clafer.ir.analysis.CommonSubexpression;
-import org.clafer.ir.analysis.DuplicateConstraints;
-import org.clafer.ir.analysis.LinearEquationOptimizer;
-import org.clafer.ir.analysis.Optimizer;
 import solver.Solver;
 import solver.constraints.Constraint;
 import solver.constraints.ICF;
@@ -100,6 +97,7 @@ import solver.variables.CSetVar;
 import solver.variables.CStringVar;
 import solver.variables.IntVar;
 import solver.variables.SetVar;
+import util.objects.setDataStructures.SetType;
 import static solver.variables.Var.*;
 
 /**
@@ -110,12 +108,19 @@ import static solver.variables.Var.*;
 public class IrCompiler {
 
     private final Solver solver;
-    private final boolean coalesceVariables;
+    private final boolean profile;
+    private final PropagationSchedule schedule;
+    // Contiguous domains larger than this use bounded variables.
+    private final int boundedDomainThreshold;
+    // The constraint currently compiling. Only used for profiling.
+    private IrBoolExpr source;
     private int varNum = 0;
 
-    private IrCompiler(Solver solver, boolean coalesceVariables) {
+    private IrCompiler(Solver solver, boolean profile, PropagationSchedule schedule, int boundedDomainThreshold) {
         this.solver = Check.notNull(solver);
-        this.coalesceVariables = coalesceVariables;
+        this.profile = profile;
+        this.schedule = Check.notNull(schedule);
+        this.boundedDomainThreshold = boundedDomainThreshold;
     }
 
     public static IrSolutionMap compile(IrModule in, Solver out) {
@@ -123,33 +128,140 @@ public class IrCompiler {
     }
 
     public static IrSolutionMap compile(IrModule in, Solver out, boolean coalesceVariables) {
-        IrCompiler compiler = new IrCompiler(out, coalesceVariables);
+        return compile(in, out, coalesceVariables, false);
+    }
+
+    /**
+     * Compile the module into the solver.
+     *
+     * @param in the module
+     * @param out the solver
+     * @param coalesceVariables coalesce equivalent variables and eliminate
+     * dead variables
+     * @param profile profile the posted propagators
+     * @return the mapping from IR variables to Choco variables
+     * @see PropagatorProfiler
+     */
+    public static IrSolutionMap compile(IrModule in, Solver out, boolean coalesceVariables, boolean profile) {
+        return compile(in, out, coalesceVariables, profile, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Compile the module into the solver. Integer variables with contiguous
+     * domains larger than the threshold only keep track of their bounds, which
+     * saves memory but weakens the propagation on them.
+     *
+     * @param in the module
+     * @param out the solver
+     * @param coalesceVariables coalesce equivalent variables and eliminate
+     * dead variables
+     * @param profile profile the posted propagators
+     * @param boundedDomainThreshold the largest domain size for enumerated
+     * integer variables
+     * @return the mapping from IR variables to Choco variables
+     */
+    public static IrSolutionMap compile(IrModule in, Solver out, boolean coalesceVariables, boolean profile,
+            int boundedDomainThreshold) {
+        return compile(in, out, IrPassManager.standard(coalesceVariables), profile, boundedDomainThreshold);
+    }
+
+    /**
+     * Compile the module into the solver after running the passes.
+     *
+     * @param in the module
+     * @param out the solver
+     * @param passes the optimization passes
+     * @param profile profile the posted propagators
+     * @param boundedDomainThreshold the largest domain size for enumerated
+     * integer variables
+     * @return the mapping from IR variables to Choco variables
+     */
+    public static IrSolutionMap compile(IrModule in, Solver out, IrPassManager passes, boolean profile,
+            int boundedDomainThreshold) {
+        return compile(in, out, passes, profile, PropagationSchedule.Default, boundedDomainThreshold);
+    }
+
+    /**
+     * Compile the module into the solver after running the passes.
+     *
+     * @param in the module
+     * @param out the solver
+     * @param passes the optimization passes
+     * @param profile profile the posted propagators
+     * @param schedule how the posted propagators are scheduled
+     * @param boundedDomainThreshold the largest domain size for enumerated
+     * integer variables
+     * @return the mapping from IR variables to Choco variables
+     */
+    public static IrSolutionMap compile(IrModule in, Solver out, IrPassManager passes, boolean profile,
+            PropagationSchedule schedule, int boundedDomainThreshold) {
+        return compileOptimized(optimize(in, passes), out, profile, schedule, boundedDomainThreshold);
+    }
+
+    /**
+     * Optimize the module without compiling it. Compiling the optimized
+     * module with {@link #compileOptimized} is equivalent to compiling the
+     * original module.
+     *
+     * @param in the module
+     * @param coalesceVariables coalesce equivalent variables and eliminate
+     * dead variables
+     * @return the optimized module
+     */
+    public static IrOptimizedModule optimize(IrModule in, boolean coalesceVariables) {
+        return optimize(in, IrPassManager.standard(coalesceVariables));
+    }
+
+    /**
+     * Optimize the module with the passes without compiling it.
+     *
+     * @param in the module
+     * @param passes the optimization passes
+     * @return the optimized module
+     * @see IrOptimizedModule#getPassStatistics()
+     */
+    public static IrOptimizedModule optimize(IrModule in, IrPassManager passes) {
+        return passes.optimize(in);
+    }
+
+    /**
+     * Compile a module already optimized by {@link #optimize} into the solver.
+     *
+     * @param in the optimized module
+     * @param out the solver
+     * @param profile profile the posted propagators
+     * @param boundedDomainThreshold the largest domain size for enumerated
+     * integer variables
+     * @return the mapping from IR variables to Choco variables
+     */
+    public static IrSolutionMap compileOptimized(IrOptimizedModule in,
+            Solver out, boolean profile, int boundedDomainThreshold) {
+        return compileOptimized(in, out, profile, PropagationSchedule.Default, boundedDomainThreshold);
+    }
+
+    /**
+     * Compile a module already optimized by {@link #optimize} into the solver.
+     *
+     * @param in the optimized module
+     * @param out the solver
+     * @param profile profile the posted propagators
+     * @param schedule how the posted propagators are scheduled
+     * @param boundedDomainThreshold the largest domain size for enumerated
+     * integer variables
+     * @return the mapping from IR variables to Choco variables
+     */
+    public static IrSolutionMap compileOptimized(IrOptimizedModule in,
+            Solver out, boolean profile, PropagationSchedule schedule, int boundedDomainThreshold) {
+        IrCompiler compiler = new IrCompiler(out, profile, schedule, boundedDomainThreshold);
         return compiler.compile(in);
     }
 
-    private IrSolutionMap compile(IrModule module) {
-        IrModule optModule = Optimizer.optimize(module);
-
-        Map<IrIntVar, IrIntVar> coalescedIntVars = Collections.emptyMap();
-        Map<IrSetVar, IrSetVar> coalescedSetVars = Collections.emptyMap();
-        if (coalesceVariables) {
-            Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesceTriple = Coalescer.coalesce(optModule);
-            coalescedIntVars = coalesceTriple.getFst();
-            coalescedSetVars = coalesceTriple.getSnd();
-            optModule = coalesceTriple.getThd();
-            while (!coalesceTriple.getFst().isEmpty()
-                    || !coalesceTriple.getSnd().isEmpty()) {
-                coalesceTriple = Coalescer.coalesce(optModule);
-                coalescedIntVars = compose(coalescedIntVars, coalesceTriple.getFst());
-                coalescedSetVars = compose(coalescedSetVars, coalesceTriple.getSnd());
-                optModule = coalesceTriple.getThd();
-            }
-            optModule = DuplicateConstraints.removeDuplicates(optModule);
-        }
-        optModule = LinearEquationOptimizer.optimize(optModule);
+    private IrSolutionMap compile(IrOptimizedModule in) {
+        IrModule optModule = in.getModule();
         commonSubexpressions.addAll(CommonSubexpression.findCommonSubexpressions(optModule));
 
         for (IrBoolExpr constraint : optModule.getConstraints()) {
+            source = constraint;
             Constraint c = compileAsConstraint(constraint);
             if (c.equals(solver.TRUE)) {
                 assert constraint instanceof IrRegister;
@@ -157,6 +269,7 @@ public class IrCompiler {
                 post(c);
             }
         }
+        source = null;
 
         Map<IrSetVar, SetVar> setVarMapSet = new HashMap<>(setVarMap.size());
         for (Entry<IrSetVar, CSetVar> set : setVarMap.entrySet()) {
@@ -164,29 +277,16 @@ public class IrCompiler {
         }
 
         return new IrSolutionMap(
-                coalescedIntVars, intVarMap,
-                coalescedSetVars, setVarMapSet);
+                in.getCoalescedIntVars(), intVarMap,
+                in.getCoalescedSetVars(), setVarMapSet,
+                in.getDefinedIntVars());
     }
 
-    private static <T> Map<T, T> compose(Map<T, T> f1, Map<T, T> f2) {
-        if (f1.isEmpty()) {
-            return f2;
-        }
-        if (f2.isEmpty()) {
-            return f1;
-        }
-        Map<T, T> composed = new HashMap<>(f1.size() + f2.size());
-        composed.putAll(f2);
-        for (Entry<T, T> e : f1.entrySet()) {
-            T key = e.getKey();
-            T value = f2.get(e.getValue());
-            if (value == null) {
-                value = e.getValue();
-            }
-            composed.put(key, value);
-        }
-        return composed;
-    }
+    /**
+     * An envelope is dense if its largest value is less than this many times
+     * its size.
+     */
+    private static final int DENSE_FACTOR = 4;
     private final Map<IrIntVar, IntVar> intVarMap = new HashMap<>();
     private final Map<IrSetVar, CSetVar> setVarMap = new HashMap<>();
     private final Map<IrStringVar, CStringVar> stringVarMap = new HashMap<>();
@@ -194,13 +294,15 @@ public class IrCompiler {
     private final Map<IntVar, IntVar> cachedMinus = new HashMap<>();
     private final Map<Pair<IntVar, Integer>, IntVar> cachedOffset = new HashMap<>();
     private final Set<IrExpr> commonSubexpressions = new HashSet<>();
+    private final Map<IrBoolExpr, BoolVar> cachedCommonBoolSubexpressions = new HashMap<>();
     private final Map<IrIntExpr, IntVar> cachedCommonIntSubexpressions = new HashMap<>();
     private final Map<IrSetExpr, CSetVar> cachedCommonSetSubexpressions = new HashMap<>();
     private final Map<IrStringExpr, CStringVar> cachedCommonStringSubexpressions = new HashMap<>();
 
     private void post(Constraint constraint) {
         assert (!solver.TRUE.equals(constraint));
-        solver.post(constraint);
+        Constraint scheduled = schedule.schedule(constraint);
+        solver.post(profile ? PropagatorProfiler.profile(scheduled, source) : scheduled);
     }
 
     private BoolVar boolVar(String name, BoolDomain domain) {
@@ -230,7 +332,11 @@ public class IrCompiler {
             return bool(name, solver);
         }
         if (domain.isBounded()) {
-            return enumerated(name, domain.getLowBound(), domain.getHighBound(), solver);
+            // Domains with holes stay enumerated since the holes may not be
+            // enforced anywhere else.
+            return domain.size() > boundedDomainThreshold
+                    ? bounded(name, domain.getLowBound(), domain.getHighBound(), solver)
+                    : enumerated(name, domain.getLowBound(), domain.getHighBound(), solver);
         }
         return enumerated(name, domain.getValues(), solver);
     }
@@ -246,9 +352,27 @@ public class IrCompiler {
             }
             return var;
         }
+        if (isDense(env)) {
+            return set(name, env.getValues(), SetType.BITSET, ker.getValues(), SetType.BITSET, solver);
+        }
         return set(name, env.getValues(), ker.getValues(), solver);
     }
 
+    /**
+     * Clafer envelopes are usually small ranges starting near zero. A bitset
+     * over such an envelope has constant time membership and only trails the
+     * words that change.
+     *
+     * @param env the envelope
+     * @return {@code true} if the envelope should be stored as a bitset,
+     * {@code false} otherwise
+     */
+    private static boolean isDense(Domain env) {
+        return !env.isEmpty()
+                && env.getLowBound() >= 0
+                && env.getHighBound() < DENSE_FACTOR * env.size();
+    }
+
     private CSetVar cset(String name, Domain env, Domain ker, Domain card) {
         SetVar set = setVar(name, env, ker);
         return new CSetVar(set, intVar("|" + name + "|", card));
@@ -324,9 +448,21 @@ public class IrCompiler {
     }
 
     private BoolVar compileAsBoolVar(IrBoolExpr expr) {
+        if (commonSubexpressions.contains(expr)) {
+            return compileAsCommonBoolVar(expr);
+        }
         return asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
     }
 
+    private BoolVar compileAsCommonBoolVar(IrBoolExpr expr) {
+        BoolVar var = cachedCommonBoolSubexpressions.get(expr);
+        if (var == null) {
+            var = asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
+            cachedCommonBoolSubexpressions.put(expr, var);
+        }
+        return var;
+    }
+
     private BoolVar[] compileAsBoolVars(IrBoolExpr[] exprs) {
         BoolVar[] vars = new BoolVar[exprs.length];
         for (int i = 0; i < vars.length; i++) {
@@ -336,7 +472,7 @@ public class IrCompiler {
     }
 
     private IntVar compileAsIntVar(IrBoolExpr expr) {
-        return asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
+        return compileAsBoolVar(expr);
     }
 
     private IntVar[] compileAsIntVars(IrBoolExpr[] exprs) {
@@ -359,10 +495,107 @@ public class IrCompiler {
     }
 
     private Constraint compileAsConstraint(IrBoolExpr expr) {
+        if (commonSubexpressions.contains(expr)) {
+            return asConstraint(compileAsCommonBoolVar(expr));
+        }
+        Constraint halfReified = compileAsHalfReified(expr);
+        if (halfReified != null) {
+            return halfReified;
+        }
         return asConstraint(expr.accept(boolExprCompiler, ConstraintNoReify));
     }
 
+    /**
+     * Implications only need their consequent to hold when their antecedent
+     * does. Compile the consequent half-reified so nothing is posted for the
+     * case where the consequent is false. Only valid for constraints that are
+     * posted, never for expressions that are reified themselves.
+     *
+     * @param expr the posted constraint
+     * @return the half-reified constraint, or {@code null} if the constraint
+     * has no half-reified form
+     */
+    private Constraint compileAsHalfReified(IrBoolExpr expr) {
+        if (expr instanceof IrImplies) {
+            IrImplies implies = (IrImplies) expr;
+            if (isHalfReifiable(implies.getConsequent())) {
+                BoolVar antecedent = compileAsBoolVar(implies.getAntecedent());
+                return compileAsHalfReified(antecedent, implies.getConsequent());
+            }
+        } else if (expr instanceof IrIfThenElse) {
+            IrIfThenElse ifThenElse = (IrIfThenElse) expr;
+            if (isHalfReifiable(ifThenElse.getConsequent())
+                    && isHalfReifiable(ifThenElse.getAlternative())) {
+                BoolVar antecedent = compileAsBoolVar(ifThenElse.getAntecedent());
+                post(compileAsHalfReified(antecedent, ifThenElse.getConsequent()));
+                return compileAsHalfReified(antecedent.not(), ifThenElse.getAlternative());
+            }
+        }
+        return null;
+    }
+
+    private boolean isHalfReifiable(IrBoolExpr expr) {
+        if (commonSubexpressions.contains(expr)) {
+            // Already reified into a shared variable.
+            return false;
+        }
+        if (expr instanceof IrCompare) {
+            IrCompare.Op op = ((IrCompare) expr).getOp();
+            return IrCompare.Op.Equal.equals(op) || IrCompare.Op.NotEqual.equals(op);
+        }
+        if (expr instanceof IrSetEquality) {
+            return IrSetEquality.Op.Equal.equals(((IrSetEquality) expr).getOp());
+        }
+        if (expr instanceof IrSubsetEq) {
+            return true;
+        }
+        if (expr instanceof IrAnd) {
+            for (IrBoolExpr operand : ((IrAnd) expr).getOperands()) {
+                if (isHalfReifiable(operand)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Constraint compileAsHalfReified(BoolVar antecedent, IrBoolExpr consequent) {
+        if (!isHalfReifiable(consequent)) {
+            return _implies(antecedent, compileAsBoolVar(consequent));
+        }
+        if (consequent instanceof IrCompare) {
+            IrCompare compare = (IrCompare) consequent;
+            IntVar left = compile(compare.getLeft());
+            IntVar right = compile(compare.getRight());
+            return IrCompare.Op.Equal.equals(compare.getOp())
+                    ? _half_reify_equal(antecedent, left, right)
+                    : _half_reify_not_equal(antecedent, left, right);
+        }
+        if (consequent instanceof IrSetEquality) {
+            IrSetEquality equality = (IrSetEquality) consequent;
+            CSetVar left = compile(equality.getLeft());
+            CSetVar right = compile(equality.getRight());
+            return Constraints.halfReifyEqual(antecedent,
+                    left.getSet(), left.getCard(), right.getSet(), right.getCard());
+        }
+        if (consequent instanceof IrSubsetEq) {
+            IrSubsetEq subsetEq = (IrSubsetEq) consequent;
+            CSetVar sub = compile(subsetEq.getSubset());
+            CSetVar sup = compile(subsetEq.getSuperset());
+            return Constraints.halfReifySubsetEq(antecedent,
+                    sub.getSet(), sub.getCard(), sup.getSet(), sup.getCard());
+        }
+        IrBoolExpr[] operands = ((IrAnd) consequent).getOperands();
+        for (int i = 0; i < operands.length - 1; i++) {
+            post(compileAsHalfReified(antecedent, operands[i]));
+        }
+        return compileAsHalfReified(antecedent, operands[operands.length - 1]);
+    }
+
     private Constraint compileAsConstraint(IrBoolExpr expr, BoolVar reify) {
+        if (commonSubexpressions.contains(expr)) {
+            return _arithm(reify, "=", compileAsCommonBoolVar(expr));
+        }
         BoolArg arg = new BoolArg(reify, Preference.Constraint);
         Object result = expr.accept(boolExprCompiler, arg);
         if (result instanceof Constraint) {
@@ -643,10 +876,17 @@ public class IrCompiler {
     }
 
     private Object compile(IrBoolExpr expr) {
+        if (commonSubexpressions.contains(expr)) {
+            return compileAsCommonBoolVar(expr);
+        }
         return expr.accept(boolExprCompiler, ConstraintNoReify);
     }
 
     private IntVar compile(IrIntExpr expr) {
+        if (expr instanceof IrBoolExpr && commonSubexpressions.contains(expr)) {
+            // Share the variable with the boolean occurrences.
+            return compileAsCommonBoolVar((IrBoolExpr) expr);
+        }
         IntVar var = cachedCommonIntSubexpressions.get(expr);
         if (var == null) {
             var = (IntVar) expr.accept(intExprCompiler, null);
@@ -1015,6 +1255,12 @@ public class IrCompiler {
             return Constraints.unreachable(edges, ir.getFrom(), ir.getTo());
         }
 
+        @Override
+        public Object visit(IrOrderedForest ir, BoolArg a) {
+            IntVar[] edges = compile(ir.getEdges());
+            return Constraints.orderedForest(edges, ir.getGroups());
+        }
+
         @Override
         public Object visit(IrFilterString ir, BoolArg a) {
             CSetVar set = compile(ir.getSet());
@@ -1380,6 +1626,11 @@ public class IrCompiler {
             return compileBool(ir, a);
         }
 
+        @Override
+        public Object visit(IrOrderedForest ir, IntVar a) {
+            return compileBool(ir, a);
+        }
+
         @Override
         public Object visit(IrFilterString ir, IntVar a) {
             return compileBool(ir, a);
@@ -1672,6 +1923,32 @@ public class IrCompiler {
         }
     }
 
+    private Constraint _half_reify_equal(BoolVar reify, IntVar var1, IntVar var2) {
+        if (var1.isInstantiated()) {
+            if (var2.isInstantiated()) {
+                return _arithm(reify, "<=", var1.getValue() == var2.getValue() ? 1 : 0);
+            }
+            return Constraints.halfReifyEqual(reify, var2, var1.getValue());
+        } else if (var2.isInstantiated()) {
+            return Constraints.halfReifyEqual(reify, var1, var2.getValue());
+        } else {
+            return Constraints.halfReifyEqual(reify, var1, var2);
+        }
+    }
+
+    private Constraint _half_reify_not_equal(BoolVar reify, IntVar var1, IntVar var2) {
+        if (var1.isInstantiated()) {
+            if (var2.isInstantiated()) {
+                return _arithm(reify, "<=", var1.getValue() != var2.getValue() ? 1 : 0);
+            }
+            return Constraints.halfReifyNotEqual(reify, var2, var1.getValue());
+        } else if (var2.isInstantiated()) {
+            return Constraints.halfReifyNotEqual(reify, var1, var2.getValue());
+        } else {
+            return Constraints.halfReifyNotEqual(reify, var1, var2);
+        }
+    }
+
     private Constraint _reify_not_equal(BoolVar reify, IntVar var1, IntVar var2) {
         if (var1.isInstantiated()) {
             if (var2.isInstantiated()) {
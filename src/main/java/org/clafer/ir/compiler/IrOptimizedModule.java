@@ -0,0 +1,91 @@
+package org.clafer.ir.compiler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.clafer.common.Check;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+
+/**
+ * A module optimized by {@link IrCompiler#optimize} along with what is needed
+ * to recover the values of the variables optimized away.
+ *
+ * @author jimmy
+ */
+public class IrOptimizedModule {
+
+    private final Map<IrIntVar, IrIntVar> coalescedIntVars;
+    private final Map<IrSetVar, IrSetVar> coalescedSetVars;
+    private final Map<IrIntVar, IrIntExpr> definedIntVars;
+    private final IrModule module;
+    private final List<IrPassStatistics> passStatistics;
+
+    /**
+     * @param coalescedIntVars the integer variables replaced by equivalent
+     * variables
+     * @param coalescedSetVars the set variables replaced by equivalent
+     * variables
+     * @param definedIntVars the integer variables eliminated with their
+     * definitions
+     * @param module the optimized module
+     */
+    public IrOptimizedModule(
+            Map<IrIntVar, IrIntVar> coalescedIntVars,
+            Map<IrSetVar, IrSetVar> coalescedSetVars,
+            Map<IrIntVar, IrIntExpr> definedIntVars,
+            IrModule module) {
+        this(coalescedIntVars, coalescedSetVars, definedIntVars, module,
+                Collections.<IrPassStatistics>emptyList());
+    }
+
+    /**
+     * @param coalescedIntVars the integer variables replaced by equivalent
+     * variables
+     * @param coalescedSetVars the set variables replaced by equivalent
+     * variables
+     * @param definedIntVars the integer variables eliminated with their
+     * definitions
+     * @param module the optimized module
+     * @param passStatistics the statistics of the passes that optimized the
+     * module
+     */
+    public IrOptimizedModule(
+            Map<IrIntVar, IrIntVar> coalescedIntVars,
+            Map<IrSetVar, IrSetVar> coalescedSetVars,
+            Map<IrIntVar, IrIntExpr> definedIntVars,
+            IrModule module,
+            List<IrPassStatistics> passStatistics) {
+        this.coalescedIntVars = Check.notNull(coalescedIntVars);
+        this.coalescedSetVars = Check.notNull(coalescedSetVars);
+        this.definedIntVars = Check.notNull(definedIntVars);
+        this.module = Check.notNull(module);
+        this.passStatistics = Check.notNull(passStatistics);
+    }
+
+    public Map<IrIntVar, IrIntVar> getCoalescedIntVars() {
+        return Collections.unmodifiableMap(coalescedIntVars);
+    }
+
+    public Map<IrSetVar, IrSetVar> getCoalescedSetVars() {
+        return Collections.unmodifiableMap(coalescedSetVars);
+    }
+
+    public Map<IrIntVar, IrIntExpr> getDefinedIntVars() {
+        return Collections.unmodifiableMap(definedIntVars);
+    }
+
+    public IrModule getModule() {
+        return module;
+    }
+
+    /**
+     * @return the statistics of every pass in the order they ran, empty if the
+     * module was not optimized by a {@link IrPassManager}
+     */
+    public List<IrPassStatistics> getPassStatistics() {
+        return Collections.unmodifiableList(passStatistics);
+    }
+}
@@ -0,0 +1,184 @@
+package org.clafer.ir.compiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.clafer.collection.Pair;
+import org.clafer.collection.Triple;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.analysis.BoundsPropagator;
+import org.clafer.ir.analysis.Coalescer;
+import org.clafer.ir.analysis.DeadVariableEliminator;
+import org.clafer.ir.analysis.DuplicateConstraints;
+import org.clafer.ir.analysis.ImplicationFlattener;
+import org.clafer.ir.analysis.LinearEquationOptimizer;
+import org.clafer.ir.analysis.Optimizer;
+
+/**
+ * The optimization passes over the IR. A pass only runs after the enabled
+ * passes it depends on. Dependencies only order the passes, enabling a pass
+ * does not enable its dependencies.
+ *
+ * @author jimmy
+ * @see IrPassManager
+ */
+public enum IrPass {
+
+    /**
+     * Rewrites expressions into simpler equivalent expressions.
+     */
+    Optimize {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    return with(in, Optimizer.optimize(in.getModule()));
+                }
+            },
+    /**
+     * Narrows the domains of variables with the constraints they occur in.
+     *
+     * @see BoundsPropagator
+     */
+    PropagateBounds(Optimize) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagateTriple
+                    = BoundsPropagator.propagate(in.getModule());
+                    return new IrOptimizedModule(
+                            compose(in.getCoalescedIntVars(), propagateTriple.getFst()),
+                            compose(in.getCoalescedSetVars(), propagateTriple.getSnd()),
+                            in.getDefinedIntVars(), propagateTriple.getThd());
+                }
+            },
+    /**
+     * Replaces variables with equivalent variables until no more variables
+     * are equivalent.
+     */
+    Coalesce(Optimize, PropagateBounds) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    Map<IrIntVar, IrIntVar> coalescedIntVars = in.getCoalescedIntVars();
+                    Map<IrSetVar, IrSetVar> coalescedSetVars = in.getCoalescedSetVars();
+                    IrModule module = in.getModule();
+                    Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesceTriple;
+                    do {
+                        coalesceTriple = Coalescer.coalesce(module);
+                        coalescedIntVars = compose(coalescedIntVars, coalesceTriple.getFst());
+                        coalescedSetVars = compose(coalescedSetVars, coalesceTriple.getSnd());
+                        module = coalesceTriple.getThd();
+                    } while (!coalesceTriple.getFst().isEmpty()
+                            || !coalesceTriple.getSnd().isEmpty());
+                    return new IrOptimizedModule(coalescedIntVars, coalescedSetVars,
+                            in.getDefinedIntVars(), module);
+                }
+            },
+    /**
+     * Removes constraints that are the same as another constraint. Coalescing
+     * turns different constraints into the same constraint.
+     */
+    RemoveDuplicates(Coalesce) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    return with(in, DuplicateConstraints.removeDuplicates(in.getModule()));
+                }
+            },
+    /**
+     * Removes variables that are functions of other variables.
+     *
+     * @see DeadVariableEliminator
+     */
+    EliminateDeadVariables(Coalesce, RemoveDuplicates) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminatePair
+                    = DeadVariableEliminator.eliminate(in.getModule());
+                    Map<IrIntVar, IrIntExpr> definedIntVars = in.getDefinedIntVars();
+                    if (!eliminatePair.getFst().isEmpty()) {
+                        definedIntVars = new HashMap<>(definedIntVars);
+                        definedIntVars.putAll(eliminatePair.getFst());
+                    }
+                    return new IrOptimizedModule(in.getCoalescedIntVars(), in.getCoalescedSetVars(),
+                            definedIntVars, eliminatePair.getSnd());
+                }
+            },
+    /**
+     * Rewrites if-then-else into implications and moves conjunctions out of
+     * the consequent of implications. Not part of the standard passes.
+     *
+     * @see ImplicationFlattener
+     */
+    FlattenImplications(Optimize) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    return with(in, ImplicationFlattener.flatten(in.getModule()));
+                }
+            },
+    /**
+     * Rewrites linear equations into a form Choco propagates better. Their
+     * form hides them from the other passes, so it runs last.
+     */
+    OptimizeLinearEquations(Optimize, PropagateBounds, Coalesce, RemoveDuplicates, EliminateDeadVariables,
+            FlattenImplications) {
+                @Override
+                IrOptimizedModule apply(IrOptimizedModule in) {
+                    return with(in, LinearEquationOptimizer.optimize(in.getModule()));
+                }
+            };
+    private final IrPass[] dependencies;
+
+    private IrPass(IrPass... dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @return the passes that run before this pass if they are enabled
+     */
+    public IrPass[] getDependencies() {
+        return dependencies.clone();
+    }
+
+    /**
+     * @param pass the other pass
+     * @return {@code true} if this pass runs after the other pass when both
+     * are enabled, {@code false} otherwise
+     */
+    public boolean dependsOn(IrPass pass) {
+        return Arrays.asList(dependencies).contains(pass);
+    }
+
+    /**
+     * Run the pass.
+     *
+     * @param in the module optimized by the earlier passes
+     * @return the optimized module
+     */
+    abstract IrOptimizedModule apply(IrOptimizedModule in);
+
+    private static IrOptimizedModule with(IrOptimizedModule in, IrModule module) {
+        return new IrOptimizedModule(in.getCoalescedIntVars(), in.getCoalescedSetVars(),
+                in.getDefinedIntVars(), module);
+    }
+
+    private static <T> Map<T, T> compose(Map<T, T> f1, Map<T, T> f2) {
+        if (f1.isEmpty()) {
+            return f2;
+        }
+        if (f2.isEmpty()) {
+            return f1;
+        }
+        Map<T, T> composed = new HashMap<>(f1.size() + f2.size());
+        composed.putAll(f2);
+        for (Entry<T, T> e : f1.entrySet()) {
+            T key = e.getKey();
+            T value = f2.get(e.getValue());
+            if (value == null) {
+                value = e.getValue();
+            }
+            composed.put(key, value);
+        }
+        return composed;
+    }
+}
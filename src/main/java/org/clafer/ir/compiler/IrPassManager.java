@@ -0,0 +1,208 @@
+package org.clafer.ir.compiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.clafer.common.Check;
+import org.clafer.common.Util;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import static org.clafer.ir.compiler.IrPass.*;
+
+/**
+ * Runs the enabled passes over a module. The passes run in the order they are
+ * given except a pass always runs after the enabled passes it depends on. The
+ * passes either run once, or repeatedly until a round of every pass leaves the
+ * module the same. Every run of a pass is recorded in the statistics of the
+ * optimized module.
+ *
+ * @author jimmy
+ */
+public class IrPassManager {
+
+    /**
+     * The most rounds to run when iterating to a fixpoint. Guards against
+     * passes that undo each other.
+     */
+    public static final int MaxRounds = 32;
+    private static final IrPassManager Full = new IrPassManager(false,
+            Optimize, PropagateBounds, Coalesce, RemoveDuplicates, EliminateDeadVariables, OptimizeLinearEquations);
+    private static final IrPassManager Basic = new IrPassManager(false,
+            Optimize, OptimizeLinearEquations);
+    private static final ThreadMXBean Threads = ManagementFactory.getThreadMXBean();
+    // Only HotSpot measures the allocations of a thread.
+    private static final Method ThreadAllocatedBytes = threadAllocatedBytes();
+    private final IrPass[] passes;
+    private final boolean fixpoint;
+
+    /**
+     * @param fixpoint repeat the passes until the module stops changing
+     * @param passes the enabled passes
+     */
+    public IrPassManager(boolean fixpoint, IrPass... passes) {
+        this.passes = order(passes);
+        this.fixpoint = fixpoint;
+    }
+
+    /**
+     * The passes {@link IrCompiler} runs by default.
+     *
+     * @param coalesceVariables coalesce equivalent variables and eliminate
+     * dead variables
+     * @return the standard passes
+     */
+    public static IrPassManager standard(boolean coalesceVariables) {
+        return coalesceVariables ? Full : Basic;
+    }
+
+    private static IrPass[] order(IrPass[] passes) {
+        Set<IrPass> remaining = EnumSet.noneOf(IrPass.class);
+        for (IrPass pass : passes) {
+            if (!remaining.add(Check.notNull(pass))) {
+                throw new IllegalArgumentException("Pass " + pass + " is enabled more than once.");
+            }
+        }
+        IrPass[] ordered = new IrPass[passes.length];
+        for (int i = 0; i < ordered.length; i++) {
+            // Dependencies are declared before their dependents so one of the
+            // remaining passes is always ready.
+            for (IrPass pass : passes) {
+                if (remaining.contains(pass) && isReady(pass, remaining)) {
+                    remaining.remove(pass);
+                    ordered[i] = pass;
+                    break;
+                }
+            }
+            assert ordered[i] != null;
+        }
+        return ordered;
+    }
+
+    private static boolean isReady(IrPass pass, Set<IrPass> remaining) {
+        for (IrPass dependency : pass.getDependencies()) {
+            if (remaining.contains(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the enabled passes in the order they run
+     */
+    public IrPass[] getPasses() {
+        return passes.clone();
+    }
+
+    public boolean isFixpoint() {
+        return fixpoint;
+    }
+
+    /**
+     * Run the passes over the module.
+     *
+     * @param in the module
+     * @return the optimized module along with the statistics of every pass
+     */
+    public IrOptimizedModule optimize(IrModule in) {
+        IrOptimizedModule module = new IrOptimizedModule(
+                Collections.<IrIntVar, IrIntVar>emptyMap(),
+                Collections.<IrSetVar, IrSetVar>emptyMap(),
+                Collections.<IrIntVar, IrIntExpr>emptyMap(),
+                in);
+        List<IrPassStatistics> statistics = new ArrayList<>();
+        int variables = in.getVariables().size();
+        int round = 0;
+        boolean changed;
+        do {
+            changed = false;
+            for (IrPass pass : passes) {
+                List<IrBoolExpr> before = module.getModule().getConstraints();
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                IrOptimizedModule result = pass.apply(module);
+                long time = System.nanoTime() - start;
+                if (allocated >= 0) {
+                    allocated = allocatedBytes() - allocated;
+                }
+                List<IrBoolExpr> after = result.getModule().getConstraints();
+                int variablesAfter = result.getModule().getVariables().size();
+                statistics.add(new IrPassStatistics(pass, round, time, allocated,
+                        before.size(), after.size(), variables, variablesAfter));
+                if (fixpoint && !changed) {
+                    changed = !before.equals(after);
+                }
+                variables = variablesAfter;
+                module = result;
+            }
+            round++;
+        } while (changed && round < MaxRounds);
+        return new IrOptimizedModule(
+                module.getCoalescedIntVars(),
+                module.getCoalescedSetVars(),
+                module.getDefinedIntVars(),
+                module.getModule(),
+                statistics);
+    }
+
+    private static Method threadAllocatedBytes() {
+        try {
+            Class<?> hotSpot = Class.forName("com.sun.management.ThreadMXBean");
+            if (!hotSpot.isInstance(Threads)) {
+                return null;
+            }
+            Method supported = hotSpot.getMethod("isThreadAllocatedMemorySupported");
+            Method enabled = hotSpot.getMethod("isThreadAllocatedMemoryEnabled");
+            if (!Boolean.TRUE.equals(supported.invoke(Threads))
+                    || !Boolean.TRUE.equals(enabled.invoke(Threads))) {
+                return null;
+            }
+            return hotSpot.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, or -1 if unknown
+     */
+    private static long allocatedBytes() {
+        if (ThreadAllocatedBytes == null) {
+            return -1;
+        }
+        try {
+            return (Long) ThreadAllocatedBytes.invoke(Threads, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IrPassManager) {
+            IrPassManager other = (IrPassManager) obj;
+            return fixpoint == other.fixpoint && Arrays.equals(passes, other.passes);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(passes) ^ (fixpoint ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return (passes.length == 0 ? "no passes" : Util.intercalate(", ", passes))
+                + (fixpoint ? " until fixpoint" : "");
+    }
+}
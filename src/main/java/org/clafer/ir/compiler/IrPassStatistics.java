@@ -0,0 +1,81 @@
+package org.clafer.ir.compiler;
+
+/**
+ * What one run of a pass cost and what it removed.
+ *
+ * @author jimmy
+ */
+public class IrPassStatistics {
+
+    private final IrPass pass;
+    private final int round;
+    private final long time;
+    private final long allocatedBytes;
+    private final int constraintsBefore;
+    private final int constraintsAfter;
+    private final int variablesBefore;
+    private final int variablesAfter;
+
+    IrPassStatistics(IrPass pass, int round, long time, long allocatedBytes,
+            int constraintsBefore, int constraintsAfter,
+            int variablesBefore, int variablesAfter) {
+        this.pass = pass;
+        this.round = round;
+        this.time = time;
+        this.allocatedBytes = allocatedBytes;
+        this.constraintsBefore = constraintsBefore;
+        this.constraintsAfter = constraintsAfter;
+        this.variablesBefore = variablesBefore;
+        this.variablesAfter = variablesAfter;
+    }
+
+    public IrPass getPass() {
+        return pass;
+    }
+
+    /**
+     * @return the round the pass ran in, starting from 0
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * @return the time spent in the pass in nanoseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the bytes allocated by the pass, or -1 if the JVM does not
+     * measure allocations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getConstraintsBefore() {
+        return constraintsBefore;
+    }
+
+    public int getConstraintsAfter() {
+        return constraintsAfter;
+    }
+
+    public int getVariablesBefore() {
+        return variablesBefore;
+    }
+
+    public int getVariablesAfter() {
+        return variablesAfter;
+    }
+
+    @Override
+    public String toString() {
+        return pass + "#" + round + ": " + (time / 1000000) + "ms, "
+                + (allocatedBytes < 0 ? "?" : allocatedBytes / 1024) + "KiB allocated, "
+                + constraintsBefore + " -> " + constraintsAfter + " constraints, "
+                + variablesBefore + " -> " + variablesAfter + " variables";
+    }
+}
@@ -2,13 +2,37 @@ package org.clafer.ir.compiler;
 
 import java.util.Map;
 import org.clafer.collection.Either;
+import org.clafer.ir.IrAdd;
+import org.clafer.ir.IrAnd;
 import org.clafer.ir.IrBoolConstant;
+import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCard;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrCount;
+import org.clafer.ir.IrElement;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrIfThenElse;
+import org.clafer.ir.IrImplies;
 import org.clafer.ir.IrIntConstant;
+import org.clafer.ir.IrIntExpr;
 import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrLone;
+import org.clafer.ir.IrMember;
+import org.clafer.ir.IrMinus;
+import org.clafer.ir.IrMul;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrNotImplies;
+import org.clafer.ir.IrNotMember;
+import org.clafer.ir.IrOne;
+import org.clafer.ir.IrOr;
 import org.clafer.ir.IrSetConstant;
+import org.clafer.ir.IrSetSum;
 import org.clafer.ir.IrSetVar;
 import org.clafer.ir.IrStringVar;
+import org.clafer.ir.IrTernary;
+import org.clafer.ir.IrWithin;
+import org.clafer.ir.IrXor;
 import solver.variables.BoolVar;
 import solver.variables.IntVar;
 import solver.variables.SetVar;
@@ -20,6 +44,11 @@ import solver.variables.SetVar;
  * get&lt;Type&gt;Value will return the value, regardless of the optimizations.
  * The get&lt;Type&gt;Value methods are undefined if the solver has not found a
  * solution yet.
+ * <p>
+ * Variables eliminated as functions of other variables have no Choco variable
+ * and only their value is available, computed from their definition. Variables
+ * that were optimized away without any constraint take their smallest value.
+ * </p>
  *
  * @author jimmy
  */
@@ -29,27 +58,43 @@ public class IrSolutionMap {
     private final Map<IrIntVar, IntVar> intVars;
     private final Map<IrSetVar, IrSetVar> coalescedSetVars;
     private final Map<IrSetVar, SetVar> setVars;
+    private final Map<IrIntVar, IrIntExpr> definedIntVars;
 
     IrSolutionMap(
             Map<IrIntVar, IrIntVar> coalescedIntVars,
             Map<IrIntVar, IntVar> intVars,
             Map<IrSetVar, IrSetVar> coalescedSetVars,
-            Map<IrSetVar, SetVar> setVars) {
+            Map<IrSetVar, SetVar> setVars,
+            Map<IrIntVar, IrIntExpr> definedIntVars) {
         this.coalescedIntVars = coalescedIntVars;
         this.intVars = intVars;
         this.coalescedSetVars = coalescedSetVars;
         this.setVars = setVars;
+        this.definedIntVars = definedIntVars;
     }
 
-    public Either<Boolean, BoolVar> getVar(IrBoolVar var) {
-        IrBoolVar boolVar = (IrBoolVar) coalescedIntVars.get(var);
-        if (boolVar == null) {
-            boolVar = var;
+    private IrIntVar coalesced(IrIntVar var) {
+        IrIntVar intVar = coalescedIntVars.get(var);
+        return intVar == null ? var : intVar;
+    }
+
+    private void checkNotDefined(IrIntVar var) {
+        if (definedIntVars.containsKey(var)) {
+            throw new IllegalArgumentException(var + " was eliminated, only its value is known.");
         }
+    }
+
+    public Either<Boolean, BoolVar> getVar(IrBoolVar var) {
+        IrBoolVar boolVar = (IrBoolVar) coalesced(var);
         if (boolVar instanceof IrBoolConstant) {
             return Either.left(((IrBoolConstant) boolVar).getValue());
         }
-        return Either.right((BoolVar) intVars.get(boolVar));
+        checkNotDefined(boolVar);
+        BoolVar chocoVar = (BoolVar) intVars.get(boolVar);
+        if (chocoVar == null) {
+            return Either.left(boolVar.getDomain().getLowBound() != 0);
+        }
+        return Either.right(chocoVar);
     }
 
     public Either<Boolean, BoolVar>[] getVars(IrBoolVar... vars) {
@@ -62,10 +107,7 @@ public class IrSolutionMap {
     }
 
     public boolean getValue(IrBoolVar var) {
-        Either<Boolean, BoolVar> boolVar = getVar(var);
-        return boolVar.isLeft()
-                ? boolVar.getLeft()
-                : boolVar.getRight().getValue() != 0;
+        return getValue((IrIntVar) var) != 0;
     }
 
     public boolean[] getValues(IrBoolVar... vars) {
@@ -77,17 +119,19 @@ public class IrSolutionMap {
     }
 
     public Either<Integer, IntVar> getVar(IrIntVar var) {
-        IrIntVar intVar = coalescedIntVars.get(var);
-        if (intVar == null) {
-            intVar = var;
-        }
+        IrIntVar intVar = coalesced(var);
         if (intVar instanceof IrIntConstant) {
             return Either.left(((IrIntConstant) intVar).getValue());
         }
         if (intVar instanceof IrBoolConstant) {
             return Either.left(((IrBoolConstant) intVar).getValue() ? 1 : 0);
         }
-        return Either.right(intVars.get(intVar));
+        checkNotDefined(intVar);
+        IntVar chocoVar = intVars.get(intVar);
+        if (chocoVar == null) {
+            return Either.left(intVar.getLowBound());
+        }
+        return Either.right(chocoVar);
     }
 
     public Either<Integer, IntVar>[] getVars(IrIntVar... vars) {
@@ -104,6 +148,10 @@ public class IrSolutionMap {
     }
 
     public int getValue(IrIntVar var) {
+        IrIntExpr definition = definedIntVars.get(coalesced(var));
+        if (definition != null) {
+            return evaluate(definition);
+        }
         Either<Integer, IntVar> intVar = getVar(var);
         return intVar.isLeft()
                 ? intVar.getLeft()
@@ -126,7 +174,11 @@ public class IrSolutionMap {
         if (setVar instanceof IrSetConstant) {
             return Either.left(((IrSetConstant) setVar).getValue());
         }
-        return Either.right(setVars.get(setVar));
+        SetVar chocoVar = setVars.get(setVar);
+        if (chocoVar == null) {
+            return Either.left(setVar.getKer().getValues());
+        }
+        return Either.right(chocoVar);
     }
 
     public Either<int[], SetVar>[] getVars(IrSetVar... vars) {
@@ -175,4 +227,143 @@ public class IrSolutionMap {
         }
         return svalues;
     }
+
+    /*
+     * Evaluates the expressions DeadVariableEliminator accepts as definitions.
+     * Booleans evaluate to 0 or 1.
+     */
+    private int evaluate(IrIntExpr expr) {
+        if (expr instanceof IrIntVar) {
+            return getValue((IrIntVar) expr);
+        }
+        if (expr instanceof IrNot) {
+            return 1 - evaluate(((IrNot) expr).getExpr());
+        }
+        if (expr instanceof IrAnd) {
+            return count(((IrAnd) expr).getOperands()) == ((IrAnd) expr).getOperands().length ? 1 : 0;
+        }
+        if (expr instanceof IrOr) {
+            return count(((IrOr) expr).getOperands()) > 0 ? 1 : 0;
+        }
+        if (expr instanceof IrLone) {
+            return count(((IrLone) expr).getOperands()) <= 1 ? 1 : 0;
+        }
+        if (expr instanceof IrOne) {
+            return count(((IrOne) expr).getOperands()) == 1 ? 1 : 0;
+        }
+        if (expr instanceof IrImplies) {
+            IrImplies implies = (IrImplies) expr;
+            return evaluate(implies.getAntecedent()) == 0 ? 1 : evaluate(implies.getConsequent());
+        }
+        if (expr instanceof IrNotImplies) {
+            IrNotImplies notImplies = (IrNotImplies) expr;
+            return evaluate(notImplies.getAntecedent()) == 0 ? 0 : 1 - evaluate(notImplies.getConsequent());
+        }
+        if (expr instanceof IrIfThenElse) {
+            IrIfThenElse ifThenElse = (IrIfThenElse) expr;
+            return evaluate(ifThenElse.getAntecedent()) != 0
+                    ? evaluate(ifThenElse.getConsequent())
+                    : evaluate(ifThenElse.getAlternative());
+        }
+        if (expr instanceof IrIfOnlyIf) {
+            IrIfOnlyIf ifOnlyIf = (IrIfOnlyIf) expr;
+            return evaluate(ifOnlyIf.getLeft()) == evaluate(ifOnlyIf.getRight()) ? 1 : 0;
+        }
+        if (expr instanceof IrXor) {
+            IrXor xor = (IrXor) expr;
+            return evaluate(xor.getLeft()) != evaluate(xor.getRight()) ? 1 : 0;
+        }
+        if (expr instanceof IrWithin) {
+            IrWithin within = (IrWithin) expr;
+            return within.getRange().contains(evaluate(within.getValue())) ? 1 : 0;
+        }
+        if (expr instanceof IrCompare) {
+            IrCompare compare = (IrCompare) expr;
+            int left = evaluate(compare.getLeft());
+            int right = evaluate(compare.getRight());
+            switch (compare.getOp()) {
+                case Equal:
+                    return left == right ? 1 : 0;
+                case NotEqual:
+                    return left != right ? 1 : 0;
+                case LessThan:
+                    return left < right ? 1 : 0;
+                case LessThanEqual:
+                    return left <= right ? 1 : 0;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        if (expr instanceof IrMember) {
+            IrMember member = (IrMember) expr;
+            return contains(getValue((IrSetVar) member.getSet()), evaluate(member.getElement())) ? 1 : 0;
+        }
+        if (expr instanceof IrNotMember) {
+            IrNotMember notMember = (IrNotMember) expr;
+            return contains(getValue((IrSetVar) notMember.getSet()), evaluate(notMember.getElement())) ? 0 : 1;
+        }
+        if (expr instanceof IrMinus) {
+            return -evaluate(((IrMinus) expr).getExpr());
+        }
+        if (expr instanceof IrCard) {
+            return getValue((IrSetVar) ((IrCard) expr).getSet()).length;
+        }
+        if (expr instanceof IrAdd) {
+            IrAdd add = (IrAdd) expr;
+            int sum = add.getOffset();
+            for (IrIntExpr addend : add.getAddends()) {
+                sum += evaluate(addend);
+            }
+            return sum;
+        }
+        if (expr instanceof IrMul) {
+            IrMul mul = (IrMul) expr;
+            return evaluate(mul.getMultiplicand()) * evaluate(mul.getMultiplier());
+        }
+        if (expr instanceof IrElement) {
+            IrElement element = (IrElement) expr;
+            return evaluate(element.getArray()[evaluate(element.getIndex())]);
+        }
+        if (expr instanceof IrCount) {
+            IrCount count = (IrCount) expr;
+            int occurrences = 0;
+            for (IrIntExpr i : count.getArray()) {
+                if (evaluate(i) == count.getValue()) {
+                    occurrences++;
+                }
+            }
+            return occurrences;
+        }
+        if (expr instanceof IrSetSum) {
+            int sum = 0;
+            for (int i : getValue((IrSetVar) ((IrSetSum) expr).getSet())) {
+                sum += i;
+            }
+            return sum;
+        }
+        if (expr instanceof IrTernary) {
+            IrTernary ternary = (IrTernary) expr;
+            return evaluate(ternary.getAntecedent()) != 0
+                    ? evaluate(ternary.getConsequent())
+                    : evaluate(ternary.getAlternative());
+        }
+        throw new IllegalStateException("Cannot evaluate " + expr);
+    }
+
+    private int count(IrBoolExpr[] operands) {
+        int count = 0;
+        for (IrBoolExpr operand : operands) {
+            count += evaluate(operand);
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] set, int value) {
+        for (int i : set) {
+            if (i == value) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -11,6 +11,7 @@ import org.clafer.ast.AstConstraint;
 import org.clafer.ast.AstModel;
 import org.clafer.ast.AstUtil;
 import org.clafer.ast.Asts;
+import org.clafer.choco.constraint.PropagatorProfiler;
 import org.clafer.collection.Pair;
 import org.clafer.collection.Triple;
 import org.clafer.compiler.ClaferCompiler;
@@ -67,6 +68,7 @@ public class JavascriptShell {
                     + "minUnsat()       find the smallest set of unsatisfiable constraints and a near-miss\n"
                     + "unsatCore()      find a small set of mutually unsatisfiable constraints\n"
                     + "stats()          display statistics about the current search\n"
+                    + "profile()        display statistics about each propagator, see options.profile()\n"
                     + "options          display and modify the compiler options\n"
                     + "exit()           stop the session");
             engine.put("options", engine, options);
@@ -186,9 +188,9 @@ public class JavascriptShell {
     public Object solve() {
         if (solver == null) {
             if (objectives.length == 0) {
-                solver = ClaferCompiler.compile(getModel(), scope);
+                solver = ClaferCompiler.compile(getModel(), scope, options.options);
             } else if (objectives.length == 1) {
-                solver = ClaferCompiler.compile(getModel(), scope, objectives[0]);
+                solver = ClaferCompiler.compile(getModel(), scope, objectives, options.options);
             } else {
                 return "Muliobjective optimization not yet supported.";
             }
@@ -207,7 +209,8 @@ public class JavascriptShell {
             throw new JavascriptException("Cannot maximize " + clafer + ".");
         }
         solver = ClaferCompiler.compile(getModel(), scope,
-                Objective.maximize(Asts.sum(Asts.global(clafer))));
+                new Objective[]{Objective.maximize(Asts.sum(Asts.global(clafer)))},
+                options.options);
         return solver.find() ? solver.instance() : null;
 
     }
@@ -223,7 +226,8 @@ public class JavascriptShell {
             throw new JavascriptException("Cannot minimize " + clafer + ".");
         }
         solver = ClaferCompiler.compile(getModel(), scope,
-                Objective.minimize(Asts.sum(Asts.global(clafer))));
+                new Objective[]{Objective.minimize(Asts.sum(Asts.global(clafer)))},
+                options.options);
         return solver.find() ? solver.instance() : null;
     }
 
@@ -256,6 +260,22 @@ public class JavascriptShell {
         return solver.getInternalSolver().getMeasures().toString();
     }
 
+    /**
+     * Returns statistics about each propagator in the current search. The
+     * model must be solved with profiling enabled.
+     *
+     * @return the profile
+     */
+    public String profile() {
+        if (!options.options.isProfiling()) {
+            return "Profiling is off. Use \"options.profile()\" then solve the model.";
+        }
+        if (solver == null) {
+            throw new JavascriptException("No solver. Use \"solve()\" to solve the model.");
+        }
+        return PropagatorProfiler.report(solver.getInternalSolver());
+    }
+
     /**
      * Exit the program.
      *
@@ -364,6 +384,51 @@ public class JavascriptShell {
             return "Updated options.";
         }
 
+        public String iteratePasses() {
+            options = options.iteratePasses();
+            return "Updated options.";
+        }
+
+        public String runPassesOnce() {
+            options = options.runPassesOnce();
+            return "Updated options.";
+        }
+
+        public String boundedDomains() {
+            options = options.boundedDomains();
+            return "Updated options.";
+        }
+
+        public String boundedDomains(int threshold) {
+            options = options.boundedDomains(threshold);
+            return "Updated options.";
+        }
+
+        public String enumeratedDomains() {
+            options = options.enumeratedDomains();
+            return "Updated options.";
+        }
+
+        public String profile() {
+            options = options.profile();
+            return "Updated options.";
+        }
+
+        public String noProfile() {
+            options = options.noProfile();
+            return "Updated options.";
+        }
+
+        public String prioritizedPropagation() {
+            options = options.prioritizedPropagation();
+            return "Updated options.";
+        }
+
+        public String defaultPropagation() {
+            options = options.defaultPropagation();
+            return "Updated options.";
+        }
+
         // Convenience function for the toString method.
         private static String star(boolean bool) {
             return bool ? " * " : "   ";
@@ -380,7 +445,15 @@ public class JavascriptShell {
                     + star(options.isBasicSymmetryBreaking()) + "options.basicSymmetryBreaking()  basic symmetry breaking\n"
                     + star(options.isFullSymmetryBreaking()) + "options.fullSymmetryBreaking()   full symmetry breaking\n"
                     + star(options.isBasicOptimizations()) + "options.basicOptimizations()     basic optimizations\n"
-                    + star(options.isFullOptimizations()) + "options.fullOptimizations()      full optimizations";
+                    + star(options.isFullOptimizations()) + "options.fullOptimizations()      full optimizations\n"
+                    + star(options.isIteratePasses()) + "options.iteratePasses()          repeat the optimizations until nothing changes\n"
+                    + star(!options.isIteratePasses()) + "options.runPassesOnce()          run each optimization once\n"
+                    + star(options.isBoundedDomains()) + "options.boundedDomains(n)        only track the bounds of integer domains larger than n\n"
+                    + star(options.isEnumeratedDomains()) + "options.enumeratedDomains()      track every value of every integer domain\n"
+                    + star(options.isProfiling()) + "options.profile()                profile the propagators\n"
+                    + star(!options.isProfiling()) + "options.noProfile()              do not profile the propagators\n"
+                    + star(options.isPrioritizedPropagation()) + "options.prioritizedPropagation() run cheaper propagators first\n"
+                    + star(options.isDefaultPropagation()) + "options.defaultPropagation()     use the solver's default propagation order";
         }
     }
 }
@@ -17,6 +17,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import org.clafer.collection.Pair;
 import org.clafer.common.Check;
+import org.clafer.common.Util;
 import org.clafer.math.LinearEquation.Op;
 import static org.clafer.math.LinearEquation.*;
 import static org.clafer.math.LinearEquation.Op.*;
@@ -338,6 +339,39 @@ public class LinearSystem {
         return changed;
     }
 
+    /**
+     * Scale the inequality by a positive constant so that the coefficients are
+     * coprime integers. Each elimination multiplies two rows together, without
+     * scaling back down the coefficients grow with every round.
+     */
+    private static LinearEquation normalize(Rational[] coefficients, Variable[] variables, Rational right) {
+        long gcd = 0;
+        long lcm = 1;
+        for (Rational coefficient : coefficients) {
+            if (!coefficient.fitsInLong()) {
+                gcd = 0;
+                break;
+            }
+            gcd = Util.gcd(gcd, Math.abs(coefficient.getNumerator()));
+            lcm = lcm / Util.gcd(lcm, coefficient.getDenominator()) * coefficient.getDenominator();
+            if (lcm > Integer.MAX_VALUE) {
+                gcd = 0;
+                break;
+            }
+        }
+        if (gcd != 0 && (gcd != 1 || lcm != 1)) {
+            Rational scale = new Rational(lcm, gcd);
+            for (int i = 0; i < coefficients.length; i++) {
+                coefficients[i] = coefficients[i].mul(scale);
+            }
+            right = right.mul(scale);
+        }
+        return new LinearEquation(
+                new LinearFunction(coefficients, variables, Rational.Zero),
+                LessThanEqual,
+                right);
+    }
+
     /**
      * Create redundant constraints based on Fourier-Motzkin elimination.
      * "Propagating systems of dense linear integer constraints" by Thibaut
@@ -378,6 +412,7 @@ public class LinearSystem {
             }
         }
 
+        Rational.Accumulator combination = new Rational.Accumulator();
         boolean changed;
         do {
             changed = false;
@@ -429,10 +464,9 @@ public class LinearSystem {
                                 assert z == newCoefficients.length;
                                 assert z == newVariables.length;
 
-                                LinearEquation newEquation = new LinearEquation(
-                                        new LinearFunction(newCoefficients, newVariables, Rational.Zero),
-                                        LessThanEqual,
-                                        a0.mul(bk.minus()).add(b0.mul(ak)));
+                                Rational newRight = combination.set(Rational.Zero)
+                                        .subMul(a0, bk).addMul(b0, ak).toRational();
+                                LinearEquation newEquation = normalize(newCoefficients, newVariables, newRight);
                                 switch (newEquation.isEntailed()) {
                                     case TrueFalseDomain:
                                         changed |= cost(newEquation, bestLowBound, bestHighBound, positiveOccurrences, negativeOccurrences);
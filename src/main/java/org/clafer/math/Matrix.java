@@ -216,20 +216,20 @@ public class Matrix {
 
         Matrix multiplierT = multiplier.transpose();
         TIntObjectHashMap<Rational>[] matrix = rows(numberOfRows(), multiplier.numberOfColumns());
+        Rational.Accumulator sum = new Rational.Accumulator();
         for (int i = 0; i < rows.length; i++) {
             for (int j = 0; j < multiplierT.rows.length; j++) {
                 TIntObjectIterator<Rational> iter = rows[i].iterator();
-                Rational sum = Rational.Zero;
+                sum.set(Rational.Zero);
                 for (int k = rows[i].size(); k-- > 0;) {
                     iter.advance();
                     Rational r2 = multiplierT.rows[j].get(iter.key());
                     if (r2 != null) {
-                        Rational r1 = iter.value();
-                        sum = sum.add(r1.mul(r2));
+                        sum.addMul(iter.value(), r2);
                     }
                 }
                 if (!sum.isZero()) {
-                    matrix[i].put(j, sum);
+                    matrix[i].put(j, sum.toRational());
                 }
             }
         }
@@ -248,6 +248,7 @@ public class Matrix {
             matrix[i] = new TIntObjectHashMap<>(rows[i]);
         }
 
+        Rational.Accumulator difference = new Rational.Accumulator();
         for (int r = 0; r < rowCount; r++) {
             if (columnCount <= lead) {
                 return new Matrix(matrix, numberOfColumns());
@@ -289,18 +290,17 @@ public class Matrix {
                     TIntObjectHashMap<Rational> rowR = matrix[r];
                     Rational multiplier = rowI.get(lead);
                     if (multiplier != null) {
+                        Rational negMultiplier = multiplier.minus();
                         TIntObjectIterator<Rational> iter = rowR.iterator();
                         for (int j = rowR.size(); j-- > 0;) {
                             iter.advance();
-                            Rational sub = iter.value().mul(multiplier);
-                            assert !sub.isZero();
-                            Rational value = rowI.putIfAbsent(iter.key(), sub.minus());
-                            if (value != null) {
-                                if (value.equals(sub)) {
-                                    rowI.remove(iter.key());
-                                } else {
-                                    rowI.put(iter.key(), value.sub(sub));
-                                }
+                            Rational value = rowI.get(iter.key());
+                            difference.set(value == null ? Rational.Zero : value)
+                                    .addMul(iter.value(), negMultiplier);
+                            if (difference.isZero()) {
+                                rowI.remove(iter.key());
+                            } else {
+                                rowI.put(iter.key(), difference.toRational());
                             }
                         }
                     }
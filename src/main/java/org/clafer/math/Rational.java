@@ -1,9 +1,12 @@
 package org.clafer.math;
 
+import java.math.BigInteger;
 import org.clafer.common.Util;
 
 /**
- * A rational number.
+ * A rational number. Small rationals are stored in two longs and computed
+ * without allocating anything besides the result. Rationals that do not fit
+ * are promoted to {@link BigInteger}s, so the arithmetic never overflows.
  *
  * @author jimmy
  */
@@ -12,17 +15,56 @@ public class Rational implements Comparable<Rational> {
     public static Rational Zero = new Rational(0);
     public static Rational One = new Rational(1);
 
+    /*
+     * Either the value is small and stored in the longs, or it is big and
+     * stored in the BigIntegers. The representation is unique, the value is
+     * big only if it does not fit. The longs never hold Long.MIN_VALUE, so
+     * negation cannot overflow.
+     */
     private final long numerator, denominator;
+    private final BigInteger bigNumerator, bigDenominator;
 
     public Rational(long whole) {
-        this.numerator = whole;
-        this.denominator = 1;
+        this(of(whole, 1));
     }
 
     public Rational(long numerator, long denominator) {
+        this(of(numerator, denominator));
+    }
+
+    private Rational(Rational copy) {
+        this.numerator = copy.numerator;
+        this.denominator = copy.denominator;
+        this.bigNumerator = copy.bigNumerator;
+        this.bigDenominator = copy.bigDenominator;
+    }
+
+    private Rational(long numerator, long denominator, BigInteger bigNumerator, BigInteger bigDenominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.bigNumerator = bigNumerator;
+        this.bigDenominator = bigDenominator;
+    }
+
+    /**
+     * @return {@code true} if all the values have magnitudes below 2^31, so
+     * that their pairwise products can be added together in a long
+     */
+    private static boolean small(long a, long b, long c, long d) {
+        return ((Math.abs(a) | Math.abs(b) | Math.abs(c) | Math.abs(d)) >>> 31) == 0;
+    }
+
+    private static boolean fitsInLong(BigInteger value) {
+        return value.bitLength() < 64 && value.longValue() != Long.MIN_VALUE;
+    }
+
+    private static Rational of(long numerator, long denominator) {
         if (denominator == 0) {
             throw new IllegalArgumentException();
         }
+        if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+            return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+        }
         long n, d;
         if (denominator > 0) {
             n = numerator;
@@ -35,53 +77,132 @@ public class Rational implements Comparable<Rational> {
         assert gcd > 0;
         assert n % gcd == 0;
         assert d % gcd == 0;
-        this.numerator = n / gcd;
-        this.denominator = d / gcd;
+        return new Rational(n / gcd, d / gcd, null, null);
     }
 
-    private Rational(long numerator, long denominator, boolean force) {
-        this.numerator = numerator;
-        this.denominator = denominator;
+    private static Rational of(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0) {
+            throw new IllegalArgumentException();
+        }
+        BigInteger n, d;
+        if (denominator.signum() > 0) {
+            n = numerator;
+            d = denominator;
+        } else {
+            n = numerator.negate();
+            d = denominator.negate();
+        }
+        BigInteger gcd = n.gcd(d);
+        if (!gcd.equals(BigInteger.ONE)) {
+            n = n.divide(gcd);
+            d = d.divide(gcd);
+        }
+        if (fitsInLong(n) && fitsInLong(d)) {
+            return new Rational(n.longValue(), d.longValue(), null, null);
+        }
+        return new Rational(0, 1, n, d);
     }
 
+    /**
+     * @return {@code true} if the numerator and denominator fit in longs,
+     * {@code false} otherwise
+     */
+    public boolean fitsInLong() {
+        return bigNumerator == null;
+    }
+
+    /**
+     * @return the numerator
+     * @throws ArithmeticException if the numerator does not fit in a long
+     */
     public long getNumerator() {
+        if (!fitsInLong()) {
+            throw new ArithmeticException(this + " does not fit in a long");
+        }
         return numerator;
     }
 
+    /**
+     * @return the denominator
+     * @throws ArithmeticException if the denominator does not fit in a long
+     */
     public long getDenominator() {
+        if (!fitsInLong()) {
+            throw new ArithmeticException(this + " does not fit in a long");
+        }
         return denominator;
     }
 
+    public BigInteger getBigNumerator() {
+        return fitsInLong() ? BigInteger.valueOf(numerator) : bigNumerator;
+    }
+
+    public BigInteger getBigDenominator() {
+        return fitsInLong() ? BigInteger.valueOf(denominator) : bigDenominator;
+    }
+
+    private int signum() {
+        return fitsInLong() ? Long.signum(numerator) : bigNumerator.signum();
+    }
+
     public boolean isZero() {
-        return numerator == 0;
+        return fitsInLong() && numerator == 0;
     }
 
     public boolean isOne() {
-        return numerator == denominator;
+        return fitsInLong() && numerator == 1 && denominator == 1;
     }
 
     public boolean isWhole() {
-        return denominator == 1;
+        return fitsInLong() ? denominator == 1 : bigDenominator.equals(BigInteger.ONE);
     }
 
     public boolean isPositive() {
-        return numerator > 0;
+        return signum() > 0;
     }
 
     public boolean isNegative() {
-        return numerator > 0;
+        return signum() < 0;
     }
 
+    /**
+     * @return the smallest long greater than or equal to this rational
+     * @throws ArithmeticException if the result does not fit in a long
+     */
     public long ceil() {
-        return Util.divCeil(numerator, denominator);
+        if (fitsInLong()) {
+            long quotient = numerator / denominator;
+            return numerator % denominator > 0 ? quotient + 1 : quotient;
+        }
+        BigInteger[] qr = bigNumerator.divideAndRemainder(bigDenominator);
+        return toLong(qr[1].signum() > 0 ? qr[0].add(BigInteger.ONE) : qr[0]);
     }
 
+    /**
+     * @return the largest long less than or equal to this rational
+     * @throws ArithmeticException if the result does not fit in a long
+     */
     public long floor() {
-        return Util.divFloor(numerator, denominator);
+        if (fitsInLong()) {
+            long quotient = numerator / denominator;
+            return numerator % denominator < 0 ? quotient - 1 : quotient;
+        }
+        BigInteger[] qr = bigNumerator.divideAndRemainder(bigDenominator);
+        return toLong(qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0]);
+    }
+
+    private static long toLong(BigInteger value) {
+        if (value.bitLength() >= 64) {
+            throw new ArithmeticException(value + " does not fit in a long");
+        }
+        return value.longValue();
     }
 
     public Rational minus() {
-        return new Rational(-numerator, denominator, true);
+        if (fitsInLong()) {
+            return new Rational(-numerator, denominator, null, null);
+        }
+        return of(bigNumerator.negate(), bigDenominator);
     }
 
     public Rational abs() {
@@ -92,58 +213,74 @@ public class Rational implements Comparable<Rational> {
         if (addend == 0) {
             return this;
         }
-        return new Rational(
-                numerator + denominator * addend,
-                denominator
-        );
+        return add(of(addend, 1));
     }
 
     public Rational add(Rational addend) {
         if (addend.isZero()) {
             return this;
         }
-        return new Rational(
-                numerator * addend.denominator + denominator * addend.numerator,
-                denominator * addend.denominator
-        );
+        if (isZero()) {
+            return addend;
+        }
+        if (fitsInLong() && addend.fitsInLong()
+                && small(numerator, denominator, addend.numerator, addend.denominator)) {
+            return of(
+                    numerator * addend.denominator + denominator * addend.numerator,
+                    denominator * addend.denominator);
+        }
+        return of(
+                getBigNumerator().multiply(addend.getBigDenominator())
+                .add(getBigDenominator().multiply(addend.getBigNumerator())),
+                getBigDenominator().multiply(addend.getBigDenominator()));
     }
 
     public Rational sub(long subtrahend) {
         if (subtrahend == 0) {
             return this;
         }
-        return new Rational(
-                numerator - denominator * subtrahend,
-                denominator
-        );
+        return add(of(-subtrahend, 1));
     }
 
     public Rational sub(Rational subtrahend) {
         if (subtrahend.isZero()) {
             return this;
         }
-        return new Rational(
-                numerator * subtrahend.denominator - denominator * subtrahend.numerator,
-                denominator * subtrahend.denominator
-        );
+        return add(subtrahend.minus());
     }
 
     public Rational mul(long multiplier) {
         if (multiplier == 1) {
             return this;
         }
-        return new Rational(
-                numerator * multiplier,
-                denominator);
+        return mul(of(multiplier, 1));
     }
 
     public Rational mul(Rational multiplier) {
         if (multiplier.isOne()) {
             return this;
         }
-        return new Rational(
-                numerator * multiplier.numerator,
-                denominator * multiplier.denominator);
+        if (isOne()) {
+            return multiplier;
+        }
+        if (isZero() || multiplier.isZero()) {
+            return Zero;
+        }
+        if (fitsInLong() && multiplier.fitsInLong()) {
+            // Cancel before multiplying to keep the operands small.
+            long g1 = Util.gcd(Math.abs(numerator), multiplier.denominator);
+            long g2 = Util.gcd(Math.abs(multiplier.numerator), denominator);
+            long n1 = numerator / g1;
+            long d2 = multiplier.denominator / g1;
+            long n2 = multiplier.numerator / g2;
+            long d1 = denominator / g2;
+            if (small(n1, d1, n2, d2)) {
+                return new Rational(n1 * n2, d1 * d2, null, null);
+            }
+        }
+        return of(
+                getBigNumerator().multiply(multiplier.getBigNumerator()),
+                getBigDenominator().multiply(multiplier.getBigDenominator()));
     }
 
     public Rational div(long divisor) {
@@ -152,7 +289,7 @@ public class Rational implements Comparable<Rational> {
         } else if (divisor == 1) {
             return this;
         }
-        return div(new Rational(divisor));
+        return div(of(divisor, 1));
     }
 
     public Rational div(Rational divisor) {
@@ -161,39 +298,160 @@ public class Rational implements Comparable<Rational> {
         } else if (divisor.isOne()) {
             return this;
         }
-        return new Rational(
-                numerator * divisor.denominator,
-                denominator * divisor.numerator);
+        return mul(divisor.fitsInLong()
+                ? of(divisor.denominator, divisor.numerator)
+                : of(divisor.bigDenominator, divisor.bigNumerator));
     }
 
     @Override
     public int compareTo(Rational o) {
-        return Long.compare(numerator * o.denominator, o.numerator * denominator);
+        if (fitsInLong() && o.fitsInLong()
+                && small(numerator, denominator, o.numerator, o.denominator)) {
+            return Long.compare(numerator * o.denominator, o.numerator * denominator);
+        }
+        return getBigNumerator().multiply(o.getBigDenominator()).compareTo(
+                o.getBigNumerator().multiply(getBigDenominator()));
     }
 
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof Rational) {
             Rational other = (Rational) obj;
-            return numerator == other.numerator && denominator == other.denominator;
+            if (fitsInLong()) {
+                return other.fitsInLong()
+                        && numerator == other.numerator && denominator == other.denominator;
+            }
+            return bigNumerator.equals(other.bigNumerator) && bigDenominator.equals(other.bigDenominator);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        long hash = numerator * 63 + denominator;
-        return (int) (hash ^ (hash >>> 32));
+        if (fitsInLong()) {
+            long hash = numerator * 63 + denominator;
+            return (int) (hash ^ (hash >>> 32));
+        }
+        return bigNumerator.hashCode() * 63 + bigDenominator.hashCode();
     }
 
     @Override
     public String toString() {
-        if (numerator == 0) {
+        if (isZero()) {
             return "0";
         }
-        if (denominator == 1) {
-            return Long.toString(numerator);
+        if (isWhole()) {
+            return getBigNumerator().toString();
+        }
+        return getBigNumerator() + "/" + getBigDenominator();
+    }
+
+    /**
+     * A mutable rational for summing many terms in place. Only the final sum is
+     * allocated as a {@link Rational}, unless the intermediate values are too
+     * large for longs.
+     */
+    public static class Accumulator {
+
+        // Same representation as Rational, except bigNumerator is null when small.
+        private long numerator = 0, denominator = 1;
+        private BigInteger bigNumerator, bigDenominator;
+
+        public Accumulator() {
+        }
+
+        public Accumulator(Rational value) {
+            set(value);
+        }
+
+        public Accumulator set(Rational value) {
+            numerator = value.numerator;
+            denominator = value.denominator;
+            bigNumerator = value.bigNumerator;
+            bigDenominator = value.bigDenominator;
+            return this;
+        }
+
+        public boolean isZero() {
+            return bigNumerator == null && numerator == 0;
+        }
+
+        public Accumulator add(Rational addend) {
+            return addMul(addend, One);
+        }
+
+        /**
+         * Add the product of the two rationals to this sum.
+         *
+         * @param multiplicand the first factor
+         * @param multiplier the second factor
+         * @return this accumulator
+         */
+        public Accumulator addMul(Rational multiplicand, Rational multiplier) {
+            if (multiplicand.isZero() || multiplier.isZero()) {
+                return this;
+            }
+            if (bigNumerator == null && multiplicand.fitsInLong() && multiplier.fitsInLong()
+                    && small(multiplicand.numerator, multiplicand.denominator,
+                            multiplier.numerator, multiplier.denominator)) {
+                long n = multiplicand.numerator * multiplier.numerator;
+                long d = multiplicand.denominator * multiplier.denominator;
+                long g = Util.gcd(Math.abs(n), d);
+                n /= g;
+                d /= g;
+                if (small(numerator, denominator, n, d)) {
+                    long sumNumerator = numerator * d + n * denominator;
+                    long sumDenominator = denominator * d;
+                    g = Util.gcd(Math.abs(sumNumerator), sumDenominator);
+                    numerator = sumNumerator / g;
+                    denominator = sumDenominator / g;
+                    return this;
+                }
+            }
+            BigInteger n = multiplicand.getBigNumerator().multiply(multiplier.getBigNumerator());
+            BigInteger d = multiplicand.getBigDenominator().multiply(multiplier.getBigDenominator());
+            BigInteger an = bigNumerator == null ? BigInteger.valueOf(numerator) : bigNumerator;
+            BigInteger ad = bigNumerator == null ? BigInteger.valueOf(denominator) : bigDenominator;
+            n = an.multiply(d).add(n.multiply(ad));
+            d = ad.multiply(d);
+            BigInteger g = n.gcd(d);
+            if (g.signum() != 0 && !g.equals(BigInteger.ONE)) {
+                n = n.divide(g);
+                d = d.divide(g);
+            }
+            if (fitsInLong(n) && fitsInLong(d)) {
+                numerator = n.longValue();
+                denominator = d.longValue();
+                bigNumerator = null;
+                bigDenominator = null;
+            } else {
+                bigNumerator = n;
+                bigDenominator = d;
+            }
+            return this;
+        }
+
+        /**
+         * Subtract the product of the two rationals from this sum.
+         *
+         * @param multiplicand the first factor
+         * @param multiplier the second factor
+         * @return this accumulator
+         */
+        public Accumulator subMul(Rational multiplicand, Rational multiplier) {
+            return addMul(multiplicand, multiplier.minus());
+        }
+
+        public Rational toRational() {
+            if (bigNumerator == null) {
+                return numerator == 0 ? Zero : new Rational(numerator, denominator, null, null);
+            }
+            return new Rational(0, 1, bigNumerator, bigDenominator);
+        }
+
+        @Override
+        public String toString() {
+            return toRational().toString();
         }
-        return numerator + "/" + denominator;
     }
 }
@@ -297,6 +297,32 @@ public class Scope implements Scopable {
                 stringLength, charLow, charHigh);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Scope) {
+            Scope other = (Scope) obj;
+            return defaultScope == other.defaultScope
+                    && intLow == other.intLow
+                    && intHigh == other.intHigh
+                    && stringLength == other.stringLength
+                    && charLow == other.charLow
+                    && charHigh == other.charHigh
+                    && scopes.equals(other.scopes);
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return scopes.hashCode() ^ defaultScope ^ (intLow << 8) ^ (intHigh << 16) ^ stringLength;
+    }
+
     /**
      * {@inheritDoc}
      */
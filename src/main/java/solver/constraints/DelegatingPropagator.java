@@ -0,0 +1,98 @@
+package solver.constraints;
+
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+import solver.variables.Variable;
+import util.ESat;
+
+/**
+ * Posted in place of another propagator and forwards to it. Lives in Choco's
+ * package to forward the propagation conditions of the wrapped propagator.
+ *
+ * The wrapped propagator is never posted on its own, only through this
+ * wrapper. Since the changes are caused by the wrapped propagator, the wrapper
+ * is notified of them and may be called more often than the wrapped propagator
+ * would be on its own. The engine only knows about the wrapper, so the wrapped
+ * propagator must not reach the engine itself. It is made silent, like the
+ * propagators of a reified constraint, so that its calls to
+ * {@link #setPassive()} only change its own state, which the wrapper mirrors
+ * through {@link #isWrappedPassive()}.
+ *
+ * @author jimmy
+ */
+public abstract class DelegatingPropagator extends Propagator<Variable> {
+
+    protected final Propagator<?> propagator;
+
+    protected DelegatingPropagator(Propagator<?> propagator, PropagatorPriority priority, boolean reactToFineEvt) {
+        super(propagator.getVars(), priority, reactToFineEvt);
+        this.propagator = propagator;
+        // Only the wrapper should be scheduled.
+        propagator.unlinkVariables();
+        propagator.setReifiedSilent();
+    }
+
+    public Propagator<?> getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * @return the propagator under every layer of wrappers
+     */
+    public Propagator<?> getInnermostPropagator() {
+        Propagator<?> innermost = propagator;
+        while (innermost instanceof DelegatingPropagator) {
+            innermost = ((DelegatingPropagator) innermost).propagator;
+        }
+        return innermost;
+    }
+
+    /**
+     * Mirror the state of the wrapped propagator.
+     *
+     * @return {@code true} if the wrapped propagator is passive, {@code false}
+     * otherwise
+     */
+    protected boolean isWrappedPassive() {
+        if (propagator.isPassive()) {
+            if (!isPassive()) {
+                setPassive();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Strictly decreases whenever a domain of the variables changes.
+     *
+     * @return the total size of the domains of the variables
+     */
+    protected long domainSize() {
+        long size = 0;
+        for (Variable var : vars) {
+            if (var instanceof IntVar) {
+                size += ((IntVar) var).getDomainSize();
+            } else if (var instanceof SetVar) {
+                SetVar set = (SetVar) var;
+                size += set.getEnvelopeSize() - set.getKernelSize();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    protected int getPropagationConditions(int vIdx) {
+        return propagator.getPropagationConditions(vIdx);
+    }
+
+    @Override
+    public ESat isEntailed() {
+        return propagator.isEntailed();
+    }
+
+    @Override
+    public String toString() {
+        return propagator.toString();
+    }
+}
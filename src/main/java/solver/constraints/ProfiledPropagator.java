@@ -0,0 +1,108 @@
+package solver.constraints;
+
+import solver.exception.ContradictionException;
+
+/**
+ * Delegates to another propagator and records how often it is called, how long
+ * it runs, how much it reduces the domains, and how often it fails.
+ *
+ * The wrapper reacts to the same events as the wrapped propagator and forwards
+ * full and fine-grained propagations as they come, so an incremental
+ * propagator runs incrementally while profiled.
+ *
+ * @author jimmy
+ */
+public class ProfiledPropagator extends DelegatingPropagator {
+
+    // Where the propagator came from, for example the IR constraint.
+    private final Object source;
+    private long fullCalls = 0;
+    private long fineCalls = 0;
+    private long time = 0;
+    private long reductions = 0;
+    private long failures = 0;
+
+    public ProfiledPropagator(Propagator<?> propagator, Object source) {
+        super(propagator, propagator.getPriority(), propagator.reactToFineEvent());
+        this.source = source;
+    }
+
+    public Object getSource() {
+        return source;
+    }
+
+    /**
+     * @return the number of calls to {@link #propagate(int)}
+     */
+    public long getFullCalls() {
+        return fullCalls;
+    }
+
+    /**
+     * @return the number of calls to {@link #propagate(int, int)}
+     */
+    public long getFineCalls() {
+        return fineCalls;
+    }
+
+    /**
+     * @return the wall time spent propagating, in nanoseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the number of values removed from the domains
+     */
+    public long getReductions() {
+        return reductions;
+    }
+
+    /**
+     * @return the number of times propagation failed
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (isWrappedPassive()) {
+            return;
+        }
+        fullCalls++;
+        long size = domainSize();
+        long start = System.nanoTime();
+        try {
+            propagator.propagate(evtmask);
+        } catch (ContradictionException e) {
+            failures++;
+            throw e;
+        } finally {
+            time += System.nanoTime() - start;
+            reductions += size - domainSize();
+        }
+        isWrappedPassive();
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (isWrappedPassive()) {
+            return;
+        }
+        fineCalls++;
+        long size = domainSize();
+        long start = System.nanoTime();
+        try {
+            propagator.propagate(idxVarInProp, mask);
+        } catch (ContradictionException e) {
+            failures++;
+            throw e;
+        } finally {
+            time += System.nanoTime() - start;
+            reductions += size - domainSize();
+        }
+        isWrappedPassive();
+    }
+}
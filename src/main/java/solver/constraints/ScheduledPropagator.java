@@ -0,0 +1,75 @@
+package solver.constraints;
+
+import solver.exception.ContradictionException;
+import solver.variables.EventType;
+
+/**
+ * Delegates to another propagator, but schedules it in a different queue
+ * class.
+ * <ul>
+ * <li>The priority of the wrapper decides the queue it waits in, so the engine
+ * empties the queues of the cheaper classes before it runs the wrapped
+ * propagator.</li>
+ * <li>If coalesced, the wrapper only reacts to coarse events. All the events on
+ * the variables while it waits in its queue merge into a single full
+ * propagation of the wrapped propagator.</li>
+ * <li>The engine never notifies a propagator of its own changes. Unless the
+ * wrapped propagator is idempotent, the wrapper propagates it again until the
+ * domains stop changing. Idempotent propagators already reach their fixpoint,
+ * so they skip the extra round.</li>
+ * </ul>
+ *
+ * @author jimmy
+ */
+public class ScheduledPropagator extends DelegatingPropagator {
+
+    private final boolean coalesce;
+    private final boolean idempotent;
+
+    public ScheduledPropagator(Propagator<?> propagator, PropagatorPriority priority,
+            boolean coalesce, boolean idempotent) {
+        super(propagator, priority, !coalesce && propagator.reactToFineEvent());
+        this.coalesce = coalesce;
+        this.idempotent = idempotent;
+    }
+
+    public boolean isCoalesced() {
+        return coalesce;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    private void fixpoint(long size) throws ContradictionException {
+        if (!idempotent) {
+            long after = domainSize();
+            while (after < size && !isWrappedPassive()) {
+                size = after;
+                propagator.propagate(EventType.FULL_PROPAGATION.mask);
+                after = domainSize();
+            }
+        }
+        isWrappedPassive();
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (isWrappedPassive()) {
+            return;
+        }
+        long size = domainSize();
+        propagator.propagate(coalesce ? EventType.FULL_PROPAGATION.mask : evtmask);
+        fixpoint(size);
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        if (isWrappedPassive()) {
+            return;
+        }
+        long size = domainSize();
+        propagator.propagate(idxVarInProp, mask);
+        fixpoint(size);
+    }
+}
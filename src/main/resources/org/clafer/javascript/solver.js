@@ -5,6 +5,7 @@ var minimize = rsc.minimize.bind(rsc);
 var minUnsat = rsc.minUnsat.bind(rsc);
 var unsatCore = rsc.unsatCore.bind(rsc);
 var stats = rsc.stats.bind(rsc);
+var profile = rsc.profile.bind(rsc);
 var exit = rsc.exit.bind(rsc);
 
 // Debugging
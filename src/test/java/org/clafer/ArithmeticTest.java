@@ -5,6 +5,7 @@ import org.clafer.ast.AstConcreteClafer;
 import org.clafer.ast.AstModel;
 import static org.clafer.ast.Asts.*;
 import org.clafer.compiler.ClaferCompiler;
+import org.clafer.compiler.ClaferOptions;
 import org.clafer.compiler.ClaferSolver;
 import org.clafer.instance.InstanceClafer;
 import org.clafer.instance.InstanceModel;
@@ -47,6 +48,37 @@ public class ArithmeticTest {
         assertEquals(1, count);
     }
 
+    /**
+     * <pre>
+     * Feature
+     *     Cost -> Int
+     *     [this.Cost + 3 = 5]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testAddWideScope() {
+        AstModel model = newModel();
+
+        AstConcreteClafer feature = model.addChild("Feature").withCard(1, 1);
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        feature.addConstraint(equal(add(joinRef(join($this(), cost)), constant(3)), constant(5)));
+
+        ClaferSolver solver = ClaferCompiler.compile(model,
+                Scope.defaultScope(3).intLow(-100000).intHigh(100000),
+                ClaferOptions.Default.boundedDomains(16));
+        int count = 0;
+        while (solver.find()) {
+            InstanceModel instance = solver.instance();
+            for (InstanceClafer f : instance.getTopClafers(feature)) {
+                for (InstanceClafer c : f.getChildren(cost)) {
+                    assertEquals(2, c.getRef().getValue());
+                }
+            }
+            count++;
+        }
+        assertEquals(1, count);
+    }
+
     /**
      * <pre>
      * Feature
@@ -0,0 +1,88 @@
+package org.clafer;
+
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.collection.Pair;
+import org.clafer.compiler.ClaferOptions;
+import org.clafer.compiler.ClaferScopeDeepening;
+import org.clafer.compiler.ClaferSolver;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ScopeDeepeningTest {
+
+    /**
+     * <pre>
+     * Person *
+     *     Hand 2
+     * Desk *
+     * [#Person >= 3]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testGrowSaturatedScopes() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        AstConcreteClafer hand = person.addChild("Hand").withCard(2, 2);
+        AstConcreteClafer desk = model.addChild("Desk");
+        model.addConstraint(greaterThanEqual(card(global(person)), constant(3)));
+
+        Pair<Scope, ClaferSolver> result = ClaferScopeDeepening.find(model, Scope.defaultScope(10));
+
+        assertEquals(1, result.getSnd().instanceCount());
+        assertEquals(3, result.getFst().getScope(person));
+        assertEquals(6, result.getFst().getScope(hand));
+        assertEquals(0, result.getFst().getScope(desk));
+    }
+
+    /**
+     * <pre>
+     * Person *
+     * Desk *
+     * [!(#Person < 3)]
+     * </pre>
+     * The negation hides the count from the analysis, so Desk looks saturated
+     * every time the model is unsatisfiable and grows along with Person.
+     */
+    @Test(timeout = 60000)
+    public void testShrinkUnsaturatedScopes() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        AstConcreteClafer desk = model.addChild("Desk");
+        model.addConstraint(not(lessThan(card(global(person)), constant(3))));
+
+        Pair<Scope, ClaferSolver> result = ClaferScopeDeepening.find(model, Scope.defaultScope(10),
+                ClaferOptions.Default.preferSmallerInstances());
+
+        assertEquals(1, result.getSnd().instanceCount());
+        assertEquals(3, result.getFst().getScope(person));
+        assertEquals(0, result.getFst().getScope(desk));
+    }
+
+    /**
+     * <pre>
+     * Person *
+     * [#Person > 10]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testUnsatWithinMaxScope() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        model.addConstraint(greaterThan(card(global(person)), constant(10)));
+
+        Pair<Scope, ClaferSolver> result = ClaferScopeDeepening.find(model, Scope.defaultScope(10));
+
+        assertEquals(0, result.getSnd().instanceCount());
+        assertEquals(10, result.getFst().getScope(person));
+    }
+}
@@ -0,0 +1,136 @@
+package org.clafer.ast.analysis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class AnalyzerSchedulerTest {
+
+    @Test(timeout = 60000)
+    public void testRunIndependentAnalyzersConcurrently() {
+        AstModel model = newModel();
+        model.addChild("a");
+
+        // Each analyzer waits for the other, so this only terminates if both
+        // run at the same time.
+        final CountDownLatch latch = new CountDownLatch(2);
+        Analyzer format = new FakeAnalyzer(
+                new AnalysisFact[]{AnalysisFact.Card}, new AnalysisFact[]{AnalysisFact.Format}) {
+            @Override
+            public Analysis analyze(Analysis analysis) {
+                await(latch);
+                return analysis.setFormatMap(new HashMap<AstClafer, Format>());
+            }
+        };
+        Analyzer offsets = new FakeAnalyzer(
+                new AnalysisFact[]{AnalysisFact.Card}, new AnalysisFact[]{AnalysisFact.Offsets}) {
+            @Override
+            public Analysis analyze(Analysis analysis) {
+                await(latch);
+                return analysis.setOffsetMap(Collections.<AstAbstractClafer, Offsets>emptyMap());
+            }
+        };
+
+        Analysis analysis = Analysis.analyze(model, Scope.defaultScope(2), format, offsets);
+        assertNotNull(analysis.getFormatMap());
+        assertNotNull(analysis.getOffsetMap());
+    }
+
+    @Test(timeout = 60000)
+    public void testSkipUnchanged() {
+        AstModel model = newModel();
+        model.addChild("a").withCard(0, 1);
+
+        CountingAnalyzer counting = new CountingAnalyzer();
+        Analysis.analyze(model, Scope.defaultScope(2),
+                new GlobalCardAnalyzer(), new ScopeAnalyzer(), counting, new ScopeAnalyzer(), counting);
+        // The second ScopeAnalyzer does not change the scope.
+        assertEquals(1, counting.count.get());
+
+        counting = new CountingAnalyzer();
+        Analysis.analyze(model, Scope.defaultScope(2),
+                new GlobalCardAnalyzer(), counting, new ScopeAnalyzer(), counting);
+        // The scope of "a" shrinks from 2 to 1.
+        assertEquals(2, counting.count.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testNeverSkipOtherInstances() {
+        AstModel model = newModel();
+        model.addChild("a").withCard(0, 1);
+
+        CountingAnalyzer first = new CountingAnalyzer();
+        CountingAnalyzer second = new CountingAnalyzer();
+        Analysis.analyze(model, Scope.defaultScope(2),
+                new GlobalCardAnalyzer(), new ScopeAnalyzer(), first, second);
+        // Same class and unchanged facts, but a different analyzer.
+        assertEquals(1, first.count.get());
+        assertEquals(1, second.count.get());
+    }
+
+    @Test(timeout = 60000, expected = InsufficientScopeException.class)
+    public void testPropagateException() {
+        AstModel model = newModel();
+        model.addChild("a").withCard(3, 3);
+
+        Analysis.analyze(model, Scope.defaultScope(2), new TypeAnalyzer(), new GlobalCardAnalyzer());
+    }
+
+    private static void await(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private abstract static class FakeAnalyzer implements DependentAnalyzer {
+
+        private final AnalysisFact[] reads;
+        private final AnalysisFact[] writes;
+
+        FakeAnalyzer(AnalysisFact[] reads, AnalysisFact[] writes) {
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        public AnalysisFact[] reads() {
+            return reads;
+        }
+
+        @Override
+        public AnalysisFact[] writes() {
+            return writes;
+        }
+    }
+
+    private static class CountingAnalyzer extends FakeAnalyzer {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        CountingAnalyzer() {
+            super(new AnalysisFact[]{AnalysisFact.Scope}, new AnalysisFact[]{AnalysisFact.Format});
+        }
+
+        @Override
+        public Analysis analyze(Analysis analysis) {
+            count.incrementAndGet();
+            return analysis.setFormatMap(new HashMap<AstClafer, Format>());
+        }
+    }
+}
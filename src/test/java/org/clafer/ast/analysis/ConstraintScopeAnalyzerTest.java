@@ -0,0 +1,112 @@
+package org.clafer.ast.analysis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.ast.Card;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ConstraintScopeAnalyzerTest {
+
+    @Test
+    public void testAnalyze() {
+        AstModel model = newModel();
+
+        AstAbstractClafer person = model.addAbstract("person");
+        AstConcreteClafer name = person.addChild("name").withCard(new Card(1, 1));
+
+        AstConcreteClafer employee = model.addChild("employee").extending(person);
+        AstConcreteClafer manager = model.addChild("manager").extending(person);
+        AstConcreteClafer desk = model.addChild("desk");
+
+        model.addConstraint(lessThanEqual(add(card(global(employee)), card(global(manager))), constant(10)));
+        model.addConstraint(lessThanEqual(mul(2, card(global(manager))), card(global(employee))));
+        model.addConstraint(equal(card(global(desk)), add(card(global(employee)), constant(1))));
+
+        Map<AstClafer, Card> globalCards = new HashMap<>();
+        globalCards.put(model, new Card(1, 1));
+        globalCards.put(model.getTypeHierarchyRoot(), new Card(0, 200));
+        globalCards.put(person, new Card(0, 100));
+        globalCards.put(name, new Card(0, 100));
+        globalCards.put(employee, new Card(0, 50));
+        globalCards.put(manager, new Card(0, 50));
+        globalCards.put(desk, new Card(0, 50));
+
+        Analysis analysis = new ConstraintScopeAnalyzer().analyze(
+                new Analysis(model,
+                        new Scope(new HashMap<AstClafer, Integer>(), 50, -16, 16, 10, Character.MIN_VALUE, Character.MAX_VALUE)
+                ).setGlobalCardMap(globalCards));
+
+        assertEquals(new Card(0, 10), analysis.getGlobalCard(employee));
+        assertEquals(new Card(0, 5), analysis.getGlobalCard(manager)); // 2 * manager <= employee
+        assertEquals(new Card(0, 15), analysis.getGlobalCard(person));
+        assertEquals(new Card(0, 15), analysis.getGlobalCard(name));
+        assertEquals(new Card(1, 11), analysis.getGlobalCard(desk));
+    }
+
+    @Test
+    public void testGroupCard() {
+        AstModel model = newModel();
+
+        AstConcreteClafer car = model.addChild("car").withGroupCard(2, 2);
+        AstConcreteClafer petrol = car.addChild("petrol").withCard(0, 1);
+        AstConcreteClafer electric = car.addChild("electric").withCard(0, 1);
+
+        model.addConstraint(equal(card(global(car)), constant(3)));
+
+        Map<AstClafer, Card> globalCards = new HashMap<>();
+        globalCards.put(model, new Card(1, 1));
+        globalCards.put(model.getTypeHierarchyRoot(), new Card(0, 30));
+        globalCards.put(car, new Card(0, 10));
+        globalCards.put(petrol, new Card(0, 10));
+        globalCards.put(electric, new Card(0, 10));
+
+        Analysis analysis = new ConstraintScopeAnalyzer().analyze(
+                new Analysis(model,
+                        new Scope(new HashMap<AstClafer, Integer>(), 10, -16, 16, 10, Character.MIN_VALUE, Character.MAX_VALUE)
+                ).setGlobalCardMap(globalCards));
+
+        assertEquals(new Card(3, 3), analysis.getGlobalCard(car));
+        // petrol + electric = 2 * car, and each is at most car.
+        assertEquals(new Card(3, 3), analysis.getGlobalCard(petrol));
+        assertEquals(new Card(3, 3), analysis.getGlobalCard(electric));
+    }
+
+    @Test
+    public void testIgnoreSoftAndNonlinear() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("a");
+        AstConcreteClafer b = model.addChild("b");
+
+        AstConstraint nonlinear = model.addConstraint(lessThanEqual(mul(card(global(a)), card(global(b))), constant(3)));
+        // Soft
+        model.addConstraint(lessThanEqual(card(global(b)), constant(3)));
+
+        Map<AstClafer, Card> globalCards = new HashMap<>();
+        globalCards.put(model, new Card(1, 1));
+        globalCards.put(model.getTypeHierarchyRoot(), new Card(0, 20));
+        globalCards.put(a, new Card(0, 10));
+        globalCards.put(b, new Card(0, 10));
+
+        Analysis analysis = new ConstraintScopeAnalyzer().analyze(
+                new Analysis(model,
+                        new Scope(new HashMap<AstClafer, Integer>(), 10, -16, 16, 10, Character.MIN_VALUE, Character.MAX_VALUE)
+                ).setGlobalCardMap(globalCards).setHardConstraints(Collections.singleton(nonlinear)));
+
+        assertEquals(new Card(0, 10), analysis.getGlobalCard(a));
+        assertEquals(new Card(0, 10), analysis.getGlobalCard(b));
+    }
+}
@@ -47,6 +47,18 @@ public class AcyclicTest {
         return $(new IntVar[]{solver.ONE});
     }
 
+    @Input(solutions = 1)
+    public Object testLongChain(Solver solver) {
+        int n = 2000;
+        IntVar[] edges = new IntVar[n];
+        for (int i = 0; i < n - 1; i++) {
+            edges[i] = fixed(i + 1, solver);
+        }
+        // The only choice that does not close the chain into a cycle.
+        edges[n - 1] = enumerated("last", 0, n, solver);
+        return $(edges);
+    }
+
     @Check
     public void check(int[] edges) {
         KeyGraph<Integer> graph = new KeyGraph<>();
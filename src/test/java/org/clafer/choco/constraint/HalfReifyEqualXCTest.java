@@ -0,0 +1,43 @@
+package org.clafer.choco.constraint;
+
+import static org.clafer.choco.constraint.ConstraintQuickTest.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.variables.BoolVar;
+import solver.variables.IntVar;
+import static solver.variables.Var.*;
+
+/**
+ *
+ * @author jimmy
+ */
+@RunWith(ConstraintQuickTest.class)
+public class HalfReifyEqualXCTest {
+
+    @Input(solutions = 22)
+    public Object testHalfReifyEqualXC(Solver solver) {
+        return $(bool("reify", solver),
+                enumerated("i", -10, 10, solver),
+                4);
+    }
+
+    @Input(solutions = 22)
+    public Object testHalfReifyEqualXCBounded(Solver solver) {
+        return $(bool("reify", solver),
+                bounded("i", -10, 10, solver),
+                4);
+    }
+
+    @Check
+    public void check(boolean reify, int v, int c) {
+        assertTrue(!reify || v == c);
+    }
+
+    @Test(timeout = 60000)
+    public Constraint setup(BoolVar reify, IntVar v, int c) {
+        return Constraints.halfReifyEqual(reify, v, c);
+    }
+}
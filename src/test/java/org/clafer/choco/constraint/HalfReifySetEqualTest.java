@@ -0,0 +1,50 @@
+package org.clafer.choco.constraint;
+
+import static org.clafer.choco.constraint.ConstraintQuickTest.*;
+import solver.variables.CSetVar;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.variables.BoolVar;
+import static solver.variables.Var.*;
+
+/**
+ *
+ * @author jimmy
+ */
+@RunWith(ConstraintQuickTest.class)
+public class HalfReifySetEqualTest {
+
+    @Input(solutions = 264)
+    public Object testHalfReifySetEqual(Solver solver) {
+        /*
+         * import Control.Monad
+         *
+         * powerset = filterM (const [True, False])
+         *
+         * solutions = do
+         *     reify <- [True, False]
+         *     s1 <- powerset [-1..2]
+         *     s2 <- powerset [-2..1]
+         *     guard $ not reify || s1 == s2
+         *     return (reify, s1, s2)
+         */
+        return $(bool("reify", solver),
+                cset("s1", -1, 2, solver),
+                cset("s2", -2, 1, solver));
+    }
+
+    @Check
+    public void check(boolean reify, int[] s1, int[] s2) {
+        if (reify) {
+            assertArrayEquals(s1, s2);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public Constraint setup(BoolVar reify, CSetVar s1, CSetVar s2) {
+        return Constraints.halfReifyEqual(reify, s1.getSet(), s1.getCard(), s2.getSet(), s2.getCard());
+    }
+}
@@ -0,0 +1,54 @@
+package org.clafer.choco.constraint;
+
+import static org.clafer.choco.constraint.ConstraintQuickTest.*;
+import solver.variables.CSetVar;
+import org.clafer.common.Util;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.variables.BoolVar;
+import static solver.variables.Var.*;
+
+/**
+ *
+ * @author jimmy
+ */
+@RunWith(ConstraintQuickTest.class)
+public class HalfReifySubsetEqTest {
+
+    @Input(solutions = 310)
+    public Object testHalfReifySubsetEq(Solver solver) {
+        /*
+         * import Control.Monad
+         * import Data.List
+         *
+         * powerset = filterM (const [True, False])
+         *
+         * solutions = do
+         *     reify <- [True, False]
+         *     sub <- powerset [-1..2]
+         *     sup <- powerset [-2..1]
+         *     guard $ not reify || sub \\ sup == []
+         *     return (reify, sub, sup)
+         */
+        return $(bool("reify", solver),
+                cset("sub", -1, 2, solver),
+                cset("sup", -2, 1, solver));
+    }
+
+    @Check
+    public void check(boolean reify, int[] sub, int[] sup) {
+        if (reify) {
+            for (int i : sub) {
+                assertTrue(Util.in(i, sup));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public Constraint setup(BoolVar reify, CSetVar sub, CSetVar sup) {
+        return Constraints.halfReifySubsetEq(reify, sub.getSet(), sub.getCard(), sup.getSet(), sup.getCard());
+    }
+}
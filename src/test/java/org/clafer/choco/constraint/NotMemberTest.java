@@ -35,6 +35,12 @@ public class NotMemberTest {
                 set("set", 0, 5, solver));
     }
 
+    @Input(solutions = 192)
+    public Object testNotMemberBounded(Solver solver) {
+        return $(bounded("element", -1, 3, solver),
+                set("set", 0, 5, solver));
+    }
+
     @Input(solutions = 192)
     public Object testTautology(Solver solver) {
         return $(enumerated("element", 6, 8, solver),
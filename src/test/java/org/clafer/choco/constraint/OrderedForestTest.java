@@ -0,0 +1,66 @@
+package org.clafer.choco.constraint;
+
+import static org.clafer.choco.constraint.ConstraintQuickTest.*;
+import org.clafer.test.NonEmpty;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.variables.IntVar;
+import static solver.variables.Var.*;
+
+/**
+ *
+ * @author jimmy
+ */
+@RunWith(ConstraintQuickTest.class)
+public class OrderedForestTest {
+
+    @Input(solutions = 125)
+    public Object testNoGroups(Solver solver) {
+        return $(enumeratedArray("edge", 4, 0, 4, solver), new int[]{-1, -1, -1, -1});
+    }
+
+    @Input(solutions = 62)
+    public Object testOrderedForest(Solver solver) {
+        /*
+         * import Control.Monad
+         * import Data.Graph
+         *
+         * positive = do
+         *     is <- replicateM 4 [0..4]
+         *     guard $ all isAcyclic $ stronglyConnComp [(from, from, [to]) | (from, to) <- zip [0..] is]
+         *     guard $ all (not . uncurry (reachable is)) [(0, 1), (2, 3)]
+         *     return is
+         *     where
+         *         isAcyclic AcyclicSCC{} = True
+         *         isAcyclic _ = False
+         *         reachable is from to = to `elem` takeWhile (< 4) (tail $ iterate (is !!) from)
+         */
+        return $(enumeratedArray("edge", 4, 0, 4, solver), new int[]{0, 0, 1, 1});
+    }
+
+    @Check
+    public void check(int[] edges, int[] groups) {
+        for (int i = 0; i < edges.length; i++) {
+            int cur = edges[i];
+            for (int j = 0; j <= edges.length && cur != edges.length; j++) {
+                assertTrue(cur >= 0 && cur < edges.length);
+                assertNotEquals("Cycle", i, cur);
+                if (groups[i] >= 0 && groups[cur] == groups[i]) {
+                    assertTrue("Reachable", cur < i);
+                }
+                cur = edges[cur];
+            }
+            assertEquals("Cycle", edges.length, cur);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public Constraint setup(@NonEmpty IntVar[] edges, int[] groups) {
+        assumeTrue(edges.length == groups.length);
+        return Constraints.orderedForest(edges, groups);
+    }
+}
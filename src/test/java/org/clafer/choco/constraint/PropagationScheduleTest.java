@@ -0,0 +1,100 @@
+package org.clafer.choco.constraint;
+
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.choco.constraint.propagator.PropHalfReifyEqualXY;
+import org.clafer.compiler.ClaferCompiler;
+import org.clafer.compiler.ClaferOptions;
+import org.clafer.compiler.ClaferSolver;
+import org.clafer.scope.Scopable;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.constraints.PropagatorPriority;
+import solver.constraints.ScheduledPropagator;
+import solver.variables.BoolVar;
+import solver.variables.IntVar;
+import solver.variables.Var;
+
+/**
+ *
+ * @author jimmy
+ */
+public class PropagationScheduleTest {
+
+    private static AstModel newFeatureModel() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2).extending(feature);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 1).extending(feature);
+        model.addConstraint(lessThan(joinRef(join(global(a), cost)), joinRef(join(global(b), cost))));
+        return model;
+    }
+
+    @Test(timeout = 60000)
+    public void testScheduleDoesNotChangeSolutions() {
+        Scopable scope = Scope.defaultScope(3).intLow(-2).intHigh(2);
+
+        ClaferSolver solver = ClaferCompiler.compile(newFeatureModel(), scope);
+        ClaferSolver prioritized = ClaferCompiler.compile(newFeatureModel(), scope,
+                ClaferOptions.Default.prioritizedPropagation());
+        ClaferSolver coalesced = ClaferCompiler.compile(newFeatureModel(), scope,
+                ClaferOptions.Default.prioritizedPropagation(
+                        PropagationSchedule.Clafer.coalesce(PropHalfReifyEqualXY.class)));
+        int count = solver.allInstances().length;
+        assertEquals(count, prioritized.allInstances().length);
+        assertEquals(count, coalesced.allInstances().length);
+    }
+
+    @Test
+    public void testDefaultScheduleKeepsConstraint() {
+        Solver solver = new Solver();
+        BoolVar reify = Var.bool("reify", solver);
+        IntVar x = Var.enumerated("x", 0, 3, solver);
+        IntVar y = Var.enumerated("y", 0, 3, solver);
+        Constraint constraint = new Constraint("halfReifyEqualXY",
+                new PropHalfReifyEqualXY(reify, true, x, y));
+        assertSame(constraint, PropagationSchedule.Default.schedule(constraint));
+
+        Constraint scheduled = PropagationSchedule.Default
+                .queue(PropHalfReifyEqualXY.class, PropagatorPriority.VERY_SLOW)
+                .schedule(constraint);
+        assertNotSame(constraint, scheduled);
+        ScheduledPropagator propagator = (ScheduledPropagator) scheduled.getPropagators()[0];
+        assertEquals(PropagatorPriority.VERY_SLOW, propagator.getPriority());
+        assertFalse(propagator.isCoalesced());
+        assertFalse(propagator.isIdempotent());
+        assertSame(constraint.getPropagators()[0], propagator.getInnermostPropagator());
+    }
+
+    private static int countHalfReifyEqual(boolean coalesce) {
+        Solver solver = new Solver();
+        BoolVar reify = Var.bool("reify", solver);
+        IntVar x = Var.enumerated("x", 0, 3, solver);
+        IntVar y = Var.enumerated("y", 0, 3, solver);
+        solver.post(new Constraint("halfReifyEqualXY",
+                new ScheduledPropagator(new PropHalfReifyEqualXY(reify, true, x, y),
+                        PropagatorPriority.VERY_SLOW, coalesce, false)));
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(reify.getValue() == 0 || x.getValue() == y.getValue());
+                count++;
+            } while (solver.nextSolution());
+        }
+        return count;
+    }
+
+    @Test(timeout = 60000)
+    public void testScheduledPropagator() {
+        // 4 solutions where reify is true and 16 where it is false.
+        assertEquals(20, countHalfReifyEqual(false));
+        assertEquals(20, countHalfReifyEqual(true));
+    }
+}
@@ -0,0 +1,108 @@
+package org.clafer.choco.constraint;
+
+import java.util.List;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.choco.constraint.propagator.PropHalfReifyEqualXC;
+import org.clafer.choco.constraint.propagator.PropHalfReifyEqualXY;
+import org.clafer.compiler.ClaferCompiler;
+import org.clafer.compiler.ClaferOptions;
+import org.clafer.compiler.ClaferSolver;
+import org.clafer.scope.Scopable;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.constraints.ProfiledPropagator;
+import solver.variables.BoolVar;
+import solver.variables.IntVar;
+import solver.variables.Var;
+
+/**
+ *
+ * @author jimmy
+ */
+public class PropagatorProfilerTest {
+
+    private static AstModel newFeatureModel() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        AstConcreteClafer a = model.addChild("A").withCard(0, 1).extending(feature);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 1).extending(feature);
+        model.addConstraint(lessThan(joinRef(join(global(a), cost)), joinRef(join(global(b), cost))));
+        return model;
+    }
+
+    @Test(timeout = 60000)
+    public void testProfileDoesNotChangeSolutions() {
+        Scopable scope = Scope.defaultScope(2).intLow(-2).intHigh(2);
+
+        ClaferSolver solver = ClaferCompiler.compile(newFeatureModel(), scope);
+        ClaferSolver profiledSolver = ClaferCompiler.compile(newFeatureModel(), scope,
+                ClaferOptions.Default.profile());
+        assertEquals(solver.allInstances().length, profiledSolver.allInstances().length);
+
+        assertTrue(PropagatorProfiler.getProfiledPropagators(solver.getInternalSolver()).isEmpty());
+        List<ProfiledPropagator> profiled
+                = PropagatorProfiler.getProfiledPropagators(profiledSolver.getInternalSolver());
+        assertFalse(profiled.isEmpty());
+        long calls = 0;
+        for (ProfiledPropagator propagator : profiled) {
+            assertNotNull(propagator.getSource());
+            calls += propagator.getFullCalls() + propagator.getFineCalls();
+        }
+        assertTrue(calls > 0);
+    }
+
+    private static int countHalfReifyNotEqual(boolean profile) {
+        Solver solver = new Solver();
+        BoolVar reify = Var.bool("reify", solver);
+        // Bounded so the wrapped propagator stays active until the value is gone.
+        IntVar x = Var.bounded("x", 0, 3, solver);
+        IntVar y = Var.bounded("y", 0, 3, solver);
+        Constraint constraint = new Constraint("halfReifyNotEqualXY",
+                new PropHalfReifyEqualXY(reify, false, x, y));
+        solver.post(profile ? PropagatorProfiler.profile(constraint, "x != y") : constraint);
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(reify.getValue() == 0 || x.getValue() != y.getValue());
+                count++;
+            } while (solver.nextSolution());
+        }
+        return count;
+    }
+
+    @Test(timeout = 60000)
+    public void testProfilePassivePropagator() {
+        // 12 solutions where reify is true and 16 where it is false.
+        assertEquals(28, countHalfReifyNotEqual(false));
+        assertEquals(28, countHalfReifyNotEqual(true));
+    }
+
+    @Test(timeout = 60000)
+    public void testProfileForwardsFineEvents() {
+        Solver solver = new Solver();
+        BoolVar reify = Var.bool("reify", solver);
+        IntVar x = Var.enumerated("x", 0, 3, solver);
+        ProfiledPropagator profiled = new ProfiledPropagator(
+                new PropHalfReifyEqualXC(reify, true, x, 2), "x = 2");
+        solver.post(new Constraint("halfReifyEqualXC", profiled));
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(reify.getValue() == 0 || x.getValue() == 2);
+                count++;
+            } while (solver.nextSolution());
+        }
+        // 1 solution where reify is true and 4 where it is false.
+        assertEquals(5, count);
+        // The wrapped propagator reacts to fine events, so does the wrapper.
+        assertTrue(profiled.getFineCalls() > 0);
+    }
+}
@@ -24,6 +24,13 @@ public class ReifyEqualXCTest {
                 4);
     }
 
+    @Input(solutions = 21)
+    public Object testReifyEqualXCBounded(Solver solver) {
+        return $(bool("reify", solver),
+                bounded("i", -10, 10, solver),
+                4);
+    }
+
     @Check
     public void check(boolean reify, int v, int c) {
         assertEquals(reify, v == c);
@@ -24,6 +24,13 @@ public class ReifyEqualXYTest {
                 enumerated("j", -2, 2, solver));
     }
 
+    @Input(solutions = 25)
+    public Object testReifyEqualXYBounded(Solver solver) {
+        return $(bool("reify", solver),
+                bounded("i", -2, 2, solver),
+                bounded("j", -2, 2, solver));
+    }
+
     @Check
     public void check(boolean reify, int v1, int v2) {
         assertEquals(reify, v1 == v2);
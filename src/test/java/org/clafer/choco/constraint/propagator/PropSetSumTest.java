@@ -0,0 +1,180 @@
+package org.clafer.choco.constraint.propagator;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.clafer.common.Util;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import solver.Solver;
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+import solver.variables.Var;
+import solver.variables.Variable;
+import util.ESat;
+
+/**
+ *
+ * @author jimmy
+ */
+public class PropSetSumTest {
+
+    private final Random rand = new Random();
+
+    @Test
+    public void testAgainstSortedBounds() {
+        Solver solver = new Solver();
+        solver.set(new PropUtilTest.DummyEngine());
+        for (int repeat = 0; repeat < 1000; repeat++) {
+            TIntArrayList env = new TIntArrayList();
+            TIntArrayList ker = new TIntArrayList();
+            for (int i = -5; i <= 5; i++) {
+                if (rand.nextBoolean()) {
+                    env.add(i);
+                    if (rand.nextInt(4) == 0) {
+                        ker.add(i);
+                    }
+                }
+            }
+            int cardLow;
+            int cardHigh;
+            if (rand.nextInt(3) == 0) {
+                cardLow = cardHigh = ker.size();
+            } else {
+                cardLow = Math.max(0, ker.size() - 1 + rand.nextInt(3));
+                cardHigh = cardLow + rand.nextInt(env.size() + 2);
+            }
+            int sumLow = rand.nextInt(31) - 20;
+            int sumHigh = sumLow + rand.nextInt(21);
+
+            String name = Integer.toString(repeat);
+            SetVar set = Var.set("set" + name, env.toArray(), ker.toArray(), solver);
+            IntVar setCard = Var.enumerated("|set" + name + "|", cardLow, cardHigh, solver);
+            IntVar sum = Var.bounded("sum" + name, sumLow, sumHigh, solver);
+            SetVar expectedSet = Var.set("expectedSet" + name, env.toArray(), ker.toArray(), solver);
+            IntVar expectedSetCard = Var.enumerated("|expectedSet" + name + "|", cardLow, cardHigh, solver);
+            IntVar expectedSum = Var.bounded("expectedSum" + name, sumLow, sumHigh, solver);
+
+            boolean fails = propagateFails(new PropSetSum(set, setCard, sum));
+            boolean expectedFails = propagateFails(new PropSetSumSorted(expectedSet, expectedSetCard, expectedSum));
+            String message = "env=" + env + " ker=" + ker
+                    + " card=[" + cardLow + ", " + cardHigh + "] sum=[" + sumLow + ", " + sumHigh + "]";
+            assertEquals(message, expectedFails, fails);
+            if (!fails) {
+                assertArrayEquals(message, PropUtil.iterateEnv(expectedSet), PropUtil.iterateEnv(set));
+                assertArrayEquals(message, PropUtil.iterateKer(expectedSet), PropUtil.iterateKer(set));
+                assertEquals(message, expectedSetCard.getLB(), setCard.getLB());
+                assertEquals(message, expectedSetCard.getUB(), setCard.getUB());
+                assertEquals(message, expectedSum.getLB(), sum.getLB());
+                assertEquals(message, expectedSum.getUB(), sum.getUB());
+            }
+        }
+    }
+
+    private static boolean propagateFails(Propagator<?> propagator) {
+        try {
+            propagator.propagate(EventType.FULL_PROPAGATION.mask);
+            return false;
+        } catch (ContradictionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * The bounds of PropSetSum before the Fenwick tree, computed by sorting
+     * the envelope on every propagation.
+     */
+    private static class PropSetSumSorted extends Propagator<Variable> {
+
+        private final SetVar set;
+        private final IntVar setCard;
+        private final IntVar sum;
+
+        PropSetSumSorted(SetVar set, IntVar setCard, IntVar sum) {
+            super(new Variable[]{set, setCard, sum}, PropagatorPriority.LINEAR, false);
+            this.set = set;
+            this.setCard = setCard;
+            this.sum = sum;
+        }
+
+        @Override
+        public void propagate(int evtmask) throws ContradictionException {
+            boolean changed;
+            do {
+                changed = false;
+                int[] ker = PropUtil.iterateKer(set);
+                int[] unchosen = PropUtil.iterateEnv(set);
+                int chooseSize = 0;
+                for (int i : unchosen) {
+                    if (!Util.in(i, ker)) {
+                        unchosen[chooseSize++] = i;
+                    }
+                }
+                unchosen = Arrays.copyOf(unchosen, chooseSize);
+
+                setCard.updateLowerBound(ker.length, aCause);
+                setCard.updateUpperBound(ker.length + chooseSize, aCause);
+
+                int lbEnd = setCard.getLB() - ker.length;
+                int ubEnd = setCard.getUB() - ker.length;
+
+                int kerSum = Util.sum(ker);
+                int low = kerSum;
+                int lowEnd;
+                int lowCandidate = 0;
+                for (lowEnd = 0; lowEnd < ubEnd; lowEnd++) {
+                    int val = unchosen[lowEnd];
+                    if (!(lowEnd < lbEnd || val < 0)) {
+                        lowCandidate = Math.max(lowCandidate, 0);
+                        break;
+                    }
+                    lowCandidate = val;
+                    low += val;
+                }
+                int high = kerSum;
+                int highEnd;
+                int highCandidate = 0;
+                for (highEnd = 0; highEnd < ubEnd; highEnd++) {
+                    int val = unchosen[chooseSize - highEnd - 1];
+                    if (!(highEnd < lbEnd || val > 0)) {
+                        highCandidate = Math.min(highCandidate, 0);
+                        break;
+                    }
+                    highCandidate = val;
+                    high += val;
+                }
+                int highStart = chooseSize - highEnd;
+
+                sum.updateLowerBound(low, aCause);
+                sum.updateUpperBound(high, aCause);
+
+                int lb = sum.getLB();
+                int ub = sum.getUB();
+
+                for (int index = 0; index < chooseSize; index++) {
+                    int i = unchosen[index];
+                    if (index >= lowEnd && low + i - lowCandidate > ub) {
+                        changed |= set.removeFromEnvelope(i, aCause);
+                    }
+                    if (index < highStart && high + i - highCandidate < lb) {
+                        changed |= set.removeFromEnvelope(i, aCause);
+                    }
+                }
+            } while (changed);
+        }
+
+        @Override
+        public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+            forcePropagate(EventType.FULL_PROPAGATION);
+        }
+
+        @Override
+        public ESat isEntailed() {
+            return ESat.UNDEFINED;
+        }
+    }
+}
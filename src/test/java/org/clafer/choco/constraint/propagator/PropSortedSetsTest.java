@@ -0,0 +1,105 @@
+package org.clafer.choco.constraint.propagator;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.clafer.test.TestUtil;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+import solver.variables.Var;
+
+/**
+ *
+ * @author jimmy
+ */
+public class PropSortedSetsTest {
+
+    private final Random rand = new Random();
+
+    @Test(timeout = 60000)
+    public void testAgainstBruteForce() {
+        for (int repeat = 0; repeat < 100; repeat++) {
+            Solver solver = new Solver();
+            int n = rand.nextInt(3) + 1;
+            int[][] envs = new int[n][];
+            int[][] kers = new int[n][];
+            int[][] cardDoms = new int[n][];
+            SetVar[] sets = new SetVar[n];
+            IntVar[] cards = new IntVar[n];
+            for (int i = 0; i < n; i++) {
+                TIntArrayList env = new TIntArrayList();
+                TIntArrayList ker = new TIntArrayList();
+                for (int j = 0; j <= 5; j++) {
+                    if (rand.nextInt(4) != 0) {
+                        env.add(j);
+                        if (rand.nextInt(6) == 0) {
+                            ker.add(j);
+                        }
+                    }
+                }
+                int low = rand.nextInt(3);
+                int high = low + rand.nextInt(3);
+                envs[i] = env.toArray();
+                kers[i] = ker.toArray();
+                cardDoms[i] = new int[]{low, high};
+                sets[i] = Var.set("set" + i, envs[i], kers[i], solver);
+                cards[i] = Var.enumerated("|set" + i + "|", low, high, solver);
+            }
+            solver.post(new Constraint("sortedSets", new PropSortedSets(sets, cards)));
+
+            int count = 0;
+            if (TestUtil.randomizeStrategy(solver).findSolution()) {
+                do {
+                    int start = 0;
+                    for (int i = 0; i < n; i++) {
+                        assertEquals(cards[i].getValue(), sets[i].getKernelSize());
+                        for (int j = sets[i].getKernelFirst(); j != SetVar.END; j = sets[i].getKernelNext()) {
+                            assertEquals(start++, j);
+                        }
+                    }
+                    count++;
+                } while (solver.nextSolution());
+            }
+            assertEquals(countBruteForce(envs, kers, cardDoms, 0, 0), count);
+        }
+    }
+
+    /**
+     * Counts the ways to pick the cardinalities of the sets from i onwards,
+     * given that the i'th set starts at start.
+     */
+    private static int countBruteForce(int[][] envs, int[][] kers, int[][] cardDoms, int i, int start) {
+        if (i == envs.length) {
+            return 1;
+        }
+        int count = 0;
+        for (int card = cardDoms[i][0]; card <= cardDoms[i][1]; card++) {
+            if (isInterval(envs[i], kers[i], start, start + card)) {
+                count += countBruteForce(envs, kers, cardDoms, i + 1, start + card);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the set can be exactly {@code [low, high)}. The envelope is
+     * sorted.
+     */
+    private static boolean isInterval(int[] env, int[] ker, int low, int high) {
+        for (int k : ker) {
+            if (k < low || k >= high) {
+                return false;
+            }
+        }
+        for (int j = low; j < high; j++) {
+            if (Arrays.binarySearch(env, j) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -588,7 +588,7 @@ public class PropUtilTest {
         return Var.set(name, envArray, kerArray, solver);
     }
 
-    private static class DummyEngine implements IPropagationEngine {
+    static class DummyEngine implements IPropagationEngine {
 
         @Override
         public boolean isInitialized() {
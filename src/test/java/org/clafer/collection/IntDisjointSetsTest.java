@@ -0,0 +1,64 @@
+package org.clafer.collection;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IntDisjointSetsTest {
+
+    @Test
+    public void testUnionConnected() {
+        IntDisjointSets sets = new IntDisjointSets(1);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, sets.add());
+        }
+
+        assertTrue(sets.union(0, 1));
+        assertFalse(sets.union(1, 0));
+        assertTrue(sets.union(2, 3));
+        assertTrue(sets.connected(1, 0));
+        assertFalse(sets.connected(1, 2));
+
+        assertTrue(sets.union(3, 1));
+        assertTrue(sets.connected(0, 2));
+        assertFalse(sets.connected(0, 4));
+        assertFalse(sets.connected(4, 5));
+    }
+
+    @Test
+    public void testConnectedComponents() {
+        IntDisjointSets sets = new IntDisjointSets();
+        for (int i = 0; i < 5; i++) {
+            sets.add();
+        }
+        sets.union(3, 1);
+        sets.union(4, 1);
+
+        IntDisjointSets.Components components = sets.connectedComponents();
+
+        assertEquals(3, components.size());
+        assertEquals(1, components.size(0));
+        assertEquals(0, components.get(0, 0));
+        assertEquals(3, components.size(1));
+        assertEquals(1, components.get(1, 0));
+        assertEquals(3, components.get(1, 1));
+        assertEquals(4, components.get(1, 2));
+        assertEquals(1, components.size(2));
+        assertEquals(2, components.get(2, 0));
+    }
+
+    @Test(timeout = 60000)
+    public void testLongChain() {
+        int n = 1000000;
+        IntDisjointSets sets = new IntDisjointSets();
+        sets.add();
+        for (int i = 1; i < n; i++) {
+            sets.union(sets.add(), i - 1);
+        }
+        assertTrue(sets.connected(0, n - 1));
+        assertEquals(1, sets.connectedComponents().size());
+    }
+}
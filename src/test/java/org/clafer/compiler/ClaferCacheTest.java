@@ -0,0 +1,140 @@
+package org.clafer.compiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.objective.Objective;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * <pre>
+     * A *
+     *     Cost -> integer
+     * [some A]
+     * </pre>
+     */
+    private static AstModel newCostModel() {
+        AstModel model = newModel();
+        AstConcreteClafer a = model.addChild("A").withCard(0);
+        a.addChild("Cost").withCard(1, 1).refTo(IntType);
+        model.addConstraint(some(global(a)));
+        return model;
+    }
+
+    private static Scope newScope(int scope) {
+        return Scope.defaultScope(scope).intLow(-1).intHigh(1).toScope();
+    }
+
+    private static String key(Scope scope) {
+        return CompilationFingerprint.of(newCostModel(), scope, new Objective[0], ClaferOptions.Default);
+    }
+
+    private Path entry(Scope scope) {
+        return folder.getRoot().toPath().resolve(key(scope) + ".entry");
+    }
+
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath(), "*.entry")) {
+            for (Path file : files) {
+                entries.add(file);
+            }
+        }
+        return entries;
+    }
+
+    private static int count(Scope scope) {
+        return ClaferCompiler.compile(newCostModel(), scope).allInstances().length;
+    }
+
+    @Test(timeout = 60000)
+    public void testMissThenHit() throws IOException {
+        ClaferCache cache = new ClaferCache(folder.getRoot().toPath(), 1 << 20);
+        assertTrue(entries().isEmpty());
+
+        assertEquals(count(newScope(2)), cache.compile(newCostModel(), newScope(2)).allInstances().length);
+        assertEquals(Arrays.asList(entry(newScope(2))), entries());
+
+        // Equal model and scope, but different objects.
+        assertEquals(count(newScope(2)), cache.compile(newCostModel(), newScope(2)).allInstances().length);
+        assertEquals(1, entries().size());
+
+        assertEquals(count(newScope(3)), cache.compile(newCostModel(), newScope(3)).allInstances().length);
+        assertEquals(2, entries().size());
+    }
+
+    @Test(timeout = 60000)
+    public void testHitReadsEntry() throws IOException {
+        ClaferCache cache = new ClaferCache(folder.getRoot().toPath(), 1 << 20);
+        cache.compile(newCostModel(), newScope(2));
+        cache.compile(newCostModel(), newScope(3));
+        assertNotEquals(count(newScope(2)), count(newScope(3)));
+
+        // A hit does not compile, so it returns whatever the entry holds.
+        Files.copy(entry(newScope(3)), entry(newScope(2)), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(count(newScope(3)), cache.compile(newCostModel(), newScope(2)).allInstances().length);
+    }
+
+    private void assertCorruptEntryRecompiles(byte[] corrupt) throws IOException {
+        ClaferCache cache = new ClaferCache(folder.getRoot().toPath(), 1 << 20);
+        Files.write(entry(newScope(2)), corrupt);
+        assertEquals(count(newScope(2)), cache.compile(newCostModel(), newScope(2)).allInstances().length);
+        // The corrupt entry is replaced.
+        assertFalse(Arrays.equals(corrupt, Files.readAllBytes(entry(newScope(2)))));
+        assertEquals(count(newScope(2)), cache.compile(newCostModel(), newScope(2)).allInstances().length);
+    }
+
+    private byte[] validEntry() throws IOException {
+        ClaferCache cache = new ClaferCache(folder.getRoot().toPath(), 1 << 20);
+        cache.compile(newCostModel(), newScope(2));
+        return Files.readAllBytes(entry(newScope(2)));
+    }
+
+    @Test(timeout = 60000)
+    public void testGarbageEntry() throws IOException {
+        assertCorruptEntryRecompiles("not an entry".getBytes("UTF-8"));
+    }
+
+    @Test(timeout = 60000)
+    public void testTruncatedEntry() throws IOException {
+        byte[] entry = validEntry();
+        assertCorruptEntryRecompiles(Arrays.copyOf(entry, entry.length / 2));
+    }
+
+    @Test(timeout = 60000)
+    public void testCorruptLengthEntry() throws IOException {
+        byte[] entry = validEntry();
+        // The magic number, the format version, the entry version and the
+        // unsat flag take the first 7 bytes, followed by the number of
+        // constraints. Replace it with the largest length.
+        byte[] corrupt = Arrays.copyOf(entry, entry.length + 5);
+        System.arraycopy(entry, 7, corrupt, 12, entry.length - 7);
+        corrupt[7] = (byte) 0xFF;
+        corrupt[8] = (byte) 0xFF;
+        corrupt[9] = (byte) 0xFF;
+        corrupt[10] = (byte) 0xFF;
+        corrupt[11] = 0x07;
+        assertCorruptEntryRecompiles(corrupt);
+    }
+}
@@ -0,0 +1,77 @@
+package org.clafer.compiler;
+
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.objective.Objective;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class CompilationFingerprintTest {
+
+    /**
+     * <pre>
+     * abstract Feature
+     *     Cost -> integer
+     * A : Feature ?
+     * B : Feature ?
+     * [A.Cost.ref < B.Cost.ref]
+     * </pre>
+     */
+    private static AstModel newFeatureModel() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        AstConcreteClafer a = model.addChild("A").withCard(0, 1).extending(feature);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 1).extending(feature);
+        model.addConstraint(lessThan(joinRef(join(global(a), cost)), joinRef(join(global(b), cost))));
+        return model;
+    }
+
+    private static String fingerprint(AstModel model, Scope scope, ClaferOptions options) {
+        return CompilationFingerprint.of(model, scope, new Objective[0], options);
+    }
+
+    @Test(timeout = 60000)
+    public void testSameModelBuiltTwice() {
+        Scope scope = Scope.defaultScope(2).intLow(-2).intHigh(2).toScope();
+        // Separate objects, so nothing depends on identity hash codes.
+        String fingerprint = fingerprint(newFeatureModel(), scope, ClaferOptions.Default);
+        assertEquals(fingerprint, fingerprint(newFeatureModel(), scope, ClaferOptions.Default));
+        assertEquals(fingerprint, fingerprint(newFeatureModel(),
+                Scope.defaultScope(2).intLow(-2).intHigh(2).toScope(), ClaferOptions.Default));
+    }
+
+    @Test(timeout = 60000)
+    public void testScopeChangesFingerprint() {
+        AstModel model = newFeatureModel();
+        assertNotEquals(
+                fingerprint(model, Scope.defaultScope(2).intLow(-2).intHigh(2).toScope(), ClaferOptions.Default),
+                fingerprint(model, Scope.defaultScope(2).intLow(-2).intHigh(3).toScope(), ClaferOptions.Default));
+    }
+
+    @Test(timeout = 60000)
+    public void testOptionsChangeFingerprint() {
+        AstModel model = newFeatureModel();
+        Scope scope = Scope.defaultScope(2).intLow(-2).intHigh(2).toScope();
+        assertNotEquals(
+                fingerprint(model, scope, ClaferOptions.Default),
+                fingerprint(model, scope, ClaferOptions.Default.basicSymmetryBreaking()));
+    }
+
+    @Test(timeout = 60000)
+    public void testModelChangesFingerprint() {
+        Scope scope = Scope.defaultScope(2).intLow(-2).intHigh(2).toScope();
+        AstModel model = newFeatureModel();
+        String fingerprint = fingerprint(model, scope, ClaferOptions.Default);
+        model.addChild("C").withCard(0, 1);
+        assertNotEquals(fingerprint, fingerprint(model, scope, ClaferOptions.Default));
+    }
+}
@@ -0,0 +1,81 @@
+package org.clafer.compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author jimmy
+ */
+public class DiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void setLastUsed(Path directory, String key, long millis) throws IOException {
+        Files.setLastModifiedTime(directory.resolve(key + ".entry"), FileTime.fromMillis(millis));
+    }
+
+    private static boolean contains(Path directory, String key) {
+        // Not through get since it touches the entry.
+        return Files.exists(directory.resolve(key + ".entry"));
+    }
+
+    @Test(timeout = 60000)
+    public void testGetPut() throws IOException {
+        DiskCache cache = new DiskCache(folder.getRoot().toPath(), 100);
+        assertNull(cache.get("a"));
+        cache.put("a", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        cache.put("a", new byte[]{4});
+        assertArrayEquals(new byte[]{4}, cache.get("a"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+    }
+
+    @Test(timeout = 60000)
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DiskCache cache = new DiskCache(directory, 25);
+        cache.put("a", new byte[10]);
+        cache.put("b", new byte[10]);
+        setLastUsed(directory, "a", 1000);
+        setLastUsed(directory, "b", 2000);
+        // Reading a makes it more recent than b.
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", new byte[10]);
+        assertTrue(contains(directory, "a"));
+        assertFalse(contains(directory, "b"));
+        assertTrue(contains(directory, "c"));
+    }
+
+    @Test(timeout = 60000)
+    public void testEvictUntilUnderLimit() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DiskCache cache = new DiskCache(directory, 25);
+        cache.put("a", new byte[10]);
+        cache.put("b", new byte[10]);
+        setLastUsed(directory, "a", 1000);
+        setLastUsed(directory, "b", 2000);
+
+        cache.put("c", new byte[20]);
+        assertFalse(contains(directory, "a"));
+        assertFalse(contains(directory, "b"));
+        assertTrue(contains(directory, "c"));
+    }
+
+    @Test(timeout = 60000)
+    public void testEntryLargerThanCache() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DiskCache cache = new DiskCache(directory, 5);
+        cache.put("a", new byte[10]);
+        assertNull(cache.get("a"));
+    }
+}
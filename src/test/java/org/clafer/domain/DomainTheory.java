@@ -44,7 +44,12 @@ public class DomainTheory {
                 new BoundDomain(-1, 1),
                 new BoundDomain(-1, -1),
                 new BoundDomain(2, 2),
-                new BoundDomain(1, 2)
+                new BoundDomain(1, 2),
+                new IntervalDomain(-2, -2, 0, 2),
+                new IntervalDomain(-2, -1, 1, 2),
+                new IntervalDomain(-2, -2, 2, 2),
+                new IntervalDomain(-1, -1, 1, 1),
+                new IntervalDomain(-2, -2, 0, 0, 2, 2)
             };
 
     @Theory
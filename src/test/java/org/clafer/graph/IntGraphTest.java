@@ -0,0 +1,52 @@
+package org.clafer.graph;
+
+import java.util.BitSet;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IntGraphTest {
+
+    @Test
+    public void testCycles() {
+        IndexedGraph<Character> graph = new IndexedGraph<>();
+        graph.addEdge('a', 'b');
+        graph.addEdge('b', 'c');
+        graph.addEdge('c', 'a');
+        graph.addEdge('c', 'd');
+        graph.getVertex('e');
+
+        List<int[]> components = graph.getGraph().computeStronglyConnectedComponents();
+
+        assertEquals(3, components.size());
+        assertEquals(1, components.get(0).length);
+        assertEquals(3, components.get(1).length);
+        assertEquals(1, components.get(2).length);
+        assertTrue(graph.hasPath('a', 'd'));
+        assertFalse(graph.hasPath('d', 'a'));
+        assertFalse(graph.hasPath('a', 'e'));
+    }
+
+    @Test
+    public void testDeepChain() {
+        int n = 1000000;
+        IntGraph.Builder builder = new IntGraph.Builder();
+        for (int i = 0; i + 1 < n; i++) {
+            builder.addEdge(i, i + 1);
+        }
+        builder.addEdge(n - 1, 0);
+        IntGraph graph = builder.build();
+
+        List<int[]> components = graph.computeStronglyConnectedComponents();
+
+        assertEquals(1, components.size());
+        assertEquals(n, components.get(0).length);
+        BitSet start = new BitSet();
+        start.set(n / 2);
+        assertEquals(n, graph.reachable(start).cardinality());
+    }
+}
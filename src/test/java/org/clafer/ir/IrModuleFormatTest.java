@@ -0,0 +1,138 @@
+package org.clafer.ir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import org.clafer.domain.Domain;
+import org.clafer.domain.Domains;
+import static org.clafer.ir.Irs.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrModuleFormatTest {
+
+    private static byte[] write(IrModule module) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IrModuleWriter writer = new IrModuleWriter(Channels.newChannel(bytes));
+        writer.writeModule(module);
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    private static IrModule roundTrip(IrModule module) throws IOException {
+        return new IrModuleReader(ByteBuffer.wrap(write(module))).readModule();
+    }
+
+    @Test(timeout = 60000)
+    public void testRoundTrip() throws IOException {
+        IrBoolVar b = bool("b");
+        IrIntVar i = boundInt("i", -3, 5);
+        IrIntVar j = domainInt("j", Domains.enumDomain(1, 4, 5, 9));
+        IrSetVar s = set("s", 0, 4, 1, 2);
+        IrStringVar str = string("str", Domains.boundDomain(97, 99), 3);
+
+        IrModule module = new IrModule();
+        module.addConstraint(implies(b, lessThan(add(i, j), 7)));
+        module.addConstraint(member(i, union(s, set("t", 2, 6))));
+        module.addConstraint(equal(card(s), j));
+        module.addConstraint(equal(str, constant("ab")));
+
+        IrModule read = roundTrip(module);
+        List<IrBoolExpr> expected = module.getConstraints();
+        List<IrBoolExpr> actual = read.getConstraints();
+        assertEquals(expected.size(), actual.size());
+        for (int k = 0; k < expected.size(); k++) {
+            assertEquals(expected.get(k).toString(), actual.get(k).toString());
+            assertEquals(expected.get(k).getClass(), actual.get(k).getClass());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testVariablesShared() throws IOException {
+        IrIntVar i = boundInt("i", 0, 5);
+        IrModule module = new IrModule();
+        module.addConstraint(lessThan(i, 3));
+        module.addConstraint(equal(i, constant(2)));
+
+        IrModule read = roundTrip(module);
+        IrCompare first = (IrCompare) read.getConstraints().get(0);
+        IrCompare second = (IrCompare) read.getConstraints().get(1);
+        assertSame(first.getLeft(), second.getLeft());
+        assertEquals(Domains.boundDomain(0, 5), ((IrIntVar) first.getLeft()).getDomain());
+    }
+
+    @Test(timeout = 60000)
+    public void testDomains() throws IOException {
+        Domain[] domains = {
+            Domains.TrueFalseDomain,
+            Domains.boundDomain(-7, 12),
+            Domains.boundDomain(Integer.MIN_VALUE, Integer.MAX_VALUE),
+            Domains.enumDomain(-100, -99, 3, 5, 6, 7, 1000),
+            Domains.enumDomain(Integer.MIN_VALUE, Integer.MAX_VALUE)
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IrModuleWriter writer = new IrModuleWriter(Channels.newChannel(bytes));
+        for (int i = 0; i < domains.length; i++) {
+            writer.writeExpr(domainInt("i" + i, domains[i]));
+        }
+        writer.flush();
+        IrModuleReader reader = new IrModuleReader(ByteBuffer.wrap(bytes.toByteArray()));
+        for (Domain domain : domains) {
+            assertEquals(domain, reader.readExpr(IrIntVar.class).getDomain());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testStreaming() throws IOException {
+        IrModule module = new IrModule();
+        IrIntVar[] is = new IrIntVar[20000];
+        is[0] = boundInt("variable0", -1, 1);
+        for (int i = 1; i < is.length; i++) {
+            is[i] = boundInt("variable" + i, -i, i);
+            module.addConstraint(lessThan(is[i], is[i / 2]));
+        }
+        byte[] bytes = write(module);
+        IrModule read = new IrModuleReader(Channels.newChannel(new ByteArrayInputStream(bytes))).readModule();
+        assertEquals(module.getConstraints().size(), read.getConstraints().size());
+        assertEquals(module.getConstraints().toString(), read.getConstraints().toString());
+    }
+
+    @Test(timeout = 60000, expected = IOException.class)
+    public void testTruncated() throws IOException {
+        IrModule module = new IrModule();
+        module.addConstraint(lessThan(boundInt("i", 0, 5), 3));
+        byte[] bytes = write(module);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+        new IrModuleReader(ByteBuffer.wrap(truncated)).readModule();
+    }
+
+    @Test(timeout = 60000, expected = IOException.class)
+    public void testNotAModule() throws IOException {
+        new IrModuleReader(ByteBuffer.wrap("not a module".getBytes("UTF-8")));
+    }
+
+    @Test(timeout = 60000, expected = IOException.class)
+    public void testCorruptLength() throws IOException {
+        IrModule module = new IrModule();
+        module.addConstraint(lessThan(boundInt("i", 0, 5), 3));
+        byte[] bytes = write(module);
+        // The magic number and the version take the first 5 bytes, followed by
+        // the number of constraints. Replace it with the largest length.
+        byte[] corrupt = Arrays.copyOf(bytes, bytes.length + 4);
+        System.arraycopy(bytes, 6, corrupt, 10, bytes.length - 6);
+        corrupt[5] = (byte) 0xFF;
+        corrupt[6] = (byte) 0xFF;
+        corrupt[7] = (byte) 0xFF;
+        corrupt[8] = (byte) 0xFF;
+        corrupt[9] = 0x07;
+        new IrModuleReader(ByteBuffer.wrap(corrupt)).readModule();
+    }
+}
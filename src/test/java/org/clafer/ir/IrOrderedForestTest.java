@@ -0,0 +1,30 @@
+package org.clafer.ir;
+
+import org.clafer.choco.constraint.Constraints;
+import org.clafer.ir.IrQuickTest.Solution;
+import static org.clafer.ir.Irs.*;
+import org.clafer.test.NonEmpty;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import solver.constraints.Constraint;
+import solver.variables.IntVar;
+
+/**
+ *
+ * @author jimmy
+ */
+@RunWith(IrQuickTest.class)
+public class IrOrderedForestTest {
+
+    @Test(timeout = 60000)
+    public IrBoolExpr setup(@NonEmpty IrIntVar[] edges, int[] groups) {
+        assumeTrue(edges.length == groups.length);
+        return orderedForest(edges, groups);
+    }
+
+    @Solution
+    public Constraint setup(IntVar[] edges, int[] groups) {
+        return Constraints.orderedForest(edges, groups);
+    }
+}
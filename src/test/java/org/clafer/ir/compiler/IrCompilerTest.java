@@ -1,6 +1,8 @@
 package org.clafer.ir.compiler;
 
+import org.clafer.common.Util;
 import static org.clafer.domain.Domains.*;
+import org.clafer.ir.IrBoolVar;
 import org.clafer.ir.IrIntVar;
 import org.clafer.ir.IrModule;
 import org.clafer.ir.IrSetVar;
@@ -8,6 +10,7 @@ import static org.clafer.ir.Irs.*;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import solver.Solver;
+import solver.constraints.Constraint;
 import solver.search.strategy.SetStrategyFactory;
 import solver.variables.SetVar;
 
@@ -62,4 +65,144 @@ public class IrCompilerTest {
         }
         assertEquals(16, count);
     }
+
+    @Test
+    public void testEliminatedVariableValue() {
+        IrModule module = new IrModule();
+        IrSetVar var = set("set", boundDomain(0, 3));
+        IrIntVar i = boundInt("i", 0, 2);
+        IrIntVar sum = domainInt("sum", boundDomain(0, 6));
+        module.addVariables(var, i);
+
+        module.addConstraint(equal(sum, add(card(var), i)));
+
+        Solver solver = new Solver();
+        IrSolutionMap map = IrCompiler.compile(module, solver);
+
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertEquals(map.getValue(var).length + map.getValue(i), map.getValue(sum));
+                count++;
+            } while (solver.nextSolution());
+        }
+        assertEquals(48, count);
+    }
+
+    private static IrSolutionMap compileWithoutPasses(IrModule module, Solver solver, int boundedDomainThreshold) {
+        return IrCompiler.compile(module, solver, new IrPassManager(false), false, boundedDomainThreshold);
+    }
+
+    private static boolean hasConstraint(Solver solver, String name) {
+        for (Constraint constraint : solver.getCstrs()) {
+            if (name.equals(constraint.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testHalfReifyImplies() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrIntVar x = boundInt("x", 0, 2);
+        IrIntVar y = boundInt("y", 0, 2);
+        module.addVariables(b, x, y);
+        module.addConstraint(implies(b, equal(x, y)));
+
+        Solver solver = new Solver();
+        IrSolutionMap map = compileWithoutPasses(module, solver, Integer.MAX_VALUE);
+        assertTrue(hasConstraint(solver, "halfReifyEqualXY"));
+
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(!map.getValue(b) || map.getValue(x) == map.getValue(y));
+                count++;
+            } while (solver.nextSolution());
+        }
+        assertEquals(12, count);
+    }
+
+    @Test
+    public void testHalfReifyIfThenElse() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrIntVar x = boundInt("x", 0, 2);
+        IrIntVar y = boundInt("y", 0, 2);
+        module.addVariables(b, x, y);
+        module.addConstraint(ifThenElse(b, equal(x, 1), notEqual(x, y)));
+
+        Solver solver = new Solver();
+        IrSolutionMap map = compileWithoutPasses(module, solver, Integer.MAX_VALUE);
+        assertTrue(hasConstraint(solver, "halfReifyEqualXC"));
+        assertTrue(hasConstraint(solver, "halfReifyNotEqualXY"));
+
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(map.getValue(b)
+                        ? map.getValue(x) == 1
+                        : map.getValue(x) != map.getValue(y));
+                count++;
+            } while (solver.nextSolution());
+        }
+        assertEquals(9, count);
+    }
+
+    @Test
+    public void testHalfReifyAnd() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrIntVar x = boundInt("x", 0, 2);
+        IrIntVar y = boundInt("y", 0, 2);
+        IrSetVar s = set("s", boundDomain(0, 1));
+        IrSetVar t = set("t", boundDomain(0, 1));
+        module.addVariables(b, x, y, s, t);
+        module.addConstraint(implies(b, and(notEqual(x, y), subsetEq(s, t))));
+
+        Solver solver = new Solver();
+        IrSolutionMap map = compileWithoutPasses(module, solver, Integer.MAX_VALUE);
+        assertTrue(hasConstraint(solver, "halfReifyNotEqualXY"));
+        assertTrue(hasConstraint(solver, "halfReifySubsetEq"));
+
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                if (map.getValue(b)) {
+                    assertNotEquals(map.getValue(x), map.getValue(y));
+                    for (int i : map.getValue(s)) {
+                        assertTrue(Util.in(i, map.getValue(t)));
+                    }
+                }
+                count++;
+            } while (solver.nextSolution());
+        }
+        // 6 * 9 solutions where b is true and 9 * 16 solutions where b is false.
+        assertEquals(198, count);
+    }
+
+    @Test
+    public void testHalfReifyBounded() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrIntVar x = boundInt("x", 0, 10);
+        module.addVariables(b, x);
+        module.addConstraint(implies(b, notEqual(x, 5)));
+
+        Solver solver = new Solver();
+        // x is bounded, so 5 cannot be removed from its domain.
+        IrSolutionMap map = compileWithoutPasses(module, solver, 4);
+        assertTrue(hasConstraint(solver, "halfReifyNotEqualXC"));
+
+        int count = 0;
+        if (solver.findSolution()) {
+            do {
+                assertTrue(!map.getValue(b) || map.getValue(x) != 5);
+                count++;
+            } while (solver.nextSolution());
+        }
+        assertEquals(21, count);
+    }
 }
@@ -0,0 +1,86 @@
+package org.clafer.ir.compiler;
+
+import java.util.List;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import static org.clafer.ir.Irs.*;
+import static org.clafer.ir.compiler.IrPass.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrPassManagerTest {
+
+    private static IrModule module() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 3);
+        IrIntVar b = boundInt("b", 0, 3);
+        IrIntVar c = boundInt("c", 0, 3);
+        IrIntVar sum = boundInt("sum", 0, 6);
+        module.addVariables(a, c);
+        module.addConstraint(equal(a, b));
+        module.addConstraint(equal(b, c));
+        module.addConstraint(equal(sum, add(a, b)));
+        module.addConstraint(lessThan(a, 3));
+        module.addConstraint(lessThan(c, 3));
+        return module;
+    }
+
+    @Test
+    public void testOrder() {
+        IrPassManager passes = new IrPassManager(false,
+                OptimizeLinearEquations, RemoveDuplicates, FlattenImplications, Coalesce, Optimize);
+        assertArrayEquals(
+                new IrPass[]{Optimize, FlattenImplications, Coalesce, RemoveDuplicates, OptimizeLinearEquations},
+                passes.getPasses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicatePass() {
+        new IrPassManager(false, Optimize, Coalesce, Optimize);
+    }
+
+    @Test
+    public void testStatistics() {
+        IrModule module = module();
+        IrOptimizedModule optimized = IrPassManager.standard(true).optimize(module);
+        List<IrPassStatistics> statistics = optimized.getPassStatistics();
+
+        assertEquals(6, statistics.size());
+        assertEquals(module.getConstraints().size(), statistics.get(0).getConstraintsBefore());
+        assertEquals(module.getVariables().size(), statistics.get(0).getVariablesBefore());
+        for (int i = 1; i < statistics.size(); i++) {
+            assertEquals(statistics.get(i - 1).getConstraintsAfter(), statistics.get(i).getConstraintsBefore());
+            assertEquals(statistics.get(i - 1).getVariablesAfter(), statistics.get(i).getVariablesBefore());
+        }
+        IrPassStatistics last = statistics.get(statistics.size() - 1);
+        assertEquals(optimized.getModule().getConstraints().size(), last.getConstraintsAfter());
+        assertTrue(last.getConstraintsAfter() < module.getConstraints().size());
+    }
+
+    @Test
+    public void testFixpoint() {
+        IrModule module = module();
+        IrOptimizedModule optimized = new IrPassManager(true, Optimize, Coalesce, RemoveDuplicates)
+                .optimize(module);
+        List<IrPassStatistics> statistics = optimized.getPassStatistics();
+
+        int rounds = statistics.get(statistics.size() - 1).getRound() + 1;
+        assertTrue(rounds > 1);
+        assertEquals(3 * rounds, statistics.size());
+        for (IrPassStatistics statistic : statistics.subList(statistics.size() - 3, statistics.size())) {
+            assertEquals(statistic.getConstraintsBefore(), statistic.getConstraintsAfter());
+        }
+    }
+
+    @Test
+    public void testNoPasses() {
+        IrModule module = module();
+        IrOptimizedModule optimized = new IrPassManager(false).optimize(module);
+        assertSame(module, optimized.getModule());
+        assertTrue(optimized.getPassStatistics().isEmpty());
+    }
+}
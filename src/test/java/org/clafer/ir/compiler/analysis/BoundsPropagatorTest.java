@@ -0,0 +1,99 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Map;
+import org.clafer.collection.Triple;
+import org.clafer.common.UnsatisfiableException;
+import org.clafer.domain.Domains;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.BoundsPropagator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class BoundsPropagatorTest {
+
+    @Test
+    public void testPropagateAdd() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 10);
+        IrIntVar b = boundInt("b", 0, 3);
+        IrIntVar c = boundInt("c", 0, 3);
+        module.addVariables(a, b, c);
+        module.addConstraint(equal(a, add(b, c)));
+        module.addConstraint(lessThan(4, a));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagated
+                = BoundsPropagator.propagate(module);
+        assertEquals(Domains.boundDomain(5, 6), propagated.getFst().get(a).getDomain());
+        assertEquals(Domains.boundDomain(2, 3), propagated.getFst().get(b).getDomain());
+        assertEquals(Domains.boundDomain(2, 3), propagated.getFst().get(c).getDomain());
+    }
+
+    @Test
+    public void testSubstituteConstants() {
+        IrModule module = new IrModule();
+        IrIntVar x = boundInt("x", 0, 5);
+        IrIntVar y = boundInt("y", 0, 5);
+        IrIntVar z = boundInt("z", 0, 5);
+        module.addVariables(x, y, z);
+        module.addConstraint(lessThan(x, y));
+        module.addConstraint(lessThan(y, z));
+        module.addConstraint(lessThanEqual(z, 2));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagated
+                = BoundsPropagator.propagate(module);
+        assertEquals(constant(0), propagated.getFst().get(x));
+        assertEquals(constant(1), propagated.getFst().get(y));
+        assertEquals(constant(2), propagated.getFst().get(z));
+        assertTrue(propagated.getThd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testPropagateMember() {
+        IrModule module = new IrModule();
+        IrIntVar x = boundInt("x", 0, 10);
+        IrSetVar s = set("s", Domains.enumDomain(2, 3, 4));
+        module.addVariables(x, s);
+        module.addConstraint(member(x, s));
+        module.addConstraint(notMember(constant(3), s));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagated
+                = BoundsPropagator.propagate(module);
+        assertEquals(Domains.enumDomain(2, 4), propagated.getFst().get(x).getDomain());
+        IrSetVar narrowed = propagated.getSnd().get(s);
+        assertEquals(Domains.enumDomain(2, 4), narrowed.getEnv());
+        assertEquals(Domains.boundDomain(1, 2), narrowed.getCard());
+        assertSame(narrowed.getCardVar(), propagated.getFst().get(s.getCardVar()));
+    }
+
+    @Test
+    public void testRenameRegisteredVariables() {
+        IrModule module = new IrModule();
+        IrIntVar x = boundInt("x", 0, 10);
+        module.addVariable(x);
+        module.addConstraint(lessThan(x, 5));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagated
+                = BoundsPropagator.propagate(module);
+        IrIntVar narrowed = propagated.getFst().get(x);
+        assertEquals(Domains.boundDomain(0, 4), narrowed.getDomain());
+        assertTrue(propagated.getThd().getVariables().contains(narrowed));
+        assertFalse(propagated.getThd().getVariables().contains(x));
+    }
+
+    @Test(expected = UnsatisfiableException.class)
+    public void testUnsatisfiable() {
+        IrModule module = new IrModule();
+        IrIntVar x = boundInt("x", 0, 3);
+        IrIntVar y = boundInt("y", 0, 3);
+        module.addConstraint(equal(y, add(x, 2)));
+        module.addConstraint(lessThan(y, 2));
+        BoundsPropagator.propagate(module);
+    }
+}
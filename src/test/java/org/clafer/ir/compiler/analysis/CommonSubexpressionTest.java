@@ -0,0 +1,105 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Set;
+import org.clafer.domain.Domains;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrExpr;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.CommonSubexpression;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class CommonSubexpressionTest {
+
+    @Test
+    public void testCommonGlobal() {
+        IrModule module = new IrModule();
+        IrIntVar i = boundInt("i", 0, 2);
+        IrIntVar x = boundInt("x", 0, 5);
+        IrIntVar y = boundInt("y", 0, 5);
+        IrIntExpr element = element(new IrIntExpr[]{constant(1), constant(3), constant(5)}, i);
+        module.addConstraint(lessThan(x, element));
+        module.addConstraint(lessThan(element, y));
+
+        Set<IrExpr> common = CommonSubexpression.findCommonSubexpressions(module);
+        assertTrue(common.contains(element));
+    }
+
+    @Test
+    public void testCommonArithmetic() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 5);
+        IrIntVar b = boundInt("b", 0, 5);
+        IrIntVar c = boundInt("c", 0, 5);
+        IrIntVar x = boundInt("x", 0, 50);
+        IrIntVar y = boundInt("y", 0, 50);
+        IrIntExpr product = mul(add(a, b), c);
+        module.addConstraint(lessThan(x, product));
+        module.addConstraint(lessThan(product, y));
+
+        Set<IrExpr> common = CommonSubexpression.findCommonSubexpressions(module);
+        assertTrue(common.contains(product));
+        // Only counted once inside the shared product.
+        assertFalse(common.contains(add(a, b)));
+    }
+
+    @Test
+    public void testCheapExpressionNotCommon() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 5);
+        IrIntVar b = boundInt("b", 0, 5);
+        IrIntVar x = boundInt("x", 0, 10);
+        IrIntVar y = boundInt("y", 0, 10);
+        IrIntExpr sum = add(a, b);
+        module.addConstraint(lessThan(x, sum));
+        module.addConstraint(lessThan(sum, y));
+
+        Set<IrExpr> common = CommonSubexpression.findCommonSubexpressions(module);
+        assertFalse(common.contains(sum));
+    }
+
+    @Test
+    public void testCommonReifiedBool() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 5);
+        IrIntVar b = boundInt("b", 0, 5);
+        IrIntVar c = boundInt("c", 0, 5);
+        IrBoolVar p = bool("p");
+        IrBoolVar q = bool("q");
+        IrBoolVar r = bool("r");
+        IrBoolExpr inRange = and(lessThan(a, b), lessThan(b, c));
+        module.addConstraint(or(p, inRange));
+        module.addConstraint(or(q, inRange));
+        module.addConstraint(or(r, inRange));
+
+        Set<IrExpr> common = CommonSubexpression.findCommonSubexpressions(module);
+        assertTrue(common.contains(inRange));
+        assertFalse(common.contains(not(inRange)));
+    }
+
+    @Test
+    public void testConstraintNotCommon() {
+        IrModule module = new IrModule();
+        IrSetVar s = set("s", Domains.enumDomain(1, 2, 3));
+        IrSetVar t = set("t", Domains.enumDomain(1, 2, 3));
+        IrIntExpr card = card(union(s, t));
+        IrBoolExpr constraint = lessThan(card, 3);
+        module.addConstraint(constraint);
+        module.addConstraint(constraint);
+
+        Set<IrExpr> common = CommonSubexpression.findCommonSubexpressions(module);
+        assertFalse(common.contains(constraint));
+        assertTrue(common.contains(card));
+        // Only counted once inside the shared cardinality.
+        assertFalse(common.contains(union(s, t)));
+    }
+}
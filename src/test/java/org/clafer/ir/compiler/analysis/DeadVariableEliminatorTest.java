@@ -0,0 +1,108 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Map;
+import org.clafer.collection.Pair;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.DeadVariableEliminator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class DeadVariableEliminatorTest {
+
+    @Test
+    public void testEliminateDefinition() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 3);
+        IrIntVar b = boundInt("b", 0, 3);
+        IrIntVar sum = boundInt("sum", 0, 6);
+        module.addVariables(a, b);
+        module.addConstraint(equal(sum, add(a, b)));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertEquals(add(a, b), eliminated.getFst().get(sum));
+        assertEquals(2, eliminated.getSnd().getConstraints().size());
+    }
+
+    @Test
+    public void testKeepRegistered() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 3);
+        IrIntVar b = boundInt("b", 0, 3);
+        IrIntVar sum = boundInt("sum", 0, 6);
+        module.addVariables(a, b, sum);
+        module.addConstraint(equal(sum, add(a, b)));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertTrue(eliminated.getFst().isEmpty());
+        assertEquals(4, eliminated.getSnd().getConstraints().size());
+    }
+
+    @Test
+    public void testKeepConstraining() {
+        IrModule module = new IrModule();
+        IrIntVar a = boundInt("a", 0, 3);
+        IrIntVar b = boundInt("b", 0, 3);
+        // Constrains a + b to at most 4.
+        IrIntVar sum = boundInt("sum", 0, 4);
+        module.addVariables(a, b);
+        module.addConstraint(equal(sum, add(a, b)));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertTrue(eliminated.getFst().isEmpty());
+    }
+
+    @Test
+    public void testEliminateTransitively() {
+        IrModule module = new IrModule();
+        IrBoolVar a = bool("a");
+        IrBoolVar b = bool("b");
+        IrBoolVar c = bool("c");
+        IrIntVar count = boundInt("count", 0, 2);
+        module.addVariables(a, b);
+        module.addConstraint(ifOnlyIf(c, and(a, b)));
+        module.addConstraint(equal(count, add(c, a)));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertEquals(2, eliminated.getFst().size());
+        assertTrue(eliminated.getFst().containsKey(c));
+        assertTrue(eliminated.getFst().containsKey(count));
+        assertEquals(2, eliminated.getSnd().getConstraints().size());
+    }
+
+    @Test
+    public void testKeepSelfReferential() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrBoolVar c = bool("c");
+        module.addVariable(c);
+        // Implies c is false.
+        module.addConstraint(ifOnlyIf(b, and(not(b), c)));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertFalse(eliminated.getFst().containsKey(b));
+        assertFalse(eliminated.getSnd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testCountNegatedOccurrences() {
+        IrModule module = new IrModule();
+        IrBoolVar b = bool("b");
+        IrBoolVar c = bool("c");
+        IrBoolVar d = bool("d");
+        IrBoolVar e = bool("e");
+        module.addVariables(c, d, e);
+        module.addConstraint(ifOnlyIf(b, and(c, d)));
+        module.addConstraint(or(not(b), e));
+
+        Pair<Map<IrIntVar, IrIntExpr>, IrModule> eliminated = DeadVariableEliminator.eliminate(module);
+        assertFalse(eliminated.getFst().containsKey(b));
+    }
+}
@@ -0,0 +1,55 @@
+package org.clafer.math;
+
+import java.math.BigInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class RationalTest {
+
+    @Test
+    public void testPromoteOnOverflow() {
+        Rational big = new Rational(Long.MAX_VALUE);
+        Rational sum = big.add(big);
+
+        assertFalse(sum.fitsInLong());
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1), sum.getBigNumerator());
+        assertEquals(big, sum.sub(big));
+        assertTrue(sum.sub(big).fitsInLong());
+        assertTrue(sum.compareTo(big) > 0);
+    }
+
+    @Test
+    public void testMulOverflow() {
+        Rational r = new Rational(3037000500L, 7);
+        Rational square = r.mul(r);
+
+        assertFalse(square.fitsInLong());
+        assertEquals(r, square.div(r));
+        assertTrue(square.isPositive());
+        assertTrue(square.minus().isNegative());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testNumeratorDoesNotFit() {
+        new Rational(Long.MAX_VALUE).add(1).getNumerator();
+    }
+
+    @Test
+    public void testAccumulator() {
+        Rational.Accumulator sum = new Rational.Accumulator();
+        Rational big = new Rational(Long.MAX_VALUE, 3);
+        sum.addMul(big, new Rational(3));
+        sum.addMul(big, new Rational(3));
+        sum.subMul(big, new Rational(6));
+
+        assertTrue(sum.isZero());
+        assertEquals(Rational.Zero, sum.toRational());
+
+        sum.add(new Rational(1, 2)).add(new Rational(1, 3));
+        assertEquals(new Rational(5, 6), sum.toRational());
+    }
+}